@@ -3,6 +3,7 @@ package com.instaclustr.esop.azure;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.function.BiConsumer;
 
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
@@ -90,6 +91,11 @@ public class AzureBackuper extends Backuper {
         }
     }
 
+    @Override
+    public void listNodeObjects(final Path prefix, final BiConsumer<String, Long> consumer) {
+        AzureListing.listObjects(blobContainer, resolveNodeAwareRemotePath(prefix) + "/", consumer);
+    }
+
     @Override
     public void uploadFile(final long size,
                            final InputStream localFileStream,
@@ -103,4 +109,15 @@ public class AzureBackuper extends Backuper {
         final CloudBlockBlob blob = ((AzureRemoteObjectReference) objectReference).blob;
         blob.uploadText(text);
     }
+
+    @Override
+    public String downloadText(final RemoteObjectReference objectReference) throws Exception {
+        final CloudBlockBlob blob = ((AzureRemoteObjectReference) objectReference).blob;
+        return blob.exists() ? blob.downloadText() : null;
+    }
+
+    @Override
+    public void deleteText(final RemoteObjectReference objectReference) throws Exception {
+        ((AzureRemoteObjectReference) objectReference).blob.deleteIfExists();
+    }
 }
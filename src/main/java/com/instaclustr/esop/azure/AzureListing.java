@@ -0,0 +1,32 @@
+package com.instaclustr.esop.azure;
+
+import java.util.EnumSet;
+import java.util.function.BiConsumer;
+
+import com.microsoft.azure.storage.blob.BlobListingDetails;
+import com.microsoft.azure.storage.blob.CloudBlob;
+import com.microsoft.azure.storage.blob.CloudBlobContainer;
+import com.microsoft.azure.storage.blob.ListBlobItem;
+
+/**
+ * Listing of objects shared by Azure backuper and restorer.
+ */
+final class AzureListing {
+
+    private AzureListing() {
+    }
+
+    /**
+     * Lists all blobs of a container which names start with given prefix, without directories.
+     *
+     * @param consumer consumer of names of listed blobs and their last modification times in milliseconds
+     */
+    static void listObjects(final CloudBlobContainer blobContainer, final String prefix, final BiConsumer<String, Long> consumer) {
+        for (final ListBlobItem item : blobContainer.listBlobs(prefix, true, EnumSet.noneOf(BlobListingDetails.class), null, null)) {
+            if (item instanceof CloudBlob) {
+                final CloudBlob blob = (CloudBlob) item;
+                consumer.accept(blob.getName(), blob.getProperties().getLastModified().getTime());
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.instaclustr.esop.azure;
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
 
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -10,10 +11,13 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import com.instaclustr.esop.azure.AzureModule.CloudStorageAccountFactory;
@@ -26,9 +30,11 @@ import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
 import com.instaclustr.esop.impl.restore.Restorer;
 import com.microsoft.azure.storage.CloudStorageAccount;
 import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.BlobInputStream;
 import com.microsoft.azure.storage.blob.BlobListingDetails;
 import com.microsoft.azure.storage.blob.CloudBlobClient;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
+import com.microsoft.azure.storage.blob.CloudBlobDirectory;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import com.microsoft.azure.storage.blob.ListBlobItem;
 import org.slf4j.Logger;
@@ -41,49 +47,58 @@ public class AzureRestorer extends Restorer {
     private final CloudBlobContainer blobContainer;
     private final CloudBlobClient cloudBlobClient;
     private final CloudStorageAccount cloudStorageAccount;
+    private final ObjectMapper objectMapper;
 
     @AssistedInject
     public AzureRestorer(final CloudStorageAccountFactory cloudStorageAccountFactory,
-                         @Assisted final RestoreOperationRequest request) throws Exception {
+                         @Assisted final RestoreOperationRequest request,
+                         final ObjectMapper objectMapper) throws Exception {
         super(request);
 
         cloudStorageAccount = cloudStorageAccountFactory.build(request);
         cloudBlobClient = cloudStorageAccount.createCloudBlobClient();
 
         this.blobContainer = cloudBlobClient.getContainerReference(request.storageLocation.bucket);
+        this.objectMapper = objectMapper;
     }
 
     @AssistedInject
     public AzureRestorer(final CloudStorageAccountFactory cloudStorageAccountFactory,
-                         @Assisted final RestoreCommitLogsOperationRequest request) throws Exception {
+                         @Assisted final RestoreCommitLogsOperationRequest request,
+                         final ObjectMapper objectMapper) throws Exception {
         super(request);
 
         cloudStorageAccount = cloudStorageAccountFactory.build(request);
         cloudBlobClient = cloudStorageAccount.createCloudBlobClient();
 
         this.blobContainer = cloudBlobClient.getContainerReference(request.storageLocation.bucket);
+        this.objectMapper = objectMapper;
     }
 
     @AssistedInject
     public AzureRestorer(final CloudStorageAccountFactory cloudStorageAccountFactory,
-                         @Assisted final ListOperationRequest request) throws Exception {
+                         @Assisted final ListOperationRequest request,
+                         final ObjectMapper objectMapper) throws Exception {
         super(request);
 
         cloudStorageAccount = cloudStorageAccountFactory.build(request);
         cloudBlobClient = cloudStorageAccount.createCloudBlobClient();
 
         this.blobContainer = cloudBlobClient.getContainerReference(request.storageLocation.bucket);
+        this.objectMapper = objectMapper;
     }
 
     @AssistedInject
     public AzureRestorer(final CloudStorageAccountFactory cloudStorageAccountFactory,
-                         @Assisted final RemoveBackupRequest request) throws Exception {
+                         @Assisted final RemoveBackupRequest request,
+                         final ObjectMapper objectMapper) throws Exception {
         super(request);
 
         cloudStorageAccount = cloudStorageAccountFactory.build(request);
         cloudBlobClient = cloudStorageAccount.createCloudBlobClient();
 
         this.blobContainer = cloudBlobClient.getContainerReference(request.storageLocation.bucket);
+        this.objectMapper = objectMapper;
     }
 
 
@@ -116,6 +131,24 @@ public class AzureRestorer extends Restorer {
         blob.downloadToFile(localPath.toAbsolutePath().toString());
     }
 
+    @Override
+    public InputStream downloadFileStream(final RemoteObjectReference objectReference) throws Exception {
+        return ((AzureRemoteObjectReference) objectReference).blob.openInputStream();
+    }
+
+    @Override
+    public InputStream downloadFileRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception {
+        final BlobInputStream stream = ((AzureRemoteObjectReference) objectReference).blob.openInputStream();
+        // skipping only repositions the stream, skipped bytes are not transferred
+        ByteStreams.skipFully(stream, offset);
+        return ByteStreams.limit(stream, length);
+    }
+
+    @Override
+    public void uploadText(final String text, final RemoteObjectReference objectReference) throws Exception {
+        ((AzureRemoteObjectReference) objectReference).blob.uploadText(text);
+    }
+
     @Override
     public String downloadFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final String blobItemPath = getBlobItemPath(globalList(remotePrefix), keyFilter);
@@ -124,11 +157,16 @@ public class AzureRestorer extends Restorer {
 
     @Override
     public String downloadManifestToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
-        final String blobItemPath = getManifest(nodeList(remotePrefix), keyFilter);
-        final String fileName = blobItemPath.split("/")[blobItemPath.split("/").length - 1];
+        final String fileName = resolveManifestName(remotePrefix, keyFilter);
         return downloadFileToString(objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(fileName)));
     }
 
+    @Override
+    public String resolveManifestName(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
+        final String blobItemPath = getManifest(nodeList(remotePrefix), keyFilter);
+        return blobItemPath.split("/")[blobItemPath.split("/").length - 1];
+    }
+
     @Override
     public String downloadNodeFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final String blobItemPath = getBlobItemPath(nodeList(remotePrefix), keyFilter);
@@ -184,28 +222,27 @@ public class AzureRestorer extends Restorer {
     @Override
     public void consumeFiles(final RemoteObjectReference prefix, final Consumer<RemoteObjectReference> consumer) throws Exception {
         final AzureRemoteObjectReference azureRemoteObjectReference = (AzureRemoteObjectReference) prefix;
-        final Iterable<ListBlobItem> blobItemsIterable = nodeList(azureRemoteObjectReference.getObjectKey());
+        final List<String> names = new ArrayList<>();
 
-        for (final ListBlobItem listBlobItem : blobItemsIterable) {
+        AzureListing.listObjects(blobContainer, resolveNodeAwareRemotePath(azureRemoteObjectReference.getObjectKey()) + "/", (name, lastModified) -> names.add(name));
+
+        for (final String name : names) {
             try {
-                consumer.accept(objectKeyToNodeAwareRemoteReference(removeNodePrefix(listBlobItem)));
+                consumer.accept(objectKeyToNodeAwareRemoteReference(removeNodePrefix(name)));
             } catch (StorageException | URISyntaxException ex) {
-                logger.error("Error occurred while trying to consume {}", listBlobItem.getUri().toString(), ex);
+                logger.error("Error occurred while trying to consume {}", name, ex);
                 throw ex;
             }
         }
     }
 
-    private Path removeNodePrefix(final ListBlobItem listBlobItem) {
-        final String pattern = format("^/%s/%s/%s/%s/",
-                                      request.storageLocation.bucket,
+    private Path removeNodePrefix(final String name) {
+        final String pattern = format("^%s/%s/%s/",
                                       request.storageLocation.clusterId,
                                       request.storageLocation.datacenterId,
                                       request.storageLocation.nodeId);
 
-        final Pattern containerPattern = Pattern.compile(pattern);
-
-        return Paths.get(containerPattern.matcher(listBlobItem.getUri().getPath()).replaceFirst(""));
+        return Paths.get(Pattern.compile(pattern).matcher(name).replaceFirst(""));
     }
 
     private Iterable<ListBlobItem> globalList(final Path prefix) {
@@ -225,6 +262,60 @@ public class AzureRestorer extends Restorer {
         return blobContainer.listBlobs(prefix, true, EnumSet.noneOf(BlobListingDetails.class), null, null);
     }
 
+    @Override
+    public List<Manifest> listManifests() throws Exception {
+        return fetchManifests(objectMapper);
+    }
+
+    @Override
+    public void delete(final Path objectKey) throws Exception {
+        final AzureRemoteObjectReference remoteObjectReference = (AzureRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey);
+        logger.info("Deleting object {}", remoteObjectReference.canonicalPath);
+        remoteObjectReference.blob.deleteIfExists();
+    }
+
+    @Override
+    public void listNodeObjects(final Path prefix, final BiConsumer<String, Long> consumer) {
+        AzureListing.listObjects(blobContainer, resolveNodeAwareRemotePath(prefix) + "/", consumer);
+    }
+
+    @Override
+    protected int getDeletionBatchSize() {
+        return 256;
+    }
+
+    @Override
+    protected List<Path> deleteBatch(final List<Path> objectKeys) throws Exception {
+        // the storage client does not support blob batch requests, blobs of a batch are deleted one by one
+        // and batches are deleted concurrently
+        final List<Path> failed = new ArrayList<>();
+
+        for (final Path objectKey : objectKeys) {
+            try {
+                ((AzureRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blob.deleteIfExists();
+            } catch (final StorageException ex) {
+                logger.debug("Unable to delete {}: {}", objectKey, ex.getMessage());
+                failed.add(objectKey);
+            }
+        }
+
+        return failed;
+    }
+
+    @Override
+    protected List<String> listDirectories(final String prefix) throws Exception {
+        final List<String> directories = new ArrayList<>();
+
+        for (final ListBlobItem listBlobItem : blobContainer.listBlobs(prefix)) {
+            if (listBlobItem instanceof CloudBlobDirectory) {
+                final String directory = ((CloudBlobDirectory) listBlobItem).getPrefix();
+                directories.add(directory.substring(prefix.length(), directory.length() - 1));
+            }
+        }
+
+        return directories;
+    }
+
     @Override
     public void cleanup() {
         // Nothing to cleanup
@@ -1,11 +1,13 @@
 package com.instaclustr.esop.gcp;
 
 import static com.google.cloud.storage.Storage.PredefinedAcl.BUCKET_OWNER_FULL_CONTROL;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.InputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Path;
+import java.util.function.BiConsumer;
 
 import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.Blob;
@@ -79,6 +81,11 @@ public class GCPBackuper extends Backuper {
         }
     }
 
+    @Override
+    public void listNodeObjects(final Path prefix, final BiConsumer<String, Long> consumer) {
+        GCPListing.listObjects(storage, request.storageLocation.bucket, resolveNodeAwareRemotePath(prefix) + "/", consumer);
+    }
+
     @Override
     public void uploadFile(final long size,
                            final InputStream localFileStream,
@@ -97,6 +104,17 @@ public class GCPBackuper extends Backuper {
         storage.create(BlobInfo.newBuilder(blobId).build(), text.getBytes(), Storage.BlobTargetOption.predefinedAcl(BUCKET_OWNER_FULL_CONTROL));
     }
 
+    @Override
+    public String downloadText(final RemoteObjectReference objectReference) {
+        final Blob blob = storage.get(((GCPRemoteObjectReference) objectReference).blobId);
+        return blob == null ? null : new String(blob.getContent(), UTF_8);
+    }
+
+    @Override
+    public void deleteText(final RemoteObjectReference objectReference) {
+        storage.delete(((GCPRemoteObjectReference) objectReference).blobId);
+    }
+
     @Override
     public void cleanup() {
     }
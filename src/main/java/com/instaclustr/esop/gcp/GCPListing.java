@@ -0,0 +1,29 @@
+package com.instaclustr.esop.gcp;
+
+import java.util.function.BiConsumer;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.BlobListOption;
+
+/**
+ * Listing of objects shared by GCP backuper and restorer.
+ */
+final class GCPListing {
+
+    private GCPListing() {
+    }
+
+    /**
+     * Lists all blobs of a bucket which names start with given prefix.
+     *
+     * @param consumer consumer of names of listed blobs and their last modification times in milliseconds
+     */
+    static void listObjects(final Storage storage, final String bucket, final String prefix, final BiConsumer<String, Long> consumer) {
+        for (final Blob blob : storage.list(bucket, BlobListOption.prefix(prefix)).iterateAll()) {
+            if (!blob.getName().endsWith("/")) {
+                consumer.accept(blob.getName(), blob.getUpdateTime());
+            }
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.instaclustr.esop.gcp;
 
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toList;
 
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.channels.Channels;
 import java.nio.file.Files;
@@ -11,10 +13,12 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.gax.paging.Page;
 import com.google.cloud.ReadChannel;
 import com.google.cloud.storage.Blob;
@@ -22,6 +26,10 @@ import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.Storage.BlobListOption;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
+import com.google.cloud.storage.StorageException;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
@@ -33,37 +41,50 @@ import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
 import com.instaclustr.esop.impl.restore.RestoreCommitLogsOperationRequest;
 import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
 import com.instaclustr.esop.impl.restore.Restorer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class GCPRestorer extends Restorer {
 
+    private static final Logger logger = LoggerFactory.getLogger(GCPRestorer.class);
+
     private final Storage storage;
+    private final ObjectMapper objectMapper;
 
     @AssistedInject
     public GCPRestorer(final GoogleStorageFactory storageFactory,
-                       @Assisted final RestoreOperationRequest request) {
+                       @Assisted final RestoreOperationRequest request,
+                       final ObjectMapper objectMapper) {
         super(request);
         this.storage = storageFactory.build(request);
+        this.objectMapper = objectMapper;
     }
 
     @AssistedInject
     public GCPRestorer(final GoogleStorageFactory storageFactory,
-                       @Assisted final RestoreCommitLogsOperationRequest request) {
+                       @Assisted final RestoreCommitLogsOperationRequest request,
+                       final ObjectMapper objectMapper) {
         super(request);
         this.storage = storageFactory.build(request);
+        this.objectMapper = objectMapper;
     }
 
     @AssistedInject
     public GCPRestorer(final GoogleStorageFactory storageFactory,
-                       @Assisted final ListOperationRequest request) {
+                       @Assisted final ListOperationRequest request,
+                       final ObjectMapper objectMapper) {
         super(request);
         this.storage = storageFactory.build(request);
+        this.objectMapper = objectMapper;
     }
 
     @AssistedInject
     public GCPRestorer(final GoogleStorageFactory storageFactory,
-                       @Assisted final RemoveBackupRequest request) {
+                       @Assisted final RemoveBackupRequest request,
+                       final ObjectMapper objectMapper) {
         super(request);
         this.storage = storageFactory.build(request);
+        this.objectMapper = objectMapper;
     }
 
     @Override
@@ -98,6 +119,25 @@ public class GCPRestorer extends Restorer {
         }
     }
 
+    @Override
+    public InputStream downloadFileStream(final RemoteObjectReference objectReference) throws Exception {
+        // closing of the stream closes the underlying channel
+        return Channels.newInputStream(storage.reader(((GCPRemoteObjectReference) objectReference).blobId));
+    }
+
+    @Override
+    public InputStream downloadFileRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception {
+        final ReadChannel inputChannel = storage.reader(((GCPRemoteObjectReference) objectReference).blobId);
+        inputChannel.seek(offset);
+        // the channel is read in chunks, closing of the limited stream stops reading at the end of a range
+        return ByteStreams.limit(Channels.newInputStream(inputChannel), length);
+    }
+
+    @Override
+    public void uploadText(final String text, final RemoteObjectReference objectReference) {
+        storage.create(BlobInfo.newBuilder(((GCPRemoteObjectReference) objectReference).blobId).build(), text.getBytes(UTF_8));
+    }
+
     @Override
     public String downloadFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
 
@@ -117,11 +157,16 @@ public class GCPRestorer extends Restorer {
 
     @Override
     public String downloadManifestToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
-        final String blobItemPath = getManifest(nodeList(request.storageLocation.bucket, remotePrefix), keyFilter);
-        final String fileName = blobItemPath.split("/")[blobItemPath.split("/").length - 1];
+        final String fileName = resolveManifestName(remotePrefix, keyFilter);
         return downloadFileToString(objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(fileName)));
     }
 
+    @Override
+    public String resolveManifestName(final Path remotePrefix, final Predicate<String> keyFilter) {
+        final String blobItemPath = getManifest(nodeList(request.storageLocation.bucket, remotePrefix), keyFilter);
+        return blobItemPath.split("/")[blobItemPath.split("/").length - 1];
+    }
+
     @Override
     public String downloadNodeFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final String blobItemPath = getBlobItemPath(nodeList(request.storageLocation.bucket, remotePrefix), keyFilter);
@@ -181,20 +226,17 @@ public class GCPRestorer extends Restorer {
         final String bucket = gcpRemoteObjectReference.blobId.getBucket();
         final String pathPrefix = gcpRemoteObjectReference.getObjectKey().toString();
 
-        nodeList(bucket, Paths.get(pathPrefix)).iterateAll().iterator().forEachRemaining(blob -> {
-            if (!blob.getName().endsWith("/")) {
-                consumer.accept(objectKeyToNodeAwareRemoteReference(removeNodePrefix(blob)));
-            }
-        });
+        GCPListing.listObjects(storage, bucket, resolveNodeAwareRemotePath(Paths.get(pathPrefix)) + "/",
+                               (name, updateTime) -> consumer.accept(objectKeyToNodeAwareRemoteReference(removeNodePrefix(name))));
     }
 
-    private Path removeNodePrefix(final Blob blob) {
+    private Path removeNodePrefix(final String name) {
         final String pattern = String.format("%s/%s/%s/",
                                              request.storageLocation.clusterId,
                                              request.storageLocation.datacenterId,
                                              request.storageLocation.nodeId);
         final Pattern nodeIdPattern = Pattern.compile(pattern);
-        return Paths.get(nodeIdPattern.matcher(blob.getName()).replaceFirst(""));
+        return Paths.get(nodeIdPattern.matcher(name).replaceFirst(""));
     }
 
     private Page<Blob> globalList(final String bucket, final Path pathPrefix) {
@@ -216,6 +258,68 @@ public class GCPRestorer extends Restorer {
         return storage.list(bucket, BlobListOption.prefix(resolvedPrefix), BlobListOption.currentDirectory());
     }
 
+    @Override
+    public List<Manifest> listManifests() throws Exception {
+        return fetchManifests(objectMapper);
+    }
+
+    @Override
+    public void delete(final Path objectKey) {
+        final GCPRemoteObjectReference remoteObjectReference = (GCPRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey);
+        logger.info("Deleting object {}", remoteObjectReference.canonicalPath);
+        storage.delete(remoteObjectReference.blobId);
+    }
+
+    @Override
+    public void listNodeObjects(final Path prefix, final BiConsumer<String, Long> consumer) {
+        GCPListing.listObjects(storage, request.storageLocation.bucket, resolveNodeAwareRemotePath(prefix) + "/", consumer);
+    }
+
+    @Override
+    protected int getDeletionBatchSize() {
+        // maximum number of calls of one batch request
+        return 100;
+    }
+
+    @Override
+    protected List<Path> deleteBatch(final List<Path> objectKeys) {
+        final StorageBatch batch = storage.batch();
+        final List<StorageBatchResult<Boolean>> results = new ArrayList<>(objectKeys.size());
+
+        for (final Path objectKey : objectKeys) {
+            results.add(batch.delete(((GCPRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blobId));
+        }
+
+        batch.submit();
+
+        final List<Path> failed = new ArrayList<>();
+
+        for (int i = 0; i < objectKeys.size(); i++) {
+            try {
+                // false is returned for an object which does not exist anymore
+                results.get(i).get();
+            } catch (final StorageException ex) {
+                logger.debug("Unable to delete {}: {}", objectKeys.get(i), ex.getMessage());
+                failed.add(objectKeys.get(i));
+            }
+        }
+
+        return failed;
+    }
+
+    @Override
+    protected List<String> listDirectories(final String prefix) {
+        final List<String> directories = new ArrayList<>();
+
+        for (final Blob blob : list(request.storageLocation.bucket, prefix).iterateAll()) {
+            if (blob.isDirectory()) {
+                directories.add(blob.getName().substring(prefix.length(), blob.getName().length() - 1));
+            }
+        }
+
+        return directories;
+    }
+
     @Override
     public void cleanup() throws Exception {
         // Nothing to cleanup
@@ -9,26 +9,27 @@ import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
-import static org.awaitility.Awaitility.await;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.Objects;
 import com.google.common.util.concurrent.AbstractIdleService;
-import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.instaclustr.esop.impl.AbstractTracker.Session;
 import com.instaclustr.esop.impl.AbstractTracker.Unit;
@@ -48,7 +49,8 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
     protected final OperationsService operationsService;
     protected final HashSpec hashSpec;
 
-    protected final List<UNIT> units = Collections.synchronizedList(new ArrayList<>());
+    // submitted units which have not finished yet, by their object keys, together with sessions they are part of
+    protected final ConcurrentMap<Path, Registration<UNIT>> units = new ConcurrentHashMap<>();
     protected final Set<Session<UNIT>> sessions = Collections.synchronizedSet(new HashSet<>());
 
     public AtomicLong submittedUnits = new AtomicLong(0);
@@ -63,6 +65,10 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
 
     }
 
+    public HashSpec getHashSpec() {
+        return hashSpec;
+    }
+
     @Override
     protected void startUp() throws Exception {
         logger.info("Starting tracker ...");
@@ -92,11 +98,20 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
 
     public abstract Session<UNIT> constructSession();
 
+    public Session<UNIT> submit(final INTERACTOR interactor,
+                                final Operation<? extends REQUEST> operation,
+                                final Collection<ManifestEntry> entries,
+                                final String snapshotTag,
+                                final int concurrentConnections) {
+        return submit(interactor, operation, entries, snapshotTag, concurrentConnections, SchedulingPolicy.DEFAULT);
+    }
+
     public synchronized Session<UNIT> submit(final INTERACTOR interactor,
                                              final Operation<? extends REQUEST> operation,
                                              final Collection<ManifestEntry> entries,
                                              final String snapshotTag,
-                                             final int concurrentConnections) {
+                                             final int concurrentConnections,
+                                             final SchedulingPolicy schedulingPolicy) {
 
         final Session<UNIT> currentSession = constructSession();
         currentSession.setSnapshotTag(snapshotTag);
@@ -104,6 +119,7 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
 
         if (entries.isEmpty()) {
             logger.info("0 files to process.");
+            currentSession.seal();
             return currentSession;
         }
 
@@ -111,60 +127,95 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
         // concurrent uploads, if we had one global executor, we could not "cap it".
         final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(concurrentConnections);
 
-        final Map<ListenableFuture<Void>, Unit> futures = new HashMap<>();
-
-        for (final ManifestEntry entry : entries) {
-
-            UNIT alreadySubmitted = null;
+        final List<UNIT> unitsToSubmit = new ArrayList<>();
 
-            final Iterator<UNIT> it = Collections.unmodifiableList(new ArrayList<>(units)).iterator();
+        // session is registered before its units so none of them finishes unnoticed by it
+        sessions.add(currentSession);
+        submittedSessions.incrementAndGet();
 
-            while (it.hasNext()) {
-                UNIT unit = it.next();
+        for (final ManifestEntry entry : entries) {
 
-                if (unit.getManifestEntry().objectKey.equals(entry.objectKey)) {
-                    alreadySubmitted = unit;
-                    break;
+            // registration of a session is atomic with respect to finishing of a unit, see finishUnit
+            final Registration<UNIT> registration = units.compute(entry.objectKey, (objectKey, alreadySubmitted) -> {
+                final Registration<UNIT> r = alreadySubmitted != null
+                    ? alreadySubmitted
+                    : new Registration<>(constructUnitToSubmit(interactor, entry, operation.getShouldCancel(), snapshotTag, hashSpec));
+                if (!r.sessions.contains(currentSession)) {
+                    r.sessions.add(currentSession);
                 }
-            }
+                r.unit.share(entry);
+                return r;
+            });
 
-            if (alreadySubmitted == null) {
-                final UNIT unit = constructUnitToSubmit(interactor, entry, operation.getShouldCancel(), snapshotTag, hashSpec);
-
-                units.add(unit);
-                futures.put(executorService.submit(unit), unit);
+            if (!registration.submitted) {
+                registration.submitted = true;
+                unitsToSubmit.add(registration.unit);
 
                 submittedUnits.incrementAndGet();
-
-                currentSession.addUnit(unit);
             } else {
-                logger.info(String.format("Session %s skips as already submitted: %s", currentSession.getId(), alreadySubmitted.getManifestEntry().objectKey));
-                currentSession.addUnit(alreadySubmitted);
+                logger.info(String.format("Session %s skips as already submitted: %s", currentSession.getId(), registration.unit.getManifestEntry().objectKey));
             }
-        }
 
-        sessions.add(currentSession);
-        submittedSessions.incrementAndGet();
+            currentSession.addUnit(registration.unit);
+        }
 
-        futures.forEach((key, value) -> key.addListener(() -> {
-            synchronized (sessions) {
-                // increment finished units across all sessions
-                sessions.stream().filter(s -> s.getUnits().contains(value)).forEach(s -> {
-                    operationsService.operation(s.getId()).ifPresent(op -> {
-                        s.finishedUnits.incrementAndGet();
-                        logger.debug(String.format("Progress of operation %s: %s", op.id, s.getProgress()));
-                        op.progress = s.getProgress();
-                    });
-                });
-
-                units.remove(value);
-            }
-        }, finisherExecutorService));
+        // all units are known now so a session can be finished once all of them are
+        currentSession.seal();
+
+        final SchedulingPolicy policy = schedulingPolicy == null ? SchedulingPolicy.DEFAULT : schedulingPolicy;
+
+        for (final List<UNIT> task : policy.schedule(unitsToSubmit, unit -> unit.getManifestEntry().size, concurrentConnections)) {
+            executorService.submit(() -> {
+                // units of a task are processed one after another, each of them is finished as soon as it is processed,
+                // finishing does not take any lock so it is done right here instead of handing it over to finisher executor
+                for (final UNIT unit : task) {
+                    try {
+                        // a unit is ignored when some other unit of its session failed before it started
+                        if (unit.getState() != IGNORED) {
+                            unit.call();
+                        }
+                    } catch (final Throwable t) {
+                        // a unit failing outside of its own error handling must not leave the rest of the task unprocessed
+                        logger.error(format("Unit for %s failed", unit.getManifestEntry().objectKey), t);
+                        unit.throwable = t;
+                        unit.setState(FAILED);
+                    } finally {
+                        finishUnit(unit);
+                    }
+                }
+                return null;
+            });
+        }
 
         currentSession.setExecutorService(executorService);
         return currentSession;
     }
 
+    private void finishUnit(final UNIT unit) {
+        // once removed, no other session can register itself to this unit
+        final Registration<UNIT> registration = units.remove(unit.getManifestEntry().objectKey);
+
+        if (registration == null) {
+            return;
+        }
+
+        // increment finished units across all sessions
+        for (final Session<UNIT> s : registration.sessions) {
+            if (!sessions.contains(s)) {
+                continue;
+            }
+
+            operationsService.operation(s.getId()).ifPresent(op -> {
+                s.finishedUnits.incrementAndGet();
+                op.progress = s.getProgress();
+
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("Progress of operation %s: %s", op.id, op.progress));
+                }
+            });
+        }
+    }
+
     public int numberOfUnits() {
         return units.size();
     }
@@ -185,7 +236,7 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
     }
 
     public List<UNIT> getUnits() {
-        return Collections.unmodifiableList(units);
+        return Collections.unmodifiableList(units.values().stream().map(registration -> registration.unit).collect(toList()));
     }
 
     public Set<Session<UNIT>> getSessions() {
@@ -197,24 +248,7 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
             return;
         }
 
-        // Non-failed unit is an unit which has not started yet
-        // or it runs without an error so far.
-        // Not-started unit is submitted to executor but it has not been executed yet,
-        // the most probably because it waits until it fits into pool
-        session.getNonFailedUnits().forEach(unit -> {
-            if (unit.getState() == NOT_STARTED) {
-                logger.info(format("Ignoring %s from processing because there was an errorneous unit in a session %s",
-                                   unit.getManifestEntry().localFile,
-                                   session.id));
-                unit.setState(IGNORED);
-            } else if (unit.getState() == Unit.State.RUNNING) {
-                logger.info(format("Cancelling %s because there was an errorneous unit in a session %s",
-                                   unit.getManifestEntry().localFile,
-                                   session.id));
-                unit.setState(CANCELLED);
-                unit.shouldCancel.set(true);
-            }
-        });
+        session.cancelNonFailedUnits();
     }
 
     public static abstract class Unit implements java.util.concurrent.Callable<Void> {
@@ -228,6 +262,12 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
         protected Throwable throwable = null;
         @JsonIgnore
         protected final AtomicBoolean shouldCancel;
+        // entries of other sessions with the same object key, they are given the hash this unit computes
+        @JsonIgnore
+        private final List<ManifestEntry> sharedEntries = new ArrayList<>(0);
+        // sessions to notify about changes of the state of this unit
+        @JsonIgnore
+        private final List<Session<?>> sessions = new ArrayList<>(1);
 
         public Unit(final ManifestEntry manifestEntry,
                     final AtomicBoolean shouldCancel,
@@ -258,8 +298,62 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
             return manifestEntry;
         }
 
+        /**
+         * Sets the state of this unit and notifies all sessions this unit is part of about it.
+         * Sessions are notified outside of the lock of this unit as a session might change state of its other units.
+         */
         public void setState(final State state) {
-            this.state = state;
+            final State previousState;
+            final List<Session<?>> sessionsToNotify;
+
+            synchronized (this) {
+                previousState = this.state;
+                this.state = state;
+
+                if (previousState == state || sessions.isEmpty()) {
+                    return;
+                }
+
+                sessionsToNotify = new ArrayList<>(sessions);
+            }
+
+            for (final Session<?> session : sessionsToNotify) {
+                session.unitStateChanged(this, previousState, state);
+            }
+        }
+
+        /**
+         * @return state of this unit at the time the session was registered
+         */
+        synchronized State register(final Session<?> session) {
+            sessions.add(session);
+            return state;
+        }
+
+        /**
+         * Shares this unit with an entry of another session which has the same object key.
+         */
+        synchronized void share(final ManifestEntry entry) {
+            if (entry == manifestEntry) {
+                return;
+            }
+
+            if (entry.hash == null) {
+                entry.hash = manifestEntry.hash;
+            }
+
+            sharedEntries.add(entry);
+        }
+
+        /**
+         * Sets the hash of the entry of this unit and of all entries this unit is shared with.
+         */
+        protected synchronized void setHash(final String hash) {
+            manifestEntry.hash = hash;
+
+            for (final ManifestEntry entry : sharedEntries) {
+                entry.hash = hash;
+            }
         }
 
         public State getState() {
@@ -297,6 +391,19 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
         }
     }
 
+    protected static final class Registration<U extends Unit> {
+
+        final U unit;
+        // modified only in units.compute, read only after units.remove, both lock the same key so no other lock is needed
+        final List<Session<U>> sessions = new ArrayList<>(1);
+        // accessed only from synchronized submit
+        boolean submitted;
+
+        Registration(final U unit) {
+            this.unit = unit;
+        }
+    }
+
     public static abstract class Session<U extends Unit> {
 
         @JsonIgnore
@@ -311,6 +418,18 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
         public final AtomicLong submittedUnits = new AtomicLong(0);
         public final AtomicLong finishedUnits = new AtomicLong(0);
 
+        // number of units in a terminal state, a unit shared with other sessions might be ended by any of them
+        private final AtomicLong terminatedUnits = new AtomicLong(0);
+        private final AtomicBoolean failed = new AtomicBoolean(false);
+        // units cancelled or ignored by other sessions they are shared with, before this session failed on its own
+        private final List<U> interruptedUnits = new CopyOnWriteArrayList<>();
+        private volatile boolean sealed = false;
+        // completed once all units are finished or as soon as any of them fails
+        @JsonIgnore
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        @JsonIgnore
+        private final List<FinishedUnitListener<U>> finishedUnitListeners = new CopyOnWriteArrayList<>();
+
         public void setId(final UUID id) {
             this.id = id;
         }
@@ -331,13 +450,12 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
             return units;
         }
 
-        public synchronized boolean isConsideredFinished() {
-            return units.stream().anyMatch(unit -> unit.getState() == FAILED) ||
-                units.stream().allMatch(unit -> unit.getState() == FINISHED);
+        public boolean isConsideredFinished() {
+            return completion.isDone();
         }
 
-        public synchronized boolean isSuccessful() {
-            return units.stream().noneMatch(unit -> unit.getState() == FAILED);
+        public boolean isSuccessful() {
+            return !failed.get();
         }
 
         @JsonIgnore
@@ -346,18 +464,33 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
                 return Collections.emptyList();
             }
 
-            return units.stream().filter(unit -> unit.getState() == FAILED).collect(toList());
+            final List<U> failedUnits = snapshotOfUnits().stream().filter(unit -> unit.getState() == FAILED).collect(toList());
+
+            for (final U unit : interruptedUnits) {
+                if (!failedUnits.contains(unit)) {
+                    failedUnits.add(unit);
+                }
+            }
+
+            return failedUnits;
         }
 
         public List<U> getNonFailedUnits() {
-            return units.stream().filter(unit -> unit.getState() != FAILED).collect(toList());
+            return snapshotOfUnits().stream().filter(unit -> unit.getState() != FAILED).collect(toList());
+        }
+
+        // units are added while other threads look at them, iteration of a synchronized list has to hold its lock
+        private List<U> snapshotOfUnits() {
+            synchronized (units) {
+                return new ArrayList<>(units);
+            }
         }
 
         public void setExecutorService(final ListeningExecutorService executorService) {
             this.executorService = executorService;
         }
 
-        public synchronized float getProgress() {
+        public float getProgress() {
             if (submittedUnits.get() == 0) {
                 return 0;
             } else {
@@ -367,11 +500,18 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
 
         @JsonIgnore
         public void waitUntilConsideredFinished() {
-            await().pollInSameThread().forever().pollInterval(5, SECONDS).until(this::isConsideredFinished);
+            completion.join();
 
             if (executorService != null) {
                 executorService.shutdown();
-                await().pollInSameThread().forever().pollInterval(5, SECONDS).until(() -> executorService.isTerminated());
+
+                try {
+                    while (!executorService.awaitTermination(5, SECONDS)) {
+                        logger.debug("Waiting for units of session {} to terminate.", id);
+                    }
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
             }
 
             logger.info(format("%sSession %s has finished %s",
@@ -383,10 +523,121 @@ public abstract class AbstractTracker<UNIT extends Unit, SESSION extends Session
         public void addUnit(final U unit) {
             units.add(unit);
             submittedUnits.incrementAndGet();
+
+            // a unit might have been already processed when it was submitted by another session before
+            unitStateChanged(unit, null, unit.register(this));
+        }
+
+        /**
+         * Marks that all units were added so this session can be finished once they are all finished.
+         */
+        public void seal() {
+            sealed = true;
+            completeIfFinished();
+        }
+
+        /**
+         * Ignores units which have not started yet and cancels running units.
+         */
+        public void cancelNonFailedUnits() {
+            // Non-failed unit is an unit which has not started yet
+            // or it runs without an error so far.
+            // Not-started unit is submitted to executor but it has not been executed yet,
+            // the most probably because it waits until it fits into pool
+            getNonFailedUnits().forEach(unit -> {
+                if (unit.getState() == NOT_STARTED) {
+                    logger.info(format("Ignoring %s from processing because there was an errorneous unit in a session %s",
+                                       unit.getManifestEntry().localFile,
+                                       id));
+                    unit.setState(IGNORED);
+                } else if (unit.getState() == Unit.State.RUNNING) {
+                    logger.info(format("Cancelling %s because there was an errorneous unit in a session %s",
+                                       unit.getManifestEntry().localFile,
+                                       id));
+                    unit.setState(CANCELLED);
+                    unit.shouldCancel.set(true);
+                }
+            });
+        }
+
+        /**
+         * Registers a listener which is called once for every unit of this session which has finished successfully,
+         * including units which finished before the listener was registered. Listeners are called before a session
+         * is considered finished, from threads processing units, so they should not block.
+         */
+        public void addFinishedUnitListener(final Consumer<U> listener) {
+            final FinishedUnitListener<U> finishedUnitListener = new FinishedUnitListener<>(listener);
+            finishedUnitListeners.add(finishedUnitListener);
+
+            for (final U unit : snapshotOfUnits()) {
+                if (unit.getState() == FINISHED) {
+                    finishedUnitListener.unitFinished(unit);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void unitStateChanged(final Unit unit, final Unit.State previousState, final Unit.State state) {
+            if (state == FINISHED) {
+                for (final FinishedUnitListener<U> listener : finishedUnitListeners) {
+                    listener.unitFinished((U) unit);
+                }
+            }
+
+            if (isTerminal(state) && !isTerminal(previousState)) {
+                terminatedUnits.incrementAndGet();
+            } else if (isTerminal(previousState) && !isTerminal(state)) {
+                terminatedUnits.decrementAndGet();
+            }
+
+            if ((state == CANCELLED || state == IGNORED) && !failed.get()) {
+                // this session has not cancelled it itself, the unit will not be processed for it either
+                interruptedUnits.add((U) unit);
+                logger.info(format("%s was %s by another session, session %s fails",
+                                   unit.getManifestEntry().objectKey,
+                                   state == CANCELLED ? "cancelled" : "ignored",
+                                   id));
+            }
+
+            if ((state == FAILED || state == CANCELLED || state == IGNORED) && failed.compareAndSet(false, true)) {
+                // fail fast, other units of this session are not waited for
+                cancelNonFailedUnits();
+                completion.complete(null);
+                return;
+            }
+
+            completeIfFinished();
+        }
+
+        private static boolean isTerminal(final Unit.State state) {
+            return state == FINISHED || state == FAILED || state == IGNORED || state == CANCELLED;
+        }
+
+        private void completeIfFinished() {
+            if (sealed && terminatedUnits.get() >= submittedUnits.get()) {
+                completion.complete(null);
+            }
         }
 
         public void clear() {
             units.clear();
         }
+
+        private static final class FinishedUnitListener<U> {
+
+            private final Consumer<U> listener;
+            // a unit might be seen both upon registration of a listener and upon its state change
+            private final Set<U> notifiedUnits = ConcurrentHashMap.newKeySet();
+
+            FinishedUnitListener(final Consumer<U> listener) {
+                this.listener = listener;
+            }
+
+            void unitFinished(final U unit) {
+                if (notifiedUnits.add(unit)) {
+                    listener.accept(unit);
+                }
+            }
+        }
     }
 }
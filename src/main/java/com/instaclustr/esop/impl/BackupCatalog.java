@@ -0,0 +1,396 @@
+package com.instaclustr.esop.impl;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.Striped;
+import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
+import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
+import com.instaclustr.esop.impl.ManifestEntry.Type;
+import com.instaclustr.esop.impl.backup.Backuper;
+import com.instaclustr.esop.impl.restore.Restorer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact catalog of backups of a node, stored next to its manifests, so backups of a node are listed and chosen
+ * for removal from one small object instead of downloading and parsing of all manifests.
+ *
+ * A catalog holds a summary of every manifest and, for every object referenced by manifests, its size and
+ * manifests referencing it. Manifests are referenced by numeric ids to keep a catalog small. A catalog is
+ * updated after a manifest is uploaded or removed. It is written as a whole, by one request, so a reader never sees
+ * a partially written catalog. As the catalog is derived from manifests, it is checked against names of manifests
+ * of a node before it is used and it is rebuilt from them when it does not reflect them, e.g. when an update was lost
+ * to a concurrent one or when backups were taken by a version which did not maintain a catalog.
+ *
+ * Updates of a catalog of one node are serialised within this process, every update downloads the latest catalog,
+ * modifies it and uploads it while it holds a lock of a node. Storage providers are not asked for conditional writes,
+ * so updates done by different processes at the same time, e.g. a backup and a removal of backups run from
+ * different hosts, might still lose one of them. A manifest is uploaded before and removed before a catalog is
+ * updated, so a catalog which lost an update does not hold the same manifests as a remote storage does and
+ * it is rebuilt when it is loaded next time.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BackupCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackupCatalog.class);
+
+    /**
+     * Key of a catalog, relative to a node.
+     */
+    public static final Path CATALOG_KEY = Paths.get("catalog.json");
+
+    // serialises updates of a catalog of one node by this process
+    private static final Striped<Lock> CATALOG_LOCKS = Striped.lock(64);
+
+    public int nextId;
+    public Map<String, ManifestSummary> manifests = new TreeMap<>();
+    public Map<String, CatalogObject> objects = new TreeMap<>();
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ManifestSummary {
+
+        public int id;
+        public int files;
+        public long size;
+        public long timestamp;
+        // name of a base manifest of a delta manifest, null for a full manifest
+        public String baseManifest;
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("files", files)
+                .add("size", size)
+                .add("timestamp", timestamp)
+                .add("baseManifest", baseManifest)
+                .toString();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class CatalogObject {
+
+        public long size;
+        public List<Integer> manifests = new ArrayList<>();
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                .add("size", size)
+                .add("manifests", manifests)
+                .toString();
+        }
+    }
+
+    /**
+     * Adds a manifest to this catalog, a manifest of the same name which is already in it is replaced.
+     *
+     * @param manifest manifest to add, its manifest entry has to be set
+     */
+    public void add(final Manifest manifest) {
+        final String manifestName = manifest.getManifest().objectKey.getFileName().toString();
+
+        remove(manifestName);
+
+        final ManifestSummary summary = new ManifestSummary();
+        summary.id = nextId++;
+        summary.timestamp = manifest.getManifestTimestamp();
+        summary.baseManifest = manifest.getBaseManifest();
+
+        // with schemas but without manifest itself
+        for (final ManifestEntry entry : manifest.getManifestEntries(true, false)) {
+            final CatalogObject object = objects.computeIfAbsent(entry.objectKey.toString(), key -> {
+                final CatalogObject catalogObject = new CatalogObject();
+                catalogObject.size = entry.size;
+                return catalogObject;
+            });
+
+            if (!object.manifests.contains(summary.id)) {
+                object.manifests.add(summary.id);
+            }
+
+            summary.files++;
+            summary.size += entry.size;
+        }
+
+        manifests.put(manifestName, summary);
+    }
+
+    /**
+     * Removes a manifest from this catalog together with objects which are not referenced by any other manifest.
+     *
+     * @param manifestName name of a manifest file, e.g. "snapshot-schema-1234.json"
+     * @return true if a manifest was in this catalog
+     */
+    public boolean remove(final String manifestName) {
+        final ManifestSummary summary = manifests.remove(manifestName);
+
+        if (summary == null) {
+            return false;
+        }
+
+        final Iterator<CatalogObject> iterator = objects.values().iterator();
+
+        while (iterator.hasNext()) {
+            final CatalogObject object = iterator.next();
+
+            if (object.manifests.remove(Integer.valueOf(summary.id)) && object.manifests.isEmpty()) {
+                iterator.remove();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * A catalog written by a version which did not record bases of delta manifests is not consistent with any
+     * manifests, deltas of a base could not be told apart in it.
+     *
+     * @param manifestNames names of manifest files of a node in a remote storage
+     * @return true if this catalog holds exactly given manifests
+     */
+    public boolean isConsistentWith(final Collection<String> manifestNames) {
+        final boolean basesRecorded = manifests.entrySet().stream()
+            .noneMatch(manifest -> Manifest.isIncrementalManifest(manifest.getKey()) && manifest.getValue().baseManifest == null);
+
+        return basesRecorded && manifests.keySet().equals(new HashSet<>(manifestNames));
+    }
+
+    /**
+     * Reports all manifests of this catalog, as {@link AllManifestsReport#report(List)} does for parsed manifests.
+     *
+     * @return report of manifests ordered from the newest one
+     */
+    public AllManifestsReport report() {
+        final Map<Integer, List<String>> removableEntries = new HashMap<>();
+        final Map<Integer, Long> reclaimableSpace = new HashMap<>();
+
+        long totalSize = 0;
+
+        for (final Entry<String, CatalogObject> object : objects.entrySet()) {
+            totalSize += object.getValue().size;
+
+            // an object referenced only by one manifest is removed together with it
+            if (object.getValue().manifests.size() == 1) {
+                final Integer id = object.getValue().manifests.get(0);
+                removableEntries.computeIfAbsent(id, i -> new ArrayList<>()).add(object.getKey());
+                reclaimableSpace.merge(id, object.getValue().size, Long::sum);
+            }
+        }
+
+        final List<ManifestReport> reports = new ArrayList<>();
+
+        for (final Entry<String, ManifestSummary> manifest : manifests.entrySet()) {
+            final String manifestName = manifest.getKey();
+            final ManifestSummary summary = manifest.getValue();
+
+            final ManifestReport report = new ManifestReport();
+            report.name = manifestName.substring(0, manifestName.lastIndexOf("."));
+            report.files = summary.files;
+            report.size = summary.size;
+            report.reclaimableSpace = reclaimableSpace.getOrDefault(summary.id, 0L);
+            report.removableEntries = removableEntries.getOrDefault(summary.id, new ArrayList<>());
+            report.timestamp = new Timestamp(summary.timestamp).toLocalDateTime().toString();
+            report.unixtimestamp = summary.timestamp;
+            report.manifest = new ManifestEntry(Paths.get("manifests", manifestName), null, Type.FILE, null);
+            report.baseManifest = summary.baseManifest;
+            reports.add(report);
+        }
+
+        // newer at top, older at the bottom
+        reports.sort((r1, r2) -> Long.compare(r2.unixtimestamp, r1.unixtimestamp));
+
+        final AllManifestsReport report = new AllManifestsReport();
+        report.totalFiles = objects.size();
+        report.totalManifests = reports.size();
+        report.totalSize = totalSize;
+        report.reports = reports;
+
+        return report;
+    }
+
+    public static BackupCatalog build(final List<Manifest> manifests) {
+        final BackupCatalog catalog = new BackupCatalog();
+        manifests.forEach(catalog::add);
+        return catalog;
+    }
+
+    public static BackupCatalog read(final String catalog, final ObjectMapper objectMapper) throws Exception {
+        return objectMapper.readValue(catalog, BackupCatalog.class);
+    }
+
+    public static String write(final BackupCatalog catalog, final ObjectMapper objectMapper) throws Exception {
+        return objectMapper.writeValueAsString(catalog);
+    }
+
+    /**
+     * Loads a catalog of a node a restorer is set to. A catalog which does not exist or which does not hold
+     * the same manifests as a remote storage does is rebuilt from manifests.
+     *
+     * @param restorer     restorer set to a node to load a catalog of
+     * @param objectMapper mapper to parse a catalog and manifests with
+     * @param rebuild      if true, a catalog is rebuilt from manifests even if it is consistent with them
+     * @param persist      if true, a rebuilt catalog is uploaded so following listings do not need to rebuild it
+     * @return catalog of a node
+     */
+    public static BackupCatalog load(final Restorer restorer,
+                                     final ObjectMapper objectMapper,
+                                     final boolean rebuild,
+                                     final boolean persist) throws Exception {
+        final Set<String> manifestNames = listManifestNames(restorer);
+
+        if (!rebuild) {
+            final BackupCatalog catalog = download(restorer, objectMapper);
+
+            if (catalog != null && catalog.isConsistentWith(manifestNames)) {
+                logger.debug("Using catalog of node {} with {} manifests", restorer.getStorageLocation().nodePath(), catalog.manifests.size());
+                return catalog;
+            }
+
+            if (catalog != null) {
+                logger.info("Catalog of node {} does not reflect manifests in a remote storage, it will be rebuilt.", restorer.getStorageLocation().nodePath());
+            }
+        }
+
+        final BackupCatalog catalog = manifestNames.isEmpty() ? new BackupCatalog() : build(restorer.listManifests());
+
+        if (persist) {
+            upload(restorer, catalog, objectMapper);
+        }
+
+        return catalog;
+    }
+
+    /**
+     * @param restorer restorer set to a node to list manifests of
+     * @return names of manifest files of a node in a remote storage
+     */
+    public static Set<String> listManifestNames(final Restorer restorer) throws Exception {
+        final Set<String> manifestNames = new HashSet<>();
+
+        restorer.consumeFiles(restorer.objectKeyToNodeAwareRemoteReference(Paths.get("manifests")),
+                              reference -> manifestNames.add(reference.objectKey.getFileName().toString()));
+
+        return manifestNames;
+    }
+
+    /**
+     * Uploads a catalog of a node a restorer is set to, a failure to upload it is logged only as a catalog is rebuilt
+     * when it does not reflect manifests.
+     */
+    public static void upload(final Restorer restorer, final BackupCatalog catalog, final ObjectMapper objectMapper) {
+        final Lock lock = lockOf(restorer.getStorageLocation());
+        lock.lock();
+
+        try {
+            restorer.uploadText(write(catalog, objectMapper), restorer.objectKeyToNodeAwareRemoteReference(CATALOG_KEY));
+        } catch (final Exception ex) {
+            logger.warn("Unable to upload catalog of node {}: {}", restorer.getStorageLocation().nodePath(), ex.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes manifests from the latest catalog of a node a restorer is set to, so manifests added to it since
+     * a catalog was loaded by a removal are kept. Given catalog is uploaded when there is not any catalog to update.
+     * A failure to update a catalog is logged only as a catalog is rebuilt when it does not reflect manifests.
+     *
+     * @param restorer      restorer set to a node to update a catalog of
+     * @param catalog       catalog manifests were removed from
+     * @param manifestNames names of removed manifest files
+     * @param objectMapper  mapper to parse and write a catalog with
+     */
+    public static void remove(final Restorer restorer,
+                              final BackupCatalog catalog,
+                              final Collection<String> manifestNames,
+                              final ObjectMapper objectMapper) {
+        final Lock lock = lockOf(restorer.getStorageLocation());
+        lock.lock();
+
+        try {
+            BackupCatalog latestCatalog = download(restorer, objectMapper);
+
+            if (latestCatalog == null) {
+                latestCatalog = catalog;
+            } else {
+                manifestNames.forEach(latestCatalog::remove);
+            }
+
+            restorer.uploadText(write(latestCatalog, objectMapper), restorer.objectKeyToNodeAwareRemoteReference(CATALOG_KEY));
+        } catch (final Exception ex) {
+            logger.warn("Unable to update catalog of node {}: {}", restorer.getStorageLocation().nodePath(), ex.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an uploaded manifest to a catalog of a node a backuper is set to. A catalog is not created when it
+     * does not exist yet as it might not reflect manifests uploaded before, it is built upon removal of backups instead.
+     * A failure to update a catalog does not fail a backup.
+     */
+    public static void update(final Backuper backuper, final Manifest manifest, final ObjectMapper objectMapper) {
+        final Lock lock = lockOf(backuper.getStorageLocation());
+        lock.lock();
+
+        try {
+            final RemoteObjectReference catalogReference = backuper.objectKeyToRemoteReference(Paths.get(backuper.resolveNodeAwareRemotePath(CATALOG_KEY)));
+            final String catalogText = backuper.downloadText(catalogReference);
+
+            if (catalogText == null) {
+                logger.info("There is not any catalog of node {} yet, it will be built upon next removal of backups.", backuper.getStorageLocation().nodePath());
+                return;
+            }
+
+            final BackupCatalog catalog = read(catalogText, objectMapper);
+            catalog.add(manifest);
+
+            backuper.uploadText(write(catalog, objectMapper), catalogReference);
+        } catch (final Exception ex) {
+            logger.warn("Unable to update catalog of node {}, it will be rebuilt upon next removal of backups: {}",
+                        backuper.getStorageLocation().nodePath(),
+                        ex.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Lock lockOf(final StorageLocation storageLocation) {
+        return CATALOG_LOCKS.get(storageLocation.storageProvider + "://" + storageLocation.bucket + "/" + storageLocation.nodePath());
+    }
+
+    private static BackupCatalog download(final Restorer restorer, final ObjectMapper objectMapper) {
+        try {
+            return read(restorer.downloadFileToString(restorer.objectKeyToNodeAwareRemoteReference(CATALOG_KEY)), objectMapper);
+        } catch (final Exception ex) {
+            logger.debug("Unable to read catalog of node {}: {}", restorer.getStorageLocation().nodePath(), ex.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("manifests", manifests.size())
+            .add("objects", objects.size())
+            .toString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.instaclustr.esop.impl;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.instaclustr.esop.impl.backup.Backuper;
+import com.instaclustr.esop.impl.restore.Restorer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Marker of a backup of a node which is running, stored next to its manifests. A backup might reuse objects which are
+ * already present in a remote storage without touching them, e.g. within a refresh window or when refreshing is skipped,
+ * so such objects might look old and unreferenced until its manifest is uploaded. A garbage collection does not remove
+ * anything while a node has a marker of a running backup.
+ *
+ * A marker is removed once a backup finishes, successfully or not. A marker of a backup which was killed is left behind,
+ * it is ignored once it is older than a grace period of a garbage collection.
+ */
+public final class BackupInProgressMarker {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackupInProgressMarker.class);
+
+    /**
+     * Prefix of markers, relative to a node.
+     */
+    public static final Path MARKERS_PREFIX = Paths.get("in-progress");
+
+    private BackupInProgressMarker() {
+    }
+
+    /**
+     * Marks a backup of a node a backuper is set to as running.
+     */
+    public static void create(final Backuper backuper, final String snapshotTag) throws Exception {
+        backuper.uploadText(Long.toString(System.currentTimeMillis()), reference(backuper, snapshotTag));
+    }
+
+    /**
+     * Removes a marker of a backup, a failure to remove it is logged only as a marker which is left behind expires.
+     */
+    public static void remove(final Backuper backuper, final String snapshotTag) {
+        try {
+            backuper.deleteText(reference(backuper, snapshotTag));
+        } catch (final Exception ex) {
+            logger.warn("Unable to remove marker of backup {} of node {}: {}", snapshotTag, backuper.getStorageLocation().nodePath(), ex.getMessage());
+        }
+    }
+
+    /**
+     * @param since time in milliseconds, markers modified before it are not listed
+     * @return snapshot tags of backups of a node a restorer is set to which are running
+     */
+    public static List<String> list(final Restorer restorer, final long since) throws Exception {
+        final List<String> snapshotTags = new ArrayList<>();
+
+        restorer.listNodeObjects(MARKERS_PREFIX, (canonicalPath, lastModified) -> {
+            final String snapshotTag = Paths.get(canonicalPath).getFileName().toString();
+
+            if (lastModified == null || lastModified >= since) {
+                snapshotTags.add(snapshotTag);
+            } else {
+                logger.warn("Marker of backup {} of node {} is older than a grace period, its backup has not finished, it is ignored.",
+                            snapshotTag,
+                            restorer.getStorageLocation().nodePath());
+            }
+        });
+
+        return snapshotTags;
+    }
+
+    private static RemoteObjectReference reference(final Backuper backuper, final String snapshotTag) throws Exception {
+        return backuper.objectKeyToRemoteReference(Paths.get(backuper.resolveNodeAwareRemotePath(MARKERS_PREFIX.resolve(snapshotTag))));
+    }
+}
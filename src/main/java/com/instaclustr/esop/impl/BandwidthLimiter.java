@@ -0,0 +1,134 @@
+package com.instaclustr.esop.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Token bucket shared by all transfers of an operation. As all streams draw from the same bucket,
+ * bandwidth which is not used by some transfer, e.g. when only a few files are still being transferred
+ * at the end of an operation, is used by the others.
+ *
+ * Every stream acquires permits from the bucket in batches and it consumes them locally,
+ * so not every read has to synchronize with other streams.
+ */
+public class BandwidthLimiter {
+
+    private static final int MIN_BATCH_SIZE = 8 * 1024;
+    private static final int MAX_BATCH_SIZE = 1024 * 1024;
+
+    private final long bytesPerSecond;
+    private final int batchSize;
+    private final RateLimiter rateLimiter;
+
+    public BandwidthLimiter(final long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Bandwidth has to be positive, it is " + bytesPerSecond);
+        }
+
+        this.bytesPerSecond = bytesPerSecond;
+        // a batch is at most a tenth of a second of transfer so the bandwidth is still smooth
+        this.batchSize = (int) Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, bytesPerSecond / 10));
+        this.rateLimiter = RateLimiter.create(bytesPerSecond);
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @param stream       stream to limit
+     * @param shouldCancel flag upon which reading is cancelled
+     * @return stream reading from given stream which draws from this limiter
+     */
+    public InputStream limit(final InputStream stream, final AtomicBoolean shouldCancel) {
+        return new LimitedInputStream(stream, shouldCancel);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("bytesPerSecond", bytesPerSecond)
+            .add("batchSize", batchSize)
+            .toString();
+    }
+
+    private final class LimitedInputStream extends FilterInputStream {
+
+        private final AtomicBoolean shouldCancel;
+
+        // permits acquired but not consumed yet, it is negative when more bytes were read than acquired
+        private long credit;
+
+        LimitedInputStream(final InputStream stream, final AtomicBoolean shouldCancel) {
+            super(stream);
+            this.shouldCancel = shouldCancel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            acquire();
+
+            final int read = super.read();
+
+            if (read != -1) {
+                credit--;
+            }
+
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            acquire();
+
+            final int read = super.read(b, off, len);
+
+            if (read > 0) {
+                credit -= read;
+            }
+
+            return read;
+        }
+
+        /**
+         * Skipped bytes might be transferred too, e.g. by a stream of a remote object, so they draw from a limiter
+         * as read bytes do. At most acquired permits are skipped at once.
+         */
+        @Override
+        public long skip(final long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+
+            acquire();
+
+            final long skipped = super.skip(Math.min(n, credit));
+
+            if (skipped > 0) {
+                credit -= skipped;
+            }
+
+            return skipped;
+        }
+
+        private void acquire() throws IOException {
+            if (shouldCancel != null && shouldCancel.get()) {
+                throw new IOException("read was cancelled");
+            }
+
+            if (credit > 0) {
+                return;
+            }
+
+            // pays off bytes which were read over previously acquired permits too
+            final long permits = Math.min(Integer.MAX_VALUE, batchSize - credit);
+            rateLimiter.acquire((int) permits);
+            credit += permits;
+        }
+    }
+}
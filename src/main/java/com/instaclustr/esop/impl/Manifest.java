@@ -3,6 +3,7 @@ package com.instaclustr.esop.impl;
 import static com.instaclustr.esop.impl.ManifestEntry.Type.MANIFEST_FILE;
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -10,18 +11,22 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
@@ -39,6 +44,11 @@ public class Manifest implements Cloneable {
 
     private static final Logger logger = LoggerFactory.getLogger(Manifest.class);
 
+    /**
+     * Prefix of names of manifests of incremental backups so full manifests are recognized by their names only.
+     */
+    public static final String INCREMENTAL_MANIFEST_PREFIX = "incremental-";
+
     private Snapshot snapshot;
 
     @JsonIgnore
@@ -48,6 +58,12 @@ public class Manifest implements Cloneable {
 
     private String schemaVersion;
 
+    /**
+     * Name of a full manifest this manifest is a delta of, it is null for manifests of full backups.
+     */
+    @JsonInclude(Include.NON_NULL)
+    private String baseManifest;
+
     public static Manifest from(final Snapshot snapshot) {
         return new Manifest(snapshot);
     }
@@ -87,6 +103,23 @@ public class Manifest implements Cloneable {
         this.tokens = tokens;
     }
 
+    public String getBaseManifest() {
+        return baseManifest;
+    }
+
+    public void setBaseManifest(final String baseManifest) {
+        this.baseManifest = baseManifest;
+    }
+
+    @JsonIgnore
+    public boolean isIncremental() {
+        return baseManifest != null;
+    }
+
+    public static boolean isIncrementalManifest(final String manifestName) {
+        return manifestName.startsWith(INCREMENTAL_MANIFEST_PREFIX);
+    }
+
     public List<String> getTokens() {
         return tokens;
     }
@@ -166,15 +199,74 @@ public class Manifest implements Cloneable {
     @JsonIgnore
     public Long getManifestTimestamp() {
         if (manifest != null && manifest.objectKey != null) {
-            final String manifestPath = manifest.objectKey.getFileName().toString();
-            final String timestampWithFileSuffix = manifestPath.substring(manifestPath.lastIndexOf("-") + 1);
-            final String timestamp = timestampWithFileSuffix.substring(0, timestampWithFileSuffix.lastIndexOf("."));
-            return Long.parseLong(timestamp);
+            return parseTimestamp(manifest.objectKey.getFileName().toString());
         }
 
         return null;
     }
 
+    /**
+     * @param manifestName name of a manifest, e.g. snapshot-schema-1600000000000.json
+     * @return time a manifest was taken at
+     * @throws NumberFormatException if a name does not end with a timestamp
+     */
+    public static long parseTimestamp(final String manifestName) {
+        final String timestampWithFileSuffix = manifestName.substring(manifestName.lastIndexOf("-") + 1);
+        return Long.parseLong(timestampWithFileSuffix.substring(0, timestampWithFileSuffix.lastIndexOf(".")));
+    }
+
+    /**
+     * Adds files of a delta manifest of an incremental backup to this manifest, files which are in this manifest
+     * already are not added again. Tables which are not in this manifest are added with all their files, only if
+     * a delta has their schema. Tokens and a schema version of a delta are more recent so they replace these of this manifest.
+     *
+     * @param delta manifest of an incremental backup based on this manifest or on a manifest merged into it
+     * @throws IllegalStateException if a table is only in a delta and it does not have any schema
+     */
+    public void merge(final Manifest delta) {
+        for (final Entry<String, Keyspace> deltaKeyspace : delta.snapshot.getKeyspaces().entrySet()) {
+            for (final Entry<String, Table> deltaTable : deltaKeyspace.getValue().getTables().entrySet()) {
+                if (!snapshot.containsTable(deltaKeyspace.getKey(), deltaTable.getKey()) && deltaTable.getValue().getSchemaContent() == null) {
+                    throw new IllegalStateException(format("Table %s.%s of an incremental backup is not in its base manifest and it does not have any schema.",
+                                                           deltaKeyspace.getKey(),
+                                                           deltaTable.getKey()));
+                }
+            }
+
+            final Optional<Keyspace> keyspace = snapshot.getKeyspace(deltaKeyspace.getKey());
+
+            if (!keyspace.isPresent()) {
+                snapshot.add(deltaKeyspace.getKey(), deltaKeyspace.getValue());
+                continue;
+            }
+
+            for (final Entry<String, Table> deltaTable : deltaKeyspace.getValue().getTables().entrySet()) {
+                final Optional<Table> table = keyspace.get().getTable(deltaTable.getKey());
+
+                if (!table.isPresent()) {
+                    keyspace.get().add(deltaTable.getKey(), deltaTable.getValue());
+                    continue;
+                }
+
+                final Set<Path> objectKeys = table.get().getEntries().stream().map(entry -> entry.objectKey).collect(toSet());
+
+                for (final ManifestEntry entry : deltaTable.getValue().getEntries()) {
+                    if (entry.type == Type.FILE && objectKeys.add(entry.objectKey)) {
+                        table.get().add(entry);
+                    }
+                }
+            }
+        }
+
+        if (delta.tokens != null) {
+            tokens = delta.tokens;
+        }
+
+        if (delta.schemaVersion != null) {
+            schemaVersion = delta.schemaVersion;
+        }
+    }
+
     public void cleanup() throws Exception {
         if (manifest != null) {
             Files.deleteIfExists(manifest.localFile);
@@ -193,7 +285,8 @@ public class Manifest implements Cloneable {
         return Objects.equal(snapshot, manifest1.snapshot) &&
             Objects.equal(manifest, manifest1.manifest) &&
             Objects.equal(tokens, manifest1.tokens) &&
-            Objects.equal(schemaVersion, manifest1.schemaVersion);
+            Objects.equal(schemaVersion, manifest1.schemaVersion) &&
+            Objects.equal(baseManifest, manifest1.baseManifest);
     }
 
     @Override
@@ -202,6 +295,7 @@ public class Manifest implements Cloneable {
 
         cloned.setTokens(tokens == null ? null : new ArrayList<>(tokens));
         cloned.setSchemaVersion(this.schemaVersion);
+        cloned.setBaseManifest(this.baseManifest);
         cloned.setManifest(manifest == null ? null : manifest.clone());
         cloned.setSnapshot(snapshot == null ? null : snapshot.clone());
 
@@ -210,7 +304,7 @@ public class Manifest implements Cloneable {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(snapshot, manifest, tokens, schemaVersion);
+        return Objects.hashCode(snapshot, manifest, tokens, schemaVersion, baseManifest);
     }
 
     public static ManifestEntry getManifestAsManifestEntry(final Path localManifestPath) {
@@ -221,6 +315,13 @@ public class Manifest implements Cloneable {
     }
 
     public static void write(final Manifest manifest, final Path localManifestPath, final ObjectMapper objectMapper) throws Exception {
+        // a file without a hash could not be verified on restore
+        for (final ManifestEntry entry : manifest.getManifestEntries(true, false)) {
+            if (entry.type == Type.FILE && entry.hash == null) {
+                throw new IllegalStateException(format("Manifest %s can not be written, hash of %s is not known", localManifestPath, entry.objectKey));
+            }
+        }
+
         Files.createDirectories(localManifestPath.getParent());
         objectMapper.writeValue(localManifestPath.toFile(), manifest);
     }
@@ -264,11 +365,8 @@ public class Manifest implements Cloneable {
 
         for (final String manifestPath : manifestsPaths) {
             try {
-
-                final String timestampWithFileSuffix = manifestPath.substring(manifestPath.lastIndexOf("-") + 1);
-                final String timestamp = timestampWithFileSuffix.substring(0, timestampWithFileSuffix.lastIndexOf("."));
-
-                final long currentTimestamp = Long.parseLong(timestamp);
+                // a delta manifest might be the latest one, it is restored together with its base manifest
+                final long currentTimestamp = parseTimestamp(manifestPath);
                 if (currentTimestamp > latestTimestamp) {
                     latestTimestamp = currentTimestamp;
                     latestManifest = manifestPath;
@@ -418,42 +516,60 @@ public class Manifest implements Cloneable {
         }
     }
 
+    /**
+     * Counts references of objects by manifests. Every object key is held once, together with a number of manifests
+     * referencing it, its size and the last manifest which referenced it, so a lookup of an object is a hash lookup
+     * no matter how many manifests reference it. Entries of a manifest are expected to be added one after another,
+     * as {@link #add(Manifest)} does, so an object referenced multiple times by one manifest is counted once.
+     */
     public static class ManifestFilesCounter {
 
-        public final Map<String, List<String>> files = new ConcurrentHashMap<>();
-        public final Map<String, Long> sizes = new ConcurrentHashMap<>();
+        private static final class References {
 
-        public List<String> getManifestsOfEntry(final String manifestEntry) {
-            return files.get(manifestEntry);
+            int count;
+            int lastManifest;
+            long size;
         }
 
+        // an object key is interned by this map, removable entries of all manifests refer to the same instance
+        private final Map<String, References> objects = new LinkedHashMap<>();
+        private final Map<String, Integer> manifestIds = new HashMap<>();
+        private final List<String> manifestNames = new ArrayList<>();
+        private long size;
+
         public boolean isOnlyInOneManifest(final String manifestEntry) {
-            return files.entrySet().stream().filter(entry -> entry.getKey().equals(manifestEntry)).findFirst().map(e -> e.getValue().size()).orElse(0) == 1;
+            return count(manifestEntry) == 1;
         }
 
         public boolean isInMultipleManifests(final String manifestEntry) {
-            return files.entrySet().stream().filter(entry -> entry.getKey().equals(manifestEntry)).findFirst().map(e -> e.getValue().size()).orElse(0) > 1;
+            return count(manifestEntry) > 1;
         }
 
         public int count(final String manifestEntry) {
-            return files.entrySet().stream()
-                .filter(entry -> entry.getKey().equals(manifestEntry))
-                .map(entry -> entry.getValue().size())
-                .reduce(Integer::sum).orElse(0);
+            final References references = objects.get(manifestEntry);
+            return references == null ? 0 : references.count;
         }
 
         public void add(final String manifestName, final ManifestEntry manifestEntry) {
+            final int manifestId = manifestIds.computeIfAbsent(manifestName, name -> {
+                manifestNames.add(name);
+                return manifestNames.size() - 1;
+            });
+
             final String key = manifestEntry.objectKey.toString();
-            if (files.containsKey(key)) {
-                files.get(key).add(manifestName);
-            } else {
-                files.put(key, new ArrayList<String>() {{
-                    add(manifestName);
-                }});
-                // we put it into sizes map just once
-                // as it might be technically present in all manifests multiple times
-                // but it is persisted just once
-                sizes.put(key, manifestEntry.size);
+            final References references = objects.get(key);
+
+            if (references == null) {
+                final References newReferences = new References();
+                newReferences.count = 1;
+                newReferences.lastManifest = manifestId;
+                // an object might be technically present in all manifests multiple times but it is persisted just once
+                newReferences.size = manifestEntry.size;
+                objects.put(key, newReferences);
+                size += manifestEntry.size;
+            } else if (references.lastManifest != manifestId) {
+                references.count++;
+                references.lastManifest = manifestId;
             }
         }
 
@@ -464,20 +580,20 @@ public class Manifest implements Cloneable {
         }
 
         public int getNumberOfEntries() {
-            return files.keySet().size();
+            return objects.size();
         }
 
         public long getSize() {
-            return sizes.values().stream().reduce(Long::sum).orElse(0L);
+            return size;
         }
 
         public long getReclaimableSpace(final Manifest m) {
             long reclaimableSpace = 0;
 
             for (final ManifestEntry manifestEntry : m.getManifestEntries()) {
-                final String key = manifestEntry.objectKey.toString();
-                if (isOnlyInOneManifest(key)) {
-                    reclaimableSpace += sizes.getOrDefault(key, 0L);
+                final References references = objects.get(manifestEntry.objectKey.toString());
+                if (references != null && references.count == 1) {
+                    reclaimableSpace += references.size;
                 }
             }
 
@@ -489,12 +605,34 @@ public class Manifest implements Cloneable {
             for (final ManifestEntry manifestEntry : m.getManifestEntries()) {
                 final String key = manifestEntry.objectKey.toString();
                 if (isOnlyInOneManifest(key)) {
-                    removableEntries.add(manifestEntry.objectKey.toString());
+                    removableEntries.add(key);
                 }
             }
 
             return removableEntries;
         }
+
+        /**
+         * Sets reclaimable space and removable entries of reports of all manifests at once, by one pass over objects.
+         *
+         * @param reports reports keyed by names of manifest files, e.g. "snapshot-schema-1234.json"
+         */
+        public void report(final Map<String, ManifestReport> reports) {
+            for (final Entry<String, References> object : objects.entrySet()) {
+                final References references = object.getValue();
+
+                if (references.count != 1) {
+                    continue;
+                }
+
+                final ManifestReport report = reports.get(manifestNames.get(references.lastManifest));
+
+                if (report != null) {
+                    report.reclaimableSpace += references.size;
+                    report.removableEntries.add(object.getKey());
+                }
+            }
+        }
     }
 
     public static class ManifestReporter {
@@ -505,6 +643,7 @@ public class Manifest implements Cloneable {
             report.size = manifest.getTotalSize();
             report.name = manifest.getManifestName();
             report.manifest = manifest.manifest;
+            report.baseManifest = manifest.baseManifest;
             return report;
         }
 
@@ -518,6 +657,7 @@ public class Manifest implements Cloneable {
             public String timestamp;
             public ManifestEntry manifest;
             public Long unixtimestamp;
+            public String baseManifest;
 
             public int getFiles() {
                 return files;
@@ -583,6 +723,14 @@ public class Manifest implements Cloneable {
                 this.manifest = manifest;
             }
 
+            public String getBaseManifest() {
+                return baseManifest;
+            }
+
+            public void setBaseManifest(final String baseManifest) {
+                this.baseManifest = baseManifest;
+            }
+
             @Override
             public String toString() {
                 return MoreObjects.toStringHelper(this)
@@ -593,6 +741,7 @@ public class Manifest implements Cloneable {
                     .add("removableEntries", removableEntries)
                     .add("timestamp", timestamp)
                     .add("unixtimestamp", unixtimestamp)
+                    .add("baseManifest", baseManifest)
                     .toString();
             }
         }
@@ -651,25 +800,40 @@ public class Manifest implements Cloneable {
             return reports.stream().filter(m -> m.name.equals(name)).findFirst();
         }
 
+        /**
+         * @param base report of a full manifest
+         * @return reports of delta manifests which reference given manifest as their base
+         */
+        public List<ManifestReport> getDeltas(final ManifestReport base) {
+            if (isIncrementalManifest(base.name)) {
+                return Collections.emptyList();
+            }
+
+            final String baseManifest = base.manifest.objectKey.getFileName().toString();
+
+            return reports.stream().filter(m -> baseManifest.equals(m.baseManifest)).collect(toList());
+        }
+
         public static AllManifestsReport report(List<Manifest> manifests) {
             final ManifestFilesCounter counter = new ManifestFilesCounter();
             final ManifestReporter manifestReporter = new ManifestReporter();
             final List<ManifestReport> reports = new ArrayList<>();
 
+            final Map<String, ManifestReport> reportsByManifest = new HashMap<>();
+
             for (final Manifest m : manifests) {
                 counter.add(m);
-            }
 
-            for (final Manifest m : manifests) {
                 final ManifestReport report = manifestReporter.report(m);
-                report.reclaimableSpace = counter.getReclaimableSpace(m);
-                report.removableEntries = counter.getRemovableEntries(m);
                 Long manifestTimestamp = m.getManifestTimestamp();
                 report.timestamp = new Timestamp(m.getManifestTimestamp()).toLocalDateTime().toString();
                 report.unixtimestamp = manifestTimestamp;
                 reports.add(report);
+                reportsByManifest.put(m.manifest.objectKey.getFileName().toString(), report);
             }
 
+            counter.report(reportsByManifest);
+
             final AllManifestsReport report = new AllManifestsReport();
             report.totalFiles = counter.getNumberOfEntries();
             report.totalManifests = reports.size();
@@ -0,0 +1,289 @@
+package com.instaclustr.esop.impl;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.RateLimiter;
+import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
+import com.instaclustr.esop.impl.retry.Retrier.ThrottledException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client-side controller of the rate of requests to a storage. One controller is shared by all interactors of the same
+ * bucket and node prefix, so transfers which run in parallel back off together instead of each of them on its own.
+ * Interactors hold their controller, a controller is released once no interactor of its bucket and prefix is left.
+ *
+ * The rate is not limited until a request is throttled or fails. It is cut to a half of the rate requests were done at
+ * then, and every successful request increases it so the rate grows by {@link #INCREASE} requests per second,
+ * so the rate settles close to the rate a storage accepts. As requests in flight fail together, the rate is cut
+ * at most once per {@link #DECREASE_INTERVAL} nanoseconds.
+ *
+ * A circuit opens after {@link #FAILURE_THRESHOLD} failures in a row. Requests fail fast on {@link CircuitOpenException}
+ * while it is open. Once it was open for a while, only one request is let through as a probe, a circuit is closed
+ * when it succeeds and it is open for a while again when it fails.
+ */
+public class RateController {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateController.class);
+
+    public static final double MIN_RATE = 1;
+    public static final double INCREASE = 10;
+    public static final long DECREASE_INTERVAL = SECONDS.toNanos(1);
+    public static final int FAILURE_THRESHOLD = 20;
+    public static final long DEFAULT_OPEN_DURATION = SECONDS.toMillis(30);
+
+    private static final long WINDOW = SECONDS.toNanos(1);
+    private static final long PERMIT_WAIT = 100;
+
+    private static final LoadingCache<String, RateController> controllers = CacheBuilder.newBuilder()
+        .weakValues()
+        .build(CacheLoader.from(key -> new RateController(key, DEFAULT_OPEN_DURATION)));
+
+    public enum Outcome {
+        /**
+         * a storage has answered, even with a failure of a request itself, e.g. when an object is not found
+         */
+        SUCCEEDED,
+        /**
+         * a request was rejected because of the rate of requests
+         */
+        THROTTLED,
+        /**
+         * a storage has failed or it was not reached at all
+         */
+        FAILED
+    }
+
+    private final String key;
+    private final long openDuration;
+
+    // not any limit while it is null
+    private RateLimiter limiter;
+    private double rate = Double.POSITIVE_INFINITY;
+    private long lastDecrease;
+    private int consecutiveFailures;
+    private boolean open;
+    private long openUntil;
+    // a request is let through while a circuit is open to find out whether a storage has recovered
+    private boolean probing;
+
+    // requests of the current and the previous window, to know the rate requests were done at before the first failure
+    private long windowStart = System.nanoTime();
+    private int windowRequests;
+    private int previousWindowRequests;
+
+    /**
+     * @param key          identifier of a bucket and a prefix, for logging
+     * @param openDuration time a circuit is open for, in milliseconds
+     */
+    public RateController(final String key, final long openDuration) {
+        this.key = key;
+        this.openDuration = MILLISECONDS.toNanos(openDuration);
+    }
+
+    /**
+     * @param storageLocation location to get a controller of
+     * @return controller shared by all interactors of a bucket and a node of given location
+     */
+    public static RateController of(final StorageLocation storageLocation) {
+        final String key = format("%s://%s/%s", storageLocation.storageProvider, storageLocation.bucket, storageLocation.nodePath());
+        return controllers.getUnchecked(key);
+    }
+
+    /**
+     * Executes a request once it is permitted and records its outcome.
+     *
+     * @param request      request to a storage
+     * @param classifier   classifier of exceptions thrown by a request
+     * @param shouldCancel cancellation flag of an operation a request is done by, might be null
+     * @return result of a request
+     */
+    public <T> T call(final Callable<T> request, final Function<Exception, Outcome> classifier, final AtomicBoolean shouldCancel) throws Exception {
+        final boolean probe = acquire(shouldCancel);
+
+        try {
+            final T result = request.call();
+            record(Outcome.SUCCEEDED, probe);
+            return result;
+        } catch (final Exception ex) {
+            record(classifier.apply(ex), probe);
+            throw ex;
+        }
+    }
+
+    public <T> T call(final Callable<T> request) throws Exception {
+        return call(request, RateController::classify, null);
+    }
+
+    /**
+     * Classifies exceptions by their retriability, a throttled request is thrown as {@link ThrottledException}
+     * and a request of a failed storage as {@link RetriableException}.
+     */
+    public static Outcome classify(final Exception ex) {
+        if (ex instanceof ThrottledException) {
+            return Outcome.THROTTLED;
+        } else if (ex instanceof RetriableException) {
+            return Outcome.FAILED;
+        } else {
+            return Outcome.SUCCEEDED;
+        }
+    }
+
+    public boolean acquire() {
+        return acquire(null);
+    }
+
+    /**
+     * Waits until a request is permitted by the current rate. A request which was permitted has to record its outcome.
+     *
+     * @param shouldCancel cancellation flag of an operation a request is done by, might be null
+     * @return true if a request is a probe of a storage a circuit is open for
+     * @throws CircuitOpenException if a circuit is open
+     * @throws IllegalStateException if an operation was cancelled or a thread was interrupted while waiting
+     */
+    public boolean acquire(final AtomicBoolean shouldCancel) {
+        final RateLimiter rateLimiter;
+        final boolean probe;
+
+        synchronized (this) {
+            final long now = System.nanoTime();
+
+            if (open) {
+                if (probing || now - openUntil < 0) {
+                    throw new CircuitOpenException(format("Requests to %s are suspended after %s failures in a row", key, consecutiveFailures));
+                }
+
+                probing = true;
+                logger.info("Request to {} is let through to find out whether it has recovered.", key);
+            }
+
+            probe = open;
+
+            if (now - windowStart >= WINDOW) {
+                previousWindowRequests = now - windowStart < 2 * WINDOW ? windowRequests : 0;
+                windowRequests = 0;
+                windowStart = now;
+            }
+
+            windowRequests++;
+            rateLimiter = limiter;
+        }
+
+        if (rateLimiter != null) {
+            // a permit is taken when it is available in a while, otherwise a thread sleeps, so it does not spin
+            // on a limiter when a rate is low and it notices a cancellation in a while
+            while (!rateLimiter.tryAcquire(PERMIT_WAIT, MILLISECONDS)) {
+                if (shouldCancel != null && shouldCancel.get() || !sleep(PERMIT_WAIT)) {
+                    if (probe) {
+                        // a probe which was not sent at all does not say anything about a storage
+                        synchronized (this) {
+                            probing = false;
+                        }
+                    }
+
+                    throw new IllegalStateException(format("Cancelled or interrupted while waiting for a permit of a request to %s", key));
+                }
+            }
+        }
+
+        return probe;
+    }
+
+    public void record(final Outcome outcome) {
+        record(outcome, false);
+    }
+
+    /**
+     * @param outcome outcome of a request
+     * @param probe   true if a request was a probe of a storage a circuit is open for
+     */
+    public synchronized void record(final Outcome outcome, final boolean probe) {
+        if (outcome == Outcome.SUCCEEDED) {
+            consecutiveFailures = 0;
+
+            if (open) {
+                open = false;
+                probing = false;
+                logger.info("Requests to {} are resumed.", key);
+            }
+
+            if (limiter != null) {
+                setRate(rate + INCREASE / rate);
+            }
+
+            return;
+        }
+
+        final long now = System.nanoTime();
+
+        if (limiter == null || now - lastDecrease >= DECREASE_INTERVAL) {
+            final double previousRate = limiter == null ? Math.max(windowRequests, previousWindowRequests) : rate;
+            setRate(Math.max(MIN_RATE, previousRate / 2));
+            lastDecrease = now;
+            logger.info("Request to {} has {}, rate of requests is cut to {} per second.", key, outcome == Outcome.THROTTLED ? "been throttled" : "failed", (int) rate);
+        }
+
+        consecutiveFailures++;
+
+        if (probe && open) {
+            probing = false;
+            openUntil = now + openDuration;
+            logger.warn("Request to {} has failed again, requests are suspended for {} ms more.", key, NANOSECONDS.toMillis(openDuration));
+        } else if (consecutiveFailures >= FAILURE_THRESHOLD && !open) {
+            open = true;
+            openUntil = now + openDuration;
+            logger.warn("Requests to {} are suspended for {} ms after {} failures in a row.", key, NANOSECONDS.toMillis(openDuration), consecutiveFailures);
+        }
+    }
+
+    /**
+     * @return current rate of requests per second, infinite if it is not limited
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * @return false if a thread was interrupted
+     */
+    private static boolean sleep(final long millis) {
+        try {
+            MILLISECONDS.sleep(millis);
+            return true;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void setRate(final double rate) {
+        this.rate = rate;
+
+        if (limiter == null) {
+            limiter = RateLimiter.create(rate);
+        } else {
+            limiter.setRate(rate);
+        }
+    }
+
+    public static class CircuitOpenException extends RetriableException {
+
+        public CircuitOpenException(final String message) {
+            super(message);
+        }
+    }
+}
@@ -98,12 +98,22 @@ public class SSTableUtils {
                                                         Path snapshotDirectory,
                                                         Path tableBackupPath,
                                                         HashSpec hashSpec) throws IOException {
+        return ssTableManifest(keyspace, table, snapshotDirectory, tableBackupPath, new HashServiceImpl(hashSpec));
+    }
+
+    /**
+     * @param hashService service to hash files with, if null, hashes of entries are not computed here,
+     *                    they are expected to be filled in later, e.g. while these files are being uploaded
+     */
+    public static Stream<ManifestEntry> ssTableManifest(String keyspace,
+                                                        String table,
+                                                        Path snapshotDirectory,
+                                                        Path tableBackupPath,
+                                                        HashService hashService) throws IOException {
         if (!Files.exists(snapshotDirectory)) {
             return Stream.empty();
         }
 
-        final HashService hashService = new HashServiceImpl(hashSpec);
-
         return Files.list(snapshotDirectory)
             .flatMap(path -> {
                 if (isCassandra22SecIndex(path)) {
@@ -128,7 +138,7 @@ public class SSTableUtils {
 
                     backupPath = backupPath.resolve(hash).resolve(manifestComponentFileName.getFileName());
 
-                    final String hashOfFile = hashService.hash(localPath);
+                    final String hashOfFile = hashService == null ? null : hashService.hash(localPath);
                     return new ManifestEntry(backupPath, localPath, ManifestEntry.Type.FILE, hashOfFile, new KeyspaceTable(keyspace, table));
                 } catch (Exception e) {
                     throw new UncheckedIOException(new IOException(e));
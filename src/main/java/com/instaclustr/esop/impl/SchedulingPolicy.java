@@ -0,0 +1,157 @@
+package com.instaclustr.esop.impl;
+
+import static java.util.Comparator.comparingLong;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * Policy deciding in which order files are transferred and which files are transferred together by one thread.
+ *
+ * Files are submitted to a pool of as many threads as there are concurrent connections, so it is the largest
+ * file started last which usually decides how long the whole transfer takes. Policies other than {@link #MANIFEST_ORDER}
+ * start the largest files first. They are opt-in, the default is {@link #MANIFEST_ORDER} so files are transferred
+ * and progress is reported in the same order as before.
+ */
+public enum SchedulingPolicy {
+
+    /**
+     * Every file is transferred on its own in the order as it is in a manifest.
+     */
+    MANIFEST_ORDER {
+        @Override
+        public <T> List<List<T>> schedule(final List<T> items, final ToLongFunction<T> size, final int concurrency) {
+            final List<List<T>> tasks = new ArrayList<>(items.size());
+
+            for (final T item : items) {
+                tasks.add(Collections.singletonList(item));
+            }
+
+            return tasks;
+        }
+    },
+
+    /**
+     * Every file is transferred on its own, the largest files are transferred first. As all threads take files
+     * from the same queue, this is the longest processing time first rule which adapts to how fast each transfer really is.
+     */
+    LARGEST_FIRST {
+        @Override
+        public <T> List<List<T>> schedule(final List<T> items, final ToLongFunction<T> size, final int concurrency) {
+            return MANIFEST_ORDER.schedule(sortedBySizeDescending(items, size), size, concurrency);
+        }
+    },
+
+    /**
+     * Files are split upfront to as many groups as there are concurrent connections so the groups are of similar
+     * total size (files are taken from the largest and every file is put to the least loaded group), every group
+     * is transferred by one thread.
+     */
+    LPT {
+        @Override
+        public <T> List<List<T>> schedule(final List<T> items, final ToLongFunction<T> size, final int concurrency) {
+            final int bins = Math.max(1, Math.min(concurrency, items.size()));
+
+            final PriorityQueue<Bin<T>> queue = new PriorityQueue<>(bins, comparingLong((Bin<T> bin) -> bin.size).thenComparingInt(bin -> bin.index));
+
+            for (int i = 0; i < bins; i++) {
+                queue.add(new Bin<>(i));
+            }
+
+            for (final T item : sortedBySizeDescending(items, size)) {
+                final Bin<T> bin = queue.poll();
+                bin.items.add(item);
+                bin.size += size.applyAsLong(item);
+                queue.add(bin);
+            }
+
+            final List<Bin<T>> sortedBins = new ArrayList<>(queue);
+            sortedBins.sort(comparingLong((Bin<T> bin) -> bin.size).reversed());
+
+            final List<List<T>> tasks = new ArrayList<>(bins);
+
+            for (final Bin<T> bin : sortedBins) {
+                if (!bin.items.isEmpty()) {
+                    tasks.add(bin.items);
+                }
+            }
+
+            return tasks;
+        }
+    },
+
+    /**
+     * Files are transferred from the largest, as with {@link #LARGEST_FIRST}, but small files are grouped
+     * so one thread transfers a group of them one after another. Groups of small files are transferred last so they fill
+     * the gaps left by threads which finished their large files.
+     */
+    SMALL_FILE_BATCHING {
+        @Override
+        public <T> List<List<T>> schedule(final List<T> items, final ToLongFunction<T> size, final int concurrency) {
+            final List<List<T>> tasks = new ArrayList<>();
+
+            List<T> batch = new ArrayList<>();
+            long batchSize = 0;
+
+            for (final T item : sortedBySizeDescending(items, size)) {
+                final long itemSize = size.applyAsLong(item);
+
+                if (itemSize >= SMALL_FILE_SIZE) {
+                    tasks.add(Collections.singletonList(item));
+                    continue;
+                }
+
+                if (!batch.isEmpty() && (batch.size() == SMALL_FILE_BATCH_FILES || batchSize + itemSize > SMALL_FILE_BATCH_SIZE)) {
+                    tasks.add(batch);
+                    batch = new ArrayList<>();
+                    batchSize = 0;
+                }
+
+                batch.add(item);
+                batchSize += itemSize;
+            }
+
+            if (!batch.isEmpty()) {
+                tasks.add(batch);
+            }
+
+            return tasks;
+        }
+    };
+
+    public static final SchedulingPolicy DEFAULT = MANIFEST_ORDER;
+
+    static final long SMALL_FILE_SIZE = 1024 * 1024;
+    static final long SMALL_FILE_BATCH_SIZE = 16 * 1024 * 1024;
+    static final int SMALL_FILE_BATCH_FILES = 64;
+
+    /**
+     * @param items       items to schedule
+     * @param size        function returning size of an item
+     * @param concurrency number of threads items will be processed by
+     * @return tasks in the order they should be submitted, items of one task are meant to be processed by one thread in the returned order
+     */
+    public abstract <T> List<List<T>> schedule(final List<T> items, final ToLongFunction<T> size, final int concurrency);
+
+    private static <T> List<T> sortedBySizeDescending(final List<T> items, final ToLongFunction<T> size) {
+        final List<T> sorted = new ArrayList<>(items);
+        // sort is stable so files of the same size stay in the manifest order
+        sorted.sort(Comparator.<T>comparingLong(size).reversed());
+        return sorted;
+    }
+
+    private static final class Bin<T> {
+
+        final int index;
+        final List<T> items = new ArrayList<>();
+        long size;
+
+        Bin(final int index) {
+            this.index = index;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import static java.util.stream.Collectors.toSet;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -25,6 +26,9 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -36,12 +40,18 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.HashMultimap;
 import com.instaclustr.esop.impl.ManifestEntry.Type;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace;
 import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace.Table;
+import com.instaclustr.esop.impl.hash.HashService;
+import com.instaclustr.esop.impl.hash.HashServiceImpl;
 import com.instaclustr.esop.impl.hash.HashSpec;
 
 public class Snapshots implements Cloneable {
 
-    public static HashSpec hashSpec;
+    /**
+     * Directory of a table Cassandra hard-links every flushed SSTable into when incremental backups are enabled.
+     */
+    public static final String INCREMENTAL_BACKUPS_DIR = "backups";
 
     private final Map<String, Snapshot> snapshots = new HashMap<>();
 
@@ -215,6 +225,10 @@ public class Snapshots implements Cloneable {
         }
 
         public static Snapshot parse(final String snapshotName, final List<Path> snapshotPaths) throws Exception {
+            return parse(snapshotName, snapshotPaths, new HashServiceImpl(new HashSpec()));
+        }
+
+        public static Snapshot parse(final String snapshotName, final List<Path> snapshotPaths, final HashService hashService) throws Exception {
 
             final Snapshot snapshot = new Snapshot();
             snapshot.setName(snapshotName);
@@ -222,9 +236,12 @@ public class Snapshots implements Cloneable {
             final Map<String, List<Path>> keyspaceSnapshotPaths = snapshotPaths.stream()
                 .collect(groupingBy(p -> p.getParent().getParent().getParent().getFileName().toString()));
 
-            for (final Entry<String, List<Path>> entry : keyspaceSnapshotPaths.entrySet()) {
-                snapshot.keyspaces.put(entry.getKey(), Keyspace.parse(entry.getKey(), entry.getValue()));
-            }
+            // keyspaces and their tables are parsed in parallel when this is called from a fork-join pool
+            final Map<String, Keyspace> keyspaces = keyspaceSnapshotPaths.entrySet()
+                .parallelStream()
+                .collect(toMap(Entry::getKey, entry -> uncheckedParse(() -> Keyspace.parse(entry.getKey(), entry.getValue(), hashService))));
+
+            snapshot.keyspaces.putAll(keyspaces);
 
             return snapshot;
         }
@@ -351,14 +368,16 @@ public class Snapshots implements Cloneable {
             }
 
             public static Keyspace parse(final String keyspace, List<Path> snapshotPaths) throws Exception {
-                final Map<String, List<Path>> tableSnapshotPaths = snapshotPaths.stream().collect(groupingBy(p -> p.getParent().getParent().getFileName().toString()));
+                return parse(keyspace, snapshotPaths, new HashServiceImpl(new HashSpec()));
+            }
 
-                final Map<String, Table> tables = new HashMap<>();
+            public static Keyspace parse(final String keyspace, List<Path> snapshotPaths, final HashService hashService) throws Exception {
+                final Map<String, List<Path>> tableSnapshotPaths = snapshotPaths.stream().collect(groupingBy(p -> p.getParent().getParent().getFileName().toString()));
 
-                for (final Entry<String, List<Path>> entry : tableSnapshotPaths.entrySet()) {
-                    Table parsedTable = Table.parse(keyspace, entry.getKey(), entry.getValue());
-                    tables.put(parsedTable.name, parsedTable);
-                }
+                final Map<String, Table> tables = tableSnapshotPaths.entrySet()
+                    .parallelStream()
+                    .map(entry -> uncheckedParse(() -> Table.parse(keyspace, entry.getKey(), entry.getValue(), hashService)))
+                    .collect(toMap(table -> table.name, table -> table));
 
                 return new Keyspace(tables);
             }
@@ -507,6 +526,10 @@ public class Snapshots implements Cloneable {
                 }
 
                 public static Table parse(final String keyspace, final String table, final List<Path> value) throws Exception {
+                    return parse(keyspace, table, value, new HashServiceImpl(new HashSpec()));
+                }
+
+                public static Table parse(final String keyspace, final String table, final List<Path> value, final HashService hashService) throws Exception {
                     final Table tb = new Table();
 
                     final Matcher matcher = TABLE_PATTERN.matcher(table);
@@ -521,7 +544,10 @@ public class Snapshots implements Cloneable {
                     final Path tablePath = Paths.get("data").resolve(Paths.get(keyspace, table));
 
                     for (final Path path : value) {
-                        tb.entries.addAll(SSTableUtils.ssTableManifest(keyspace, table, path, tablePath, Snapshots.hashSpec).collect(toList()));
+                        // SSTable components are hashed in parallel, order of entries is preserved
+                        try (final Stream<ManifestEntry> entries = SSTableUtils.ssTableManifest(keyspace, table, path, tablePath, hashService)) {
+                            tb.entries.addAll(entries.parallel().collect(toList()));
+                        }
                     }
 
                     final Optional<Path> schemaPath = value.stream().map(p -> p.resolve("schema.cql")).filter(Files::exists).findFirst();
@@ -666,11 +692,26 @@ public class Snapshots implements Cloneable {
         }
     }
 
-    public static synchronized Snapshots parse(final Path cassandraDir, final String snapshot) throws Exception {
-        if (Snapshots.hashSpec == null) {
-            Snapshots.hashSpec = new HashSpec();
-        }
+    public static Snapshots parse(final Path cassandraDir, final String snapshot) throws Exception {
+        return parse(cassandraDir, snapshot, new HashServiceImpl(new HashSpec()));
+    }
 
+    public static Snapshots parse(final Path cassandraDir, final String snapshot, final HashService hashService) throws Exception {
+        return parse(cassandraDir, snapshot, hashService, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Parses snapshots in a dedicated fork-join pool, tables of all keyspaces and SSTables of each table are parsed
+     * and hashed in parallel. The pool is private to this call so parsing of a snapshot does not compete with other
+     * work submitted to the common pool and two operations can parse their snapshots at the same time.
+     *
+     * @param hashService service to hash files with, if null, hashes of manifest entries will not be computed
+     * @param parallelism maximal number of threads parsing and hashing files
+     */
+    public static Snapshots parse(final Path cassandraDir,
+                                  final String snapshot,
+                                  final HashService hashService,
+                                  final int parallelism) throws Exception {
         final Snapshots snapshots = new Snapshots();
         final SnapshotLister lister = new SnapshotLister();
         Files.walkFileTree(cassandraDir, lister);
@@ -681,14 +722,126 @@ public class Snapshots implements Cloneable {
                 .filter(entry -> snapshot == null || (entry.getKey().equals(snapshot)))
                 .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
 
-        for (final Entry<String, List<Path>> paths : snapshotPaths.entrySet()) {
-            snapshots.snapshots.put(paths.getKey(), Snapshot.parse(paths.getKey(), paths.getValue()));
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+
+        try {
+            for (final Entry<String, List<Path>> paths : snapshotPaths.entrySet()) {
+                snapshots.snapshots.put(paths.getKey(), pool.submit(() -> Snapshot.parse(paths.getKey(), paths.getValue(), hashService)).get());
+            }
+        } catch (final ExecutionException ex) {
+            throw unwrap(ex);
+        } finally {
+            pool.shutdownNow();
         }
 
         return snapshots;
     }
 
-    public static synchronized Snapshots parse(final Path cassandraDir) throws Exception {
+    /**
+     * Parses SSTables which Cassandra hard-links into "backups" directory of a table on every flush when
+     * incremental backups are enabled. Manifest entries of these files have the very same object keys as
+     * they would have in a snapshot so files which were already uploaded by a full backup are not uploaded again.
+     *
+     * @param name        name of returned snapshot
+     * @param entities    entities to parse backups of, backups of all tables are parsed if empty
+     * @param hashService service to hash files with, if null, hashes of manifest entries will not be computed
+     * @param parallelism maximal number of threads parsing and hashing files
+     * @return snapshot with tables which have at least one file in their backups directory
+     */
+    public static Snapshot parseIncrementalBackups(final Path cassandraDir,
+                                                   final String name,
+                                                   final DatabaseEntities entities,
+                                                   final HashService hashService,
+                                                   final int parallelism) throws Exception {
+        final CassandraData cassandraData = CassandraData.parse(cassandraDir);
+        final Map<String, List<Path>> backupsPaths = new HashMap<>();
+
+        for (final Path keyspacePath : cassandraData.getKeyspacePaths()) {
+            final String keyspace = keyspacePath.getFileName().toString();
+
+            for (final Path tablePath : cassandraData.getTablesPaths(keyspace).orElse(Collections.emptyList())) {
+                final String tableWithId = tablePath.getFileName().toString();
+                final String table = tableWithId.substring(0, tableWithId.lastIndexOf("-"));
+                final Path backupsPath = tablePath.resolve(INCREMENTAL_BACKUPS_DIR);
+
+                if (isIncluded(entities, keyspace, table) && Files.isDirectory(backupsPath)) {
+                    backupsPaths.computeIfAbsent(keyspace, ks -> new ArrayList<>()).add(backupsPath);
+                }
+            }
+        }
+
+        final Snapshot snapshot = new Snapshot();
+        snapshot.setName(name);
+
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+
+        try {
+            for (final Entry<String, List<Path>> paths : backupsPaths.entrySet()) {
+                final Map<String, Table> tables = pool.submit(() -> paths.getValue()
+                    .parallelStream()
+                    .map(path -> uncheckedParse(() -> Table.parse(paths.getKey(),
+                                                                  path.getParent().getFileName().toString(),
+                                                                  Collections.singletonList(path),
+                                                                  hashService)))
+                    .filter(table -> !table.getEntries().isEmpty())
+                    .collect(toMap(table -> table.name, table -> table))).get();
+
+                if (!tables.isEmpty()) {
+                    snapshot.add(paths.getKey(), new Keyspace(tables));
+                }
+            }
+        } catch (final ExecutionException ex) {
+            throw unwrap(ex);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return snapshot;
+    }
+
+    private static boolean isIncluded(final DatabaseEntities entities, final String keyspace, final String table) {
+        if (entities == null || entities.areEmpty()) {
+            return true;
+        }
+
+        return entities.contains(keyspace) || entities.contains(keyspace, table);
+    }
+
+    private static <T> T uncheckedParse(final Callable<T> parser) {
+        try {
+            return parser.call();
+        } catch (final RuntimeException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            throw new UncheckedParsingException(ex);
+        }
+    }
+
+    /**
+     * @return exception which failed parsing in a pool, without wrappers it was passed out of parallel streams in
+     */
+    private static Exception unwrap(final ExecutionException ex) {
+        Throwable cause = ex.getCause();
+
+        // a fork-join task might rethrow a copy of an exception which has the original one as its cause
+        while ((cause instanceof UncheckedParsingException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        return cause instanceof Exception ? (Exception) cause : ex;
+    }
+
+    /**
+     * Passes a checked exception out of a parallel stream, it is unwrapped once parsing fails.
+     */
+    private static final class UncheckedParsingException extends RuntimeException {
+
+        UncheckedParsingException(final Throwable cause) {
+            super(cause);
+        }
+    }
+
+    public static Snapshots parse(final Path cassandraDir) throws Exception {
         return Snapshots.parse(cassandraDir, null);
     }
 
@@ -1,17 +1,31 @@
 package com.instaclustr.esop.impl;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
+import com.instaclustr.esop.impl.hash.HashLedger;
 import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
+import com.instaclustr.esop.impl.retry.Retrier;
+import com.instaclustr.esop.impl.retry.RetrierFactory;
+import com.instaclustr.esop.impl.retry.RetrySpec;
 
 public abstract class StorageInteractor implements AutoCloseable {
 
     protected StorageLocation storageLocation;
 
+    // cancellation flag of an operation this interactor is used by
+    private AtomicBoolean shouldCancel = new AtomicBoolean();
+    private RateController rateController;
+    // ledger of hashes of local files, held for the whole operation so it is not loaded again by each file
+    private volatile HashLedger hashLedger;
+
     public abstract RemoteObjectReference objectKeyToRemoteReference(final Path objectKey) throws Exception;
 
     public abstract RemoteObjectReference objectKeyToNodeAwareRemoteReference(final Path objectKey) throws Exception;
@@ -28,42 +42,63 @@ public abstract class StorageInteractor implements AutoCloseable {
         return Paths.get(storageLocation.clusterId).resolve(storageLocation.datacenterId).resolve(storageLocation.nodeId).resolve(objectKey).toString();
     }
 
-    // currently works for file protocol only
     public List<Manifest> listManifests() throws Exception {
         throw new UnsupportedOperationException();
     }
 
-    // currently works for file protocol only
+    /**
+     * Lists all objects of a node which are under given prefix, by as few requests as a storage allows.
+     *
+     * @param prefix   prefix relative to node's path in a remote storage, e.g. "data"
+     * @param consumer consumer of canonical paths of listed objects and their last modification times in milliseconds
+     */
+    public abstract void listNodeObjects(final Path prefix, final BiConsumer<String, Long> consumer) throws Exception;
+
+    /**
+     * Lists all files of a node which are under given prefix, for a storage which is a directory of a file system.
+     *
+     * @param root     directory of a storage, canonical paths of files are relative to it
+     * @param prefix   prefix relative to node's path in a remote storage, e.g. "data"
+     * @param consumer consumer of canonical paths of listed files and their last modification times in milliseconds
+     */
+    protected void listNodeFiles(final Path root, final Path prefix, final BiConsumer<String, Long> consumer) throws Exception {
+        final Path nodePrefix = root.resolve(resolveNodeAwareRemotePath(prefix));
+
+        if (!Files.exists(nodePrefix)) {
+            return;
+        }
+
+        try (final Stream<Path> files = Files.walk(nodePrefix)) {
+            for (final Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                consumer.accept(root.relativize(file).toString(), file.toFile().lastModified());
+            }
+        }
+    }
+
     public void delete(final Path objectKey) throws Exception {
         throw new UnsupportedOperationException();
     }
 
-    // currently works for file protocol only
     public void delete(final ManifestReport report, final RemoveBackupRequest request) throws Exception {
         throw new UnsupportedOperationException();
     }
 
-    // currently works for file protocol only
     public List<StorageLocation> listNodes() throws Exception {
         throw new UnsupportedOperationException();
     }
 
-    // currently works for file protocol only
     public List<StorageLocation> listNodes(final String dc) throws Exception {
         throw new UnsupportedOperationException();
     }
 
-    // currently works for file protocol only
     public List<StorageLocation> listNodes(final List<String> dcs) throws Exception {
         throw new UnsupportedOperationException();
     }
 
-    // currently works for file protocol only
     public List<String> listDcs() throws Exception {
         throw new UnsupportedOperationException();
     }
 
-    // currently works for file protocol only
     public void deleteTopology(final String name) throws Exception {
         delete(resolveRoot().resolve("topology").resolve(name + ".json"));
     }
@@ -72,8 +107,52 @@ public abstract class StorageInteractor implements AutoCloseable {
         return this.storageLocation;
     }
 
-    public void setStorageLocation(final StorageLocation storageLocation) {
+    public synchronized void setStorageLocation(final StorageLocation storageLocation) {
         this.storageLocation = storageLocation;
+        this.rateController = null;
+    }
+
+    /**
+     * @param shouldCancel cancellation flag of an operation this interactor is used by, retries of its requests
+     *                     are not waited for once it is set
+     */
+    public void setShouldCancel(final AtomicBoolean shouldCancel) {
+        this.shouldCancel = shouldCancel;
+    }
+
+    public AtomicBoolean getShouldCancel() {
+        return shouldCancel;
+    }
+
+    /**
+     * @param hashLedger ledger of hashes of local files transferred by this interactor, null if hashes are not recorded
+     */
+    public void setHashLedger(final HashLedger hashLedger) {
+        this.hashLedger = hashLedger;
+    }
+
+    public HashLedger getHashLedger() {
+        return hashLedger;
+    }
+
+    /**
+     * @param retrySpec spec of a retrier
+     * @return retrier of requests of this interactor which stops to retry once its operation is cancelled
+     */
+    protected Retrier createRetrier(final RetrySpec retrySpec) {
+        return RetrierFactory.getRetrier(retrySpec, shouldCancel);
+    }
+
+    /**
+     * @return controller of the rate of requests to a bucket and a node this interactor is set to, it is held
+     * by this interactor so it is shared with other interactors of the same bucket and node while it is used
+     */
+    public synchronized RateController getRateController() {
+        if (rateController == null) {
+            rateController = RateController.of(storageLocation);
+        }
+
+        return rateController;
     }
 
     protected abstract void cleanup() throws Exception;
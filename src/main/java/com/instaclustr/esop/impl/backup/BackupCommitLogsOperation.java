@@ -70,6 +70,8 @@ public class BackupCommitLogsOperation extends Operation<BackupCommitLogsOperati
             final Backuper backuper = backuperFactoryMap.get(request.storageLocation.storageProvider).createCommitLogBackuper(request);
             final BucketService bucketService = bucketServiceMap.get(request.storageLocation.storageProvider).createBucketService(request)) {
 
+            backuper.setShouldCancel(getShouldCancel());
+
             if (!request.skipBucketVerification) {
                 bucketService.checkBucket(request.storageLocation.bucket, request.createMissingBucket);
             }
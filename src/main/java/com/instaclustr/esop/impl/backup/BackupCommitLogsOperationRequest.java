@@ -95,6 +95,7 @@ public class BackupCommitLogsOperationRequest extends BaseBackupOperationRequest
             .add("duration", duration)
             .add("bandwidth", bandwidth)
             .add("concurrentConnections", concurrentConnections)
+            .add("schedulingPolicy", schedulingPolicy)
             .add("metadataDirective", metadataDirective)
             .add("cassandraDirectory", cassandraDirectory)
             .add("commitLogArchiveOverride", commitLogArchiveOverride)
@@ -108,6 +109,9 @@ public class BackupCommitLogsOperationRequest extends BaseBackupOperationRequest
             .add("proxySettings", proxySettings)
             .add("retry", retry)
             .add("skipRefreshing", skipRefreshing)
+            .add("s3MultipartThreshold", s3MultipartThreshold)
+            .add("s3PartSize", s3PartSize)
+            .add("s3PartConcurrency", s3PartConcurrency)
             .toString();
     }
 
@@ -27,6 +27,7 @@ import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.retry.RetrySpec;
 import com.instaclustr.measure.DataRate;
 import com.instaclustr.measure.Time;
+import com.instaclustr.picocli.typeconverter.TimeMeasureTypeConverter;
 import picocli.CommandLine.Option;
 
 public class BackupOperationRequest extends BaseBackupOperationRequest {
@@ -72,6 +73,41 @@ public class BackupOperationRequest extends BaseBackupOperationRequest {
             + "implicitly set to true if a request is global - coordinator node will upload this file every time.")
     public boolean uploadClusterTopology;
 
+    @JsonProperty("streamHashing")
+    @Option(names = "--stream-hashing",
+        description = "If set, hashes of SSTable files will not be computed upfront by reading all files before the upload, "
+            + "they will be computed while files are being uploaded instead so each file is read from a disk only once. "
+            + "Manifest is uploaded as the last file, after all hashes are known. Defaults to false.")
+    public boolean streamHashing;
+
+    @JsonProperty("parsingParallelism")
+    @Option(names = "--parsing-parallelism",
+        description = "Number of threads to parse and hash files of a snapshot with. This is independent on the number of "
+            + "concurrent connections used for uploading. Defaults to the number of available processors.")
+    public Integer parsingParallelism;
+
+    @JsonProperty("remoteObjectIndex")
+    @Option(names = "--remote-object-index",
+        description = "If set, objects of a node in a remote storage are listed once before the upload and it is decided "
+            + "from that listing whether a file needs to be uploaded or refreshed instead of asking a remote storage for every file. Defaults to false.")
+    public boolean remoteObjectIndex;
+
+    @JsonProperty("refreshWindow")
+    @Option(names = "--refresh-window",
+        description = "Used only together with --remote-object-index. Files already present in a remote storage which were modified "
+            + "in this window are not refreshed. If not set, all present files are refreshed as they would be without the index.",
+        converter = TimeMeasureTypeConverter.class)
+    public Time refreshWindow;
+
+    @JsonProperty("incremental")
+    @Option(names = "--incremental",
+        description = "If set, no snapshot is taken, SSTables Cassandra hard-linked into backups directories of tables are uploaded instead "
+            + "(incremental_backups has to be enabled in cassandra.yaml). The uploaded manifest is a delta referencing the latest "
+            + "full manifest of a node and hard links are removed once their manifest is uploaded. A restoration of a delta "
+            + "restores files of its base and of all deltas up to it, a base is not removed while any of its deltas is kept. "
+            + "A backup fails if a table is not in the base manifest as its schema would not be backed up. Defaults to false.")
+    public boolean incremental;
+
     public BackupOperationRequest() {
         // for picocli
     }
@@ -132,6 +168,7 @@ public class BackupOperationRequest extends BaseBackupOperationRequest {
             .add("duration", duration)
             .add("bandwidth", bandwidth)
             .add("concurrentConnections", concurrentConnections)
+            .add("schedulingPolicy", schedulingPolicy)
             .add("cassandraDirectory", cassandraDirectory)
             .add("entities", entities)
             .add("snapshotTag", snapshotTag)
@@ -149,6 +186,14 @@ public class BackupOperationRequest extends BaseBackupOperationRequest {
             .add("proxySettings", proxySettings)
             .add("retry", retry)
             .add("skipRefreshing", skipRefreshing)
+            .add("s3MultipartThreshold", s3MultipartThreshold)
+            .add("s3PartSize", s3PartSize)
+            .add("s3PartConcurrency", s3PartConcurrency)
+            .add("streamHashing", streamHashing)
+            .add("parsingParallelism", parsingParallelism)
+            .add("remoteObjectIndex", remoteObjectIndex)
+            .add("refreshWindow", refreshWindow)
+            .add("incremental", incremental)
             .toString();
     }
 
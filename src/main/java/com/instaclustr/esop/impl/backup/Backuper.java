@@ -1,16 +1,29 @@
 package com.instaclustr.esop.impl.backup;
 
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.function.Function;
 
+import com.instaclustr.esop.impl.BandwidthLimiter;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.StorageInteractor;
+import com.instaclustr.esop.impl.backup.RemoteObjectIndex.Presence;
 import com.instaclustr.esop.impl.retry.Retrier;
 import com.instaclustr.esop.impl.retry.RetrierFactory;
+import com.instaclustr.measure.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public abstract class Backuper extends StorageInteractor {
 
+    private static final Logger logger = LoggerFactory.getLogger(Backuper.class);
+
     protected final BaseBackupOperationRequest request;
     protected final Retrier retrier;
+    protected RemoteObjectIndex remoteObjectIndex;
+    protected volatile BandwidthLimiter bandwidthLimiter;
 
     protected Backuper(final BaseBackupOperationRequest request) {
         super(request.storageLocation);
@@ -23,11 +36,93 @@ public abstract class Backuper extends StorageInteractor {
         UPLOAD_REQUIRED
     }
 
+    /**
+     * @return limiter all uploads of this backuper draw from, null if uploads are not limited
+     */
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    public void setBandwidthLimiter(final BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
     public abstract FreshenResult freshenRemoteObject(final RemoteObjectReference object) throws Exception;
 
+    /**
+     * Builds an index of objects of this node under given prefix by one listing so decisions about freshening
+     * of objects are made locally, without a round trip to a remote storage for every file.
+     *
+     * @param prefix        prefix relative to node's path in a remote storage, e.g. "data"
+     * @param refreshWindow time after which a present object is refreshed, if null, present objects are always refreshed
+     */
+    public void buildRemoteObjectIndex(final Path prefix, final Time refreshWindow) throws Exception {
+        final RemoteObjectIndex index = new RemoteObjectIndex(refreshWindow);
+        listNodeObjects(prefix, index::add);
+        logger.info("Built index of remote objects under prefix {}: {}", prefix, index);
+        this.remoteObjectIndex = index;
+    }
+
+    /**
+     * Decides whether an object has to be uploaded. If an index of remote objects was built, objects which are not
+     * in it are uploaded and objects which were modified within a refresh window are not refreshed, without asking
+     * a remote storage. Otherwise, it is delegated to {@link #freshenRemoteObject(RemoteObjectReference)}.
+     */
+    public FreshenResult freshen(final RemoteObjectReference object) throws Exception {
+        if (remoteObjectIndex == null) {
+            return freshenRemoteObject(object);
+        }
+
+        final Presence presence = remoteObjectIndex.getPresence(object.canonicalPath);
+
+        if (presence == Presence.MISSING) {
+            return FreshenResult.UPLOAD_REQUIRED;
+        }
+
+        if (presence == Presence.FRESH || request.skipRefreshing) {
+            return FreshenResult.FRESHENED;
+        }
+
+        return freshenRemoteObject(object);
+    }
+
     public abstract void uploadFile(final long size,
                                     final InputStream localFileStream,
                                     final RemoteObjectReference objectReference) throws Exception;
 
+    /**
+     * Uploads a local file. By default, the file is uploaded as a stream, a backuper which is able to upload
+     * parts of a file in parallel should override this.
+     *
+     * @param size            size of a file
+     * @param localFile       file to upload
+     * @param objectReference reference of an object to upload a file to
+     * @param throttle        function to wrap every stream read from a file with, e.g. to limit a bandwidth
+     */
+    public void uploadFile(final long size,
+                           final Path localFile,
+                           final RemoteObjectReference objectReference,
+                           final Function<InputStream, InputStream> throttle) throws Exception {
+        try (final InputStream fileStream = new BufferedInputStream(new FileInputStream(localFile.toFile()))) {
+            uploadFile(size, throttle.apply(fileStream), objectReference);
+        }
+    }
+
     public abstract void uploadText(final String text, final RemoteObjectReference objectReference) throws Exception;
+
+    /**
+     * Downloads a text object, e.g. one uploaded by {@link #uploadText(String, RemoteObjectReference)}.
+     *
+     * @param objectReference reference of an object to download
+     * @return text of an object or null if it does not exist
+     */
+    public abstract String downloadText(final RemoteObjectReference objectReference) throws Exception;
+
+    /**
+     * Deletes a text object, e.g. one uploaded by {@link #uploadText(String, RemoteObjectReference)}.
+     * Deletion of an object which does not exist is not an error.
+     *
+     * @param objectReference reference of an object to delete
+     */
+    public abstract void deleteText(final RemoteObjectReference objectReference) throws Exception;
 }
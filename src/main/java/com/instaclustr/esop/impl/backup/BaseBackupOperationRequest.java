@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.instaclustr.esop.impl.AbstractOperationRequest;
 import com.instaclustr.esop.impl.ProxySettings;
+import com.instaclustr.esop.impl.SchedulingPolicy;
 import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.retry.RetrySpec;
 import com.instaclustr.jackson.PathDeserializer;
@@ -68,6 +69,24 @@ public class BaseBackupOperationRequest extends AbstractOperationRequest {
             + "based on which a respective local file will be upload or not, defaults to false.")
     public boolean skipRefreshing;
 
+    @Option(names = {"--scheduling-policy"},
+        description = "Order in which files are uploaded: MANIFEST_ORDER, LARGEST_FIRST, LPT (files are split to groups of similar size, "
+            + "one per concurrent connection) or SMALL_FILE_BATCHING (largest first, small files are uploaded in batches). Default is MANIFEST_ORDER.")
+    public SchedulingPolicy schedulingPolicy;
+
+    @Option(names = {"--s3-multipart-threshold"},
+        description = "Size of a file in MiB from which it is uploaded to S3 in multiple parts, in parallel. Default is 128.")
+    public Integer s3MultipartThreshold;
+
+    @Option(names = {"--s3-part-size"},
+        description = "Size of a part in MiB a file is split to when it is uploaded to S3 in multiple parts. Default is 64.")
+    public Integer s3PartSize;
+
+    @Option(names = {"--s3-part-concurrency"},
+        description = "Number of parts of one file uploaded to S3 concurrently. This is on top of the number of files "
+            + "uploaded concurrently as set by --concurrent-connections. Default is 4.")
+    public Integer s3PartConcurrency;
+
     public BaseBackupOperationRequest() {
         // for picocli
         if (metadataDirective == null) {
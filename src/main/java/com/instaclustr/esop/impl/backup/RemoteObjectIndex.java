@@ -0,0 +1,63 @@
+package com.instaclustr.esop.impl.backup;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.base.MoreObjects;
+import com.instaclustr.measure.Time;
+
+/**
+ * Index of objects present in a remote storage, built from one listing of a prefix, e.g. node's "data" directory.
+ *
+ * It is used for answering whether an object needs to be uploaded or refreshed locally instead of asking
+ * a remote storage for every file to upload.
+ */
+public class RemoteObjectIndex {
+
+    public enum Presence {
+        // object is not in a remote storage, it has to be uploaded
+        MISSING,
+        // object is in a remote storage and it was modified in a refresh window so it does not need to be refreshed
+        FRESH,
+        // object is in a remote storage but it is older than a refresh window so it has to be refreshed
+        STALE
+    }
+
+    private final Map<String, Long> lastModifiedTimes = new HashMap<>();
+    private final long refreshWindowMillis;
+    private final long createdAt = System.currentTimeMillis();
+
+    /**
+     * @param refreshWindow time after which a present object is considered stale and it will be refreshed,
+     *                      if null, every present object will be refreshed
+     */
+    public RemoteObjectIndex(final Time refreshWindow) {
+        this.refreshWindowMillis = refreshWindow == null ? 0 : refreshWindow.asMilliseconds().value;
+    }
+
+    public synchronized void add(final String canonicalPath, final long lastModified) {
+        lastModifiedTimes.put(canonicalPath, lastModified);
+    }
+
+    public synchronized int size() {
+        return lastModifiedTimes.size();
+    }
+
+    public synchronized Presence getPresence(final String canonicalPath) {
+        final Long lastModified = lastModifiedTimes.get(canonicalPath);
+
+        if (lastModified == null) {
+            return Presence.MISSING;
+        }
+
+        return lastModified > createdAt - refreshWindowMillis ? Presence.FRESH : Presence.STALE;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("size", size())
+            .add("refreshWindowMillis", refreshWindowMillis)
+            .toString();
+    }
+}
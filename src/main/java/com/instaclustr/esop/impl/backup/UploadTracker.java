@@ -1,5 +1,6 @@
 package com.instaclustr.esop.impl.backup;
 
+import static com.instaclustr.esop.impl.ManifestEntry.Type.FILE;
 import static com.instaclustr.esop.impl.ManifestEntry.Type.MANIFEST_FILE;
 import static com.instaclustr.esop.impl.backup.Backuper.FreshenResult.FRESHENED;
 import static com.instaclustr.esop.impl.retry.RetrierFactory.getRetrier;
@@ -8,28 +9,31 @@ import static java.util.function.Function.identity;
 
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 import com.amazonaws.AmazonClientException;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.RateLimiter;
 import com.google.inject.Inject;
 import com.instaclustr.esop.impl.AbstractTracker;
+import com.instaclustr.esop.impl.BandwidthLimiter;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.backup.BackupModules.UploadingFinisher;
 import com.instaclustr.esop.impl.backup.UploadTracker.UploadSession;
 import com.instaclustr.esop.impl.backup.UploadTracker.UploadUnit;
+import com.instaclustr.esop.impl.hash.DigestingInputStream;
+import com.instaclustr.esop.impl.hash.HashServiceImpl;
 import com.instaclustr.esop.impl.hash.HashSpec;
 import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
-import com.instaclustr.io.RateLimitedInputStream;
-import com.instaclustr.measure.DataRate;
-import com.instaclustr.measure.DataRate.DataRateUnit;
 import com.instaclustr.measure.DataSize;
 import com.instaclustr.operations.Operation;
 import com.instaclustr.operations.OperationsService;
@@ -65,13 +69,19 @@ public class UploadTracker extends AbstractTracker<UploadUnit, UploadSession, Ba
                                       final Collection<ManifestEntry> entries,
                                       final String snapshotTag,
                                       final int concurrentConnections) {
-        final long filesSizeSum = getFilesSizeSum(entries);
-        computeBPS(backuper.request, filesSizeSum, concurrentConnections);
+        synchronized (backuper) {
+            // one limiter for the whole operation, it is not recomputed when e.g. a manifest is uploaded afterwards
+            if (backuper.getBandwidthLimiter() == null) {
+                backuper.setBandwidthLimiter(createBandwidthLimiter(backuper.request, getFilesSizeSum(entries)));
+            }
+        }
+
         return super.submit(backuper,
                             operation,
                             entries,
                             snapshotTag,
-                            concurrentConnections);
+                            concurrentConnections,
+                            operation.request.schedulingPolicy);
     }
 
     public static class UploadSession extends AbstractTracker.Session<UploadUnit> {
@@ -109,57 +119,108 @@ public class UploadTracker extends AbstractTracker<UploadUnit, UploadSession, Ba
         @Override
         public Void call() {
 
-            state = State.RUNNING;
-
-            final RemoteObjectReference ref = getRemoteObjectReference(manifestEntry.objectKey);
+            setState(State.RUNNING);
 
             try {
-                final boolean freshened = getRetrier(backuper.request.retry).submit(() -> backuper.freshenRemoteObject(ref) == FRESHENED);
+                final RemoteObjectReference ref = getRemoteObjectReference(manifestEntry.objectKey);
+
+                final boolean freshened = getRetrier(backuper.request.retry, shouldCancel).submit(() -> backuper.freshen(ref) == FRESHENED);
+
+                // hash was not computed upfront, we have to compute it while uploading
+                final boolean hashWhileUploading = manifestEntry.type == FILE && manifestEntry.hash == null;
+                final HashServiceImpl hashService = new HashServiceImpl(hashSpec, backuper.getHashLedger());
 
                 if (manifestEntry.type != MANIFEST_FILE && freshened) {
                     logger.info(format("%sskipping the upload of already uploaded file %s",
                                        snapshotTag != null ? "Snapshot " + snapshotTag + " - " : "",
                                        ref.canonicalPath));
 
-                    state = State.FINISHED;
+                    if (hashWhileUploading) {
+                        // nothing to upload, the file is read just to get its hash
+                        setHash(hashService.hash(manifestEntry.localFile));
+                    }
+
+                    setState(State.FINISHED);
                     return null;
                 }
 
-                getRetrier(backuper.request.retry).submit(new Runnable() {
+                getRetrier(backuper.request.retry, shouldCancel).submit(new Runnable() {
                     @Override
                     public void run() {
+                        // attributes are read before reading a file so its hash is not recorded if it changes in the meanwhile
+                        final BasicFileAttributes attributes;
+
+                        try {
+                            attributes = hashWhileUploading ? Files.readAttributes(manifestEntry.localFile, BasicFileAttributes.class) : null;
+                        } catch (final IOException ex) {
+                            throw new RuntimeException(ex);
+                        }
+
+                        final Function<InputStream, InputStream> throttle = getUploadingInputStreamFunction();
+
+                        logger.info(format("%suploading file '%s' (%s).",
+                                           snapshotTag != null ? "Snapshot " + snapshotTag + " - " : "",
+                                           manifestEntry.objectKey,
+                                           DataSize.bytesToHumanReadable(manifestEntry.size)));
+
+                        if (!hashWhileUploading) {
+                            // a backuper is free to upload parts of a file in parallel
+                            try {
+                                backuper.uploadFile(manifestEntry.size, manifestEntry.localFile, ref, throttle);
+                            } catch (final AmazonClientException ex) {
+                                throw new RetriableException(String.format("Retrying upload of %s", manifestEntry.objectKey), ex);
+                            } catch (final RetriableException ex) {
+                                throw ex;
+                            } catch (final Exception ex) {
+                                throw new RuntimeException(ex);
+                            }
+                            return;
+                        }
+
+                        // a file has to be read sequentially to compute its hash, so it is uploaded as one stream
                         try (final InputStream fileStream = new BufferedInputStream(new FileInputStream(manifestEntry.localFile.toFile()))) {
-                            final InputStream rateLimitedStream = getUploadingInputStreamFunction(backuper.request).apply(fileStream);
+                            final DigestingInputStream digestingStream = new DigestingInputStream(fileStream, hashSpec);
+
+                            backuper.uploadFile(manifestEntry.size, throttle.apply(digestingStream), ref);
+
+                            // a backuper might not consume the stream until its very end
+                            ByteStreams.exhaust(digestingStream);
+                            final String hash = digestingStream.getHash();
+                            setHash(hash);
 
-                            logger.info(format("%suploading file '%s' (%s).",
-                                               snapshotTag != null ? "Snapshot " + snapshotTag + " - " : "",
-                                               manifestEntry.objectKey,
-                                               DataSize.bytesToHumanReadable(manifestEntry.size)));
-                            backuper.uploadFile(manifestEntry.size, rateLimitedStream, ref);
+                            if (hashService.getHashLedger() != null) {
+                                hashService.getHashLedger().put(manifestEntry.localFile, attributes, hashSpec.algorithm.toString(), hash);
+                            }
                         } catch (final AmazonClientException ex) {
                             throw new RetriableException(String.format("Retrying upload of %s", manifestEntry.objectKey), ex);
+                        } catch (final RetriableException ex) {
+                            throw ex;
                         } catch (final Exception ex) {
                             throw new RuntimeException(ex);
                         }
                     }
                 });
 
-                state = State.FINISHED;
+                setState(State.FINISHED);
             } catch (final Throwable t) {
-                state = State.FAILED;
                 logger.error(format("Failed to upload file '%s", manifestEntry.objectKey), t);
                 shouldCancel.set(true);
                 this.throwable = t;
+                setState(State.FAILED);
             }
 
             return null;
         }
 
-        private Function<InputStream, InputStream> getUploadingInputStreamFunction(final BaseBackupOperationRequest request) {
-            return request.bandwidth == null ? identity() : inputStream -> {
-                final RateLimiter rateLimiter = RateLimiter.create(request.bandwidth.asBytesPerSecond().value);
-                return new RateLimitedInputStream(inputStream, rateLimiter, shouldCancel);
-            };
+        private Function<InputStream, InputStream> getUploadingInputStreamFunction() {
+            final BandwidthLimiter bandwidthLimiter = backuper.getBandwidthLimiter();
+
+            if (bandwidthLimiter == null) {
+                return identity();
+            }
+
+            // all uploads of an operation, including parts of a file uploaded in parallel, share one limiter
+            return inputStream -> bandwidthLimiter.limit(inputStream, shouldCancel);
         }
     }
 
@@ -167,7 +228,7 @@ public class UploadTracker extends AbstractTracker<UploadUnit, UploadSession, Ba
         return manifestEntries.stream().map(e -> e.size).reduce(0L, Long::sum);
     }
 
-    private void computeBPS(final BaseBackupOperationRequest request, final long filesSizeSum, final int concurrentConnections) {
+    private BandwidthLimiter createBandwidthLimiter(final BaseBackupOperationRequest request, final long filesSizeSum) {
 
         long bpsFromBandwidth = 0;
         long bpsFromDuration = 0;
@@ -180,10 +241,12 @@ public class UploadTracker extends AbstractTracker<UploadUnit, UploadSession, Ba
             bpsFromDuration = filesSizeSum / request.duration.asSeconds().value;
         }
 
-        if (bpsFromBandwidth != 0 || bpsFromDuration != 0) {
-            long bps = Math.max(bpsFromBandwidth, bpsFromDuration) / concurrentConnections;
-            logger.info("BPS computed to be {}", bps);
-            request.bandwidth = new DataRate(bps, DataRateUnit.BPS);
+        if (bpsFromBandwidth == 0 && bpsFromDuration == 0) {
+            return null;
         }
+
+        final long bps = Math.max(bpsFromBandwidth, bpsFromDuration);
+        logger.info("BPS computed to be {}, shared by all concurrent uploads", bps);
+        return new BandwidthLimiter(bps);
     }
 }
@@ -6,7 +6,11 @@ import static java.lang.String.format;
 
 import javax.inject.Provider;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -17,18 +21,24 @@ import com.instaclustr.cassandra.CassandraVersion;
 import com.instaclustr.esop.guice.BackuperFactory;
 import com.instaclustr.esop.guice.BucketServiceFactory;
 import com.instaclustr.esop.impl.AbstractTracker.Session;
+import com.instaclustr.esop.impl.BackupCatalog;
+import com.instaclustr.esop.impl.BackupInProgressMarker;
 import com.instaclustr.esop.impl.BucketService;
 import com.instaclustr.esop.impl.CassandraData;
 import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.Snapshots;
 import com.instaclustr.esop.impl.Snapshots.Snapshot;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace;
 import com.instaclustr.esop.impl.backup.BackupOperationRequest;
 import com.instaclustr.esop.impl.backup.Backuper;
 import com.instaclustr.esop.impl.backup.UploadTracker;
 import com.instaclustr.esop.impl.backup.UploadTracker.UploadUnit;
 import com.instaclustr.esop.impl.backup.coordination.ClearSnapshotOperation.ClearSnapshotOperationRequest;
 import com.instaclustr.esop.impl.backup.coordination.TakeSnapshotOperation.TakeSnapshotOperationRequest;
+import com.instaclustr.esop.impl.hash.HashLedger;
+import com.instaclustr.esop.impl.hash.HashService;
+import com.instaclustr.esop.impl.hash.HashServiceImpl;
 import com.instaclustr.esop.impl.hash.HashSpec;
 import com.instaclustr.esop.impl.interaction.CassandraSchemaVersion;
 import com.instaclustr.esop.impl.interaction.CassandraTokens;
@@ -73,6 +83,217 @@ public class BaseBackupOperationCoordinator extends OperationCoordinator<BackupO
         return format("%s-%s-%s", request.snapshotTag, request.schemaVersion, timestamp);
     }
 
+    private void upload(final Backuper backuper,
+                        final Operation<BackupOperationRequest> operation,
+                        final List<ManifestEntry> manifestEntries) throws IOException {
+        Session<UploadUnit> uploadSession = null;
+
+        try {
+            uploadSession = uploadTracker.submit(backuper, operation, manifestEntries, operation.request.snapshotTag, operation.request.concurrentConnections);
+
+            uploadSession.waitUntilConsideredFinished();
+            uploadTracker.cancelIfNecessary(uploadSession);
+
+            final List<UploadUnit> failedUnits = uploadSession.getFailedUnits();
+
+            if (!failedUnits.isEmpty()) {
+                final String message = failedUnits.stream().map(unit -> unit.getManifestEntry().objectKey.toString()).collect(Collectors.joining(","));
+                logger.error(message);
+                throw new IOException(format("Unable to upload some files successfully: %s", message));
+            }
+        } finally {
+            uploadTracker.removeSession(uploadSession);
+        }
+    }
+
+    /**
+     * Uploads a manifest as the last file of a backup, so it is written only after all hashes are known and all files
+     * it refers to are uploaded. Then it records it in a catalog of a node and uploads a topology of a cluster if requested.
+     */
+    private void uploadManifest(final Backuper backuper,
+                                final Operation<BackupOperationRequest> operation,
+                                final Manifest manifest) throws Exception {
+        final BackupOperationRequest request = operation.request;
+
+        final Path localManifestPath = getLocalManifestPath(request.cassandraDirectory, request.snapshotTag);
+        Manifest.write(manifest, localManifestPath, objectMapper);
+        manifest.setManifest(getManifestAsManifestEntry(localManifestPath));
+
+        upload(backuper, operation, Collections.singletonList(manifest.getManifest()));
+
+        BackupCatalog.update(backuper, manifest, objectMapper);
+
+        if (request.uploadClusterTopology) {
+            // here we will upload all topology because we do not know what restore might look like (what dc a restorer will restore against if any)
+            final ClusterTopology topology = new CassandraClusterTopology(cassandraJMXService, null).act();
+            ClusterTopology.upload(backuper, topology, objectMapper, request.snapshotTag);
+        }
+    }
+
+    /**
+     * Drops records of a hash ledger of files which do not exist anymore, e.g. SSTables which were compacted away
+     * or hard links of an incremental backup which were removed.
+     */
+    private void compactHashLedger(final Backuper backuper) {
+        if (backuper.getHashLedger() != null) {
+            backuper.getHashLedger().evictMissing();
+        }
+    }
+
+    private void checkBucket(final BackupOperationRequest request) throws Exception {
+        if (!request.skipBucketVerification) {
+            try (final BucketService bucketService = bucketServiceFactoryMap.get(request.storageLocation.storageProvider).createBucketService(request)) {
+                bucketService.checkBucket(request.storageLocation.bucket, request.createMissingBucket);
+            }
+        }
+    }
+
+    /**
+     * Creates a backuper of an operation which records hashes to a ledger, it holds a remote object index
+     * when a request asks for it. A backup is marked as running before any remote object is looked at, so a garbage
+     * collection does not remove objects it decides to reuse, a caller removes the marker once a backup finishes.
+     */
+    private Backuper createBackuper(final Operation<BackupOperationRequest> operation, final HashLedger hashLedger) throws Exception {
+        final BackupOperationRequest request = operation.request;
+        final Backuper backuper = backuperFactoryMap.get(request.storageLocation.storageProvider).createBackuper(request);
+
+        try {
+            backuper.setShouldCancel(operation.getShouldCancel());
+            backuper.setHashLedger(hashLedger);
+
+            BackupInProgressMarker.create(backuper, request.snapshotTag);
+
+            if (request.remoteObjectIndex) {
+                backuper.buildRemoteObjectIndex(Paths.get("data"), request.refreshWindow);
+            }
+
+            return backuper;
+        } catch (final Exception ex) {
+            BackupInProgressMarker.remove(backuper, request.snapshotTag);
+            backuper.close();
+            throw ex;
+        }
+    }
+
+    private int resolveParsingParallelism(final BackupOperationRequest request) {
+        return request.parsingParallelism == null ? Runtime.getRuntime().availableProcessors() : request.parsingParallelism;
+    }
+
+    /**
+     * Uploads SSTables Cassandra hard-linked into backups directories of tables since the last run instead of taking
+     * a snapshot, so the time of a backup is proportional to the amount of new data only. Uploaded manifest contains just
+     * these files and it references the latest full manifest of this node, a restoration needs both of them.
+     * Hard links are removed only after the manifest is uploaded, links created by Cassandra in the meanwhile
+     * are left for the next run.
+     */
+    private void coordinateIncremental(final Operation<BackupOperationRequest> operation) {
+        final BackupOperationRequest request = operation.request;
+
+        try {
+            checkBucket(request);
+
+            final CassandraData cassandraData = CassandraData.parse(request.cassandraDirectory.resolve("data"));
+            cassandraData.setDatabaseEntitiesFromRequest(request.entities);
+
+            final List<String> tokens = new CassandraTokens(cassandraJMXService).act();
+
+            if (!Snapshots.snapshotContainsTimestamp(request.snapshotTag)) {
+                request.schemaVersion = new CassandraSchemaVersion(cassandraJMXService).act();
+                request.snapshotTag = resolveSnapshotTag(request, System.currentTimeMillis());
+            }
+
+            if (!Manifest.isIncrementalManifest(request.snapshotTag)) {
+                request.snapshotTag = Manifest.INCREMENTAL_MANIFEST_PREFIX + request.snapshotTag;
+            }
+
+            // held for the whole backup so it is not loaded again by every upload which records a hash to it
+            final HashLedger hashLedger = HashLedger.forSpec(hashSpec);
+
+            final HashService hashService = request.streamHashing ? null : new HashServiceImpl(hashSpec, hashLedger);
+            final Snapshot snapshot = Snapshots.parseIncrementalBackups(request.cassandraDirectory.resolve("data"),
+                                                                        request.snapshotTag,
+                                                                        request.entities,
+                                                                        hashService,
+                                                                        resolveParsingParallelism(request));
+
+            final Manifest manifest = Manifest.from(snapshot);
+
+            manifest.setSchemaVersion(request.schemaVersion);
+            manifest.setTokens(tokens);
+
+            try (final Backuper backuper = createBackuper(operation, hashLedger)) {
+                try {
+                    manifest.setBaseManifest(resolveBaseManifest(backuper));
+                    checkTablesOfBaseManifest(backuper, manifest);
+
+                    final List<ManifestEntry> harvestedEntries = manifest.getManifestEntries(true, false);
+
+                    logger.info("Incremental backup {} of {} files is based on manifest {}", request.snapshotTag, harvestedEntries.size(), manifest.getBaseManifest());
+
+                    upload(backuper, operation, harvestedEntries);
+                    uploadManifest(backuper, operation, manifest);
+
+                    for (final ManifestEntry entry : harvestedEntries) {
+                        Files.deleteIfExists(entry.localFile);
+                    }
+
+                    compactHashLedger(backuper);
+                } finally {
+                    BackupInProgressMarker.remove(backuper, request.snapshotTag);
+                }
+            } finally {
+                manifest.cleanup();
+            }
+        } catch (final Exception ex) {
+            operation.addError(Error.from(ex));
+        }
+    }
+
+    private String resolveBaseManifest(final Backuper backuper) throws Exception {
+        final List<String> fullManifests = new ArrayList<>();
+
+        backuper.listNodeObjects(Paths.get("manifests"), (key, lastModified) -> {
+            final String manifestName = Paths.get(key).getFileName().toString();
+
+            if (!Manifest.isIncrementalManifest(manifestName)) {
+                fullManifests.add(manifestName);
+            }
+        });
+
+        if (fullManifests.isEmpty()) {
+            throw new IllegalStateException("There is not any full backup of this node an incremental backup could reference, take a full backup first.");
+        }
+
+        return Manifest.parseLatestManifest(fullManifests);
+    }
+
+    /**
+     * Backups directories do not contain schemas of tables, a schema of a table is taken from a base manifest
+     * upon restoration. A table which is not in a base manifest, e.g. it was created after a full backup was taken,
+     * could not be restored from an incremental backup.
+     */
+    private void checkTablesOfBaseManifest(final Backuper backuper, final Manifest manifest) throws Exception {
+        final Path baseManifestKey = Paths.get("manifests").resolve(manifest.getBaseManifest());
+        final String baseManifestText = backuper.downloadText(backuper.objectKeyToRemoteReference(Paths.get(backuper.resolveNodeAwareRemotePath(baseManifestKey))));
+
+        if (baseManifestText == null) {
+            throw new IllegalStateException(format("Base manifest %s does not exist.", baseManifestKey));
+        }
+
+        final Snapshot baseSnapshot = Manifest.read(baseManifestText, objectMapper).getSnapshot();
+
+        for (final Map.Entry<String, Keyspace> keyspace : manifest.getSnapshot().getKeyspaces().entrySet()) {
+            for (final String table : keyspace.getValue().getTables().keySet()) {
+                if (!baseSnapshot.containsTable(keyspace.getKey(), table)) {
+                    throw new IllegalStateException(format("Table %s.%s is not in base manifest %s so its schema is not backed up, take a full backup first.",
+                                                           keyspace.getKey(),
+                                                           table,
+                                                           manifest.getBaseManifest()));
+                }
+            }
+        }
+    }
+
     @Override
     public void coordinate(final Operation<BackupOperationRequest> operation) {
 
@@ -80,17 +301,18 @@ public class BaseBackupOperationCoordinator extends OperationCoordinator<BackupO
 
         logger.info(request.toString());
 
+        if (request.incremental) {
+            coordinateIncremental(operation);
+            return;
+        }
+
         try {
             assert cassandraJMXService != null;
             assert backuperFactoryMap != null;
             assert bucketServiceFactoryMap != null;
             assert objectMapper != null;
 
-            if (!request.skipBucketVerification) {
-                try (final BucketService bucketService = bucketServiceFactoryMap.get(request.storageLocation.storageProvider).createBucketService(request)) {
-                    bucketService.checkBucket(request.storageLocation.bucket, request.createMissingBucket);
-                }
-            }
+            checkBucket(request);
 
             final CassandraData cassandraData = CassandraData.parse(request.cassandraDirectory.resolve("data"));
             cassandraData.setDatabaseEntitiesFromRequest(request.entities);
@@ -104,14 +326,21 @@ public class BaseBackupOperationCoordinator extends OperationCoordinator<BackupO
                 operation.request.snapshotTag = resolveSnapshotTag(operation.request, System.currentTimeMillis());
             }
 
+            // held for the whole backup so it is not loaded again by every upload which records a hash to it
+            final HashLedger hashLedger = HashLedger.forSpec(hashSpec);
+
             logger.info("Taking snapshot with name {}", request.snapshotTag);
 
             new TakeSnapshotOperation(cassandraJMXService,
                                       new TakeSnapshotOperationRequest(request.entities, request.snapshotTag),
                                       cassandraVersionProvider).run0();
 
-            Snapshots.hashSpec = hashSpec;
-            final Snapshots snapshots = Snapshots.parse(request.cassandraDirectory.resolve("data"), request.snapshotTag);
+            // in case of stream hashing, hashes are computed while uploading, not upon parsing
+            final HashService hashService = request.streamHashing ? null : new HashServiceImpl(hashSpec, hashLedger);
+            final Snapshots snapshots = Snapshots.parse(request.cassandraDirectory.resolve("data"),
+                                                        request.snapshotTag,
+                                                        hashService,
+                                                        resolveParsingParallelism(request));
             final Optional<Snapshot> snapshot = snapshots.get(request.snapshotTag);
 
             if (!snapshot.isPresent()) {
@@ -123,39 +352,15 @@ public class BaseBackupOperationCoordinator extends OperationCoordinator<BackupO
             manifest.setSchemaVersion(request.schemaVersion);
             manifest.setTokens(tokens);
 
-            // manifest
-            final Path localManifestPath = getLocalManifestPath(request.cassandraDirectory, request.snapshotTag);
-            Manifest.write(manifest, localManifestPath, objectMapper);
-            manifest.setManifest(getManifestAsManifestEntry(localManifestPath));
-
-            try (final Backuper backuper = backuperFactoryMap.get(request.storageLocation.storageProvider).createBackuper(request)) {
-
-                final List<ManifestEntry> manifestEntries = manifest.getManifestEntries();
-
-                Session<UploadUnit> uploadSession = null;
-
+            try (final Backuper backuper = createBackuper(operation, hashLedger)) {
                 try {
-                    uploadSession = uploadTracker.submit(backuper, operation, manifestEntries, request.snapshotTag, operation.request.concurrentConnections);
-
-                    uploadSession.waitUntilConsideredFinished();
-                    uploadTracker.cancelIfNecessary(uploadSession);
-
-                    final List<UploadUnit> failedUnits = uploadSession.getFailedUnits();
+                    // data files are uploaded first, manifest is uploaded as the last file
+                    upload(backuper, operation, manifest.getManifestEntries(true, false));
+                    uploadManifest(backuper, operation, manifest);
 
-                    if (!failedUnits.isEmpty()) {
-                        final String message = failedUnits.stream().map(unit -> unit.getManifestEntry().objectKey.toString()).collect(Collectors.joining(","));
-                        logger.error(message);
-                        throw new IOException(format("Unable to upload some files successfully: %s", message));
-                    }
+                    compactHashLedger(backuper);
                 } finally {
-                    uploadTracker.removeSession(uploadSession);
-                    uploadSession = null;
-                }
-
-                if (operation.request.uploadClusterTopology) {
-                    // here we will upload all topology because we do not know what restore might look like (what dc a restorer will restore against if any)
-                    final ClusterTopology topology = new CassandraClusterTopology(cassandraJMXService, null).act();
-                    ClusterTopology.upload(backuper, topology, objectMapper, operation.request.snapshotTag);
+                    BackupInProgressMarker.remove(backuper, request.snapshotTag);
                 }
             } finally {
                 manifest.cleanup();
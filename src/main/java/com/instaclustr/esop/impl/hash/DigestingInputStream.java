@@ -0,0 +1,46 @@
+package com.instaclustr.esop.impl.hash;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Input stream which computes a hash of all bytes read through it so a file can be hashed
+ * while it is being uploaded instead of reading it from a disk twice.
+ *
+ * The hash returned by {@link #getHash()} is of the same format as the one computed by {@link HashServiceImpl}.
+ *
+ * Mark and reset are not supported, bytes read again after a reset would be digested twice. A caller which needs
+ * to replay a stream, e.g. a storage client retrying a request, has to buffer it on its own.
+ */
+public class DigestingInputStream extends DigestInputStream {
+
+    public DigestingInputStream(final InputStream stream, final HashSpec hashSpec) throws NoSuchAlgorithmException {
+        super(stream, MessageDigest.getInstance(hashSpec.algorithm.toString()));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Should be called only once all bytes were read, calling this method resets the underlying digest.
+     *
+     * @return hex representation of the digest of all bytes read so far
+     */
+    public String getHash() {
+        return HashServiceImpl.toHexString(getMessageDigest().digest());
+    }
+}
@@ -0,0 +1,324 @@
+package com.instaclustr.esop.impl.hash;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.SYNC;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of hashes of local files. SSTables are immutable so once a file is hashed, its hash
+ * does not need to be computed again as long as the file is still the same - that is decided by its file key
+ * (device and inode), size and modification time, so hard links of a file, e.g. in snapshots, share a record.
+ *
+ * Records are appended to a ledger file, one line per record, each line is ended with a checksum of that line.
+ * Lines which are truncated or their checksum does not match are ignored upon loading so a ledger which was not
+ * written fully (e.g. process was killed) does not make hashing fail, such files are just hashed again.
+ *
+ * A ledger is shared by all hash services using it at the same time. Once none of them references it anymore,
+ * it is dropped from memory and it is loaded again from its file next time, so ledgers of finished operations,
+ * e.g. verification ledgers of restorations, are not held for the life of a process.
+ * An operation holds its ledger until it finishes so it is not loaded again in the middle of it.
+ */
+public class HashLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashLedger.class);
+
+    private static final LoadingCache<Path, HashLedger> LEDGERS = CacheBuilder.newBuilder().weakValues().build(CacheLoader.from(HashLedger::new));
+
+    private static final char SEPARATOR = '\t';
+    private static final Joiner JOINER = Joiner.on(SEPARATOR);
+    private static final Splitter SPLITTER = Splitter.on(SEPARATOR);
+
+    private final Path ledgerFile;
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+
+    public static HashLedger forFile(final Path ledgerFile) {
+        return LEDGERS.getUnchecked(ledgerFile.toAbsolutePath().normalize());
+    }
+
+    /**
+     * @param hashSpec spec of hashing
+     * @return ledger of given spec, null if it does not have any
+     */
+    public static HashLedger forSpec(final HashSpec hashSpec) {
+        return hashSpec == null || hashSpec.hashLedger == null ? null : forFile(hashSpec.hashLedger);
+    }
+
+    private HashLedger(final Path ledgerFile) {
+        this.ledgerFile = ledgerFile;
+        load();
+    }
+
+    public Path getLedgerFile() {
+        return ledgerFile;
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * @param file       file to get a recorded hash of
+     * @param attributes attributes of a file read before its hash is computed
+     * @param algorithm  algorithm a hash was computed by
+     * @return recorded hash if the file has not changed since it was recorded, empty optional otherwise
+     */
+    public Optional<String> get(final Path file, final BasicFileAttributes attributes, final String algorithm) {
+        final Record record = records.get(key(file, attributes, algorithm));
+
+        if (record == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(record.hash);
+    }
+
+    /**
+     * Records a hash of a file. Nothing is recorded if the file was changed while it was hashed.
+     *
+     * @param file       hashed file
+     * @param attributes attributes of a file read before its hash was computed
+     * @param algorithm  algorithm a hash was computed by
+     * @param hash       hash to record
+     */
+    public void put(final Path file, final BasicFileAttributes attributes, final String algorithm, final String hash) {
+        try {
+            if (!isSame(attributes, Files.readAttributes(file, BasicFileAttributes.class))) {
+                logger.debug("Not recording hash of {} as it was changed while being hashed.", file);
+                return;
+            }
+
+            final Record record = new Record(fileKey(file, attributes),
+                                             attributes.size(),
+                                             attributes.lastModifiedTime().toMillis(),
+                                             algorithm,
+                                             hash,
+                                             file.toAbsolutePath().toString());
+
+            synchronized (this) {
+                Files.createDirectories(ledgerFile.getParent());
+                Files.write(ledgerFile, record.toLine().getBytes(UTF_8), CREATE, APPEND, WRITE);
+                records.put(record.key(), record);
+            }
+        } catch (final Exception ex) {
+            // failure to record a hash is not fatal, it will be just computed again next time
+            logger.warn(format("Unable to record hash of %s to ledger %s: %s", file, ledgerFile, ex.getMessage()));
+        }
+    }
+
+    /**
+     * Removes records of files which do not exist anymore or which were changed since they were recorded
+     * and rewrites the ledger file so it contains only live records.
+     */
+    public synchronized void evictMissing() {
+        final List<Record> evicted = new ArrayList<>();
+
+        for (final Record record : records.values()) {
+            if (!isLive(record, Paths.get(record.path)) && !isLive(record, liveLocation(Paths.get(record.path)))) {
+                evicted.add(record);
+            }
+        }
+
+        for (final Record record : evicted) {
+            records.remove(record.key());
+        }
+
+        try {
+            final Path tempFile = ledgerFile.resolveSibling(ledgerFile.getFileName() + ".tmp");
+            final List<String> lines = new ArrayList<>();
+
+            for (final Record record : records.values()) {
+                lines.add(record.toLine().trim());
+            }
+
+            Files.write(tempFile, lines, UTF_8, CREATE, TRUNCATE_EXISTING, WRITE, SYNC);
+            Files.move(tempFile, ledgerFile, ATOMIC_MOVE, REPLACE_EXISTING);
+
+            logger.info("Evicted {} records from hash ledger {}, {} records left.", evicted.size(), ledgerFile, records.size());
+        } catch (final Exception ex) {
+            logger.warn(format("Unable to compact hash ledger %s: %s", ledgerFile, ex.getMessage()));
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(ledgerFile)) {
+            return;
+        }
+
+        int corrupted = 0;
+
+        try (final BufferedReader reader = Files.newBufferedReader(ledgerFile, UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final Record record = Record.parse(line);
+
+                if (record == null) {
+                    corrupted++;
+                    continue;
+                }
+
+                records.put(record.key(), record);
+            }
+        } catch (final Exception ex) {
+            logger.warn(format("Unable to fully read hash ledger %s, continuing with %s records: %s", ledgerFile, records.size(), ex.getMessage()));
+        }
+
+        if (corrupted != 0) {
+            logger.warn("Skipped {} corrupted records of hash ledger {}", corrupted, ledgerFile);
+        }
+
+        logger.info("Loaded {} records from hash ledger {}", records.size(), ledgerFile);
+    }
+
+    private boolean isLive(final Record record, final Path file) {
+        if (file == null) {
+            return false;
+        }
+
+        try {
+            return record.key().equals(key(file, Files.readAttributes(file, BasicFileAttributes.class), record.algorithm));
+        } catch (final NoSuchFileException ex) {
+            return false;
+        } catch (final Exception ex) {
+            logger.warn(format("Unable to read attributes of %s, evicting it from ledger %s: %s", file, ledgerFile, ex.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Files are mostly hashed in snapshot directories which are removed after a backup, but they are hard links
+     * of live SSTables so their records are valid for as long as respective SSTables in a table directory exist.
+     *
+     * @return path to a live SSTable of a file in snapshots or backups directory of a table or null if there is not any
+     */
+    private static Path liveLocation(final Path file) {
+        for (int i = file.getNameCount() - 2; i > 0; i--) {
+            final String name = file.getName(i).toString();
+
+            if (name.equals("snapshots") && i + 2 < file.getNameCount()) {
+                return file.getRoot().resolve(file.subpath(0, i)).resolve(file.subpath(i + 2, file.getNameCount()));
+            }
+
+            if (name.equals("backups")) {
+                return file.getRoot().resolve(file.subpath(0, i)).resolve(file.subpath(i + 1, file.getNameCount()));
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isSame(final BasicFileAttributes before, final BasicFileAttributes after) {
+        return before.size() == after.size()
+            && before.lastModifiedTime().toMillis() == after.lastModifiedTime().toMillis()
+            && (before.fileKey() == null || before.fileKey().equals(after.fileKey()));
+    }
+
+    private static String fileKey(final Path file, final BasicFileAttributes attributes) {
+        // not all file systems have a file key, path is the best we can do in that case
+        return attributes.fileKey() == null ? file.toAbsolutePath().toString() : attributes.fileKey().toString();
+    }
+
+    private static String key(final Path file, final BasicFileAttributes attributes, final String algorithm) {
+        return key(fileKey(file, attributes), attributes.size(), attributes.lastModifiedTime().toMillis(), algorithm);
+    }
+
+    private static String key(final String fileKey, final long size, final long modified, final String algorithm) {
+        return JOINER.join(fileKey, size, modified, algorithm);
+    }
+
+    private static final class Record {
+
+        final String fileKey;
+        final long size;
+        final long modified;
+        final String algorithm;
+        final String hash;
+        final String path;
+
+        Record(final String fileKey,
+               final long size,
+               final long modified,
+               final String algorithm,
+               final String hash,
+               final String path) {
+            this.fileKey = fileKey;
+            this.size = size;
+            this.modified = modified;
+            this.algorithm = algorithm;
+            this.hash = hash;
+            this.path = path;
+        }
+
+        String key() {
+            return HashLedger.key(fileKey, size, modified, algorithm);
+        }
+
+        String toLine() {
+            final String content = JOINER.join(fileKey, size, modified, algorithm, hash, path);
+            return content + SEPARATOR + checksum(content) + System.lineSeparator();
+        }
+
+        static Record parse(final String line) {
+            final int checksumIndex = line.lastIndexOf(SEPARATOR);
+
+            if (checksumIndex == -1) {
+                return null;
+            }
+
+            final String content = line.substring(0, checksumIndex);
+
+            if (!checksum(content).equals(line.substring(checksumIndex + 1))) {
+                return null;
+            }
+
+            final List<String> fields = SPLITTER.splitToList(content);
+
+            if (fields.size() != 6) {
+                return null;
+            }
+
+            try {
+                return new Record(fields.get(0),
+                                  Long.parseLong(fields.get(1)),
+                                  Long.parseLong(fields.get(2)),
+                                  fields.get(3),
+                                  fields.get(4),
+                                  fields.get(5));
+            } catch (final NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        static String checksum(final String content) {
+            final CRC32 crc32 = new CRC32();
+            crc32.update(content.getBytes(UTF_8));
+            return Long.toHexString(crc32.getValue());
+        }
+    }
+}
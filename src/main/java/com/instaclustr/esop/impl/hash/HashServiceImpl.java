@@ -6,19 +6,35 @@ import javax.inject.Inject;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
 
 import com.instaclustr.esop.impl.ManifestEntry;
 
 public class HashServiceImpl implements HashService {
 
+    // large reads keep a disk busy when many files are hashed in parallel
+    private static final int BUFFER_SIZE = 128 * 1024;
+
     private final HashSpec hashSpec;
+    private final HashLedger hashLedger;
 
     @Inject
     public HashServiceImpl(final HashSpec hashSpec) {
+        this(hashSpec, HashLedger.forSpec(hashSpec));
+    }
+
+    public HashServiceImpl(final HashSpec hashSpec, final HashLedger hashLedger) {
         this.hashSpec = hashSpec;
+        this.hashLedger = hashLedger;
+    }
+
+    public HashLedger getHashLedger() {
+        return hashLedger;
     }
 
     @Override
@@ -27,7 +43,7 @@ public class HashServiceImpl implements HashService {
             if (path == null) {
                 throw new HashingException("file to get a hash from is null!");
             }
-            return getHash(path.toAbsolutePath().toFile());
+            return getHash(path.toAbsolutePath());
         } catch (final HashingException ex) {
             throw ex;
         } catch (final Exception ex) {
@@ -58,7 +74,7 @@ public class HashServiceImpl implements HashService {
                 throw new HashVerificationException("hash to expect is null!");
             }
 
-            final String hashOfFile = getHash(path.toAbsolutePath().toFile());
+            final String hashOfFile = getHash(path.toAbsolutePath());
 
             if (!hashOfFile.equals(expectedHash)) {
                 throw new HashVerificationException(format("hash of %s (%s) does not match with expected hash %s",
@@ -76,13 +92,31 @@ public class HashServiceImpl implements HashService {
         }
     }
 
+    private String getHash(final Path path) throws IOException, NoSuchAlgorithmException {
+        if (hashLedger == null) {
+            return getHash(path.toFile());
+        }
+
+        // attributes are read before hashing so a change of a file while it is hashed is detected
+        final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        final Optional<String> recordedHash = hashLedger.get(path, attributes, hashSpec.algorithm.toString());
+
+        if (recordedHash.isPresent()) {
+            return recordedHash.get();
+        }
+
+        final String hash = getHash(path.toFile());
+        hashLedger.put(path, attributes, hashSpec.algorithm.toString(), hash);
+        return hash;
+    }
+
     private String getHash(final File file) throws IOException, NoSuchAlgorithmException {
         try (final FileInputStream fis = new FileInputStream(file)) {
 
             final MessageDigest digest = MessageDigest.getInstance(hashSpec.algorithm.toString());
 
             // Create byte array to read data in chunks
-            byte[] byteArray = new byte[1024];
+            byte[] byteArray = new byte[BUFFER_SIZE];
             int bytesCount = 0;
 
             // Read file data and update in message digest
@@ -90,16 +124,18 @@ public class HashServiceImpl implements HashService {
                 digest.update(byteArray, 0, bytesCount);
             }
 
-            byte[] bytes = digest.digest();
-
-            final StringBuilder sb = new StringBuilder();
+            return toHexString(digest.digest());
+        }
+    }
 
-            //This bytes[] has bytes in decimal format, convert it to hexadecimal format
-            for (final byte aByte : bytes) {
-                sb.append(Integer.toString((aByte & 0xff) + 0x100, 16).substring(1));
-            }
+    static String toHexString(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder();
 
-            return sb.toString();
+        //This bytes[] has bytes in decimal format, convert it to hexadecimal format
+        for (final byte aByte : bytes) {
+            sb.append(Integer.toString((aByte & 0xff) + 0x100, 16).substring(1));
         }
+
+        return sb.toString();
     }
 }
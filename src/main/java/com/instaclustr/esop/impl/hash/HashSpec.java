@@ -2,8 +2,10 @@ package com.instaclustr.esop.impl.hash;
 
 import static java.lang.String.format;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 
+import com.instaclustr.picocli.typeconverter.PathTypeConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -25,6 +27,13 @@ public class HashSpec {
         converter = HashAlgorithmConverter.class)
     public HashAlgorithm algorithm;
 
+    @Option(names = {"--hash-ledger"},
+        description = "Path to a file where hashes of local files will be recorded, e.g. /var/lib/cassandra/hash-ledger, next to manifests directory. "
+            + "A file which was hashed already is not read again as long as its inode, size and modification time stay same. "
+            + "If not specified, all files are hashed every time.",
+        converter = PathTypeConverter.class)
+    public Path hashLedger;
+
     private static class HashAlgorithmConverter implements CommandLine.ITypeConverter<HashAlgorithm> {
 
         @Override
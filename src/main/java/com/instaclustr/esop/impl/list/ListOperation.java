@@ -20,12 +20,13 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.assistedinject.Assisted;
 import com.instaclustr.esop.guice.RestorerFactory;
+import com.instaclustr.esop.impl.BackupCatalog;
 import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
 import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
 import com.instaclustr.esop.impl.ProxySettings;
-import com.instaclustr.esop.impl.StorageInteractor;
 import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.TableBuilder;
+import com.instaclustr.esop.impl.restore.Restorer;
 import com.instaclustr.esop.impl.retry.RetrySpec;
 import com.instaclustr.esop.topology.CassandraSimpleTopology;
 import com.instaclustr.esop.topology.CassandraSimpleTopology.CassandraSimpleTopologyResult;
@@ -74,7 +75,8 @@ public class ListOperation extends Operation<ListOperationRequest> {
                           @JsonProperty("toFile") final String toFile,
                           @JsonProperty("simpleFormat") final boolean simpleFormat,
                           @JsonProperty("fromTimestamp") final Long fromTimestamp,
-                          @JsonProperty("lastN") final Integer lastN) {
+                          @JsonProperty("lastN") final Integer lastN,
+                          @JsonProperty("rebuildCatalog") final boolean rebuildCatalog) {
         super(type, id, creationTime, state, errors, progress, startTime, new ListOperationRequest(storageLocation,
                                                                                                    k8sNamespace,
                                                                                                    k8sSecretName,
@@ -88,7 +90,8 @@ public class ListOperation extends Operation<ListOperationRequest> {
                                                                                                    toFile,
                                                                                                    simpleFormat,
                                                                                                    fromTimestamp,
-                                                                                                   lastN));
+                                                                                                   lastN,
+                                                                                                   rebuildCatalog));
         this.restorerFactoryMap = null;
         this.objectMapper = null;
         this.cassandraJMXService = null;
@@ -111,8 +114,9 @@ public class ListOperation extends Operation<ListOperationRequest> {
 
         }
 
-        try (final StorageInteractor interactor = restorerFactoryMap.get(request.storageLocation.storageProvider).createListingInteractor(request)) {
-            final AllManifestsReport report = AllManifestsReport.report(interactor.listManifests());
+        try (final Restorer interactor = restorerFactoryMap.get(request.storageLocation.storageProvider).createListingInteractor(request)) {
+            interactor.setShouldCancel(getShouldCancel());
+            final AllManifestsReport report = BackupCatalog.load(interactor, objectMapper, request.rebuildCatalog, false).report();
             filterFromTimestamp(report, request.fromTimestamp);
             filterLastN(report, request.lastN);
             try (final PrintStream ps = getOutputStream(request)) {
@@ -35,6 +35,9 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
     @Option(names = {"--last-n"}, description = "Number of last reports to print")
     public int lastN = 0;
 
+    @Option(names = {"--rebuild-catalog"}, description = "If set, catalog of backups of a node is rebuilt from all its manifests even if it reflects them.")
+    public boolean rebuildCatalog = false;
+
     public ListOperationRequest() {
         // for picocli
     }
@@ -53,7 +56,8 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
                                 @JsonProperty("toFile") final String toFile,
                                 @JsonProperty("simpleFormat") final boolean simpleFormat,
                                 @JsonProperty("fromTimestamp") final Long fromTimestamp,
-                                @JsonProperty("lastN") final Integer lastN) {
+                                @JsonProperty("lastN") final Integer lastN,
+                                @JsonProperty("rebuildCatalog") final boolean rebuildCatalog) {
         super(storageLocation, 1, k8sNamespace, k8sSecretName, insecure, skipBucketVerification, proxySettings, retry);
         this.json = json;
         this.skipNodeCoordinatesResolution = skipNodeCoordinatesResolution;
@@ -62,6 +66,7 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
         this.simpleFormat = simpleFormat;
         this.fromTimestamp = fromTimestamp == null ? Long.MAX_VALUE : fromTimestamp;
         this.lastN = lastN == null ? 0 : lastN;
+        this.rebuildCatalog = rebuildCatalog;
     }
 
     @Override
@@ -74,6 +79,7 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
             .add("simpleFormat", simpleFormat)
             .add("fromTimestamp", fromTimestamp)
             .add("lastN", lastN)
+            .add("rebuildCatalog", rebuildCatalog)
             .toString();
     }
 }
@@ -0,0 +1,139 @@
+package com.instaclustr.esop.impl.remove;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.instaclustr.esop.impl.BackupCatalog;
+import com.instaclustr.esop.impl.BackupInProgressMarker;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl.restore.Restorer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes objects of a node which are not referenced by any of its manifests, e.g. files uploaded by a backup which
+ * failed before its manifest was uploaded. Such objects are never removed by a removal of a backup as a backup
+ * removes only objects its manifest references.
+ *
+ * Objects referenced by manifests are marked by a catalog of a node, which holds them already, so manifests are not
+ * downloaded again. Marked objects are held as a sorted array of 64-bit fingerprints of their keys, so the memory
+ * a collection needs is bounded by 8 bytes per referenced object. Objects of a node are swept by one listing, only
+ * unreferenced objects are kept in memory and they are deleted in batches.
+ *
+ * Objects modified in a grace period are not removed so files of a backup which is still being uploaded, and which
+ * are not referenced by its manifest yet, are not removed. A running backup might reuse an unreferenced object which
+ * is older than a grace period, e.g. within its refresh window, so right before unreferenced objects are deleted,
+ * a collection is aborted if a node has a {@link BackupInProgressMarker} of a running backup or if its manifests do not
+ * match a catalog anymore, e.g. when a backup has finished in the meanwhile.
+ */
+public class GarbageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(GarbageCollector.class);
+
+    public static final long DEFAULT_GRACE_PERIOD = TimeUnit.DAYS.toMillis(1);
+
+    private final Restorer restorer;
+    private final RemoveBackupRequest request;
+    private final long gracePeriod;
+
+    public GarbageCollector(final Restorer restorer, final RemoveBackupRequest request) {
+        this.restorer = restorer;
+        this.request = request;
+        this.gracePeriod = request.gcGracePeriod == null ? DEFAULT_GRACE_PERIOD : request.gcGracePeriod.asMilliseconds().value;
+    }
+
+    /**
+     * @param catalog catalog of a node a restorer is set to, consistent with its manifests
+     * @return keys of removed objects, relative to a node, empty if a collection was aborted
+     */
+    public List<Path> collect(final BackupCatalog catalog) throws Exception {
+        final StorageLocation storageLocation = restorer.getStorageLocation();
+
+        if (catalog.manifests.isEmpty()) {
+            // a node without any backup is left intact, its objects might be the first backup which is being uploaded
+            logger.info("There is not any backup of node {}, garbage collection is skipped.", storageLocation.nodePath());
+            return Collections.emptyList();
+        }
+
+        final ReachableObjects reachableObjects = new ReachableObjects(catalog.objects.keySet());
+        final Path nodePath = Paths.get(storageLocation.clusterId, storageLocation.datacenterId, storageLocation.nodeId);
+        final long cut = System.currentTimeMillis() - gracePeriod;
+        final List<Path> garbage = new ArrayList<>();
+        final long[] listed = new long[1];
+
+        restorer.listNodeObjects(Paths.get("data"), (canonicalPath, lastModified) -> {
+            listed[0]++;
+
+            final Path objectKey = nodePath.relativize(Paths.get(canonicalPath));
+
+            if (lastModified != null && lastModified < cut && !reachableObjects.contains(objectKey.toString())) {
+                garbage.add(objectKey);
+            }
+        });
+
+        logger.info("Found {} unreferenced objects older than {} ms among {} objects of node {}.", garbage.size(), gracePeriod, listed[0], storageLocation.nodePath());
+
+        if (garbage.isEmpty()) {
+            return garbage;
+        }
+
+        final List<String> backupsInProgress = BackupInProgressMarker.list(restorer, cut);
+
+        if (!backupsInProgress.isEmpty()) {
+            logger.warn("Backups {} of node {} are running, they might reuse unreferenced objects. "
+                            + "Garbage collection is aborted, it might be run again once they finish.", backupsInProgress, storageLocation.nodePath());
+            return Collections.emptyList();
+        }
+
+        if (!catalog.isConsistentWith(BackupCatalog.listManifestNames(restorer))) {
+            logger.warn("Manifests of node {} do not match its catalog anymore, a backup might have finished in the meanwhile. "
+                            + "Garbage collection is aborted, it might be run again.", storageLocation.nodePath());
+            return Collections.emptyList();
+        }
+
+        restorer.delete(garbage, request);
+
+        return garbage;
+    }
+
+    /**
+     * Set of keys of referenced objects. A key is held only as its 64-bit fingerprint, keys of different objects
+     * which happen to have the same fingerprint make an unreferenced object to be kept, never a referenced one to be removed.
+     */
+    static final class ReachableObjects {
+
+        private static final HashFunction FINGERPRINT = Hashing.murmur3_128();
+
+        private final long[] fingerprints;
+
+        ReachableObjects(final Collection<String> objectKeys) {
+            fingerprints = new long[objectKeys.size()];
+
+            int i = 0;
+
+            for (final String objectKey : objectKeys) {
+                fingerprints[i++] = fingerprint(objectKey);
+            }
+
+            Arrays.sort(fingerprints);
+        }
+
+        boolean contains(final String objectKey) {
+            return Arrays.binarySearch(fingerprints, fingerprint(objectKey)) >= 0;
+        }
+
+        private static long fingerprint(final String objectKey) {
+            return FINGERPRINT.hashString(objectKey, UTF_8).asLong();
+        }
+    }
+}
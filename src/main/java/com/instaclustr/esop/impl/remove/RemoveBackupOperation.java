@@ -5,16 +5,19 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.instaclustr.esop.guice.RestorerFactory;
+import com.instaclustr.esop.impl.BackupCatalog;
 import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
 import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
 import com.instaclustr.esop.impl.StorageInteractor;
 import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl.restore.Restorer;
 import com.instaclustr.esop.topology.CassandraSimpleTopology;
 import com.instaclustr.esop.topology.CassandraSimpleTopology.CassandraSimpleTopologyResult;
 import com.instaclustr.measure.Time;
@@ -69,21 +72,23 @@ public class RemoveBackupOperation extends Operation<RemoveBackupRequest> {
 
         }
 
-        try (final StorageInteractor interactor = restorerFactoryMap.get(request.storageLocation.storageProvider).createDeletingInteractor(request)) {
+        try (final Restorer interactor = restorerFactoryMap.get(request.storageLocation.storageProvider).createDeletingInteractor(request)) {
+            interactor.setShouldCancel(getShouldCancel());
             for (final StorageLocation nodeLocation : getStorageLocations(interactor)) {
                 logger.info("Looking for backups to delete for node {}", nodeLocation.nodePath());
                 interactor.setStorageLocation(nodeLocation);
                 request.storageLocation = nodeLocation;
 
-                final Optional<AllManifestsReport> reportOptional = getReport(interactor);
+                final Optional<BackupCatalog> catalogOptional = getCatalog(interactor);
 
-                if (!reportOptional.isPresent()) {
+                if (!catalogOptional.isPresent()) {
                     logger.info("No backups found for {}", nodeLocation.nodePath());
                     continue;
                 }
 
-                final AllManifestsReport report = reportOptional.get();
-                final List<ManifestReport> allBackupsToDelete = getBackupsToDelete(report);
+                final BackupCatalog catalog = catalogOptional.get();
+                final AllManifestsReport report = catalog.report();
+                final List<ManifestReport> allBackupsToDelete = withoutBasesOfKeptDeltas(getBackupsToDelete(report), report);
 
                 if (allBackupsToDelete.isEmpty()) {
                     if (request.backupName != null) {
@@ -91,25 +96,13 @@ public class RemoveBackupOperation extends Operation<RemoveBackupRequest> {
                     } else {
                         logger.debug("There is not any backup to remove for node {}", nodeLocation);
                     }
-                    return;
+                } else {
+                    // manifests are not removed in dry mode, so garbage is collected against a catalog which still reflects them
+                    removeBackups(interactor, request.dry ? BackupCatalog.read(BackupCatalog.write(catalog, objectMapper), objectMapper) : catalog, allBackupsToDelete);
                 }
 
-                logger.info("Removing backups for node {}: {}",
-                            nodeLocation.nodePath(),
-                            allBackupsToDelete.stream().map(mr -> mr.name).collect(Collectors.joining(",")));
-
-                for (final ManifestReport mr : allBackupsToDelete) {
-                    interactor.delete(mr, request);
-                }
-
-                for (final ManifestReport mr : allBackupsToDelete) {
-                    if (request.globalRemoval) {
-                        if (!request.dry) {
-                            interactor.deleteTopology(mr.name);
-                        } else {
-                            logger.info("Deletion of topology for {} was executed in dry mode", mr.name);
-                        }
-                    }
+                if (request.collectGarbage) {
+                    new GarbageCollector(interactor, request).collect(catalog);
                 }
             }
         } catch (final Exception ex) {
@@ -118,6 +111,38 @@ public class RemoveBackupOperation extends Operation<RemoveBackupRequest> {
         }
     }
 
+    private void removeBackups(final Restorer interactor,
+                               final BackupCatalog catalog,
+                               final List<ManifestReport> allBackupsToDelete) throws Exception {
+        logger.info("Removing backups for node {}: {}",
+                    interactor.getStorageLocation().nodePath(),
+                    allBackupsToDelete.stream().map(mr -> mr.name).collect(Collectors.joining(",")));
+
+        final List<String> removedManifests = new ArrayList<>();
+
+        for (final ManifestReport backupToDelete : allBackupsToDelete) {
+            // a report is resolved again after every removal so objects shared only by removed backups are removed too
+            final ManifestReport mr = catalog.report().get(backupToDelete.name).orElse(backupToDelete);
+            interactor.delete(mr, request);
+            catalog.remove(mr.manifest.objectKey.getFileName().toString());
+            removedManifests.add(mr.manifest.objectKey.getFileName().toString());
+        }
+
+        if (!request.dry) {
+            BackupCatalog.remove(interactor, catalog, removedManifests, objectMapper);
+        }
+
+        for (final ManifestReport mr : allBackupsToDelete) {
+            if (request.globalRemoval) {
+                if (!request.dry) {
+                    interactor.deleteTopology(mr.name);
+                } else {
+                    logger.info("Deletion of topology for {} was executed in dry mode", mr.name);
+                }
+            }
+        }
+    }
+
     private List<ManifestReport> getBackupsToDelete(final AllManifestsReport allManifestsReport) {
         final List<ManifestReport> manifestReports = new ArrayList<>();
 
@@ -134,9 +159,32 @@ public class RemoveBackupOperation extends Operation<RemoveBackupRequest> {
         return manifestReports;
     }
 
-    private Optional<AllManifestsReport> getReport(final StorageInteractor storageInteractor) {
+    /**
+     * Incremental backups can not be restored without their base backup, so a base is kept as long as any of them is.
+     */
+    private List<ManifestReport> withoutBasesOfKeptDeltas(final List<ManifestReport> backupsToDelete, final AllManifestsReport allManifestsReport) {
+        final Set<String> namesToDelete = backupsToDelete.stream().map(mr -> mr.name).collect(Collectors.toSet());
+        final List<ManifestReport> result = new ArrayList<>();
+
+        for (final ManifestReport mr : backupsToDelete) {
+            final List<String> keptDeltas = allManifestsReport.getDeltas(mr).stream()
+                .map(delta -> delta.name)
+                .filter(name -> !namesToDelete.contains(name))
+                .collect(Collectors.toList());
+
+            if (keptDeltas.isEmpty()) {
+                result.add(mr);
+            } else {
+                logger.warn("Backup {} is not removed as incremental backups {} are based on it, remove them first.", mr.name, keptDeltas);
+            }
+        }
+
+        return result;
+    }
+
+    private Optional<BackupCatalog> getCatalog(final Restorer storageInteractor) {
         try {
-            return Optional.of(AllManifestsReport.report(storageInteractor.listManifests()));
+            return Optional.of(BackupCatalog.load(storageInteractor, objectMapper, request.rebuildCatalog, !request.dry));
         } catch (final Exception ex) {
             logger.error(String.format("Unable to perform listing against node %s - %s", storageInteractor.getStorageLocation(), ex.getMessage()), ex);
             this.addError(Error.from(ex));
@@ -46,6 +46,19 @@ public class RemoveBackupRequest extends BaseRestoreOperationRequest {
     @Option(names = {"--global-request"}, description = "If true, it will remove backups for all nodes in storage location, in datacenters based on --dcs option")
     public boolean globalRemoval = false;
 
+    @Option(names = {"--rebuild-catalog"}, description = "If set, catalog of backups of a node is rebuilt from all its manifests even if it reflects them.")
+    public boolean rebuildCatalog = false;
+
+    @Option(names = {"--collect-garbage"}, description = "If set, objects of a node which are not referenced by any of its backups, "
+        + "e.g. files uploaded by a backup which has failed, are removed too. Nothing is removed from a node while a backup of it is running.")
+    public boolean collectGarbage = false;
+
+    @Option(names = {"--gc-grace-period"},
+        description = "Used only together with --collect-garbage, objects which were modified in this period are not removed even if "
+            + "they are not referenced, e.g. files of a backup which is still being uploaded. Defaults to 1 day.",
+        converter = TimeMeasureTypeConverter.class)
+    public Time gcGracePeriod;
+
     public RemoveBackupRequest() {
         // for picocli
     }
@@ -62,12 +75,18 @@ public class RemoveBackupRequest extends BaseRestoreOperationRequest {
                                @JsonProperty("dry") final boolean dry,
                                @JsonProperty("report") final ManifestReport report,
                                @JsonProperty("skipNodeCoordinatesResolution") final boolean skipNodeCoordinatesResolution,
-                               @JsonProperty("olderThan") final Time olderThan) {
+                               @JsonProperty("olderThan") final Time olderThan,
+                               @JsonProperty("rebuildCatalog") final boolean rebuildCatalog,
+                               @JsonProperty("collectGarbage") final boolean collectGarbage,
+                               @JsonProperty("gcGracePeriod") final Time gcGracePeriod) {
         super(storageLocation, 1, k8sNamespace, k8sSecretName, insecure, skipBucketVerification, proxySettings, retry);
         this.backupName = backupName;
         this.dry = dry;
         this.skipNodeCoordinatesResolution = skipNodeCoordinatesResolution;
         this.olderThan = olderThan == null ? Time.zeroTime() : olderThan;
+        this.rebuildCatalog = rebuildCatalog;
+        this.collectGarbage = collectGarbage;
+        this.gcGracePeriod = gcGracePeriod;
     }
 
     @Override
@@ -77,6 +96,9 @@ public class RemoveBackupRequest extends BaseRestoreOperationRequest {
             .add("dry", dry)
             .add("skipNodeCoordinatesResolution", skipNodeCoordinatesResolution)
             .add("olderThan", olderThan)
+            .add("rebuildCatalog", rebuildCatalog)
+            .add("collectGarbage", collectGarbage)
+            .add("gcGracePeriod", gcGracePeriod)
             .toString();
     }
 
@@ -101,7 +123,7 @@ public class RemoveBackupRequest extends BaseRestoreOperationRequest {
                     throw new IllegalStateException(String.format("You have specified you want to remove backup %s but you specified olderThan too!", backupName));
                 }
             } else {
-                if (olderThan.value == 0) {
+                if (olderThan.value == 0 && !collectGarbage) {
                     throw new IllegalStateException("You have not specified you want to remove any specific backup but you have not specified olderThan either!");
                 }
             }
@@ -1,9 +1,13 @@
 package com.instaclustr.esop.impl.restore;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.instaclustr.esop.impl.AbstractOperationRequest;
 import com.instaclustr.esop.impl.ProxySettings;
+import com.instaclustr.esop.impl.SchedulingPolicy;
 import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.retry.RetrySpec;
+import com.instaclustr.measure.DataRate;
+import com.instaclustr.picocli.typeconverter.DataRateMeasureTypeConverter;
 import picocli.CommandLine.Option;
 
 public class BaseRestoreOperationRequest extends AbstractOperationRequest {
@@ -14,6 +18,31 @@ public class BaseRestoreOperationRequest extends AbstractOperationRequest {
     )
     public Integer concurrentConnections = 10;
 
+    @Option(names = {"--scheduling-policy"},
+        description = "Order in which files are downloaded: MANIFEST_ORDER, LARGEST_FIRST, LPT (files are split to groups of similar size, "
+            + "one per concurrent connection) or SMALL_FILE_BATCHING (largest first, small files are downloaded in batches). Default is MANIFEST_ORDER.")
+    public SchedulingPolicy schedulingPolicy;
+
+    @JsonProperty("downloadRangeSize")
+    @Option(names = {"--download-range-size"},
+        description = "Size of a byte range, in megabytes, a file is split to when it is downloaded by multiple ranges concurrently. Default is 64.",
+        defaultValue = "64")
+    public Integer downloadRangeSize = 64;
+
+    @JsonProperty("downloadRangeParallelism")
+    @Option(names = {"--download-range-parallelism"},
+        description = "Number of byte ranges of one file to download concurrently. Files larger than a range size are split to ranges only if "
+            + "this is bigger than 1. Ranges of all files are downloaded by as many threads as there are concurrent connections. "
+            + "Files downloaded by ranges are verified after they are downloaded. Default is 1, every file is downloaded by one connection.",
+        defaultValue = "1")
+    public Integer downloadRangeParallelism = 1;
+
+    @JsonProperty("bandwidth")
+    @Option(names = {"-b", "--bandwidth"},
+        description = "Maximum download throughput, shared by all concurrent downloads. Files are downloaded as streams when it is set.",
+        converter = DataRateMeasureTypeConverter.class)
+    public DataRate bandwidth;
+
     public BaseRestoreOperationRequest() {
         // for picocli
     }
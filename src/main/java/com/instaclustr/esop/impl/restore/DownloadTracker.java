@@ -3,10 +3,18 @@ package com.instaclustr.esop.impl.restore;
 import static com.instaclustr.esop.impl.AbstractTracker.Unit.State.FAILED;
 import static com.instaclustr.esop.impl.AbstractTracker.Unit.State.FINISHED;
 import static com.instaclustr.esop.impl.AbstractTracker.Unit.State.RUNNING;
+import static com.instaclustr.esop.impl.retry.RetrierFactory.getRetrier;
+import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -16,12 +24,14 @@ import com.instaclustr.esop.impl.AbstractTracker;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.ManifestEntry.Type;
 import com.instaclustr.esop.impl.RemoteObjectReference;
+import com.instaclustr.esop.impl.hash.DigestingInputStream;
 import com.instaclustr.esop.impl.hash.HashService.HashVerificationException;
 import com.instaclustr.esop.impl.hash.HashServiceImpl;
 import com.instaclustr.esop.impl.hash.HashSpec;
 import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadSession;
 import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadUnit;
 import com.instaclustr.esop.impl.restore.RestoreModules.DownloadingFinisher;
+import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
 import com.instaclustr.operations.Operation;
 import com.instaclustr.operations.OperationsService;
 import org.slf4j.Logger;
@@ -62,7 +72,8 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
                             operation,
                             entries,
                             snapshotTag,
-                            concurrentConnections);
+                            concurrentConnections,
+                            operation.request.schedulingPolicy);
     }
 
     public static class DownloadSession extends AbstractTracker.Session<DownloadUnit> {
@@ -71,9 +82,18 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
 
     public static class DownloadUnit extends AbstractTracker.Unit {
 
+        /**
+         * Suffix of a file while it is being downloaded and its hash is not verified yet.
+         */
+        private static final String DOWNLOADING_FILE_SUFFIX = ".downloading";
+
         @JsonIgnore
         private final Restorer restorer;
 
+        // attributes a file had when its hash was verified, null if it was not verified
+        @JsonIgnore
+        private volatile BasicFileAttributes verifiedAttributes;
+
         public DownloadUnit(final Restorer restorer,
                             final ManifestEntry manifestEntry,
                             final AtomicBoolean shouldCancel,
@@ -87,7 +107,7 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
         @Override
         public Void call() {
 
-            state = RUNNING;
+            setState(RUNNING);
 
             RemoteObjectReference remoteObjectReference = null;
             try {
@@ -102,33 +122,39 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
                 if (!Files.exists(localPath)) {
                     logger.info(String.format("Downloading file %s to %s.", remoteObjectReference.getObjectKey(), manifestEntry.localFile));
 
-                    restorer.downloadFile(localPath, remoteObjectReference);
+                    final RangedDownloader rangedDownloader = RangedDownloader.forRestorer(restorer, shouldCancel);
 
-                    // hash upon downloading
-                    try {
-                        if (manifestEntry.type == Type.FILE) {
-                            new HashServiceImpl(hashSpec).verify(localPath, manifestEntry.hash);
+                    if (manifestEntry.type == Type.FILE && rangedDownloader.shouldDownload(manifestEntry.size)) {
+                        downloadRanged(localPath, remoteObjectReference, rangedDownloader);
+                    } else if (manifestEntry.type != Type.FILE || !downloadVerifying(localPath, remoteObjectReference)) {
+                        download(localPath, remoteObjectReference);
+
+                        // hash upon downloading
+                        try {
+                            if (manifestEntry.type == Type.FILE) {
+                                verify(localPath);
+                            }
+                        } catch (final HashVerificationException ex) {
+                            // delete it if has is wrong so on the next try, it will be missing and we will download it again
+                            Files.deleteIfExists(localPath);
+                            throw ex;
                         }
-                    } catch (final HashVerificationException ex) {
-                        // delete it if has is wrong so on the next try, it will be missing and we will download it again
-                        Files.deleteIfExists(localPath);
-                        throw ex;
                     }
 
                     logger.info(String.format("Successfully downloaded file %s to %s.", remoteObjectReference.getObjectKey(), localPath));
 
-                    state = FINISHED;
+                    setState(FINISHED);
 
                     return null;
                 } else if (manifestEntry.hash != null) {
                     logger.info(String.format("Skipping download of file %s to %s, file already exists locally.",
                                               remoteObjectReference.getObjectKey(), manifestEntry.localFile));
                     // if it exists, verify its hash to be sure it was not altered
-                    new HashServiceImpl(hashSpec).verify(localPath, manifestEntry.hash);
-                    state = FINISHED;
+                    verify(localPath);
+                    setState(FINISHED);
                 } else {
                     // if it exists and manifest does not have hash field, consider it to be finished without any check
-                    state = FINISHED;
+                    setState(FINISHED);
                 }
             } catch (final Throwable t) {
                 if (remoteObjectReference != null) {
@@ -136,10 +162,118 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
                 }
 
                 throwable = t;
-                state = FAILED;
+                setState(FAILED);
             }
 
             return null;
         }
+
+        /**
+         * Downloads a file by byte ranges concurrently under a temporary name. Ranges are not downloaded in order so
+         * the hash of a file is computed once the file is downloaded. The file is moved to its final location only if its hash matches.
+         */
+        private void downloadRanged(final Path localPath,
+                                    final RemoteObjectReference remoteObjectReference,
+                                    final RangedDownloader rangedDownloader) throws Exception {
+            final Path downloadingPath = localPath.resolveSibling(localPath.getFileName() + DOWNLOADING_FILE_SUFFIX);
+
+            try {
+                rangedDownloader.download(remoteObjectReference, downloadingPath, manifestEntry.size);
+
+                if (manifestEntry.hash != null) {
+                    verify(downloadingPath);
+                }
+
+                Files.move(downloadingPath, localPath, ATOMIC_MOVE);
+            } finally {
+                // on a failure, nothing is left behind so the file is downloaded again on the next try
+                Files.deleteIfExists(downloadingPath);
+            }
+        }
+
+        /**
+         * Downloads a file by a restorer. When downloads are limited, a file is copied from a limited stream, as a restorer
+         * might write a file by a client of a storage provider which can not be limited.
+         */
+        private void download(final Path localPath, final RemoteObjectReference remoteObjectReference) throws Exception {
+            if (restorer.getBandwidthLimiter() == null) {
+                restorer.downloadFile(localPath, remoteObjectReference);
+                return;
+            }
+
+            Files.createDirectories(localPath.getParent());
+
+            try (final InputStream stream = restorer.limit(restorer.downloadFileStream(remoteObjectReference), shouldCancel)) {
+                Files.copy(stream, localPath, REPLACE_EXISTING);
+            }
+        }
+
+        /**
+         * Downloads a file under a temporary name while its hash is computed on downloaded bytes, so it does not
+         * need to be read from a disk again to be verified. The file is moved to its final location only if its hash matches.
+         * A stream might fail at any point, the whole download is retried then, from the start of a file.
+         *
+         * @return false if a manifest entry does not have any hash so a file is downloaded without verification
+         */
+        private boolean downloadVerifying(final Path localPath, final RemoteObjectReference remoteObjectReference) throws Exception {
+            if (manifestEntry.hash == null) {
+                return false;
+            }
+
+            final Path downloadingPath = localPath.resolveSibling(localPath.getFileName() + DOWNLOADING_FILE_SUFFIX);
+
+            Files.createDirectories(localPath.getParent());
+
+            try {
+                getRetrier(restorer.request.retry, shouldCancel).submit(() -> {
+                    try (final InputStream stream = restorer.limit(restorer.downloadFileStream(remoteObjectReference), shouldCancel);
+                        final DigestingInputStream digestingStream = new DigestingInputStream(stream, hashSpec)) {
+                        Files.copy(digestingStream, downloadingPath, REPLACE_EXISTING);
+
+                        final BasicFileAttributes attributes = Files.readAttributes(downloadingPath, BasicFileAttributes.class);
+                        final String hash = digestingStream.getHash();
+
+                        if (!hash.equals(manifestEntry.hash)) {
+                            throw new HashVerificationException(format("hash of downloaded file %s (%s) does not match with expected hash %s",
+                                                                       remoteObjectReference.getObjectKey(),
+                                                                       hash,
+                                                                       manifestEntry.hash));
+                        }
+
+                        Files.move(downloadingPath, localPath, ATOMIC_MOVE);
+                        verifiedAttributes = attributes;
+                    } catch (final IOException ex) {
+                        // a partially downloaded file is not resumed
+                        Files.deleteIfExists(downloadingPath);
+                        throw new RetriableException(format("Unable to download %s", remoteObjectReference.getObjectKey()), ex);
+                    }
+
+                    return null;
+                });
+            } finally {
+                // on a failure, nothing is left behind so the file is downloaded again on the next try
+                Files.deleteIfExists(downloadingPath);
+            }
+
+            return true;
+        }
+
+        /**
+         * Verifies the hash of a file. Attributes of a file are read before it is hashed, so a file which was changed
+         * while it was hashed is not taken as verified.
+         */
+        private void verify(final Path file) throws Exception {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            new HashServiceImpl(hashSpec, restorer.getHashLedger()).verify(file, manifestEntry.hash);
+            verifiedAttributes = attributes;
+        }
+
+        /**
+         * @return attributes a local file had when its hash was verified by this unit, empty if it was not verified,
+         * e.g. when a manifest does not have its hash. A file which was moved after it was verified keeps its attributes.
+         */
+        public Optional<BasicFileAttributes> getVerifiedAttributes() {
+            return Optional.ofNullable(verifiedAttributes);
+        }
     }
 }
@@ -0,0 +1,273 @@
+package com.instaclustr.esop.impl.restore;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hashing;
+import com.instaclustr.esop.impl.StorageLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local cache of downloaded manifests so restoration phases run one after another, and repeated restorations,
+ * do not download and transfer the same manifest again.
+ *
+ * A manifest is cached under its storage location and its name, which contains a snapshot tag, a schema version and
+ * the time it was taken at. Manifests are never overwritten in a bucket, so a name identifies the content of a manifest.
+ * The latest manifest is still resolved by listing a bucket, so a newer backup of the same snapshot tag is not missed.
+ * The content of a cached manifest is validated against its checksum before it is used.
+ *
+ * The cache is bounded. Once a manifest is cached, manifests which were not used for longer than a maximal age are
+ * deleted, and then the least recently used ones until all manifests of the cache fit to a maximal size.
+ *
+ * The root of the cache is private to the user Esop runs as, it is created with permissions of its owner only.
+ * The cache is not used if its root is a symbolic link or if other users have any permissions to it, as they
+ * could plant a manifest to restore from into it.
+ */
+public class ManifestCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManifestCache.class);
+
+    private static final String CHECKSUM_SUFFIX = ".sha256";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Directory of the cache if it is not set, in the home directory of the user Esop runs as and not of Cassandra.
+     */
+    public static final Path DEFAULT_CACHE_ROOT = Paths.get(System.getProperty("user.home"), ".esop", "manifest-cache");
+
+    private static final Set<PosixFilePermission> PRIVATE_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(7);
+
+    private final Path cacheRoot;
+    private final Path cacheDir;
+    private final long maxSize;
+    private final long maxAge;
+
+    public ManifestCache(final Path cacheRoot, final StorageLocation storageLocation) {
+        this(cacheRoot, storageLocation, DEFAULT_MAX_SIZE, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * @param cacheRoot       root directory of the cache
+     * @param storageLocation storage location manifests are downloaded from
+     * @param maxSize         maximal size of all manifests in the cache, in bytes
+     * @param maxAge          maximal time since a manifest was used for the last time, in milliseconds
+     */
+    public ManifestCache(final Path cacheRoot, final StorageLocation storageLocation, final long maxSize, final long maxAge) {
+        this.cacheRoot = cacheRoot;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        this.cacheDir = cacheRoot.resolve(storageLocation.storageProvider)
+            .resolve(storageLocation.bucket)
+            .resolve(storageLocation.clusterId)
+            .resolve(storageLocation.datacenterId)
+            .resolve(storageLocation.nodeId);
+    }
+
+    /**
+     * Returns the latest manifest either from the cache or from a remote storage, in which case it is cached.
+     *
+     * @param restorer     restorer to resolve and download a manifest with
+     * @param remotePrefix prefix of manifests, relative to a node
+     * @param keyFilter    filter of keys of manifests
+     * @return content of the latest manifest
+     */
+    public String get(final Restorer restorer, final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
+        final String manifestName = restorer.resolveManifestName(remotePrefix, keyFilter);
+
+        if (!createPrivateRoot()) {
+            return restorer.downloadFileToString(restorer.objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(manifestName)));
+        }
+
+        final Path cachedManifest = cacheDir.resolve(manifestName);
+        final Optional<String> cached = read(cachedManifest);
+
+        if (cached.isPresent()) {
+            logger.info("Using cached manifest {}", cachedManifest);
+            touch(cachedManifest);
+            return cached.get();
+        }
+
+        final String manifest = restorer.downloadFileToString(restorer.objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(manifestName)));
+
+        write(cachedManifest, manifest);
+        evict();
+
+        return manifest;
+    }
+
+    /**
+     * Deletes manifests which were not used for longer than a maximal age and then the least recently used ones
+     * until the rest of them fits to a maximal size. The most recently used manifest is always kept.
+     */
+    public void evict() {
+        final List<Entry<Path, BasicFileAttributes>> cachedManifests = new ArrayList<>();
+
+        try (final Stream<Path> files = Files.walk(cacheRoot)) {
+            files.filter(file -> {
+                final String fileName = file.getFileName().toString();
+                return !fileName.endsWith(CHECKSUM_SUFFIX) && !fileName.endsWith(TEMP_SUFFIX);
+            }).forEach(file -> {
+                try {
+                    final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+                    if (attributes.isRegularFile()) {
+                        cachedManifests.add(new SimpleImmutableEntry<>(file, attributes));
+                    }
+                } catch (final IOException ex) {
+                    // deleted by another restoration in the meanwhile
+                }
+            });
+        } catch (final Exception ex) {
+            logger.warn("Unable to list cached manifests in {}: {}", cacheRoot, ex.getMessage());
+            return;
+        }
+
+        cachedManifests.sort(Comparator.comparing((Entry<Path, BasicFileAttributes> entry) -> entry.getValue().lastModifiedTime()).reversed());
+
+        final long now = System.currentTimeMillis();
+        long size = 0;
+
+        for (int i = 0; i < cachedManifests.size(); i++) {
+            final Path cachedManifest = cachedManifests.get(i).getKey();
+            final BasicFileAttributes attributes = cachedManifests.get(i).getValue();
+
+            size += attributes.size();
+
+            if (i > 0 && (size > maxSize || now - attributes.lastModifiedTime().toMillis() > maxAge)) {
+                try {
+                    // a manifest without its checksum is not considered to be cached
+                    Files.deleteIfExists(getChecksumFile(cachedManifest));
+                    Files.deleteIfExists(cachedManifest);
+                    logger.debug("Evicted cached manifest {}", cachedManifest);
+                } catch (final IOException ex) {
+                    logger.warn("Unable to evict cached manifest {}: {}", cachedManifest, ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the root of the cache accessible only by its owner, unless it exists.
+     *
+     * @return true if the root of the cache is a directory no other user has any permissions to
+     */
+    private boolean createPrivateRoot() {
+        try {
+            final boolean posix = cacheRoot.getFileSystem().supportedFileAttributeViews().contains("posix");
+
+            if (!Files.exists(cacheRoot, NOFOLLOW_LINKS)) {
+                if (posix) {
+                    Files.createDirectories(cacheRoot, PosixFilePermissions.asFileAttribute(PRIVATE_PERMISSIONS));
+                } else {
+                    Files.createDirectories(cacheRoot);
+                }
+            }
+
+            if (!Files.isDirectory(cacheRoot, NOFOLLOW_LINKS)) {
+                logger.warn("Manifest cache {} is not a directory, manifests are not cached.", cacheRoot);
+                return false;
+            }
+
+            if (posix && !PRIVATE_PERMISSIONS.containsAll(Files.getPosixFilePermissions(cacheRoot, NOFOLLOW_LINKS))) {
+                logger.warn("Manifest cache {} is accessible by other users, manifests are not cached.", cacheRoot);
+                return false;
+            }
+
+            return true;
+        } catch (final IOException ex) {
+            logger.warn("Unable to create manifest cache {}, manifests are not cached: {}", cacheRoot, ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Marks a manifest as recently used by its modification time.
+     */
+    private static void touch(final Path cachedManifest) {
+        try {
+            Files.setLastModifiedTime(cachedManifest, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException ex) {
+            logger.debug("Unable to update modification time of cached manifest {}: {}", cachedManifest, ex.getMessage());
+        }
+    }
+
+    private Optional<String> read(final Path cachedManifest) {
+        final Path checksumFile = getChecksumFile(cachedManifest);
+
+        if (!Files.exists(cachedManifest) || !Files.exists(checksumFile)) {
+            return Optional.empty();
+        }
+
+        try {
+            final String manifest = new String(Files.readAllBytes(cachedManifest), UTF_8);
+            final String checksum = new String(Files.readAllBytes(checksumFile), UTF_8).trim();
+
+            if (checksum(manifest).equals(checksum)) {
+                return Optional.of(manifest);
+            }
+
+            logger.warn("Cached manifest {} does not match its checksum, it will be downloaded again.", cachedManifest);
+            Files.deleteIfExists(checksumFile);
+            Files.deleteIfExists(cachedManifest);
+        } catch (final IOException ex) {
+            logger.warn("Unable to read cached manifest {}: {}", cachedManifest, ex.getMessage());
+        }
+
+        return Optional.empty();
+    }
+
+    private void write(final Path cachedManifest, final String manifest) {
+        final Path checksumFile = getChecksumFile(cachedManifest);
+
+        try {
+            Files.createDirectories(cachedManifest.getParent());
+
+            // a checksum is written as the last one, a manifest without it is not considered to be cached
+            Files.deleteIfExists(checksumFile);
+            writeAtomically(cachedManifest, manifest);
+            writeAtomically(checksumFile, checksum(manifest));
+        } catch (final IOException ex) {
+            // failure to cache a manifest does not fail a restoration
+            logger.warn("Unable to cache manifest {}: {}", cachedManifest, ex.getMessage());
+        }
+    }
+
+    private static void writeAtomically(final Path path, final String content) throws IOException {
+        final Path tempFile = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        Files.write(tempFile, content.getBytes(UTF_8));
+        Files.move(tempFile, path, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    private static Path getChecksumFile(final Path cachedManifest) {
+        return cachedManifest.resolveSibling(cachedManifest.getFileName() + CHECKSUM_SUFFIX);
+    }
+
+    private static String checksum(final String manifest) {
+        return Hashing.sha256().hashString(manifest, UTF_8).toString();
+    }
+}
@@ -0,0 +1,201 @@
+package com.instaclustr.esop.impl.restore;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.instaclustr.esop.impl.RemoteObjectReference;
+import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
+import com.instaclustr.esop.impl.retry.RetrierFactory;
+import com.instaclustr.esop.impl.retry.RetrySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a remote object by byte ranges fetched concurrently, independently of a storage provider.
+ *
+ * A target file is preallocated to the size of an object and every range is written to its position,
+ * a range which fails to be downloaded is retried on its own. Once an operation is cancelled, ranges which
+ * were not downloaded yet are not started and ranges being downloaded are stopped.
+ *
+ * Ranges of all objects are downloaded by a pool of a restorer which has as many threads as there are concurrent connections.
+ * Ranged downloads are off by default, they are used only when the parallelism of ranges of one object is bigger than 1.
+ */
+public class RangedDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(RangedDownloader.class);
+
+    private static final int BUFFER_SIZE = 128 * 1024;
+
+    public static final int DEFAULT_RANGE_SIZE = 64;
+    public static final int DEFAULT_PARALLELISM = 1;
+
+    private final Restorer restorer;
+    private final RetrySpec retrySpec;
+    private final long rangeSize;
+    private final int parallelism;
+    private final AtomicBoolean shouldCancel;
+
+    public RangedDownloader(final Restorer restorer, final RetrySpec retrySpec, final long rangeSize, final int parallelism) {
+        this(restorer, retrySpec, rangeSize, parallelism, new AtomicBoolean());
+    }
+
+    /**
+     * @param restorer     restorer to download ranges with
+     * @param retrySpec    specification of retries of a failed range, ranges are not retried if null
+     * @param rangeSize    size of a range in bytes
+     * @param parallelism  number of ranges of one object to download concurrently
+     * @param shouldCancel flag of an operation a download belongs to
+     */
+    public RangedDownloader(final Restorer restorer,
+                            final RetrySpec retrySpec,
+                            final long rangeSize,
+                            final int parallelism,
+                            final AtomicBoolean shouldCancel) {
+        this.restorer = restorer;
+        this.retrySpec = retrySpec;
+        this.rangeSize = Math.max(1, rangeSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.shouldCancel = shouldCancel;
+    }
+
+    public static RangedDownloader forRestorer(final Restorer restorer, final AtomicBoolean shouldCancel) {
+        final BaseRestoreOperationRequest request = restorer.request;
+
+        final long rangeSize = (long) (request.downloadRangeSize == null ? DEFAULT_RANGE_SIZE : request.downloadRangeSize) * 1024 * 1024;
+        final int parallelism = request.downloadRangeParallelism == null ? DEFAULT_PARALLELISM : request.downloadRangeParallelism;
+
+        return new RangedDownloader(restorer, request.retry, rangeSize, parallelism, shouldCancel);
+    }
+
+    /**
+     * @param size size of an object to download
+     * @return true if an object of given size should be downloaded by ranges
+     */
+    public boolean shouldDownload(final long size) {
+        return parallelism > 1 && size > rangeSize;
+    }
+
+    /**
+     * Downloads an object to a local file, the file is deleted if any range fails to be downloaded.
+     *
+     * @param objectReference reference of an object to download
+     * @param localPath       file to download an object to
+     * @param size            size of an object
+     */
+    public void download(final RemoteObjectReference objectReference, final Path localPath, final long size) throws Exception {
+        Files.createDirectories(localPath.getParent());
+
+        final int ranges = (int) ((size + rangeSize - 1) / rangeSize);
+        final ExecutorService executorService = restorer.getRangeExecutorService();
+        // ranges of one object are downloaded by at most this number of threads of a shared pool
+        final Semaphore rangePermits = new Semaphore(parallelism);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final List<Future<?>> futures = new ArrayList<>(ranges);
+
+        boolean downloaded = false;
+
+        try (final RandomAccessFile file = new RandomAccessFile(localPath.toFile(), "rw")) {
+            file.setLength(size);
+
+            final FileChannel channel = file.getChannel();
+
+            for (long offset = 0; offset < size && !failed.get(); offset += rangeSize) {
+                final long rangeOffset = offset;
+                final long rangeLength = Math.min(rangeSize, size - offset);
+
+                rangePermits.acquire();
+
+                futures.add(executorService.submit(() -> {
+                    try {
+                        return RetrierFactory.getRetrier(retrySpec, shouldCancel).submit(() -> {
+                            downloadRange(objectReference, channel, rangeOffset, rangeLength);
+                            return null;
+                        });
+                    } catch (final Exception ex) {
+                        failed.set(true);
+                        throw ex;
+                    } finally {
+                        rangePermits.release();
+                    }
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException ex) {
+                    if (ex.getCause() instanceof Exception) {
+                        throw (Exception) ex.getCause();
+                    }
+
+                    throw ex;
+                }
+            }
+
+            channel.force(false);
+            downloaded = true;
+
+            logger.debug("Downloaded {} by {} ranges.", objectReference.canonicalPath, ranges);
+        } finally {
+            if (!downloaded) {
+                futures.forEach(future -> future.cancel(true));
+                Files.deleteIfExists(localPath);
+            }
+        }
+    }
+
+    private void downloadRange(final RemoteObjectReference objectReference,
+                               final FileChannel channel,
+                               final long offset,
+                               final long length) throws Exception {
+        checkCancelled(objectReference);
+
+        try (final InputStream stream = restorer.limit(restorer.downloadFileRange(objectReference, offset, length), shouldCancel)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+
+            long position = offset;
+            long remaining = length;
+
+            while (remaining > 0) {
+                checkCancelled(objectReference);
+
+                final int read = stream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+
+                if (read < 0) {
+                    throw new RetriableException(format("Range %s-%s of %s has ended prematurely at %s",
+                                                        offset, offset + length - 1, objectReference.canonicalPath, position));
+                }
+
+                final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+
+                remaining -= read;
+            }
+        } catch (final IOException ex) {
+            throw new RetriableException(format("Unable to download range %s-%s of %s", offset, offset + length - 1, objectReference.canonicalPath), ex);
+        }
+    }
+
+    private void checkCancelled(final RemoteObjectReference objectReference) {
+        if (shouldCancel.get()) {
+            throw new IllegalStateException(format("Download of %s was cancelled", objectReference.canonicalPath));
+        }
+    }
+}
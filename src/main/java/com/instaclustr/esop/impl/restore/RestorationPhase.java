@@ -3,26 +3,35 @@ package com.instaclustr.esop.impl.restore;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.CLEANUP;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.CLUSTER_HEALTHCHECK;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.DOWNLOAD;
+import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.DOWNLOAD_AND_IMPORT;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.IMPORT;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.INIT;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.TRUNCATE;
+import static com.instaclustr.esop.impl.AbstractTracker.Unit.State.FINISHED;
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.Multimap;
 import com.instaclustr.cassandra.CassandraVersion;
 import com.instaclustr.esop.ManifestEnricher;
 import com.instaclustr.esop.impl.AbstractTracker.Session;
@@ -33,6 +42,9 @@ import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl._import.ImportOperation;
 import com.instaclustr.esop.impl._import.ImportOperationRequest;
+import com.instaclustr.esop.impl.hash.HashLedger;
+import com.instaclustr.esop.impl.hash.HashService;
+import com.instaclustr.esop.impl.hash.HashServiceImpl;
 import com.instaclustr.esop.impl.interaction.CassandraSameTokens;
 import com.instaclustr.esop.impl.interaction.CassandraSchemaVersion;
 import com.instaclustr.esop.impl.interaction.CassandraState;
@@ -42,6 +54,8 @@ import com.instaclustr.esop.impl.interaction.FailureDetector;
 import com.instaclustr.esop.impl.refresh.RefreshOperation;
 import com.instaclustr.esop.impl.refresh.RefreshOperationRequest;
 import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadUnit;
+import com.instaclustr.esop.impl.restore.RestorationStrategy.RestorationStrategyType;
+import com.instaclustr.esop.impl.restore.TableActionExecutor.TableAction;
 import com.instaclustr.esop.impl.restore.strategy.RestorationContext;
 import com.instaclustr.esop.impl.truncate.TruncateOperation;
 import com.instaclustr.esop.impl.truncate.TruncateOperationRequest;
@@ -84,6 +98,48 @@ public abstract class RestorationPhase {
 
     public abstract void execute() throws RestorationPhaseException;
 
+    protected TableActionExecutor createTableActionExecutor() {
+        return new TableActionExecutor(ctxt.operation.request.tableParallelism, ctxt.operation.request.keyspaceTableParallelism);
+    }
+
+    /**
+     * Makes hardlinks of downloaded files in Cassandra data directory, a link has the same path relative to data directory
+     * as its file has relative to a download directory. Once a link fails to be created, all other files are not linked
+     * and links which were made already are deleted.
+     *
+     * @param files downloaded files to link
+     * @param logger logger of a phase
+     */
+    protected void link(final List<Path> files, final Logger logger) throws IOException {
+        final Path sourceDir = ctxt.operation.request.importing.sourceDir;
+        final List<Path> successfulLinks = new ArrayList<>();
+
+        for (final Path existing : files) {
+            final Path link = ctxt.operation.request.cassandraDirectory.resolve("data").resolve(sourceDir.relativize(existing));
+
+            try {
+                logger.debug(format("linking from %s to %s", existing, link));
+                Files.createLink(link, existing);
+                successfulLinks.add(link);
+            } catch (final Exception ex) {
+                logger.error(format("Unable to create a hardlink from %s to %s, skipping the linking of all other resources and deleting already linked ones.",
+                                    existing.toAbsolutePath().toString(),
+                                    link.toAbsolutePath().toString()),
+                             ex);
+
+                for (final Path linked : successfulLinks) {
+                    try {
+                        Files.deleteIfExists(linked);
+                    } catch (final Exception deletionException) {
+                        logger.error(format("It is not possible to delete link %s.", linked.toString()), deletionException);
+                    }
+                }
+
+                throw ex;
+            }
+        }
+    }
+
     public static final class RestorationPhaseException extends Exception {
 
         public RestorationPhaseException(final String message) {
@@ -113,6 +169,7 @@ public abstract class RestorationPhase {
         DOWNLOAD,
         TRUNCATE,
         IMPORT,
+        DOWNLOAD_AND_IMPORT,
         CLEANUP,
         UNKNOWN;
 
@@ -264,32 +321,7 @@ public abstract class RestorationPhase {
                 logger.info("Downloading phase has started.");
 
                 final RestoreOperationRequest request = ctxt.operation.request;
-
-                if (!ctxt.operation.request.skipBucketVerification) {
-                    try (final BucketService bucketService = ctxt.bucketServiceFactoryMap.get(request.storageLocation.storageProvider).createBucketService(request)) {
-                        bucketService.checkBucket(request.storageLocation.bucket, false);
-                    }
-                }
-
-                final String schemaVersion = new CassandraSchemaVersion(ctxt.jmx).act();
-
-                final Manifest manifest = RestorationUtilities.downloadManifest(request, ctxt.restorer, schemaVersion, ctxt.objectMapper);
-
-                // verify that we are downloading data for same token so data fit a node
-                new CassandraSameTokens(ctxt.jmx, manifest.getTokens()).act();
-
-                FileUtils.createDirectory(ctxt.operation.request.importing.sourceDir);
-
-                new ManifestEnricher().enrich(ctxt.cassandraData, manifest, ctxt.operation.request.importing.sourceDir);
-
-                // looking into downloaded manifest, download only these sstables for keyspaces / tables
-                // which were specified in request in "entities"
-                // there will be only entries in this list which are backed by existing keyspace on disk
-                final List<ManifestEntry> manifestFiles = manifest.getManifestFiles(request.entities,
-                                                                                    false,  // not possible to restore system keyspace on a live cluster
-                                                                                    false, // not possible to restore system_auth on a live cluster
-                                                                                    false,  // no new cluster
-                                                                                    false); // with schemas
+                final List<ManifestEntry> manifestFiles = resolveFilesToDownload(ctxt);
 
                 Session<DownloadUnit> session = null;
 
@@ -310,16 +342,54 @@ public abstract class RestorationPhase {
                         logger.error(message);
                         throw new IOException(format("Unable to download files successfully: %s", message));
                     }
+
+                    DataVerification.recordVerified(ctxt, session.getUnits());
                 } finally {
                     ctxt.downloadTracker.removeSession(session);
                     session = null;
                 }
+
                 logger.info("Downloading phase was successfully completed.");
             } catch (final Exception ex) {
                 logger.error("Downloading phase has failed: {}", ex.getMessage());
                 throw RestorationPhaseException.construct(ex, getRestorationPhaseType());
             }
         }
+
+        /**
+         * Downloads and enriches a manifest to restore from.
+         *
+         * @return files of tables to restore, their local files are in a download directory
+         */
+        static List<ManifestEntry> resolveFilesToDownload(final RestorationContext ctxt) throws Exception {
+            final RestoreOperationRequest request = ctxt.operation.request;
+
+            if (!ctxt.operation.request.skipBucketVerification) {
+                try (final BucketService bucketService = ctxt.bucketServiceFactoryMap.get(request.storageLocation.storageProvider).createBucketService(request)) {
+                    bucketService.checkBucket(request.storageLocation.bucket, false);
+                }
+            }
+
+            final String schemaVersion = new CassandraSchemaVersion(ctxt.jmx).act();
+
+            final Manifest manifest = RestorationUtilities.downloadManifest(request, ctxt.restorer, schemaVersion, ctxt.objectMapper);
+
+            // verify that we are downloading data for same token so data fit a node
+            new CassandraSameTokens(ctxt.jmx, manifest.getTokens()).act();
+
+            FileUtils.createDirectory(ctxt.operation.request.importing.sourceDir);
+
+            new ManifestEnricher().enrich(ctxt.cassandraData, manifest, ctxt.operation.request.importing.sourceDir);
+
+            // looking into downloaded manifest, download only these sstables for keyspaces / tables
+            // which were specified in request in "entities"
+            // there will be only entries in this list which are backed by existing keyspace on disk
+            return manifest.getManifestFiles(request.entities,
+                                             false,  // not possible to restore system keyspace on a live cluster
+                                             false, // not possible to restore system_auth on a live cluster
+                                             false,  // no new cluster
+                                             false); // with schemas
+        }
     }
 
     /**
@@ -362,20 +432,14 @@ public abstract class RestorationPhase {
                     logger.info(format("Going to truncate these tables: %s", toTruncate.getKeyspacesAndTables().toString()));
                 }
 
-                final Map<String, String> truncateFailuresMap = new HashMap<>();
+                final Map<String, String> truncateFailuresMap = createTableActionExecutor().execute(toTruncate.getKeyspacesAndTables().entries(), table -> {
+                    final TruncateOperation op = new TruncateOperation(ctxt.jmx, new TruncateOperationRequest(table.getKey(), table.getValue()));
+                    op.run();
 
-                for (final Map.Entry<String, String> request : toTruncate.getKeyspacesAndTables().entries()) {
-                    try {
-                        final TruncateOperation op = new TruncateOperation(ctxt.jmx, new TruncateOperationRequest(request.getKey(), request.getValue()));
-                        op.run();
-
-                        if (!op.errors.isEmpty()) {
-                            throw op.errors.get(0).throwable;
-                        }
-                    } catch (final Throwable t) {
-                        truncateFailuresMap.put(format("%s.%s", request.getKey(), request.getValue()), t.getMessage());
+                    if (!op.errors.isEmpty()) {
+                        throw op.errors.get(0).throwable;
                     }
-                }
+                });
 
                 if (!truncateFailuresMap.isEmpty()) {
                     throw new RestorationPhaseException(format("Some tables were unable to be truncated: %s", truncateFailuresMap.toString()));
@@ -430,7 +494,7 @@ public abstract class RestorationPhase {
                                                             + "please consult the logs to see the details" + dataVerification.toString());
                 }
 
-                final List<ImportOperationRequest> imports = databaseEntitiesToRestore
+                final Map<Entry<String, String>, ImportOperationRequest> imports = databaseEntitiesToRestore
                     .getKeyspacesAndTables()
                     .entries()
                     .stream()
@@ -444,22 +508,17 @@ public abstract class RestorationPhase {
                         final Path tablePath = ctxt.operation.request.importing.sourceDir.resolve(keyspace).resolve(tableWithId);
                         return ctxt.operation.request.importing.copy(keyspace, table, tablePath);
                     })
-                    .filter(request -> Files.isDirectory(request.tablePath)).collect(toList());
+                    .filter(request -> Files.isDirectory(request.tablePath))
+                    .collect(toMap(request -> new SimpleImmutableEntry<>(request.keyspace, request.table), request -> request));
 
-                final Map<String, String> failedImports = new HashMap<>();
+                final Map<String, String> failedImports = createTableActionExecutor().execute(imports.keySet(), table -> {
+                    final ImportOperation op = new ImportOperation(ctxt.jmx, ctxt.cassandraVersion, imports.get(table));
+                    op.run();
 
-                for (final ImportOperationRequest request : imports) {
-                    try {
-                        final ImportOperation op = new ImportOperation(ctxt.jmx, ctxt.cassandraVersion, request);
-                        op.run();
-
-                        if (!op.errors.isEmpty()) {
-                            throw op.errors.get(0).throwable;
-                        }
-                    } catch (final Throwable t) {
-                        failedImports.put(request.keyspace + "." + request.table, t.getMessage());
+                    if (!op.errors.isEmpty()) {
+                        throw op.errors.get(0).throwable;
                     }
-                }
+                });
 
                 if (!failedImports.isEmpty()) {
                     throw new RestorationPhaseException(format("Failed tables to import: %s", failedImports));
@@ -506,73 +565,201 @@ public abstract class RestorationPhase {
                     throw new RestorationPhaseException("Some local files were corrupted or they are missing, please consult the logs to see the details.");
                 }
 
-                final List<Path> downloadedFiles = CassandraData.list(ctxt.operation.request.importing.sourceDir);
+                final Path verificationLedger = DataVerification.getVerificationLedgerFile(ctxt);
+                final List<Path> downloadedFiles = CassandraData.list(ctxt.operation.request.importing.sourceDir)
+                    .stream()
+                    .filter(file -> !file.toAbsolutePath().normalize().equals(verificationLedger))
+                    .collect(toList());
 
                 // make links
 
-                boolean failedLinkage = false;
-                final List<Path> successfulLinks = new ArrayList<>();
+                try {
+                    link(downloadedFiles, logger);
+                } catch (final Exception ex) {
+                    throw new RestorationPhaseException("Hardlinking phase finished with errors, the linking of downloaded SSTables to Cassandra directory has failed.", ex);
+                }
 
-                for (final Path existing : downloadedFiles) {
+                final Map<String, String> failedRefreshes = createTableActionExecutor().execute(databaseEntitiesToRestore.getKeyspacesAndTables().entries(), table -> {
+                    final RefreshOperation op = new RefreshOperation(ctxt.jmx, new RefreshOperationRequest(table.getKey(), table.getValue()));
+                    op.run();
 
-                    if (failedLinkage) {
-                        break;
+                    if (!op.errors.isEmpty()) {
+                        throw op.errors.get(0).throwable;
                     }
+                });
 
-                    final Path link = ctxt.operation.request.cassandraDirectory.resolve("data").resolve(ctxt.operation.request.importing.sourceDir.relativize(existing));
+                if (!failedRefreshes.isEmpty()) {
+                    throw new RestorationPhaseException(format("Failed tables to refresh: %s", failedRefreshes));
+                }
 
-                    try {
-                        logger.debug(format("linking from %s to %s", existing, link));
-                        Files.createLink(link, existing);
-                        successfulLinks.add(link);
-                    } catch (final Exception ex) {
-                        logger.error(format("Unable to create a hardlink from %s to %s, skipping the linking of all other resources and deleting already linked ones.",
-                                            existing.toAbsolutePath().toString(),
-                                            link.toAbsolutePath().toString()),
-                                     ex);
-
-                        failedLinkage = true;
-                    }
+                logger.info("Hardlinking phase was finished successfully.");
+            } catch (final Exception ex) {
+                logger.error("Hardlinking phase has failed: {}", ex.getMessage());
+                throw RestorationPhaseException.construct(ex, getRestorationPhaseType());
+            }
+        }
+    }
+
+    /**
+     * In this phase, downloading and importing are pipelined. A table is verified and imported (or its files are hard-linked
+     * and it is refreshed, for {@link RestorationStrategyType#HARDLINKS}) as soon as all its files are downloaded, while files
+     * of other tables are still being downloaded, so restored tables become available one by one instead of all at the end.
+     *
+     * This phase replaces DOWNLOAD and IMPORT phases, tables have to be truncated by TRUNCATE phase before it is run
+     * as truncation of a table after it was imported on some node would delete its restored data. When downloading of data
+     * is skipped, all tables are restored at once from files which were downloaded before.
+     */
+    public static class PipelinedImportingPhase extends RestorationPhase {
+
+        private static final Logger logger = LoggerFactory.getLogger(PipelinedImportingPhase.class);
+
+        public PipelinedImportingPhase(final RestorationContext ctxt) throws Exception {
+            super(ctxt, true);
+        }
+
+        @Override
+        public RestorationPhaseType getRestorationPhaseType() {
+            return DOWNLOAD_AND_IMPORT;
+        }
+
+        @Override
+        public void execute() throws RestorationPhaseException {
+            try {
+                logger.info("Pipelined importing phase has started.");
+
+                final RestoreOperationRequest request = ctxt.operation.request;
+                final boolean hardlinking = request.restorationStrategyType == RestorationStrategyType.HARDLINKS;
+
+                if (!hardlinking && !CassandraVersion.isFour(ctxt.cassandraVersion)) {
+                    throw new OperationFailureException(format("Underlying version of Cassandra is not supported to import SSTables: %s. Use this method "
+                                                                   + "only if you run Cassandra 4 and above", ctxt.cassandraVersion));
                 }
 
-                if (failedLinkage && !successfulLinks.isEmpty()) {
-                    for (final Path linked : successfulLinks) {
-                        try {
-                            Files.deleteIfExists(linked);
-                        } catch (final Exception ex) {
-                            logger.error(format("It is not possible to delete link %s.", linked.toString()), ex);
-                        }
+                final List<ManifestEntry> manifestFiles = DownloadingPhase.resolveFilesToDownload(ctxt);
+                final Multimap<String, String> tablesToRestore = ctxt.cassandraData.getDatabaseEntitiesToProcessForRestore().getKeyspacesAndTables();
+                final TablePipeline<DownloadUnit> pipeline = new TablePipeline<>(manifestFiles, tablesToRestore);
+
+                final TableActionExecutor tableActionExecutor = createTableActionExecutor();
+                // tables are verified one by one, all of them share one pool
+                final ForkJoinPool verificationPool = DataVerification.createVerificationPool(ctxt);
+
+                final TableAction tableAction = table -> {
+                    final List<ManifestEntry> files = pipeline.getFiles(table);
+
+                    DataVerification.recordVerified(ctxt, pipeline.getFinishedUnits(table));
+
+                    final DataVerification dataVerification = new DataVerification(ctxt).verify(files, verificationPool);
+
+                    if (dataVerification.hasErrors()) {
+                        throw new RestorationPhaseException("Some local files were corrupted or they are missing: " + dataVerification.toString());
                     }
 
-                    throw new RestorationPhaseException("Hardlinking phase finished with errors, the linking of downloaded SSTables to Cassandra directory has failed.");
-                } else {
-                    final Map<String, String> failedRefreshes = new HashMap<>();
-
-                    for (final Entry<String, String> entry : databaseEntitiesToRestore.getKeyspacesAndTables().entries()) {
-                        try {
-                            final RefreshOperation op = new RefreshOperation(ctxt.jmx, new RefreshOperationRequest(entry.getKey(), entry.getValue()));
-                            op.run();
-
-                            if (!op.errors.isEmpty()) {
-                                throw op.errors.get(0).throwable;
-                            }
-                        } catch (final Throwable t) {
-                            failedRefreshes.put(entry.getKey() + "." + entry.getValue(), t.getMessage());
-                        }
+                    if (hardlinking) {
+                        linkAndRefresh(table);
+                    } else {
+                        importTable(table);
                     }
 
-                    if (!failedRefreshes.isEmpty()) {
-                        throw new RestorationPhaseException(format("Failed tables to refresh: %s", failedRefreshes));
+                    logger.info("Table {}.{} was restored.", table.getKey(), table.getValue());
+                };
+
+                try {
+                    if (request.noDownloadData) {
+                        logger.info("Skipping downloading of data, {} tables are restored from files already downloaded.", pipeline.getTables().size());
+                        pipeline.submitAll(tableActionExecutor, tableAction);
+                    } else {
+                        logger.info("Going to download {} files of {} tables, each table is imported as soon as all its files are downloaded.",
+                                    manifestFiles.size(),
+                                    pipeline.getTables().size());
+
+                        download(manifestFiles, pipeline, tableActionExecutor, tableAction);
                     }
 
-                    logger.info("Hardlinking phase was finished successfully.");
+                    final Map<String, String> failedImports = tableActionExecutor.awaitFailures();
+
+                    if (!failedImports.isEmpty()) {
+                        throw new RestorationPhaseException(format("Failed tables to restore: %s", failedImports));
+                    }
+                } finally {
+                    verificationPool.shutdownNow();
                 }
-            } catch (
-                final Exception ex) {
-                logger.error("Hardlinking phase has failed: {}", ex.getMessage());
+
+                logger.info("Pipelined importing phase was finished successfully.");
+            } catch (final Exception ex) {
+                logger.error("Pipelined importing phase has failed: {}", ex.getMessage());
                 throw RestorationPhaseException.construct(ex, getRestorationPhaseType());
             }
         }
+
+        private void download(final List<ManifestEntry> manifestFiles,
+                              final TablePipeline<DownloadUnit> pipeline,
+                              final TableActionExecutor tableActionExecutor,
+                              final TableAction tableAction) throws Exception {
+            final RestoreOperationRequest request = ctxt.operation.request;
+
+            Session<DownloadUnit> session = null;
+
+            try {
+                session = ctxt.downloadTracker.submit(ctxt.restorer,
+                                                      ctxt.operation,
+                                                      manifestFiles,
+                                                      request.snapshotTag,
+                                                      request.concurrentConnections);
+
+                pipeline.attach(session, tableActionExecutor, tableAction);
+
+                session.waitUntilConsideredFinished();
+                ctxt.downloadTracker.cancelIfNecessary(session);
+
+                final List<DownloadUnit> failedUnits = session.getFailedUnits();
+
+                if (!failedUnits.isEmpty()) {
+                    final String message = failedUnits.stream().map(unit -> unit.getManifestEntry().objectKey.toString()).collect(Collectors.joining(","));
+                    logger.error(message);
+                    throw new IOException(format("Unable to download files successfully: %s", message));
+                }
+            } catch (final Exception ex) {
+                // tables which were fully downloaded are still restored
+                final Map<String, String> failedImports = tableActionExecutor.awaitFailures();
+
+                if (!failedImports.isEmpty()) {
+                    logger.error("Failed tables to restore: {}", failedImports);
+                }
+
+                throw ex;
+            } finally {
+                ctxt.downloadTracker.removeSession(session);
+                session = null;
+            }
+        }
+
+        private Path getDownloadedTablePath(final Entry<String, String> table) {
+            final String tableId = ctxt.cassandraData.getTableId(table.getKey(), table.getValue())
+                .orElseThrow(() -> new IllegalStateException(format("Unable to find table id for %s.%s", table.getKey(), table.getValue())));
+
+            return ctxt.operation.request.importing.sourceDir.resolve(table.getKey()).resolve(format("%s-%s", table.getValue(), tableId));
+        }
+
+        private void importTable(final Entry<String, String> table) throws Throwable {
+            final ImportOperationRequest request = ctxt.operation.request.importing.copy(table.getKey(), table.getValue(), getDownloadedTablePath(table));
+            final ImportOperation op = new ImportOperation(ctxt.jmx, ctxt.cassandraVersion, request);
+            op.run();
+
+            if (!op.errors.isEmpty()) {
+                throw op.errors.get(0).throwable;
+            }
+        }
+
+        private void linkAndRefresh(final Entry<String, String> table) throws Throwable {
+            link(CassandraData.list(getDownloadedTablePath(table)), logger);
+
+            final RefreshOperation op = new RefreshOperation(ctxt.jmx, new RefreshOperationRequest(table.getKey(), table.getValue()));
+            op.run();
+
+            if (!op.errors.isEmpty()) {
+                throw op.errors.get(0).throwable;
+            }
+        }
     }
 
     public static class CleaningPhase extends RestorationPhase {
@@ -696,9 +883,15 @@ public abstract class RestorationPhase {
 
         private static final Logger logger = LoggerFactory.getLogger(DataVerification.class);
 
+        /**
+         * Name of a ledger in a download directory with hashes of files which were verified upon their download.
+         */
+        public static final String VERIFICATION_LEDGER = ".verification-ledger";
+
         private final RestorationContext ctxt;
-        public final List<String> nonExistingFiles = new ArrayList<>();
-        public final List<String> corruptedFiles = new ArrayList<>();
+        // files are verified in parallel
+        public final List<String> nonExistingFiles = Collections.synchronizedList(new ArrayList<>());
+        public final List<String> corruptedFiles = Collections.synchronizedList(new ArrayList<>());
 
         public DataVerification(final RestorationContext ctxt) {
             this.ctxt = ctxt;
@@ -708,29 +901,117 @@ public abstract class RestorationPhase {
             return !nonExistingFiles.isEmpty() || !corruptedFiles.isEmpty();
         }
 
-        public DataVerification verify(final Manifest manifest, final DatabaseEntities entities) {
-            final List<ManifestEntry> entries = manifest.getManifestFiles(entities, false, false,false, false);
+        public static Path getVerificationLedgerFile(final RestorationContext ctxt) {
+            return ctxt.operation.request.importing.sourceDir.resolve(VERIFICATION_LEDGER).toAbsolutePath().normalize();
+        }
+
+        /**
+         * @return verification ledger of a restoration, it is held by its context so it is loaded once per restoration
+         */
+        public static HashLedger getVerificationLedger(final RestorationContext ctxt) {
+            synchronized (ctxt) {
+                if (ctxt.verificationLedger == null) {
+                    ctxt.verificationLedger = HashLedger.forFile(getVerificationLedgerFile(ctxt));
+                }
 
-            for (final ManifestEntry entry : entries) {
-                if (!Files.exists(entry.localFile)) {
-                    logger.error("File to import does not exist: " + entry.localFile.toAbsolutePath().toString());
-                    nonExistingFiles.add(entry.localFile.toAbsolutePath().toString());
+                return ctxt.verificationLedger;
+            }
+        }
+
+        /**
+         * Records hashes of files which were verified by a download tracker. A file is recorded only if its unit has
+         * finished and it has verified its hash, and only if the file was not changed since then.
+         */
+        public static void recordVerified(final RestorationContext ctxt, final List<DownloadUnit> units) {
+            final HashLedger ledger = getVerificationLedger(ctxt);
+            final String algorithm = ctxt.downloadTracker.getHashSpec().algorithm.toString();
+
+            for (final DownloadUnit unit : units) {
+                if (unit == null || unit.getState() != FINISHED) {
                     continue;
                 }
 
-                if (entry.hash != null) {
-                    try {
-                        this.ctxt.hashService.verify(entry.localFile, entry.hash);
-                    } catch (final Exception ex) {
-                        logger.error(ex.getMessage());
-                        corruptedFiles.add(entry.localFile.toString());
-                    }
+                final ManifestEntry entry = unit.getManifestEntry();
+
+                if (entry.type == ManifestEntry.Type.FILE && entry.hash != null) {
+                    unit.getVerifiedAttributes().ifPresent(attributes -> ledger.put(entry.localFile, attributes, algorithm, entry.hash));
                 }
             }
 
+            logger.debug("Verification ledger {} holds {} records.", ledger.getLedgerFile(), ledger.size());
+        }
+
+        public DataVerification verify(final Manifest manifest, final DatabaseEntities entities) {
+            final List<ManifestEntry> entries = manifest.getManifestFiles(entities, false, false,false, false);
+
+            ctxt.operation.progress = 0;
+
+            final ForkJoinPool pool = createVerificationPool(ctxt);
+
+            try {
+                return verify(entries, pool, verifiedEntries -> ctxt.operation.progress = verifiedEntries / (float) entries.size());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        /**
+         * Verifies given entries only, e.g. files of one table, without reporting a progress of an operation.
+         *
+         * @param pool pool to verify entries in, shared by verifications of all tables, it is not shut down
+         */
+        public DataVerification verify(final List<ManifestEntry> entries, final ForkJoinPool pool) {
+            return verify(entries, pool, verifiedEntries -> {});
+        }
+
+        /**
+         * @return pool to verify files in, sized by verification parallelism of a request
+         */
+        public static ForkJoinPool createVerificationPool(final RestorationContext ctxt) {
+            final Integer verificationParallelism = ctxt.operation.request.verificationParallelism;
+            return new ForkJoinPool(verificationParallelism == null ? Runtime.getRuntime().availableProcessors() : Math.max(1, verificationParallelism));
+        }
+
+        private DataVerification verify(final List<ManifestEntry> entries, final ForkJoinPool pool, final IntConsumer progress) {
+            // files which did not change since they were verified upon download are not hashed again
+            final HashService hashService = ctxt.operation.request.fullVerification
+                ? ctxt.hashService
+                : new HashServiceImpl(ctxt.downloadTracker.getHashSpec(), getVerificationLedger(ctxt));
+
+            final AtomicInteger verifiedEntries = new AtomicInteger();
+
+            try {
+                pool.submit(() -> entries.parallelStream().forEach(entry -> {
+                    verify(entry, hashService);
+                    progress.accept(verifiedEntries.incrementAndGet());
+                })).get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Verification of local files was interrupted.", ex);
+            } catch (final ExecutionException ex) {
+                throw new IllegalStateException(format("Unable to verify local files: %s", ex.getCause().getMessage()), ex.getCause());
+            }
+
             return this;
         }
 
+        private void verify(final ManifestEntry entry, final HashService hashService) {
+            if (!Files.exists(entry.localFile)) {
+                logger.error("File to import does not exist: " + entry.localFile.toAbsolutePath().toString());
+                nonExistingFiles.add(entry.localFile.toAbsolutePath().toString());
+                return;
+            }
+
+            if (entry.hash != null) {
+                try {
+                    hashService.verify(entry.localFile, entry.hash);
+                } catch (final Exception ex) {
+                    logger.error(ex.getMessage());
+                    corruptedFiles.add(entry.localFile.toString());
+                }
+            }
+        }
+
         @Override
         public String toString() {
             return MoreObjects.toStringHelper(this)
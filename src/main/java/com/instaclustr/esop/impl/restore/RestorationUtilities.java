@@ -1,22 +1,125 @@
 package com.instaclustr.esop.impl.restore;
 
+import static java.util.stream.Collectors.toList;
+
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.instaclustr.esop.impl.Manifest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class RestorationUtilities {
 
+    private static final Logger logger = LoggerFactory.getLogger(RestorationUtilities.class);
+
+    private static final Path MANIFESTS = Paths.get("manifests");
+
     public static Manifest downloadManifest(final RestoreOperationRequest request,
                                             final Restorer restorer,
                                             final String schemaVersion,
                                             final ObjectMapper objectMapper) throws Exception {
 
-        final String manifestAsString = restorer.downloadManifestToString(Paths.get("manifests"),
-                                                                          new ManifestFilteringPredicate(request, schemaVersion));
+        final ManifestFilteringPredicate manifestFilter = new ManifestFilteringPredicate(request, schemaVersion);
+
+        final Manifest manifest = Manifest.read(downloadManifest(request, restorer, manifestFilter), objectMapper);
+
+        if (!manifest.isIncremental()) {
+            return manifest;
+        }
+
+        // manifests of a node are listed once, to resolve the name of a delta and to find deltas of the same base
+        final List<String> manifestKeys = new ArrayList<>();
+        restorer.listNodeObjects(MANIFESTS, (key, lastModified) -> manifestKeys.add(key));
+
+        final String deltaName = Paths.get(Manifest.parseLatestManifest(manifestKeys.stream().filter(manifestFilter).collect(toList()))).getFileName().toString();
+
+        return resolveIncrementalManifest(request, restorer, manifest, deltaName, manifestKeys, objectMapper);
+    }
+
+    /**
+     * A delta manifest holds only files of one incremental backup, these are restored together with files of its
+     * base manifest and of all deltas of the same base taken before it. A delta taken in between which references
+     * some other base, e.g. one of a full backup which failed, is not restored.
+     *
+     * @param delta        downloaded delta manifest
+     * @param deltaName    name of a delta manifest
+     * @param manifestKeys keys of all manifests of a node
+     * @return base manifest with files of all deltas up to the given one
+     */
+    private static Manifest resolveIncrementalManifest(final RestoreOperationRequest request,
+                                                       final Restorer restorer,
+                                                       final Manifest delta,
+                                                       final String deltaName,
+                                                       final List<String> manifestKeys,
+                                                       final ObjectMapper objectMapper) throws Exception {
+        final long baseTimestamp = Manifest.parseTimestamp(delta.getBaseManifest());
+        final long deltaTimestamp = Manifest.parseTimestamp(deltaName);
+
+        // only deltas taken after the base and before the delta might be based on the same base
+        final List<String> candidateNames = new ArrayList<>();
+
+        for (final String key : manifestKeys) {
+            final String manifestName = Paths.get(key).getFileName().toString();
+
+            if (Manifest.isIncrementalManifest(manifestName)) {
+                try {
+                    final long timestamp = Manifest.parseTimestamp(manifestName);
+
+                    if (timestamp > baseTimestamp && timestamp < deltaTimestamp) {
+                        candidateNames.add(manifestName);
+                    }
+                } catch (final NumberFormatException ex) {
+                    logger.warn("Could not parse timestamp from manifest {}", manifestName);
+                }
+            }
+        }
+
+        candidateNames.sort(Comparator.comparingLong(Manifest::parseTimestamp));
+
+        final Map<String, Manifest> deltas = new LinkedHashMap<>();
+
+        for (final String name : candidateNames) {
+            final Manifest candidate = Manifest.read(downloadManifest(request, restorer, named(name)), objectMapper);
+
+            if (delta.getBaseManifest().equals(candidate.getBaseManifest())) {
+                deltas.put(name, candidate);
+            } else {
+                logger.info("Incremental backup {} is not restored as it is based on {}, not on {}", name, candidate.getBaseManifest(), delta.getBaseManifest());
+            }
+        }
+
+        logger.info("Restoring incremental backup {} together with its base {} and previous incremental backups {}", deltaName, delta.getBaseManifest(), deltas.keySet());
+
+        final Manifest manifest = Manifest.read(downloadManifest(request, restorer, named(delta.getBaseManifest())), objectMapper);
+
+        deltas.values().forEach(manifest::merge);
+
+        manifest.merge(delta);
+
+        return manifest;
+    }
+
+    private static String downloadManifest(final RestoreOperationRequest request,
+                                           final Restorer restorer,
+                                           final Predicate<String> manifestFilter) throws Exception {
+        if (request.skipManifestCache) {
+            return restorer.downloadManifestToString(MANIFESTS, manifestFilter);
+        } else {
+            final Path manifestCacheDirectory = request.manifestCacheDirectory == null ? ManifestCache.DEFAULT_CACHE_ROOT : request.manifestCacheDirectory;
+            return new ManifestCache(manifestCacheDirectory, request.storageLocation).get(restorer, MANIFESTS, manifestFilter);
+        }
+    }
 
-        return Manifest.read(manifestAsString, objectMapper);
+    private static Predicate<String> named(final String manifestName) {
+        return key -> key.endsWith("/manifests/" + manifestName);
     }
 
     public static abstract class AbstractFilteringPredicate implements Predicate<String> {
@@ -62,6 +62,7 @@ public class RestoreCommitLogsOperation extends Operation<RestoreCommitLogsOpera
     @Override
     protected void run0() throws Exception {
         try (final Restorer restorer = restorerFactoryMap.get(request.storageLocation.storageProvider).createCommitLogRestorer(request)) {
+            restorer.setShouldCancel(getShouldCancel());
             checkBucket();
             backupCurrentCommitLogs();
             downloadCommitLogs(restorer);
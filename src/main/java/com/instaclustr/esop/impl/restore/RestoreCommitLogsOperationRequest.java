@@ -104,6 +104,7 @@ public class RestoreCommitLogsOperationRequest extends BaseRestoreOperationReque
         return MoreObjects.toStringHelper(this)
             .add("storageLocation", storageLocation)
             .add("concurrentConnections", concurrentConnections)
+            .add("schedulingPolicy", schedulingPolicy)
             .add("cassandraDirectory", cassandraDirectory)
             .add("sharedContainerPath", sharedContainerPath)
             .add("cassandraConfigDirectory", cassandraConfigDirectory)
@@ -125,6 +125,52 @@ public class RestoreOperationRequest extends BaseRestoreOperationRequest {
     @JsonProperty("import")
     public ImportOperationRequest importing;
 
+    @JsonProperty("fullVerification")
+    @Option(names = "--full-verification",
+        description = "If set, all downloaded files are hashed again before they are imported or hard-linked. Otherwise, files which were verified "
+            + "upon download and which have not changed since then, as recorded in a verification ledger in a download directory, are not read again. "
+            + "Defaults to false.")
+    public boolean fullVerification;
+
+    @JsonProperty("verificationParallelism")
+    @Option(names = "--verification-parallelism",
+        description = "Number of threads to verify hashes of downloaded files with before they are imported or hard-linked. "
+            + "For in-place strategy, number of threads to check digests of existing SSTables with. Defaults to the number of available processors.")
+    public Integer verificationParallelism;
+
+    @JsonProperty("manifestCacheDirectory")
+    @Option(names = "--manifest-cache-directory",
+        description = "Directory to cache downloaded manifests in so they are not downloaded again by next restoration phases "
+            + "or repeated restorations. Manifests which were not used for 7 days are evicted, and then the least recently used ones "
+            + "once the cache is bigger than 256 MB. It is created accessible only by its owner, manifests are not cached if other users "
+            + "have any permissions to it. Defaults to .esop/manifest-cache in the home directory of the user Esop runs as.",
+        converter = PathTypeConverter.class)
+    @JsonDeserialize(using = PathDeserializer.class)
+    @JsonSerialize(using = PathSerializer.class)
+    public Path manifestCacheDirectory;
+
+    @JsonProperty("skipManifestCache")
+    @Option(names = "--skip-manifest-cache",
+        description = "If set, manifests are always downloaded from a remote storage and they are not cached locally. Defaults to false.")
+    public boolean skipManifestCache;
+
+    @JsonProperty("dryRun")
+    @Option(names = "--dry-run",
+        description = "Only for in-place strategy. If set, files to download and to delete are resolved and logged together with "
+            + "their total sizes, but no data are downloaded nor deleted. Defaults to false.")
+    public boolean dryRun;
+
+    @JsonProperty("tableParallelism")
+    @Option(names = "--table-parallelism",
+        description = "Number of tables to import, refresh or truncate at once via JMX. Defaults to 1, tables are processed one by one.")
+    public Integer tableParallelism;
+
+    @JsonProperty("keyspaceTableParallelism")
+    @Option(names = "--keyspace-table-parallelism",
+        description = "Number of tables of one keyspace to import, refresh or truncate at once, to limit compactions triggered in one keyspace. "
+            + "Not limited by default, only --table-parallelism applies.")
+    public Integer keyspaceTableParallelism;
+
     @Option(names = "--timeout",
         description = "Timeout, in hours, after which restore operation will be aborted when not finished. It defaults to 5 (hours). This "
             + "flag is effectively used only upon global requests.",
@@ -236,6 +282,10 @@ public class RestoreOperationRequest extends BaseRestoreOperationRequest {
         return MoreObjects.toStringHelper(this)
             .add("storageLocation", storageLocation)
             .add("concurrentConnections", concurrentConnections)
+            .add("downloadRangeSize", downloadRangeSize)
+            .add("downloadRangeParallelism", downloadRangeParallelism)
+            .add("bandwidth", bandwidth)
+            .add("schedulingPolicy", schedulingPolicy)
             .add("cassandraDirectory", cassandraDirectory)
             .add("restoreSystemKeyspace", restoreSystemKeyspace)
             .add("restoreSystemAuth", restoreSystemAuth)
@@ -244,6 +294,13 @@ public class RestoreOperationRequest extends BaseRestoreOperationRequest {
             .add("restorationStrategyType", restorationStrategyType)
             .add("restorationPhase", restorationPhase)
             .add("import", importing)
+            .add("fullVerification", fullVerification)
+            .add("verificationParallelism", verificationParallelism)
+            .add("dryRun", dryRun)
+            .add("manifestCacheDirectory", manifestCacheDirectory)
+            .add("skipManifestCache", skipManifestCache)
+            .add("tableParallelism", tableParallelism)
+            .add("keyspaceTableParallelism", keyspaceTableParallelism)
             .add("noDeleteTruncates", noDeleteTruncates)
             .add("noDeleteDownloads", noDeleteDownloads)
             .add("noDownloadData", noDownloadData)
@@ -1,16 +1,51 @@
 package com.instaclustr.esop.impl.restore;
 
+import static java.lang.String.format;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.instaclustr.esop.impl.BandwidthLimiter;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.Manifest.ManifestAgePathComparator;
+import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.ManifestEntry.Type;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.StorageInteractor;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
+import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public abstract class Restorer extends StorageInteractor {
 
+    private static final Logger logger = LoggerFactory.getLogger(Restorer.class);
+
     protected final BaseRestoreOperationRequest request;
 
+    private ExecutorService rangeExecutorService;
+
+    private BandwidthLimiter bandwidthLimiter;
+
     public Restorer(final BaseRestoreOperationRequest request) {
         super(request.storageLocation);
         this.request = request;
@@ -20,13 +55,327 @@ public abstract class Restorer extends StorageInteractor {
 
     public abstract void downloadFile(final Path localPath, final RemoteObjectReference objectReference) throws Exception;
 
+    /**
+     * Opens a stream of the content of a remote object so its hash can be computed on bytes as they are written locally.
+     * A caller is responsible for closing the returned stream.
+     *
+     * @param objectReference reference of an object to download
+     * @return stream of the content of a remote object
+     */
+    public abstract InputStream downloadFileStream(final RemoteObjectReference objectReference) throws Exception;
+
+    /**
+     * Opens a stream of a byte range of the content of a remote object so parts of one object might be downloaded concurrently.
+     * A caller is responsible for closing the returned stream.
+     *
+     * @param objectReference reference of an object to download
+     * @param offset          position of the first byte of a range
+     * @param length          number of bytes of a range
+     * @return stream of a byte range of the content of a remote object
+     */
+    public abstract InputStream downloadFileRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception;
+
+    /**
+     * @return pool downloading byte ranges of all objects of this restorer, it has as many threads as there are concurrent connections
+     */
+    public synchronized ExecutorService getRangeExecutorService() {
+        if (rangeExecutorService == null) {
+            final int concurrentConnections = request.concurrentConnections == null ? 10 : request.concurrentConnections;
+
+            rangeExecutorService = Executors.newFixedThreadPool(Math.max(1, concurrentConnections),
+                                                                new ThreadFactoryBuilder().setNameFormat("ranged-download-%d").setDaemon(true).build());
+        }
+
+        return rangeExecutorService;
+    }
+
+    /**
+     * @return limiter shared by all downloads of this restorer, null if downloads are not limited
+     */
+    public synchronized BandwidthLimiter getBandwidthLimiter() {
+        if (bandwidthLimiter == null && request.bandwidth != null) {
+            bandwidthLimiter = new BandwidthLimiter(request.bandwidth.asBytesPerSecond().value);
+            logger.info("BPS computed to be {}, shared by all concurrent downloads", bandwidthLimiter.getBytesPerSecond());
+        }
+
+        return bandwidthLimiter;
+    }
+
+    /**
+     * @param stream       stream of a downloaded object or of its range
+     * @param shouldCancel flag upon which reading is cancelled
+     * @return stream drawing from the limiter of this restorer, given stream if downloads are not limited
+     */
+    public InputStream limit(final InputStream stream, final AtomicBoolean shouldCancel) {
+        final BandwidthLimiter limiter = getBandwidthLimiter();
+        return limiter == null ? stream : limiter.limit(stream, shouldCancel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (rangeExecutorService != null) {
+                rangeExecutorService.shutdownNow();
+            }
+        }
+
+        super.close();
+    }
+
+    /**
+     * Uploads a text object, e.g. a catalog of backups of a node which is updated upon removal of backups.
+     *
+     * @param text            text to upload
+     * @param objectReference reference of an object to upload a text to
+     */
+    public abstract void uploadText(final String text, final RemoteObjectReference objectReference) throws Exception;
+
     public abstract String downloadFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception;
 
     public abstract String downloadManifestToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception;
 
+    /**
+     * Resolves the name of the latest manifest of a node without downloading it.
+     *
+     * @param remotePrefix prefix of manifests, relative to a node
+     * @param keyFilter    filter of keys of manifests
+     * @return file name of the latest manifest
+     */
+    public abstract String resolveManifestName(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception;
+
     public abstract String downloadNodeFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception;
 
     public abstract Path downloadNodeFileToDir(final Path destinationDir, final Path remotePrefix, final Predicate<String> keyFilter) throws Exception;
 
     public abstract void consumeFiles(final RemoteObjectReference prefix, final Consumer<RemoteObjectReference> consumer) throws Exception;
+
+    /**
+     * Lists names of directories right under a prefix in a bucket, e.g. datacenters of a cluster or nodes of a datacenter.
+     *
+     * @param prefix prefix in a bucket ending with a slash
+     * @return names of directories without their prefix and without a trailing slash
+     */
+    protected abstract List<String> listDirectories(final String prefix) throws Exception;
+
+    @Override
+    public List<String> listDcs() throws Exception {
+        return listDirectories(storageLocation.clusterId + "/");
+    }
+
+    @Override
+    public List<StorageLocation> listNodes() throws Exception {
+        final List<StorageLocation> locations = new ArrayList<>();
+
+        for (final String dc : listDcs()) {
+            locations.addAll(listNodes(dc));
+        }
+
+        return locations;
+    }
+
+    @Override
+    public List<StorageLocation> listNodes(final String dc) throws Exception {
+        final String dcLocation = StorageLocation.updateDatacenter(storageLocation, dc).withoutNode();
+
+        return listDirectories(storageLocation.clusterId + "/" + dc + "/")
+            .stream()
+            .map(node -> new StorageLocation(dcLocation + "/" + node))
+            .collect(toList());
+    }
+
+    @Override
+    public List<StorageLocation> listNodes(final List<String> dcs) throws Exception {
+        if (dcs == null || dcs.isEmpty()) {
+            return listNodes();
+        }
+
+        final List<StorageLocation> locations = new ArrayList<>();
+
+        for (final String dc : dcs) {
+            locations.addAll(listNodes(dc));
+        }
+
+        return locations;
+    }
+
+    @Override
+    public void delete(final ManifestReport backupToDelete, final RemoveBackupRequest request) throws Exception {
+        logger.info("Deleting backup {}", backupToDelete.name);
+        if (backupToDelete.reclaimableSpace > 0 && !backupToDelete.getRemovableEntries().isEmpty()) {
+            delete(backupToDelete.getRemovableEntries().stream().map(Paths::get).collect(toList()), request);
+        }
+
+        // manifest and topology as the last
+        if (!request.dry) {
+            delete(backupToDelete.manifest.objectKey);
+        } else {
+            logger.info("Deletion of manifest {} was executed in dry mode.", backupToDelete.manifest.objectKey);
+        }
+    }
+
+    /**
+     * Deletes objects of a node, in batches if a storage provider supports it.
+     *
+     * @param objectKeys keys of objects to delete, relative to a node
+     * @param request    request to delete objects for
+     */
+    public void delete(final List<Path> objectKeys, final RemoveBackupRequest request) throws Exception {
+        if (getDeletionBatchSize() > 1) {
+            deleteInBatches(objectKeys, request);
+            return;
+        }
+
+        for (final Path objectKey : objectKeys) {
+            if (!request.dry) {
+                delete(objectKey);
+            } else {
+                logger.info("Deletion of {} was executed in dry mode.", objectKey);
+            }
+        }
+    }
+
+    /**
+     * @return maximum number of objects {@link #deleteBatch(List)} deletes by one request, objects are deleted one by one if it is 1
+     */
+    protected int getDeletionBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Deletes objects of a node by as few requests as a storage provider allows. It is called only if
+     * {@link #getDeletionBatchSize()} is bigger than 1, with at most that number of objects. Objects are deleted
+     * one by one by {@link #delete(Path)} unless a storage provider deletes more objects by one request.
+     *
+     * @param objectKeys keys of objects to delete, relative to a node
+     * @return keys of objects which failed to be deleted, all other objects were deleted
+     */
+    protected List<Path> deleteBatch(final List<Path> objectKeys) throws Exception {
+        final List<Path> failed = new ArrayList<>();
+
+        for (final Path objectKey : objectKeys) {
+            try {
+                delete(objectKey);
+            } catch (final Exception ex) {
+                logger.debug(format("Unable to delete %s", objectKey), ex);
+                failed.add(objectKey);
+            }
+        }
+
+        return failed;
+    }
+
+    /**
+     * Deletes objects in batches, batches are deleted concurrently, by as many threads as there are concurrent connections.
+     * Objects of a batch which failed to be deleted are deleted again, in accordance with a retry specification of a request.
+     */
+    private void deleteInBatches(final List<Path> objectKeys, final RemoveBackupRequest request) throws Exception {
+        final List<List<Path>> batches = Lists.partition(objectKeys, getDeletionBatchSize());
+
+        if (request.dry) {
+            logger.info("Deletion of {} objects in {} batches was executed in dry mode.", objectKeys.size(), batches.size());
+            return;
+        }
+
+        final int concurrentConnections = request.concurrentConnections == null ? 10 : request.concurrentConnections;
+        final int parallelism = Math.max(1, Math.min(concurrentConnections, batches.size()));
+        final ExecutorService executorService = Executors.newFixedThreadPool(parallelism,
+                                                                             new ThreadFactoryBuilder().setNameFormat("batch-deletion-%d").build());
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (final List<Path> batch : batches) {
+                futures.add(executorService.submit(() -> {
+                    final List<Path> remaining = new ArrayList<>(batch);
+
+                    // only objects which failed to be deleted are retried
+                    return createRetrier(request.retry).submit(() -> {
+                        final List<Path> failed = deleteBatch(remaining);
+
+                        if (!failed.isEmpty()) {
+                            remaining.retainAll(new HashSet<>(failed));
+                            throw new RetriableException(format("Unable to delete %s of %s objects of a batch, first of them is %s",
+                                                                failed.size(), batch.size(), failed.get(0)));
+                        }
+
+                        return null;
+                    });
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException ex) {
+                    if (ex.getCause() instanceof Exception) {
+                        throw (Exception) ex.getCause();
+                    }
+
+                    throw ex;
+                }
+            }
+
+            logger.info("Deleted {} objects in {} batches.", objectKeys.size(), batches.size());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Lists manifests of a node once and fetches them concurrently, by as many threads as there are concurrent connections.
+     * Manifests are parsed while they are streamed so they are not held in memory as strings.
+     *
+     * @param objectMapper mapper to parse manifests with
+     * @return manifests of a node, ordered from the latest one
+     */
+    protected List<Manifest> fetchManifests(final ObjectMapper objectMapper) throws Exception {
+        final List<RemoteObjectReference> manifestReferences = new ArrayList<>();
+        consumeFiles(objectKeyToNodeAwareRemoteReference(Paths.get("manifests")), manifestReferences::add);
+
+        manifestReferences.sort(comparing(RemoteObjectReference::getObjectKey, new ManifestAgePathComparator()));
+
+        final int concurrentConnections = request.concurrentConnections == null ? 10 : request.concurrentConnections;
+        final int parallelism = Math.max(1, Math.min(concurrentConnections, manifestReferences.size()));
+        final ExecutorService executorService = Executors.newFixedThreadPool(parallelism,
+                                                                             new ThreadFactoryBuilder().setNameFormat("manifest-fetch-%d").build());
+
+        try {
+            final List<Future<Manifest>> futures = new ArrayList<>();
+
+            for (final RemoteObjectReference manifestReference : manifestReferences) {
+                futures.add(executorService.submit(() -> fetchManifest(manifestReference, objectMapper)));
+            }
+
+            final List<Manifest> manifests = new ArrayList<>();
+
+            for (final Future<Manifest> future : futures) {
+                try {
+                    manifests.add(future.get());
+                } catch (final ExecutionException ex) {
+                    if (ex.getCause() instanceof Exception) {
+                        throw (Exception) ex.getCause();
+                    }
+
+                    throw ex;
+                }
+            }
+
+            return manifests;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Manifest fetchManifest(final RemoteObjectReference manifestReference, final ObjectMapper objectMapper) throws Exception {
+        // a stream might fail while it is parsed, a manifest is fetched again from its start then
+        return createRetrier(request.retry).submit(() -> {
+            try (final InputStream stream = downloadFileStream(manifestReference)) {
+                final Manifest manifest = objectMapper.readValue(stream, Manifest.class);
+                manifest.setManifest(new ManifestEntry(manifestReference.getObjectKey(), null, Type.FILE, null));
+                return manifest;
+            } catch (final IOException ex) {
+                throw new RetriableException(format("Unable to fetch manifest %s", manifestReference.getObjectKey()), ex);
+            }
+        });
+    }
 }
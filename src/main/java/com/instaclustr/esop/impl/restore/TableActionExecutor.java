@@ -0,0 +1,176 @@
+package com.instaclustr.esop.impl.restore;
+
+import static java.lang.String.format;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes an action, e.g. import, refresh or truncation of a table via JMX, for every table concurrently.
+ *
+ * Number of actions running at once is bounded by parallelism, number of actions running at once for tables
+ * of the same keyspace might be bounded further so Cassandra is not flooded by compactions of one keyspace.
+ * An action for a table of a keyspace which is at its limit waits in a queue of the keyspace, it does not occupy
+ * a worker, and it is handed to workers once an action for another table of the keyspace is finished.
+ */
+public class TableActionExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableActionExecutor.class);
+
+    private final int parallelism;
+    private final Integer keyspaceParallelism;
+
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private final Map<String, Integer> runningActionsOfKeyspaces = new HashMap<>();
+    private final Map<String, Queue<Runnable>> waitingActionsOfKeyspaces = new HashMap<>();
+    private int unfinishedActions;
+    private ExecutorService executorService;
+
+    /**
+     * @param parallelism         maximal number of actions running at once, sequential execution if null
+     * @param keyspaceParallelism maximal number of actions running at once for tables of one keyspace, not limited if null
+     */
+    public TableActionExecutor(final Integer parallelism, final Integer keyspaceParallelism) {
+        this.parallelism = parallelism == null ? 1 : Math.max(1, parallelism);
+        this.keyspaceParallelism = keyspaceParallelism == null ? null : Math.max(1, keyspaceParallelism);
+    }
+
+    /**
+     * @param tables tables to execute an action for, as pairs of keyspace and table
+     * @param action action to execute
+     * @return failed tables in form "keyspace.table" with messages of their errors, empty map if all actions succeeded
+     */
+    public Map<String, String> execute(final Collection<Entry<String, String>> tables, final TableAction action) throws InterruptedException {
+        for (final Entry<String, String> table : interleaveKeyspaces(tables)) {
+            submit(table, action);
+        }
+
+        return awaitFailures();
+    }
+
+    /**
+     * Submits an action for a table, e.g. once all its files are downloaded. Results are collected by {@link #awaitFailures()}.
+     */
+    public synchronized void submit(final Entry<String, String> table, final TableAction action) {
+        if (executorService == null) {
+            executorService = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder().setNameFormat("table-action-%d").build());
+        }
+
+        unfinishedActions++;
+
+        final String keyspace = table.getKey();
+        final Runnable task = () -> act(table, action);
+
+        if (keyspaceParallelism != null && runningActionsOfKeyspaces.getOrDefault(keyspace, 0) >= keyspaceParallelism) {
+            waitingActionsOfKeyspaces.computeIfAbsent(keyspace, ks -> new ArrayDeque<>()).add(task);
+        } else {
+            dispatch(keyspace, task);
+        }
+    }
+
+    /**
+     * Waits until all submitted actions are finished, no action can be submitted afterwards.
+     *
+     * @return failed tables in form "keyspace.table" with messages of their errors, empty map if all actions succeeded
+     */
+    public Map<String, String> awaitFailures() throws InterruptedException {
+        try {
+            synchronized (this) {
+                while (unfinishedActions > 0) {
+                    wait();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                if (executorService != null) {
+                    executorService.shutdownNow();
+                }
+            }
+        }
+
+        return failures;
+    }
+
+    private void act(final Entry<String, String> table, final TableAction action) {
+        try {
+            action.act(table);
+        } catch (final Throwable t) {
+            logger.error(format("Action for table %s.%s has failed: %s", table.getKey(), table.getValue(), t.getMessage()));
+            failures.put(table.getKey() + "." + table.getValue(), String.valueOf(t.getMessage()));
+        } finally {
+            finished(table.getKey());
+        }
+    }
+
+    private synchronized void dispatch(final String keyspace, final Runnable task) {
+        runningActionsOfKeyspaces.merge(keyspace, 1, Integer::sum);
+        executorService.submit(task);
+    }
+
+    private synchronized void finished(final String keyspace) {
+        runningActionsOfKeyspaces.merge(keyspace, -1, Integer::sum);
+
+        final Queue<Runnable> waitingActions = waitingActionsOfKeyspaces.get(keyspace);
+
+        if (waitingActions != null && !waitingActions.isEmpty() && !executorService.isShutdown()) {
+            dispatch(keyspace, waitingActions.poll());
+        }
+
+        unfinishedActions--;
+        notifyAll();
+    }
+
+    /**
+     * Orders tables so tables of the same keyspace are not next to each other, so actions for tables of all keyspaces
+     * are started early instead of tables of one keyspace being waited for at its limit.
+     */
+    static List<Entry<String, String>> interleaveKeyspaces(final Collection<Entry<String, String>> tables) {
+        final Map<String, Iterator<Entry<String, String>>> byKeyspace = new LinkedHashMap<>();
+        final Map<String, List<Entry<String, String>>> grouped = new LinkedHashMap<>();
+
+        for (final Entry<String, String> table : tables) {
+            grouped.computeIfAbsent(table.getKey(), keyspace -> new ArrayList<>()).add(table);
+        }
+
+        grouped.forEach((keyspace, keyspaceTables) -> byKeyspace.put(keyspace, keyspaceTables.iterator()));
+
+        final List<Entry<String, String>> interleaved = new ArrayList<>(tables.size());
+
+        while (!byKeyspace.isEmpty()) {
+            final Iterator<Iterator<Entry<String, String>>> it = byKeyspace.values().iterator();
+
+            while (it.hasNext()) {
+                final Iterator<Entry<String, String>> keyspaceTables = it.next();
+                interleaved.add(keyspaceTables.next());
+
+                if (!keyspaceTables.hasNext()) {
+                    it.remove();
+                }
+            }
+        }
+
+        return interleaved;
+    }
+
+    public interface TableAction {
+
+        void act(final Entry<String, String> table) throws Throwable;
+    }
+}
@@ -0,0 +1,100 @@
+package com.instaclustr.esop.impl.restore;
+
+import static java.util.stream.Collectors.toList;
+
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Multimap;
+import com.instaclustr.esop.impl.AbstractTracker.Session;
+import com.instaclustr.esop.impl.AbstractTracker.Unit;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.restore.TableActionExecutor.TableAction;
+
+/**
+ * Submits an action for a table to {@link TableActionExecutor} as soon as units of a session have finished all files
+ * of that table, e.g. a table is imported once all its files are downloaded while files of other tables are still
+ * being downloaded. A table with a file which has not finished, e.g. because its download failed, is never submitted.
+ *
+ * @param <U> type of units processing files
+ */
+public class TablePipeline<U extends Unit> {
+
+    // files of a table are known by their object keys as a tracker might process an object for some other session
+    private final Map<Path, Entry<String, String>> tablesOfFiles = new HashMap<>();
+    private final Map<Entry<String, String>, List<ManifestEntry>> filesOfTables = new HashMap<>();
+    private final Map<Entry<String, String>, AtomicInteger> remainingFiles = new ConcurrentHashMap<>();
+    private final Map<Path, U> finishedUnits = new ConcurrentHashMap<>();
+
+    /**
+     * @param entries         files to process, files of tables which are not restored are not waited for
+     * @param tablesToRestore keyspaces and their tables to restore
+     */
+    public TablePipeline(final List<ManifestEntry> entries, final Multimap<String, String> tablesToRestore) {
+        for (final ManifestEntry entry : entries) {
+            if (entry.keyspaceTable == null || !tablesToRestore.containsEntry(entry.keyspaceTable.keyspace, entry.keyspaceTable.table)) {
+                continue;
+            }
+
+            final Entry<String, String> table = new SimpleImmutableEntry<>(entry.keyspaceTable.keyspace, entry.keyspaceTable.table);
+
+            if (tablesOfFiles.putIfAbsent(entry.objectKey, table) == null) {
+                filesOfTables.computeIfAbsent(table, t -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        filesOfTables.forEach((table, files) -> remainingFiles.put(table, new AtomicInteger(files.size())));
+    }
+
+    public Set<Entry<String, String>> getTables() {
+        return Collections.unmodifiableSet(filesOfTables.keySet());
+    }
+
+    public List<ManifestEntry> getFiles(final Entry<String, String> table) {
+        return filesOfTables.getOrDefault(table, Collections.emptyList());
+    }
+
+    /**
+     * @return finished units of files of a table, null for a file which was not processed by any unit
+     */
+    public List<U> getFinishedUnits(final Entry<String, String> table) {
+        return getFiles(table).stream().map(file -> finishedUnits.get(file.objectKey)).collect(toList());
+    }
+
+    /**
+     * Submits an action for a table as soon as the last of its files is finished by a unit of a session.
+     */
+    public void attach(final Session<U> session, final TableActionExecutor executor, final TableAction action) {
+        session.addFinishedUnitListener(unit -> {
+            final Entry<String, String> table = tablesOfFiles.get(unit.getManifestEntry().objectKey);
+
+            if (table == null) {
+                return;
+            }
+
+            finishedUnits.put(unit.getManifestEntry().objectKey, unit);
+
+            if (remainingFiles.get(table).decrementAndGet() == 0) {
+                executor.submit(table, action);
+            }
+        });
+    }
+
+    /**
+     * Submits an action for every table at once, for files which are already present locally.
+     */
+    public void submitAll(final TableActionExecutor executor, final TableAction action) {
+        for (final Entry<String, String> table : TableActionExecutor.interleaveKeyspaces(filesOfTables.keySet())) {
+            executor.submit(table, action);
+        }
+    }
+}
@@ -52,6 +52,7 @@ public abstract class BaseRestoreOperationCoordinator extends OperationCoordinat
         }
 
         try (final Restorer restorer = restorerFactoryMap.get(request.storageLocation.storageProvider).createRestorer(request)) {
+            restorer.setShouldCancel(operation.getShouldCancel());
             final RestorationStrategy restorationStrategy = restorationStrategyResolver.resolve(request);
 
             restorationStrategy.restore(restorer, operation);
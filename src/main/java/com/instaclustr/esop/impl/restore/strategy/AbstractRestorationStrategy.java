@@ -1,6 +1,7 @@
 package com.instaclustr.esop.impl.restore.strategy;
 
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.DOWNLOAD;
+import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.DOWNLOAD_AND_IMPORT;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.IMPORT;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.TRUNCATE;
 import static java.util.stream.Collectors.toSet;
@@ -13,6 +14,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Provider;
 import com.instaclustr.cassandra.CassandraVersion;
 import com.instaclustr.esop.guice.BucketServiceFactory;
+import com.instaclustr.esop.impl.hash.HashLedger;
 import com.instaclustr.esop.impl.hash.HashService;
 import com.instaclustr.esop.impl.restore.DownloadTracker;
 import com.instaclustr.esop.impl.restore.RestorationPhase;
@@ -69,7 +71,7 @@ public abstract class AbstractRestorationStrategy implements RestorationStrategy
         ctxt.bucketServiceFactoryMap = bucketServiceFactoryMap;
         ctxt.hashService = hashService;
 
-        if (phaseType == DOWNLOAD || phaseType == TRUNCATE || phaseType == IMPORT) {
+        if (phaseType == DOWNLOAD || phaseType == TRUNCATE || phaseType == IMPORT || phaseType == DOWNLOAD_AND_IMPORT) {
             ctxt.cassandraVersion = cassandraVersion.get();
         }
 
@@ -79,9 +81,12 @@ public abstract class AbstractRestorationStrategy implements RestorationStrategy
     @Override
     public void restore(final Restorer restorer, final Operation<RestoreOperationRequest> operation) {
         try {
+            // held for the whole restoration so it is not loaded again by every downloaded file which is verified
+            restorer.setHashLedger(HashLedger.forSpec(downloadTracker.getHashSpec()));
+
             final RestorationPhase restorationPhase = resolveRestorationPhase(operation, restorer);
 
-            final Set<RestorationPhaseType> restorationPhaseTypes = of(DOWNLOAD, TRUNCATE, IMPORT).collect(toSet());
+            final Set<RestorationPhaseType> restorationPhaseTypes = of(DOWNLOAD, TRUNCATE, IMPORT, DOWNLOAD_AND_IMPORT).collect(toSet());
 
             if (restorationPhaseTypes.contains(restorationPhase.getRestorationPhaseType())) {
                 final RestorationContext ctxt = new RestorationContext();
@@ -2,6 +2,7 @@ package com.instaclustr.esop.impl.restore.strategy;
 
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.CLEANUP;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.DOWNLOAD;
+import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.DOWNLOAD_AND_IMPORT;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.IMPORT;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.INIT;
 import static com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType.TRUNCATE;
@@ -21,6 +22,7 @@ import com.instaclustr.esop.impl.restore.RestorationPhase.CleaningPhase;
 import com.instaclustr.esop.impl.restore.RestorationPhase.DownloadingPhase;
 import com.instaclustr.esop.impl.restore.RestorationPhase.ImportingPhase;
 import com.instaclustr.esop.impl.restore.RestorationPhase.InitPhase;
+import com.instaclustr.esop.impl.restore.RestorationPhase.PipelinedImportingPhase;
 import com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType;
 import com.instaclustr.esop.impl.restore.RestorationPhase.TruncatingPhase;
 import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
@@ -79,6 +81,8 @@ public class ImportingRestorationStrategy extends AbstractRestorationStrategy {
                 return new TruncatingPhase(ctxt);
             } else if (phaseType == IMPORT) {
                 return new ImportingPhase(ctxt);
+            } else if (phaseType == DOWNLOAD_AND_IMPORT) {
+                return new PipelinedImportingPhase(ctxt);
             } else if (phaseType == CLEANUP) {
                 return new CleaningPhase(ctxt);
             }
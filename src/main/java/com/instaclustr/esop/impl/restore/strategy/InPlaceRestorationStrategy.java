@@ -2,17 +2,24 @@ package com.instaclustr.esop.impl.restore.strategy;
 
 import static com.instaclustr.io.FileUtils.cleanDirectory;
 import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.MoreObjects;
 import com.google.inject.Inject;
 import com.instaclustr.esop.guice.BucketServiceFactory;
 import com.instaclustr.esop.impl.AbstractTracker.Session;
@@ -113,49 +120,27 @@ public class InPlaceRestorationStrategy implements RestorationStrategy {
             // 3. Build a list of all SSTables currently present, that are candidates for deleting
             final Set<Path> existingFiles = Manifest.getLocalExistingEntries(request.dirs.data());
 
-            final List<ManifestEntry> entriesToDownload = new ArrayList<>();
-            final List<Path> filesToDelete = new ArrayList<>();
-
             logger.info("Restoring to existing cluster: {}", existingFiles.size() > 0);
 
-            // the first round, see what is in manifest and what is currently present,
-            // if it is not present, we will download it
+            final RestorationPlan plan = RestorationPlan.resolve(manifestFiles, existingFiles, request.verificationParallelism);
 
-            for (final ManifestEntry manifestFile : manifestFiles) {
-                // do not download schemas
-                if (manifestFile.type == Type.CQL_SCHEMA) {
-                    continue;
-                }
+            plan.log(request.dryRun);
 
-                if (Files.exists(manifestFile.localFile)) {
-                    // this file exists on a local disk as well as in manifest, there is nothing to download nor remove
-                    logger.info(String.format("%s found locally, not downloading", manifestFile.localFile));
-                } else {
-                    // if it does not exist locally, we have to download it
-                    entriesToDownload.add(manifestFile);
-                }
+            if (request.dryRun) {
+                logger.info("Dry run, not downloading nor deleting any files.");
+                return;
             }
 
-            // the second round, see what is present locally but it is not in the manifest
-            // if it is not in the manifest, we need to remove it from disk
-
-            for (final Path localExistingFile : existingFiles) {
-                // if it is not in manifest
+            final List<ManifestEntry> entriesToDownload = plan.entriesToDownload;
+            final List<Path> filesToDelete = plan.filesToDelete;
 
-                final Optional<ManifestEntry> first = manifestFiles.stream().filter(me -> me.localFile.equals(localExistingFile)).findFirst();
+            // 4. Download files in the manifest, local files which differ from them are deleted first so they are downloaded again
 
-                if (first.isPresent()) {
-                    // if it exists, hash has to be same, otherwise delete it
-                    if (!SSTableUtils.isExistingSStable(first.get().localFile, first.get().objectKey.getName(SSTableUtils.isSecondaryIndexManifest(first.get().objectKey) ? 4 : 3).toString())) {
-                        filesToDelete.add(localExistingFile);
-                    }
-                } else {
-                    filesToDelete.add(localExistingFile);
-                }
+            for (final Path fileToReplace : plan.filesToReplace) {
+                logger.info("Deleting existing sstable {} to download it again", fileToReplace);
+                Files.deleteIfExists(fileToReplace);
             }
 
-            // 4. Download files in the manifest
-
             Session<DownloadUnit> downloadSession = null;
 
             try {
@@ -248,4 +233,150 @@ public class InPlaceRestorationStrategy implements RestorationStrategy {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Files to download and to delete in order to turn local data into data of a backup.
+     */
+    public static final class RestorationPlan {
+
+        public final List<ManifestEntry> entriesToDownload;
+        // local files of a backup which differ from it, they are deleted before downloading as they are downloaded again
+        public final List<Path> filesToReplace;
+        // local files which are not in a backup, they are deleted after downloading
+        public final List<Path> filesToDelete;
+        public final long bytesToDownload;
+        public final long bytesToDelete;
+
+        private RestorationPlan(final List<ManifestEntry> entriesToDownload,
+                                final List<Path> filesToReplace,
+                                final List<Path> filesToDelete,
+                                final long bytesToDelete) {
+            this.entriesToDownload = entriesToDownload;
+            this.filesToReplace = filesToReplace;
+            this.filesToDelete = filesToDelete;
+            this.bytesToDownload = entriesToDownload.stream().mapToLong(entry -> entry.size).sum();
+            this.bytesToDelete = bytesToDelete;
+        }
+
+        /**
+         * @param manifestFiles files of a backup, enriched with their local paths
+         * @param existingFiles files currently present in a data directory
+         * @param parallelism   number of threads to check digests of existing SSTables with, number of available processors if null
+         */
+        public static RestorationPlan resolve(final List<ManifestEntry> manifestFiles,
+                                              final Set<Path> existingFiles,
+                                              final Integer parallelism) throws Exception {
+            // the first round, see what is in manifest and what is currently present,
+            // if it is not present, we will download it
+
+            final List<ManifestEntry> entriesToDownload = new ArrayList<>();
+            final Map<Path, ManifestEntry> manifestFilesByPath = new HashMap<>();
+
+            for (final ManifestEntry manifestFile : manifestFiles) {
+                manifestFilesByPath.putIfAbsent(manifestFile.localFile, manifestFile);
+
+                // do not download schemas
+                if (manifestFile.type == Type.CQL_SCHEMA) {
+                    continue;
+                }
+
+                if (Files.exists(manifestFile.localFile)) {
+                    // this file exists on a local disk as well as in manifest, there is nothing to download nor remove
+                    logger.debug(format("%s found locally, not downloading", manifestFile.localFile));
+                } else {
+                    // if it does not exist locally, we have to download it
+                    entriesToDownload.add(manifestFile);
+                }
+            }
+
+            // the second round, see what is present locally but it is not in the manifest
+            // if it is not in the manifest, we need to remove it from disk,
+            // if it is in the manifest but it differs, we need to download it again
+
+            final List<ManifestEntry> entriesToReplace = Collections.synchronizedList(new ArrayList<>());
+            final List<Path> filesToDelete = Collections.synchronizedList(new ArrayList<>());
+            final AtomicLong bytesToDelete = new AtomicLong();
+            final ForkJoinPool pool = new ForkJoinPool(parallelism == null ? Runtime.getRuntime().availableProcessors() : Math.max(1, parallelism));
+
+            try {
+                pool.submit(() -> existingFiles.parallelStream().forEach(localExistingFile -> {
+                    final ManifestEntry manifestFile = manifestFilesByPath.get(localExistingFile);
+
+                    if (manifestFile == null) {
+                        filesToDelete.add(localExistingFile);
+                        bytesToDelete.addAndGet(localExistingFile.toFile().length());
+                    } else if (!isExistingSStable(manifestFile)) {
+                        // if it exists, hash has to be same, otherwise replace it
+                        entriesToReplace.add(manifestFile);
+                    }
+                })).get();
+            } catch (final ExecutionException ex) {
+                throw new IllegalStateException(format("Unable to resolve local files to delete: %s", ex.getCause().getMessage()), ex.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+
+            entriesToReplace.sort(Comparator.comparing(entry -> entry.localFile));
+            entriesToDownload.addAll(entriesToReplace);
+
+            Collections.sort(filesToDelete);
+
+            return new RestorationPlan(entriesToDownload,
+                                       entriesToReplace.stream().map(entry -> entry.localFile).collect(toList()),
+                                       new ArrayList<>(filesToDelete),
+                                       bytesToDelete.get());
+        }
+
+        private static boolean isExistingSStable(final ManifestEntry manifestFile) {
+            final int hashIndex = SSTableUtils.isSecondaryIndexManifest(manifestFile.objectKey) ? 4 : 3;
+            return SSTableUtils.isExistingSStable(manifestFile.localFile, manifestFile.objectKey.getName(hashIndex).toString());
+        }
+
+        /**
+         * @param verbose if true, every file to download and to delete is logged on info level, otherwise on debug level
+         */
+        public void log(final boolean verbose) {
+            for (final ManifestEntry entry : entriesToDownload) {
+                final String message = format("Going to download %s (%s bytes) to %s", entry.objectKey, entry.size, entry.localFile);
+
+                if (verbose) {
+                    logger.info(message);
+                } else {
+                    logger.debug(message);
+                }
+            }
+
+            for (final Path path : filesToReplace) {
+                final String message = format("Going to replace %s", path);
+
+                if (verbose) {
+                    logger.info(message);
+                } else {
+                    logger.debug(message);
+                }
+            }
+
+            for (final Path path : filesToDelete) {
+                final String message = format("Going to delete %s", path);
+
+                if (verbose) {
+                    logger.info(message);
+                } else {
+                    logger.debug(message);
+                }
+            }
+
+            logger.info(toString());
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                .add("filesToDownload", entriesToDownload.size())
+                .add("bytesToDownload", bytesToDownload)
+                .add("filesToReplace", filesToReplace.size())
+                .add("filesToDelete", filesToDelete.size())
+                .add("bytesToDelete", bytesToDelete)
+                .toString();
+        }
+    }
+}
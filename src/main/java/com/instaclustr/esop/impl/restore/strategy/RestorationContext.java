@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.instaclustr.cassandra.CassandraVersion;
 import com.instaclustr.esop.guice.BucketServiceFactory;
 import com.instaclustr.esop.impl.CassandraData;
+import com.instaclustr.esop.impl.hash.HashLedger;
 import com.instaclustr.esop.impl.hash.HashService;
 import com.instaclustr.esop.impl.restore.DownloadTracker;
 import com.instaclustr.esop.impl.restore.RestorationPhase.RestorationPhaseType;
@@ -27,4 +28,6 @@ public class RestorationContext {
     public Map<String, BucketServiceFactory> bucketServiceFactoryMap;
     public CassandraData cassandraData;
     public HashService hashService;
+    // ledger of files verified by a restoration, held for the whole restoration once it is used
+    public HashLedger verificationLedger;
 }
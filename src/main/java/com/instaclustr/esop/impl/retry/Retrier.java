@@ -1,10 +1,15 @@
 package com.instaclustr.esop.impl.retry;
 
-import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.google.common.util.concurrent.Uninterruptibles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,117 +19,187 @@ public interface Retrier {
 
     <T> T submit(final Callable<T> c) throws Exception;
 
+    /**
+     * Retrier which does not hold any state of a submitted operation, so it might be used by many threads at once.
+     *
+     * A failure on {@link ThrottledException} is always backed off exponentially with a full jitter, whatever
+     * the strategy is, so threads throttled at the same time do not retry at the same time. Every retry is taken from
+     * a budget of retries of a whole operation so an operation against an unavailable storage fails instead of
+     * retrying each of its requests. A sleep before a retry ends once a thread is interrupted or an operation
+     * is cancelled, a failure is thrown then.
+     */
     class DefaultRetrier implements Retrier {
 
-        private final Logger logger = LoggerFactory.getLogger(DefaultRetrier.class);
+        private static final Logger logger = LoggerFactory.getLogger(DefaultRetrier.class);
+
+        private static final long CANCELLATION_CHECK_INTERVAL = MILLISECONDS.toNanos(100);
 
-        private int attempts = 0;
-        private final int maxAttempts;
         protected final RetrySpec retrySpec;
         protected final Sleeper sleeper;
+        private final Sleeper throttlingSleeper;
+        private final RetryBudget budget;
+        private final AtomicBoolean shouldCancel;
 
         public DefaultRetrier(final RetrySpec retrySpec, final Sleeper sleeper) {
+            this(retrySpec, sleeper, null);
+        }
+
+        public DefaultRetrier(final RetrySpec retrySpec, final Sleeper sleeper, final AtomicBoolean shouldCancel) {
             this.retrySpec = retrySpec;
             this.sleeper = sleeper;
-            this.maxAttempts = retrySpec.maxAttempts;
+            this.throttlingSleeper = new ExponentialSleeper(retrySpec.getIntervalMillis(), true);
+            this.budget = retrySpec.getBudget();
+            this.shouldCancel = shouldCancel;
         }
 
         @Override
         public <T> T submit(final Callable<T> c) throws Exception {
-            reset();
+            int attempts = 0;
 
-            T result = null;
-
-            while (attempts <= maxAttempts) {
+            while (true) {
                 try {
-                    result = c.call();
-                    break;
-                } catch (final Exception ex) {
-                    if (ex instanceof RetriableException) {
-                        attempts += 1;
-                        if (attempts > maxAttempts) {
-                            throw ex;
-                        }
-                        logger.error("This operation will be retried: " + ex.getMessage(), ex);
-                        sleeper.sleep();
-                    } else {
-                        throw ex;
-                    }
+                    return c.call();
+                } catch (final RetriableException ex) {
+                    attempts += 1;
+                    awaitRetry(ex, attempts);
                 }
             }
-
-            return result;
         }
 
         @Override
         public void submit(final Runnable r) {
-            reset();
-            while (attempts <= maxAttempts) {
+            int attempts = 0;
+
+            while (true) {
                 try {
                     r.run();
-                    break;
-                } catch (final Exception ex) {
-                    if (ex instanceof RetriableException) {
-                        attempts += 1;
-                        if (attempts > maxAttempts) {
-                            throw ex;
-                        }
-                        logger.error("This operation will be retried: " + ex.getMessage(), ex);
-                        sleeper.sleep();
-                    } else {
-                        throw ex;
-                    }
+                    return;
+                } catch (final RetriableException ex) {
+                    attempts += 1;
+                    awaitRetry(ex, attempts);
                 }
             }
         }
 
-        private void reset() {
-            attempts = 0;
-            sleeper.reset();
+        private void awaitRetry(final RetriableException ex, final int attempts) {
+            if (attempts > retrySpec.maxAttempts) {
+                throw ex;
+            }
+
+            if (!budget.tryAcquire()) {
+                logger.error(format("Retry budget of %s retries of this operation is used up, this operation will not be retried: %s", budget.limit, ex.getMessage()));
+                throw ex;
+            }
+
+            final long delay = (ex instanceof ThrottledException ? throttlingSleeper : sleeper).getDelay(attempts);
+
+            logger.error(format("This operation will be retried in %s ms: %s", delay, ex.getMessage()), ex);
+
+            if (!sleep(delay)) {
+                logger.info("This operation will not be retried as it was cancelled.");
+                throw ex;
+            }
+        }
+
+        /**
+         * @return false if a sleep was interrupted or an operation was cancelled
+         */
+        private boolean sleep(final long millis) {
+            final long deadline = System.nanoTime() + MILLISECONDS.toNanos(millis);
+
+            try {
+                while (shouldCancel == null || !shouldCancel.get()) {
+                    final long remaining = deadline - System.nanoTime();
+
+                    if (remaining <= 0) {
+                        return true;
+                    }
+
+                    NANOSECONDS.sleep(Math.min(remaining, CANCELLATION_CHECK_INTERVAL));
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            return false;
         }
     }
 
+    /**
+     * Backs off exponentially, a delay doubles with every attempt. With a full jitter, a delay is a random one
+     * between 0 and an exponentially growing ceiling, which is capped.
+     */
     class ExponentialSleeper implements Sleeper {
 
-        private int originalInterval;
-        private int interval;
+        private static final long MAX_DELAY = TimeUnit.MINUTES.toMillis(10);
+
+        private final long interval;
+        private final boolean jitter;
 
-        public ExponentialSleeper(final int interval) {
+        /**
+         * @param interval base interval in milliseconds
+         * @param jitter   true if a delay is a random one up to an exponentially growing ceiling
+         */
+        public ExponentialSleeper(final long interval, final boolean jitter) {
             this.interval = interval;
-            this.originalInterval = interval;
+            this.jitter = jitter;
         }
 
         @Override
-        public void sleep() {
-            Uninterruptibles.sleepUninterruptibly(interval, SECONDS);
-            interval *= 2;
-        }
+        public long getDelay(final int attempt) {
+            final long delay = interval << Math.min(attempt - 1, 30);
 
-        @Override
-        public void reset() {
-            interval = originalInterval;
+            if (!jitter) {
+                return delay;
+            }
+
+            return ThreadLocalRandom.current().nextLong(Math.min(MAX_DELAY, delay) + 1);
         }
     }
 
     class LinearSleeper implements Sleeper {
 
-        private final int interval;
+        private final long interval;
 
-        public LinearSleeper(final int interval) {
+        /**
+         * @param interval interval in milliseconds
+         */
+        public LinearSleeper(final long interval) {
             this.interval = interval;
         }
 
         @Override
-        public void sleep() {
-            Uninterruptibles.sleepUninterruptibly(interval, SECONDS);
+        public long getDelay(final int attempt) {
+            return interval;
         }
     }
 
     interface Sleeper {
 
-        void sleep();
+        /**
+         * @param attempt number of failed attempts so far, starting from 1
+         * @return time to wait before the next attempt, in milliseconds
+         */
+        long getDelay(final int attempt);
+    }
 
-        default void reset() {
+    /**
+     * Number of retries all requests of an operation might do together.
+     */
+    class RetryBudget {
+
+        private final int limit;
+        private final AtomicInteger retries = new AtomicInteger();
+
+        /**
+         * @param limit number of retries, 0 or less for no limit
+         */
+        public RetryBudget(final int limit) {
+            this.limit = limit;
+        }
+
+        public boolean tryAcquire() {
+            return limit <= 0 || retries.incrementAndGet() <= limit;
         }
     }
 
@@ -138,4 +213,15 @@ public interface Retrier {
             super(message, cause);
         }
     }
+
+    /**
+     * Failure of a request which was rejected because of the rate of requests, e.g. S3 503 SlowDown or 429,
+     * as opposed to a failure of a request itself.
+     */
+    class ThrottledException extends RetriableException {
+
+        public ThrottledException(final String message, final Throwable cause) {
+            super(message, cause);
+        }
+    }
 }
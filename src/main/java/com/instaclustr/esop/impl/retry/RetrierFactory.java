@@ -1,10 +1,12 @@
 package com.instaclustr.esop.impl.retry;
 
 import static com.instaclustr.esop.impl.retry.RetrySpec.RetryStrategy.EXPONENTIAL;
+import static com.instaclustr.esop.impl.retry.RetrySpec.RetryStrategy.EXPONENTIAL_JITTER;
 import static com.instaclustr.esop.impl.retry.RetrySpec.RetryStrategy.LINEAR;
 import static java.lang.String.format;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.instaclustr.esop.impl.retry.Retrier.DefaultRetrier;
 import com.instaclustr.esop.impl.retry.Retrier.ExponentialSleeper;
@@ -25,14 +27,25 @@ public class RetrierFactory {
         }
     }
 
-    public synchronized static Retrier getRetrier(final RetrySpec retrySpec) {
+    public static Retrier getRetrier(final RetrySpec retrySpec) {
+        return getRetrier(retrySpec, null);
+    }
+
+    /**
+     * @param retrySpec    spec of a retrier
+     * @param shouldCancel flag upon which a retrier stops to wait for a next attempt, might be null
+     * @return retrier for given spec
+     */
+    public static Retrier getRetrier(final RetrySpec retrySpec, final AtomicBoolean shouldCancel) {
         if (retrySpec == null || retrySpec.strategy == null) {
             return new NoOpRetrier();
         }
         if (retrySpec.strategy == LINEAR) {
-            return new DefaultRetrier(retrySpec, new LinearSleeper(retrySpec.interval));
+            return new DefaultRetrier(retrySpec, new LinearSleeper(retrySpec.getIntervalMillis()), shouldCancel);
         } else if (retrySpec.strategy == EXPONENTIAL) {
-            return new DefaultRetrier(retrySpec, new ExponentialSleeper(retrySpec.interval));
+            return new DefaultRetrier(retrySpec, new ExponentialSleeper(retrySpec.getIntervalMillis(), false), shouldCancel);
+        } else if (retrySpec.strategy == EXPONENTIAL_JITTER) {
+            return new DefaultRetrier(retrySpec, new ExponentialSleeper(retrySpec.getIntervalMillis(), true), shouldCancel);
         } else {
             throw new IllegalStateException(format("Unable to construct a retrier of startegy %s", retrySpec.strategy));
         }
@@ -5,6 +5,7 @@ import static java.lang.String.format;
 import java.util.Arrays;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.google.common.base.MoreObjects;
@@ -20,9 +21,14 @@ public class RetrySpec {
         description = "interval between retries when downloading of SSTable file fails, in seconds, defalts to 10")
     public int interval;
 
+    @Option(names = "--retry-interval-millis",
+        description = "interval between retries in milliseconds, takes precedence over --retry-interval, "
+            + "it is a base interval of exponential strategies")
+    public Integer intervalMillis;
+
     @Option(names = "--retry-strategy",
         defaultValue = "linear",
-        description = "strategy to use for retries, either 'linear' or 'exponential', defaults to 'linear'",
+        description = "strategy to use for retries, either 'linear', 'exponential' or 'exponential_jitter', defaults to 'linear'",
         converter = RetryStrategyConverter.class)
     public RetryStrategy strategy;
 
@@ -35,15 +41,27 @@ public class RetrySpec {
         description = "flag telling if retry mechanism is enabled or not, defaults to false")
     public boolean enabled;
 
+    @Option(names = "--retry-budget",
+        description = "number of retries all requests of an operation might do together, an operation fails once they are used up, "
+            + "defaults to 0 which means there is not any limit")
+    public int budget;
+
+    @JsonIgnore
+    private Retrier.RetryBudget retryBudget;
+
     @JsonCreator
     public RetrySpec(@JsonProperty("interval") final Integer interval,
                      @JsonProperty("strategy") final RetryStrategy strategy,
                      @JsonProperty("maxAttempts") final Integer maxAttempts,
-                     @JsonProperty("enabled") final boolean enabled) {
+                     @JsonProperty("enabled") final boolean enabled,
+                     @JsonProperty("intervalMillis") final Integer intervalMillis,
+                     @JsonProperty("budget") final int budget) {
         this.interval = interval == null || interval < 1 ? 10 : interval;
         this.strategy = strategy == null ? RetryStrategy.LINEAR : strategy;
         this.enabled = enabled;
         this.maxAttempts = maxAttempts == null || maxAttempts < 1 ? 3 : maxAttempts;
+        this.intervalMillis = intervalMillis == null || intervalMillis < 1 ? null : intervalMillis;
+        this.budget = budget;
     }
 
     public RetrySpec() {
@@ -63,6 +81,28 @@ public class RetrySpec {
         if (maxAttempts < 1) {
             maxAttempts = 3;
         }
+        if (intervalMillis != null && intervalMillis < 1) {
+            intervalMillis = null;
+        }
+    }
+
+    /**
+     * @return interval between retries in milliseconds
+     */
+    @JsonIgnore
+    public long getIntervalMillis() {
+        return intervalMillis != null ? intervalMillis : interval * 1000L;
+    }
+
+    /**
+     * @return budget of retries shared by all retriers of an operation this spec belongs to
+     */
+    @JsonIgnore
+    public synchronized Retrier.RetryBudget getBudget() {
+        if (retryBudget == null) {
+            retryBudget = new Retrier.RetryBudget(budget);
+        }
+        return retryBudget;
     }
 
     @Override
@@ -72,6 +112,8 @@ public class RetrySpec {
             .add("strategy", strategy)
             .add("maxAttempts", maxAttempts)
             .add("enabled", enabled)
+            .add("intervalMillis", intervalMillis)
+            .add("budget", budget)
             .toString();
     }
 
@@ -85,6 +127,7 @@ public class RetrySpec {
 
     public enum RetryStrategy {
         EXPONENTIAL,
+        EXPONENTIAL_JITTER,
         LINEAR;
 
         private static final Logger logger = LoggerFactory.getLogger(RetryStrategy.class);
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.function.BiConsumer;
 
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
@@ -59,6 +60,11 @@ public class LocalFileBackuper extends Backuper {
         return FreshenResult.UPLOAD_REQUIRED;
     }
 
+    @Override
+    public void listNodeObjects(final Path prefix, final BiConsumer<String, Long> consumer) throws Exception {
+        listNodeFiles(resolveRoot(), prefix, consumer);
+    }
+
     @Override
     public synchronized void uploadFile(final long size,
                            final InputStream localFileStream,
@@ -77,6 +83,17 @@ public class LocalFileBackuper extends Backuper {
         Files.write(dir.resolve(objectReference.objectKey), text.getBytes());
     }
 
+    @Override
+    public String downloadText(final RemoteObjectReference objectReference) throws Exception {
+        final Path file = request.storageLocation.fileBackupDirectory.resolve(request.storageLocation.bucket).resolve(objectReference.objectKey);
+        return Files.exists(file) ? new String(Files.readAllBytes(file)) : null;
+    }
+
+    @Override
+    public void deleteText(final RemoteObjectReference objectReference) throws Exception {
+        Files.deleteIfExists(request.storageLocation.fileBackupDirectory.resolve(request.storageLocation.bucket).resolve(objectReference.objectKey));
+    }
+
     @Override
     public void cleanup() throws Exception {
         //No clean up required
@@ -4,6 +4,9 @@ import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
@@ -15,10 +18,13 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import com.instaclustr.esop.impl.Manifest;
@@ -39,28 +45,32 @@ import org.slf4j.LoggerFactory;
 public class LocalFileRestorer extends Restorer {
 
     private static final Logger logger = LoggerFactory.getLogger(LocalFileRestorer.class);
-    private ObjectMapper objectMapper;
+    private final ObjectMapper objectMapper;
 
     @AssistedInject
-    public LocalFileRestorer(@Assisted final RestoreOperationRequest request) {
+    public LocalFileRestorer(@Assisted final RestoreOperationRequest request,
+                             final ObjectMapper objectMapper) {
         super(request);
+        this.objectMapper = objectMapper;
     }
 
     @AssistedInject
-    public LocalFileRestorer(@Assisted final RestoreCommitLogsOperationRequest request) {
+    public LocalFileRestorer(@Assisted final RestoreCommitLogsOperationRequest request,
+                             final ObjectMapper objectMapper) {
         super(request);
+        this.objectMapper = objectMapper;
     }
 
     @AssistedInject
     public LocalFileRestorer(@Assisted final ListOperationRequest request,
-                             ObjectMapper objectMapper) {
+                             final ObjectMapper objectMapper) {
         super(request);
         this.objectMapper = objectMapper;
     }
 
     @AssistedInject
     public LocalFileRestorer(@Assisted final RemoveBackupRequest request,
-                             ObjectMapper objectMapper) {
+                             final ObjectMapper objectMapper) {
         super(request);
         this.objectMapper = objectMapper;
     }
@@ -101,6 +111,35 @@ public class LocalFileRestorer extends Restorer {
         Files.copy(remoteFilePath, localFilePath, StandardCopyOption.REPLACE_EXISTING);
     }
 
+    @Override
+    public InputStream downloadFileStream(final RemoteObjectReference objectReference) throws Exception {
+        final Path remoteFilePath = request.storageLocation.fileBackupDirectory
+            .resolve(request.storageLocation.bucket)
+            .resolve(Paths.get(((LocalFileObjectReference) objectReference).canonicalPath));
+
+        return Files.newInputStream(remoteFilePath);
+    }
+
+    @Override
+    public InputStream downloadFileRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception {
+        final Path remoteFilePath = request.storageLocation.fileBackupDirectory
+            .resolve(request.storageLocation.bucket)
+            .resolve(Paths.get(((LocalFileObjectReference) objectReference).canonicalPath));
+
+        final SeekableByteChannel channel = Files.newByteChannel(remoteFilePath).position(offset);
+        return ByteStreams.limit(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public void uploadText(final String text, final RemoteObjectReference objectReference) throws Exception {
+        final Path remoteFilePath = request.storageLocation.fileBackupDirectory
+            .resolve(request.storageLocation.bucket)
+            .resolve(Paths.get(objectReference.canonicalPath));
+
+        Files.createDirectories(remoteFilePath.getParent());
+        Files.write(remoteFilePath, text.getBytes(StandardCharsets.UTF_8));
+    }
+
     @Override
     public String downloadFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
 
@@ -124,6 +163,12 @@ public class LocalFileRestorer extends Restorer {
         return new String(Files.readAllBytes(Paths.get(blobItem)));
     }
 
+    @Override
+    public String resolveManifestName(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
+        final Path pathToList = Paths.get(request.storageLocation.rawLocation.replaceAll("file://", "")).resolve(remotePrefix);
+        return Paths.get(getManifest(pathToList, keyFilter, remotePrefix)).getFileName().toString();
+    }
+
     @Override
     public String downloadNodeFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final Path pathToList = Paths.get(request.storageLocation.rawLocation.replaceAll("file://", "")).resolve(remotePrefix);
@@ -185,7 +230,6 @@ public class LocalFileRestorer extends Restorer {
 
     @Override
     public List<Manifest> listManifests() throws Exception {
-        assert objectMapper != null;
         final List<Path> manifests = Files.list(Paths.get(storageLocation.rawLocation.replaceAll("file://", ""), "manifests"))
             .sorted(new ManifestAgePathComparator())
             .collect(toList());
@@ -212,24 +256,13 @@ public class LocalFileRestorer extends Restorer {
     }
 
     @Override
-    public void delete(final ManifestReport backupToDelete, final RemoveBackupRequest request) throws Exception {
-        logger.info("Deleting backup {}", backupToDelete.name);
-        if (backupToDelete.reclaimableSpace > 0 && !backupToDelete.getRemovableEntries().isEmpty()) {
-            for (final String removableEntry : backupToDelete.getRemovableEntries()) {
-                if (!request.dry) {
-                    delete(Paths.get(removableEntry));
-                } else {
-                    logger.info("Deletion of {} was executed in dry mode.", removableEntry);
-                }
-            }
-        }
+    public void listNodeObjects(final Path prefix, final BiConsumer<String, Long> consumer) throws Exception {
+        listNodeFiles(resolveRoot(), prefix, consumer);
+    }
 
-        // manifest and topology as the last
-        if (!request.dry) {
-            delete(backupToDelete.manifest.objectKey);
-        } else {
-            logger.info("Deletion of manifest {} was executed in dry mode.", backupToDelete.manifest.objectKey);
-        }
+    @Override
+    public void delete(final ManifestReport backupToDelete, final RemoveBackupRequest request) throws Exception {
+        super.delete(backupToDelete, request);
 
         if (!request.dry && request.storageLocation.storageProvider.equals("file")) {
             final List<Path> emptySSTableDirectories = getEmptyDirectories(request.storageLocation);
@@ -266,42 +299,16 @@ public class LocalFileRestorer extends Restorer {
     }
 
     @Override
-    public List<StorageLocation> listNodes() throws Exception {
-        final List<String> dcs = listDcs();
-        final List<StorageLocation> locations = new ArrayList<>();
+    protected List<String> listDirectories(final String prefix) throws Exception {
+        final Path directory = resolveRoot().resolve(prefix);
 
-        for (final String dc : dcs) {
-            locations.addAll(listNodes(dc));
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
         }
 
-        return locations;
-    }
-
-    @Override
-    public List<StorageLocation> listNodes(final String dc) throws Exception {
-        return getDirectories(Paths.get(StorageLocation.updateDatacenter(storageLocation, dc).withoutNode().replace("file://", "")))
-            .stream()
-            .map(p -> new StorageLocation("file://" + p.toAbsolutePath().toString())).collect(toList());
-    }
-
-    @Override
-    public List<StorageLocation> listNodes(final List<String> dcs) throws Exception {
-        final List<StorageLocation> storageLocations = new ArrayList<>();
-
-        if (dcs == null || dcs.isEmpty()) {
-            storageLocations.addAll(listNodes());
-        } else {
-            for (final String dc : dcs) {
-                storageLocations.addAll(listNodes(dc));
-            }
+        try (final Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(Files::isDirectory).map(p -> p.getFileName().toString()).sorted().collect(toList());
         }
-
-        return storageLocations;
-    }
-
-    @Override
-    public List<String> listDcs() throws Exception {
-        return getDirectories(Paths.get(storageLocation.withoutNodeAndDc().replaceAll("file://", ""))).stream().map(p -> p.getFileName().toString()).collect(toList());
     }
 
     private List<Path> getEmptyDirectories(final StorageLocation storageLocation) throws Exception {
@@ -332,10 +339,6 @@ public class LocalFileRestorer extends Restorer {
         return emptyDirectories;
     }
 
-    private List<Path> getDirectories(final Path directory) throws Exception {
-        return Files.list(directory).filter(p -> Files.isDirectory(p) && !p.equals(directory)).collect(toList());
-    }
-
     private boolean isDirectoryEmpty(final Path directory) throws IOException {
         try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
             return !stream.iterator().hasNext();
@@ -2,38 +2,73 @@ package com.instaclustr.esop.s3;
 
 import static com.amazonaws.event.ProgressEventType.TRANSFER_COMPLETED_EVENT;
 import static com.amazonaws.event.ProgressEventType.TRANSFER_FAILED_EVENT;
+import static com.instaclustr.esop.s3.S3Throttling.isThrottled;
+import static com.instaclustr.esop.s3.S3Throttling.shaped;
+import static com.instaclustr.esop.s3.S3Throttling.throttled;
 import static java.lang.String.format;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
-import java.util.concurrent.Callable;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.event.ProgressEvent;
 import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.StorageClass;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.transfer.PersistableTransfer;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.backup.BackupCommitLogsOperationRequest;
 import com.instaclustr.esop.impl.backup.BackupOperationRequest;
 import com.instaclustr.esop.impl.backup.Backuper;
 import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
-import com.instaclustr.esop.impl.retry.RetrierFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class BaseS3Backuper extends Backuper {
 
     private static final Logger logger = LoggerFactory.getLogger(BaseS3Backuper.class);
+
+    private static final long MIB = 1024 * 1024;
+    private static final int DEFAULT_MULTIPART_THRESHOLD = 128;
+    private static final int DEFAULT_PART_SIZE = 64;
+    private static final int DEFAULT_PART_CONCURRENCY = 4;
+    // limits of S3 multipart upload, a part, except the last one, can not be smaller than 5 MiB
+    private static final long MIN_PART_SIZE = 5 * MIB;
+    private static final int MAX_PARTS = 10000;
+
     private final TransferManager transferManager;
 
+    // parts of all files uploaded by this backuper are uploaded by one pool, it is created upon the first multipart upload
+    private ExecutorService partExecutorService;
+
     public BaseS3Backuper(final TransferManagerFactory transferManagerFactory,
                           final BackupOperationRequest request) {
         super(request);
@@ -58,52 +93,60 @@ public class BaseS3Backuper extends Backuper {
 
     @Override
     public FreshenResult freshenRemoteObject(final RemoteObjectReference object) throws Exception {
-        return RetrierFactory.getRetrier(request.retry).submit(new Callable<FreshenResult>() {
-            @Override
-            public FreshenResult call() throws Exception {
-                final String canonicalPath = ((S3RemoteObjectReference) object).canonicalPath;
-                try {
-                    if (!request.skipRefreshing) {
-                        final CopyObjectRequest copyRequest = new CopyObjectRequest(request.storageLocation.bucket,
-                                                                                    canonicalPath,
-                                                                                    request.storageLocation.bucket,
-                                                                                    canonicalPath)
-                            .withStorageClass(StorageClass.Standard)
-                            .withMetadataDirective(request.metadataDirective);
-
-                        // attempt to refresh existing object in the bucket via an inplace copy
-                        transferManager.copy(copyRequest).waitForCompletion();
-                        return FreshenResult.FRESHENED;
-                    } else {
-                        if (!transferManager.getAmazonS3Client().doesObjectExist(request.storageLocation.bucket, canonicalPath)) {
-                            return FreshenResult.UPLOAD_REQUIRED;
-                        } else {
-                            // it is technically not freshened,
-                            // this code path avoid copying file to itself
-                            // to update last modification date, helpful for cases
-                            // when objects in a bucket are versioned so it would
-                            // produce new objects still
-                            return FreshenResult.FRESHENED;
-                        }
-                    }
-                } catch (final AmazonServiceException ex) {
-                    // AWS S3 under certain access policies can't return NoSuchKey (404)
-                    // instead, it returns AccessDenied (403) — handle it the same way
-                    if ((ex.getStatusCode() != 404 && ex.getStatusCode() != 403) || ex.getStatusCode() > 500) {
-                        throw new RetriableException(format("Error occured while trying to get refresh status on %s: %s", canonicalPath, ex.getErrorMessage()), ex);
-                    }
-
-                    if (ex.getStatusCode() == 404 || ex.getStatusCode() == 403) {
-                        // the freshen failed because the file/key didn't exist
-                        return FreshenResult.UPLOAD_REQUIRED;
-                    }
+        // a caller retries freshening, it is not retried here too
+        final String canonicalPath = ((S3RemoteObjectReference) object).canonicalPath;
+        try {
+            if (!request.skipRefreshing) {
+                final CopyObjectRequest copyRequest = new CopyObjectRequest(request.storageLocation.bucket,
+                                                                            canonicalPath,
+                                                                            request.storageLocation.bucket,
+                                                                            canonicalPath)
+                    .withStorageClass(StorageClass.Standard)
+                    .withMetadataDirective(request.metadataDirective);
 
-                    throw ex;
-                } catch (final AmazonClientException ex) {
-                    throw new RetriableException(format("Error occured while trying to get refresh status on %s: %s", canonicalPath, ex.getMessage()), ex);
+                // attempt to refresh existing object in the bucket via an inplace copy
+                shaped(getRateController(), getShouldCancel(), () -> {
+                    transferManager.copy(copyRequest).waitForCompletion();
+                    return null;
+                });
+                return FreshenResult.FRESHENED;
+            } else {
+                if (!shaped(getRateController(), getShouldCancel(), () -> transferManager.getAmazonS3Client().doesObjectExist(request.storageLocation.bucket, canonicalPath))) {
+                    return FreshenResult.UPLOAD_REQUIRED;
+                } else {
+                    // it is technically not freshened,
+                    // this code path avoid copying file to itself
+                    // to update last modification date, helpful for cases
+                    // when objects in a bucket are versioned so it would
+                    // produce new objects still
+                    return FreshenResult.FRESHENED;
                 }
             }
-        });
+        } catch (final AmazonServiceException ex) {
+            if (isThrottled(ex)) {
+                throw throttled(ex);
+            }
+
+            // AWS S3 under certain access policies can't return NoSuchKey (404)
+            // instead, it returns AccessDenied (403) — handle it the same way
+            if ((ex.getStatusCode() != 404 && ex.getStatusCode() != 403) || ex.getStatusCode() > 500) {
+                throw new RetriableException(format("Error occured while trying to get refresh status on %s: %s", canonicalPath, ex.getErrorMessage()), ex);
+            }
+
+            if (ex.getStatusCode() == 404 || ex.getStatusCode() == 403) {
+                // the freshen failed because the file/key didn't exist
+                return FreshenResult.UPLOAD_REQUIRED;
+            }
+
+            throw ex;
+        } catch (final AmazonClientException ex) {
+            throw new RetriableException(format("Error occured while trying to get refresh status on %s: %s", canonicalPath, ex.getMessage()), ex);
+        }
+    }
+
+    @Override
+    public void listNodeObjects(final Path prefix, final BiConsumer<String, Long> consumer) throws Exception {
+        S3Listing.listObjects(transferManager.getAmazonS3Client(), getRateController(), getShouldCancel(), request.storageLocation.bucket, resolveNodeAwareRemotePath(prefix) + "/", consumer);
     }
 
     @Override
@@ -117,7 +160,184 @@ public class BaseS3Backuper extends Backuper {
                                                                            setContentLength(size);
                                                                        }});
 
-        transferManager.upload(putObjectRequest, new UploadProgressListener(s3RemoteObjectReference)).waitForCompletion();
+        shaped(getRateController(), getShouldCancel(), () -> {
+            transferManager.upload(putObjectRequest, new UploadProgressListener(s3RemoteObjectReference)).waitForCompletion();
+            return null;
+        });
+    }
+
+    @Override
+    public String downloadText(final RemoteObjectReference objectReference) throws Exception {
+        try {
+            return shaped(getRateController(), getShouldCancel(), () -> transferManager.getAmazonS3Client().getObjectAsString(request.storageLocation.bucket, objectReference.canonicalPath));
+        } catch (final AmazonServiceException ex) {
+            if (ex.getStatusCode() == 404) {
+                return null;
+            }
+
+            throw ex;
+        }
+    }
+
+    @Override
+    public void deleteText(final RemoteObjectReference objectReference) throws Exception {
+        shaped(getRateController(), getShouldCancel(), () -> {
+            transferManager.getAmazonS3Client().deleteObject(request.storageLocation.bucket, objectReference.canonicalPath);
+            return null;
+        });
+    }
+
+    @Override
+    public void uploadFile(final long size,
+                           final Path localFile,
+                           final RemoteObjectReference objectReference,
+                           final Function<InputStream, InputStream> throttle) throws Exception {
+        final long multipartThreshold = (request.s3MultipartThreshold == null ? DEFAULT_MULTIPART_THRESHOLD : request.s3MultipartThreshold) * MIB;
+
+        if (size < multipartThreshold) {
+            super.uploadFile(size, localFile, objectReference, throttle);
+            return;
+        }
+
+        uploadFileInParts(size, localFile, (S3RemoteObjectReference) objectReference, throttle);
+    }
+
+    /**
+     * Uploads a file in parts, in parallel. Transfer manager uploads parts of a stream sequentially so a huge file
+     * would use only one connection. Here, every part is read from its own position of a file, it is throttled on its own
+     * and it is retried on its own so a failure of one part does not mean that the whole file has to be uploaded again.
+     */
+    private void uploadFileInParts(final long size,
+                                   final Path localFile,
+                                   final S3RemoteObjectReference objectReference,
+                                   final Function<InputStream, InputStream> throttle) throws Exception {
+        final AmazonS3 amazonS3 = transferManager.getAmazonS3Client();
+        final String bucket = request.storageLocation.bucket;
+        final String key = objectReference.canonicalPath;
+
+        long partSize = Math.max(MIN_PART_SIZE, (request.s3PartSize == null ? DEFAULT_PART_SIZE : request.s3PartSize) * MIB);
+
+        if ((size + partSize - 1) / partSize > MAX_PARTS) {
+            partSize = (size + MAX_PARTS - 1) / MAX_PARTS;
+        }
+
+        final int parts = (int) ((size + partSize - 1) / partSize);
+        final int partConcurrency = Math.max(1, Math.min(parts, request.s3PartConcurrency == null ? DEFAULT_PART_CONCURRENCY : request.s3PartConcurrency));
+
+        final String uploadId = shaped(getRateController(), getShouldCancel(), () -> amazonS3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key)).getUploadId());
+
+        logger.debug("Uploading {} in {} parts of size {} by {} threads.", key, parts, partSize, partConcurrency);
+
+        final ExecutorService executorService = getPartExecutorService();
+        // parts of one file are uploaded by at most this number of threads of a shared pool
+        final Semaphore partPermits = new Semaphore(partConcurrency);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final List<Future<PartETag>> partFutures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < parts && !failed.get(); i++) {
+                final int partNumber = i + 1;
+                final long offset = i * partSize;
+                final long length = Math.min(partSize, size - offset);
+
+                partPermits.acquire();
+
+                partFutures.add(executorService.submit(() -> {
+                    try {
+                        return uploadPart(amazonS3, localFile, key, uploadId, partNumber, offset, length, throttle);
+                    } catch (final Exception ex) {
+                        failed.set(true);
+                        throw ex;
+                    } finally {
+                        partPermits.release();
+                    }
+                }));
+            }
+
+            final List<PartETag> partETags = new ArrayList<>();
+
+            for (final Future<PartETag> partFuture : partFutures) {
+                partETags.add(partFuture.get());
+            }
+
+            shaped(getRateController(), getShouldCancel(), () -> amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, partETags)));
+        } catch (final Exception ex) {
+            partFutures.forEach(partFuture -> partFuture.cancel(true));
+
+            try {
+                shaped(getRateController(), getShouldCancel(), () -> {
+                    amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+                    return null;
+                });
+            } catch (final Exception abortException) {
+                logger.warn(format("Unable to abort multipart upload of %s: %s", key, abortException.getMessage()));
+            }
+
+            if (ex instanceof ExecutionException && ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * @return pool uploading parts of all files of this backuper, it has as many threads as there might be parts
+     * uploaded concurrently, i.e. the number of files uploaded concurrently times the number of parts of one file
+     */
+    private synchronized ExecutorService getPartExecutorService() {
+        if (partExecutorService == null) {
+            final int concurrentConnections = request.concurrentConnections == null ? 10 : request.concurrentConnections;
+            final int partConcurrency = request.s3PartConcurrency == null ? DEFAULT_PART_CONCURRENCY : request.s3PartConcurrency;
+
+            partExecutorService = Executors.newFixedThreadPool(Math.max(1, concurrentConnections * partConcurrency),
+                                                               new ThreadFactoryBuilder().setNameFormat("s3-part-upload-%d").setDaemon(true).build());
+        }
+
+        return partExecutorService;
+    }
+
+    private PartETag uploadPart(final AmazonS3 amazonS3,
+                                final Path localFile,
+                                final String key,
+                                final String uploadId,
+                                final int partNumber,
+                                final long offset,
+                                final long length,
+                                final Function<InputStream, InputStream> throttle) throws Exception {
+        try {
+            return createRetrier(request.retry).submit(() -> {
+                try (final FileChannel channel = FileChannel.open(localFile, StandardOpenOption.READ)) {
+                    channel.position(offset);
+
+                    final InputStream partStream = throttle.apply(new BufferedInputStream(ByteStreams.limit(Channels.newInputStream(channel), length)));
+
+                    final UploadPartRequest uploadPartRequest = new UploadPartRequest()
+                        .withBucketName(request.storageLocation.bucket)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withPartSize(length)
+                        .withInputStream(partStream);
+
+                    final PartETag partETag = shaped(getRateController(), getShouldCancel(), () -> amazonS3.uploadPart(uploadPartRequest).getPartETag());
+
+                    logger.debug("Successfully uploaded part {} of {}.", partNumber, key);
+
+                    return partETag;
+                } catch (final AmazonServiceException ex) {
+                    if (isThrottled(ex)) {
+                        throw throttled(ex);
+                    }
+                    throw new RetriableException(format("Error occurred while uploading part %s of %s: %s", partNumber, key, ex.getMessage()), ex);
+                } catch (final AmazonClientException ex) {
+                    throw new RetriableException(format("Error occurred while uploading part %s of %s: %s", partNumber, key, ex.getMessage()), ex);
+                }
+            });
+        } catch (final RetriableException ex) {
+            // parts are retried on their own here, a caller must not upload a whole file again once they are exhausted
+            throw new IllegalStateException(format("Unable to upload part %s of %s: %s", partNumber, key, ex.getMessage()), ex);
+        }
     }
 
     @Override
@@ -131,7 +351,10 @@ public class BaseS3Backuper extends Backuper {
                                                                            setContentLength(text.getBytes().length);
                                                                        }});
 
-        transferManager.upload(putObjectRequest, new UploadProgressListener(s3RemoteObjectReference)).waitForCompletion();
+        shaped(getRateController(), getShouldCancel(), () -> {
+            transferManager.upload(putObjectRequest, new UploadProgressListener(s3RemoteObjectReference)).waitForCompletion();
+            return null;
+        });
     }
 
     public static class UploadProgressListener implements S3ProgressListener {
@@ -171,6 +394,12 @@ public class BaseS3Backuper extends Backuper {
 
     @Override
     public void cleanup() {
+        synchronized (this) {
+            if (partExecutorService != null) {
+                partExecutorService.shutdownNow();
+            }
+        }
+
         try {
             transferManager.shutdownNow(true);
         } catch (final Exception ex) {
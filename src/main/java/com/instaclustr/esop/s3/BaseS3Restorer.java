@@ -1,7 +1,8 @@
 package com.instaclustr.esop.s3;
 
+import static com.instaclustr.esop.s3.S3Throttling.retriable;
+import static com.instaclustr.esop.s3.S3Throttling.shaped;
 import static java.lang.String.format;
-import static java.util.stream.Collectors.toCollection;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -11,6 +12,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -20,13 +24,16 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.event.ProgressEvent;
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
 import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
 import com.amazonaws.services.s3.model.S3Object;
-import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.transfer.PersistableTransfer;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.io.CharStreams;
 import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.RemoteObjectReference;
@@ -36,7 +43,6 @@ import com.instaclustr.esop.impl.restore.RestoreCommitLogsOperationRequest;
 import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
 import com.instaclustr.esop.impl.restore.Restorer;
 import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
-import com.instaclustr.esop.impl.retry.RetrierFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,33 +52,42 @@ public class BaseS3Restorer extends Restorer {
 
     protected final AmazonS3 amazonS3;
     protected final TransferManager transferManager;
+    private final ObjectMapper objectMapper;
 
     public BaseS3Restorer(final TransferManagerFactory transferManagerFactory,
-                          final RestoreOperationRequest request) {
+                          final RestoreOperationRequest request,
+                          final ObjectMapper objectMapper) {
         super(request);
         this.transferManager = transferManagerFactory.build(request);
         this.amazonS3 = this.transferManager.getAmazonS3Client();
+        this.objectMapper = objectMapper;
     }
 
     public BaseS3Restorer(final TransferManagerFactory transferManagerFactory,
-                          final RestoreCommitLogsOperationRequest request) {
+                          final RestoreCommitLogsOperationRequest request,
+                          final ObjectMapper objectMapper) {
         super(request);
         this.transferManager = transferManagerFactory.build(request);
         this.amazonS3 = this.transferManager.getAmazonS3Client();
+        this.objectMapper = objectMapper;
     }
 
     public BaseS3Restorer(final TransferManagerFactory transferManagerFactory,
-                          final ListOperationRequest request) {
+                          final ListOperationRequest request,
+                          final ObjectMapper objectMapper) {
         super(request);
         this.transferManager = transferManagerFactory.build(request);
         this.amazonS3 = this.transferManager.getAmazonS3Client();
+        this.objectMapper = objectMapper;
     }
 
     public BaseS3Restorer(final TransferManagerFactory transferManagerFactory,
-                          final RemoveBackupRequest request) {
+                          final RemoveBackupRequest request,
+                          final ObjectMapper objectMapper) {
         super(request);
         this.transferManager = transferManagerFactory.build(request);
         this.amazonS3 = this.transferManager.getAmazonS3Client();
+        this.objectMapper = objectMapper;
     }
 
     @Override
@@ -88,46 +103,90 @@ public class BaseS3Restorer extends Restorer {
     @Override
     public String downloadFileToString(final RemoteObjectReference objectReference) throws Exception {
         final GetObjectRequest getObjectRequest = new GetObjectRequest(request.storageLocation.bucket, objectReference.canonicalPath);
-        try (final InputStream is = transferManager.getAmazonS3Client().getObject(getObjectRequest).getObjectContent(); final InputStreamReader isr = new InputStreamReader(is)) {
-            return CharStreams.toString(isr);
-        }
+
+        // manifests and catalogs are read by the same rate controller as data files, a body is read as a part of a request
+        return shaped(getRateController(), getShouldCancel(), () -> {
+            try (final InputStream is = amazonS3.getObject(getObjectRequest).getObjectContent(); final InputStreamReader isr = new InputStreamReader(is)) {
+                return CharStreams.toString(isr);
+            }
+        });
     }
 
     @Override
     public void downloadFile(final Path localPath, final RemoteObjectReference objectReference) throws Exception {
-        RetrierFactory.getRetrier(request.retry).submit(new Runnable() {
+        createRetrier(request.retry).submit(new Callable<Void>() {
             @Override
-            public void run() {
+            public Void call() throws Exception {
                 try {
                     Files.createDirectories(localPath.getParent());
 
                     final GetObjectRequest getObjectRequest = new GetObjectRequest(request.storageLocation.bucket, objectReference.canonicalPath);
 
                     try {
-                        transferManager.download(getObjectRequest,
-                                                 localPath.toFile(),
-                                                 new DownloadProgressListener(objectReference)).waitForCompletion();
+                        shaped(getRateController(), getShouldCancel(), () -> {
+                            transferManager.download(getObjectRequest,
+                                                     localPath.toFile(),
+                                                     new DownloadProgressListener(objectReference)).waitForCompletion();
+                            return null;
+                        });
                     } catch (final Exception ex) {
                         Files.deleteIfExists(localPath);
                         throw ex;
                     }
                 } catch (final AmazonServiceException ex) {
-                    if (ex.getStatusCode() > 500) {
-                        throw new RetriableException(ex.getMessage(), ex);
-                    }
                     if (ex.getStatusCode() == 404) {
                         logger.error("Remote object reference {} does not exist.", objectReference);
                     }
-                    throw ex;
+                    throw retriable(ex);
                 } catch (final AmazonClientException ex) {
                     throw new RetriableException(format("Error in S3 client while downloading %s", objectReference.objectKey), ex);
                 } catch (final IOException | InterruptedException ex) {
                     throw new RuntimeException(ex);
                 }
+
+                return null;
             }
         });
     }
 
+    @Override
+    public InputStream downloadFileStream(final RemoteObjectReference objectReference) throws Exception {
+        // a caller retries a whole download as a stream might fail while it is read
+        try {
+            return shaped(getRateController(), getShouldCancel(), () -> amazonS3.getObject(new GetObjectRequest(request.storageLocation.bucket, objectReference.canonicalPath)).getObjectContent());
+        } catch (final AmazonServiceException ex) {
+            if (ex.getStatusCode() == 404) {
+                logger.error("Remote object reference {} does not exist.", objectReference);
+            }
+            throw retriable(ex);
+        } catch (final AmazonClientException ex) {
+            throw new RetriableException(format("Error in S3 client while downloading %s", objectReference.objectKey), ex);
+        }
+    }
+
+    @Override
+    public InputStream downloadFileRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception {
+        // a caller retries every range on its own, it is not retried here too
+        try {
+            final GetObjectRequest getObjectRequest = new GetObjectRequest(request.storageLocation.bucket, objectReference.canonicalPath)
+                .withRange(offset, offset + length - 1);
+
+            return shaped(getRateController(), getShouldCancel(), () -> amazonS3.getObject(getObjectRequest).getObjectContent());
+        } catch (final AmazonServiceException ex) {
+            if (ex.getStatusCode() == 404) {
+                logger.error("Remote object reference {} does not exist.", objectReference);
+            }
+            throw retriable(ex);
+        } catch (final AmazonClientException ex) {
+            throw new RetriableException(format("Error in S3 client while downloading %s", objectReference.objectKey), ex);
+        }
+    }
+
+    @Override
+    public void uploadText(final String text, final RemoteObjectReference objectReference) throws Exception {
+        shaped(getRateController(), getShouldCancel(), () -> amazonS3.putObject(request.storageLocation.bucket, objectReference.canonicalPath, text));
+    }
+
     @Override
     public String downloadFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final S3Object s3Object = getBlobItemPath(remotePrefix.toString(), keyFilter);
@@ -136,11 +195,16 @@ public class BaseS3Restorer extends Restorer {
 
     @Override
     public String downloadManifestToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
-        final S3Object manifestObject = getManifest(resolveNodeAwareRemotePath(remotePrefix), keyFilter);
-        final String fileName = manifestObject.getKey().split("/")[manifestObject.getKey().split("/").length - 1];
+        final String fileName = resolveManifestName(remotePrefix, keyFilter);
         return downloadFileToString(objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(fileName)));
     }
 
+    @Override
+    public String resolveManifestName(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
+        final String manifestKey = getManifestKey(resolveNodeAwareRemotePath(remotePrefix), keyFilter);
+        return manifestKey.split("/")[manifestKey.split("/").length - 1];
+    }
+
     @Override
     public String downloadNodeFileToString(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final S3Object s3Object = getBlobItemPath(resolveNodeAwareRemotePath(remotePrefix), keyFilter);
@@ -159,48 +223,36 @@ public class BaseS3Restorer extends Restorer {
         return destination;
     }
 
-    private S3Object getManifest(final String remotePrefix, final Predicate<String> keyFilter) {
-        final List<S3ObjectSummary> summaryList = listBucket(remotePrefix, keyFilter);
+    private String getManifestKey(final String remotePrefix, final Predicate<String> keyFilter) throws Exception {
+        final List<String> keys = listBucket(remotePrefix, keyFilter);
 
-        if (summaryList.isEmpty()) {
+        if (keys.isEmpty()) {
             throw new IllegalStateException("There is no manifest requested found.");
         }
 
-        final String manifestFullKey = Manifest.parseLatestManifest(summaryList.stream().map(S3ObjectSummary::getKey).collect(Collectors.toList()));
-        return amazonS3.getObject(request.storageLocation.bucket, manifestFullKey);
+        return Manifest.parseLatestManifest(keys);
     }
 
-    private List<S3ObjectSummary> listBucket(final String remotePrefix, final Predicate<String> keyFilter) {
-        ObjectListing objectListing = amazonS3.listObjects(request.storageLocation.bucket, remotePrefix);
-
-        boolean hasMoreContent = true;
+    private List<String> listBucket(final String remotePrefix, final Predicate<String> keyFilter) throws Exception {
+        final List<String> keys = new ArrayList<>();
 
-        final List<S3ObjectSummary> summaryList = new ArrayList<>();
-
-        while (hasMoreContent) {
-            objectListing.getObjectSummaries().stream()
-                .filter(objectSummary -> !objectSummary.getKey().endsWith("/")) // no dirs
-                .filter(file -> keyFilter.test(file.getKey()))
-                .collect(toCollection(() -> summaryList));
-
-            if (objectListing.isTruncated()) {
-                objectListing = amazonS3.listNextBatchOfObjects(objectListing);
-            } else {
-                hasMoreContent = false;
+        S3Listing.listObjects(amazonS3, getRateController(), getShouldCancel(), request.storageLocation.bucket, remotePrefix, (key, lastModified) -> {
+            if (keyFilter.test(key)) {
+                keys.add(key);
             }
-        }
+        });
 
-        return summaryList;
+        return keys;
     }
 
-    private S3Object getBlobItemPath(final String remotePrefix, final Predicate<String> keyFilter) {
-        final List<S3ObjectSummary> summaryList = listBucket(remotePrefix, keyFilter);
+    private S3Object getBlobItemPath(final String remotePrefix, final Predicate<String> keyFilter) throws Exception {
+        final List<String> keys = listBucket(remotePrefix, keyFilter);
 
-        if (summaryList.size() != 1) {
-            throw new IllegalStateException(format("There is not one key which satisfies key filter: %s", summaryList.toString()));
+        if (keys.size() != 1) {
+            throw new IllegalStateException(format("There is not one key which satisfies key filter: %s", keys.toString()));
         }
 
-        return amazonS3.getObject(request.storageLocation.bucket, summaryList.get(0).getKey());
+        return shaped(getRateController(), getShouldCancel(), () -> amazonS3.getObject(request.storageLocation.bucket, keys.get(0)));
     }
 
     private static class DownloadProgressListener implements S3ProgressListener {
@@ -226,27 +278,68 @@ public class BaseS3Restorer extends Restorer {
 
 
     @Override
-    public void consumeFiles(final RemoteObjectReference prefix, final Consumer<RemoteObjectReference> consumer) {
+    public void consumeFiles(final RemoteObjectReference prefix, final Consumer<RemoteObjectReference> consumer) throws Exception {
 
         final Path bucketPath = Paths.get(request.storageLocation.clusterId).resolve(request.storageLocation.datacenterId).resolve(request.storageLocation.nodeId);
 
-        ObjectListing objectListing = amazonS3.listObjects(request.storageLocation.bucket, prefix.canonicalPath);
+        S3Listing.listObjects(amazonS3, getRateController(), getShouldCancel(), request.storageLocation.bucket, prefix.canonicalPath,
+                              (key, lastModified) -> consumer.accept(objectKeyToNodeAwareRemoteReference(bucketPath.relativize(Paths.get(key)))));
+    }
 
-        boolean hasMoreContent = true;
+    @Override
+    public List<Manifest> listManifests() throws Exception {
+        return fetchManifests(objectMapper);
+    }
 
-        while (hasMoreContent) {
-            objectListing.getObjectSummaries().stream()
-                .filter(objectSummary -> !objectSummary.getKey().endsWith("/"))
-                .forEach(objectSummary -> consumer.accept(objectKeyToNodeAwareRemoteReference(bucketPath.relativize(Paths.get(objectSummary.getKey())))));
+    @Override
+    public void delete(final Path objectKey) throws Exception {
+        final RemoteObjectReference remoteObjectReference = objectKeyToNodeAwareRemoteReference(objectKey);
+        logger.info("Deleting object {}", remoteObjectReference.canonicalPath);
+        shaped(getRateController(), getShouldCancel(), () -> {
+            amazonS3.deleteObject(request.storageLocation.bucket, remoteObjectReference.canonicalPath);
+            return null;
+        });
+    }
 
-            if (objectListing.isTruncated()) {
-                objectListing = amazonS3.listNextBatchOfObjects(objectListing);
-            } else {
-                hasMoreContent = false;
-            }
+    @Override
+    public void listNodeObjects(final Path prefix, final BiConsumer<String, Long> consumer) throws Exception {
+        S3Listing.listObjects(amazonS3, getRateController(), getShouldCancel(), request.storageLocation.bucket, resolveNodeAwareRemotePath(prefix) + "/", consumer);
+    }
+
+    @Override
+    protected int getDeletionBatchSize() {
+        // maximum number of keys of one DeleteObjects request
+        return 1000;
+    }
+
+    @Override
+    protected List<Path> deleteBatch(final List<Path> objectKeys) throws Exception {
+        final List<KeyVersion> keys = objectKeys.stream().map(objectKey -> new KeyVersion(resolveNodeAwareRemotePath(objectKey))).collect(Collectors.toList());
+
+        try {
+            shaped(getRateController(), getShouldCancel(), () -> amazonS3.deleteObjects(new DeleteObjectsRequest(request.storageLocation.bucket).withKeys(keys).withQuiet(true)));
+            return new ArrayList<>();
+        } catch (final MultiObjectDeleteException ex) {
+            final Set<String> failedKeys = ex.getErrors().stream().map(DeleteError::getKey).collect(Collectors.toSet());
+            ex.getErrors().forEach(error -> logger.debug("Unable to delete {}: {} {}", error.getKey(), error.getCode(), error.getMessage()));
+            return objectKeys.stream().filter(objectKey -> failedKeys.contains(resolveNodeAwareRemotePath(objectKey))).collect(Collectors.toList());
+        } catch (final AmazonServiceException ex) {
+            throw retriable(ex);
+        } catch (final AmazonClientException ex) {
+            throw new RetriableException(format("Error in S3 client while deleting %s objects", objectKeys.size()), ex);
         }
     }
 
+    @Override
+    protected List<String> listDirectories(final String prefix) throws Exception {
+        final List<String> directories = new ArrayList<>();
+
+        S3Listing.listCommonPrefixes(amazonS3, getRateController(), getShouldCancel(), request.storageLocation.bucket, prefix,
+                                     commonPrefix -> directories.add(commonPrefix.substring(prefix.length(), commonPrefix.length() - 1)));
+
+        return directories;
+    }
+
     @Override
     public void cleanup() {
         transferManager.shutdownNow();
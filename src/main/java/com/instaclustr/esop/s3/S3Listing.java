@@ -0,0 +1,78 @@
+package com.instaclustr.esop.s3;
+
+import static com.instaclustr.esop.s3.S3Throttling.shaped;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.instaclustr.esop.impl.RateController;
+
+/**
+ * Listing of objects shared by S3 backupers and restorers.
+ */
+final class S3Listing {
+
+    private S3Listing() {
+    }
+
+    /**
+     * Lists all objects of a bucket which keys start with given prefix, page by page.
+     *
+     * @param consumer consumer of keys of listed objects and their last modification times in milliseconds
+     */
+    static void listObjects(final AmazonS3 amazonS3,
+                            final RateController rateController,
+                            final AtomicBoolean shouldCancel,
+                            final String bucket,
+                            final String prefix,
+                            final BiConsumer<String, Long> consumer) throws Exception {
+        final ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName(bucket).withPrefix(prefix);
+
+        listPages(amazonS3, rateController, shouldCancel, listObjectsRequest, objectListing -> {
+            objectListing.getObjectSummaries().stream()
+                .filter(objectSummary -> !objectSummary.getKey().endsWith("/")) // no dirs
+                .forEach(objectSummary -> consumer.accept(objectSummary.getKey(), objectSummary.getLastModified().getTime()));
+        });
+    }
+
+    /**
+     * Lists all common prefixes of a bucket which are directly under given prefix, page by page.
+     *
+     * @param consumer consumer of listed prefixes, each of them ends with a slash
+     */
+    static void listCommonPrefixes(final AmazonS3 amazonS3,
+                                   final RateController rateController,
+                                   final AtomicBoolean shouldCancel,
+                                   final String bucket,
+                                   final String prefix,
+                                   final Consumer<String> consumer) throws Exception {
+        final ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName(bucket).withPrefix(prefix).withDelimiter("/");
+
+        listPages(amazonS3, rateController, shouldCancel, listObjectsRequest, objectListing -> objectListing.getCommonPrefixes().forEach(consumer));
+    }
+
+    private static void listPages(final AmazonS3 amazonS3,
+                                  final RateController rateController,
+                                  final AtomicBoolean shouldCancel,
+                                  final ListObjectsRequest listObjectsRequest,
+                                  final Consumer<ObjectListing> consumer) throws Exception {
+        ObjectListing objectListing = shaped(rateController, shouldCancel, () -> amazonS3.listObjects(listObjectsRequest));
+
+        boolean hasMoreContent = true;
+
+        while (hasMoreContent) {
+            consumer.accept(objectListing);
+
+            if (objectListing.isTruncated()) {
+                final ObjectListing previousListing = objectListing;
+                objectListing = shaped(rateController, shouldCancel, () -> amazonS3.listNextBatchOfObjects(previousListing));
+            } else {
+                hasMoreContent = false;
+            }
+        }
+    }
+}
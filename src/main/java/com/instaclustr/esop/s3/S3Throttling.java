@@ -0,0 +1,68 @@
+package com.instaclustr.esop.s3;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.instaclustr.esop.impl.RateController;
+import com.instaclustr.esop.impl.RateController.Outcome;
+import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
+import com.instaclustr.esop.impl.retry.Retrier.ThrottledException;
+
+public final class S3Throttling {
+
+    private S3Throttling() {
+    }
+
+    /**
+     * @param ex exception returned by S3
+     * @return true if a request was rejected because of the rate of requests, e.g. 503 SlowDown or 429 Too Many Requests
+     */
+    public static boolean isThrottled(final AmazonServiceException ex) {
+        return ex.getStatusCode() == 429 || "SlowDown".equals(ex.getErrorCode()) || "Throttling".equals(ex.getErrorCode());
+    }
+
+    public static ThrottledException throttled(final AmazonServiceException ex) {
+        return new ThrottledException(ex.getMessage(), ex);
+    }
+
+    /**
+     * @param ex exception returned by S3
+     * @return exception to throw instead, a request is retried if it was throttled or if it failed on an error of S3 itself
+     */
+    public static RuntimeException retriable(final AmazonServiceException ex) {
+        if (isThrottled(ex)) {
+            return throttled(ex);
+        }
+
+        if (ex.getStatusCode() >= 500) {
+            return new RetriableException(ex.getMessage(), ex);
+        }
+
+        return ex;
+    }
+
+    /**
+     * Executes a request to S3 once a rate controller permits it, a request is not waited for once an operation is cancelled.
+     */
+    public static <T> T shaped(final RateController rateController, final AtomicBoolean shouldCancel, final Callable<T> request) throws Exception {
+        return rateController.call(request, S3Throttling::classify, shouldCancel);
+    }
+
+    public static Outcome classify(final Exception ex) {
+        if (ex instanceof AmazonServiceException) {
+            final AmazonServiceException serviceException = (AmazonServiceException) ex;
+
+            if (isThrottled(serviceException)) {
+                return Outcome.THROTTLED;
+            }
+
+            return serviceException.getStatusCode() >= 500 ? Outcome.FAILED : Outcome.SUCCEEDED;
+        } else if (ex instanceof AmazonClientException) {
+            return Outcome.FAILED;
+        }
+
+        return RateController.classify(ex);
+    }
+}
@@ -1,5 +1,6 @@
 package com.instaclustr.esop.s3.ceph;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import com.instaclustr.esop.impl.list.ListOperationRequest;
@@ -13,25 +14,29 @@ public class CephRestorer extends BaseS3Restorer {
 
     @AssistedInject
     public CephRestorer(final CephS3TransferManagerFactory transferManagerFactory,
-                        @Assisted final RestoreOperationRequest request) {
-        super(transferManagerFactory, request);
+                        @Assisted final RestoreOperationRequest request,
+                        final ObjectMapper objectMapper) {
+        super(transferManagerFactory, request, objectMapper);
     }
 
     @AssistedInject
     public CephRestorer(final CephS3TransferManagerFactory transferManagerFactory,
-                        @Assisted final RestoreCommitLogsOperationRequest request) {
-        super(transferManagerFactory, request);
+                        @Assisted final RestoreCommitLogsOperationRequest request,
+                        final ObjectMapper objectMapper) {
+        super(transferManagerFactory, request, objectMapper);
     }
 
     @AssistedInject
     public CephRestorer(final CephS3TransferManagerFactory transferManagerFactory,
-                        @Assisted final ListOperationRequest request) {
-        super(transferManagerFactory, request);
+                        @Assisted final ListOperationRequest request,
+                        final ObjectMapper objectMapper) {
+        super(transferManagerFactory, request, objectMapper);
     }
 
     @AssistedInject
     public CephRestorer(final CephS3TransferManagerFactory transferManagerFactory,
-                        @Assisted final RemoveBackupRequest request) {
-        super(transferManagerFactory, request);
+                        @Assisted final RemoveBackupRequest request,
+                        final ObjectMapper objectMapper) {
+        super(transferManagerFactory, request, objectMapper);
     }
 }
@@ -0,0 +1,68 @@
+package com.instaclustr.esop.backup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl.list.ListOperationRequest;
+import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
+import com.instaclustr.esop.impl.restore.BaseRestoreOperationRequest;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import com.instaclustr.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+
+/**
+ * Base of tests against a local storage in a temporary directory which is created before every test and deleted after it.
+ * A storage holds bucket "bucket", node "cluster/dc/node" of it is tested unless a test sets a request to some other node.
+ */
+public abstract class AbstractLocalStorageTest {
+
+    protected Path dir;
+
+    @BeforeMethod
+    public void createStorage() throws Exception {
+        dir = Files.createTempDirectory(getClass().getSimpleName());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteStorage() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * @return directory of node "cluster/dc/node" in a storage
+     */
+    protected Path nodeDir() {
+        return dir.resolve("bucket/cluster/dc/node");
+    }
+
+    /**
+     * Sets a request to node "cluster/dc/node" of a storage.
+     */
+    protected <T extends BaseRestoreOperationRequest> T request(final T request) {
+        return request(request, "cluster/dc/node");
+    }
+
+    /**
+     * @param nodePath path of a node in a bucket, e.g. "cluster/dc/node"
+     */
+    protected <T extends BaseRestoreOperationRequest> T request(final T request, final String nodePath) {
+        request.storageLocation = new StorageLocation("file://" + dir.toAbsolutePath() + "/bucket/" + nodePath);
+        return request;
+    }
+
+    protected LocalFileRestorer restorer(final RestoreOperationRequest request) {
+        return new LocalFileRestorer(request, new ObjectMapper());
+    }
+
+    protected LocalFileRestorer restorer(final RemoveBackupRequest request) {
+        return new LocalFileRestorer(request, new ObjectMapper());
+    }
+
+    protected LocalFileRestorer restorer(final ListOperationRequest request) {
+        return new LocalFileRestorer(request, new ObjectMapper());
+    }
+}
@@ -0,0 +1,134 @@
+package com.instaclustr.esop.backup;
+
+import static com.instaclustr.esop.backup.BackupRestoreTestUtils.manifest;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instaclustr.esop.impl.BackupCatalog;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
+import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
+import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import org.testng.annotations.Test;
+
+public class BackupCatalogTest extends AbstractLocalStorageTest {
+
+    @Test
+    public void testCatalogReportsAsManifests() throws Exception {
+        // newest first, as manifests are listed
+        final List<Manifest> manifests = Arrays.asList(manifest("snap3-schema-3000.json", "data/ks1/tb1/3/mc-3-big-Data.db", "data/ks1/tb1/2/mc-2-big-Data.db"),
+                                                       manifest("snap2-schema-2000.json", "data/ks1/tb1/2/mc-2-big-Data.db", "data/ks1/tb1/1/mc-1-big-Data.db"),
+                                                       manifest("snap1-schema-1000.json", "data/ks1/tb1/1/mc-1-big-Data.db", "data/ks1/tb1/0/mc-0-big-Data.db"));
+
+        final AllManifestsReport expected = AllManifestsReport.report(manifests);
+        final BackupCatalog catalog = BackupCatalog.build(manifests);
+
+        assertReports(catalog.report(), expected);
+
+        // catalog survives its serialisation
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final BackupCatalog read = BackupCatalog.read(BackupCatalog.write(catalog, objectMapper), objectMapper);
+
+        assertReports(read.report(), expected);
+        assertTrue(read.isConsistentWith(Arrays.asList("snap1-schema-1000.json", "snap2-schema-2000.json", "snap3-schema-3000.json")));
+        assertFalse(read.isConsistentWith(Arrays.asList("snap1-schema-1000.json", "snap2-schema-2000.json")));
+
+        // removal of the oldest backup makes the next oldest the only owner of its object
+        assertTrue(read.remove("snap1-schema-1000.json"));
+        assertFalse(read.remove("snap1-schema-1000.json"));
+
+        assertReports(read.report(), AllManifestsReport.report(manifests.subList(0, 2)));
+        assertEquals(read.report().get("snap2-schema-2000").get().removableEntries, Arrays.asList("data/ks1/tb1/1/mc-1-big-Data.db"));
+
+        // a new backup is added on top, the latest object is not reclaimable by removal of the previous backup anymore
+        assertEquals(read.report().get("snap3-schema-3000").get().reclaimableSpace, 10);
+
+        read.add(manifest("snap4-schema-4000.json", "data/ks1/tb1/3/mc-3-big-Data.db"));
+
+        assertEquals(read.report().getLatest().get().name, "snap4-schema-4000");
+        assertEquals(read.report().get("snap3-schema-3000").get().reclaimableSpace, 0);
+    }
+
+    @Test
+    public void testCatalogRecordsBasesOfDeltas() throws Exception {
+        final Manifest delta = manifest(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snap2-schema-2000.json", "data/ks1/tb1/2/mc-2-big-Data.db");
+        delta.setBaseManifest("snap1-schema-1000.json");
+
+        final List<Manifest> manifests = Arrays.asList(delta, manifest("snap1-schema-1000.json", "data/ks1/tb1/1/mc-1-big-Data.db"));
+        final List<String> manifestNames = Arrays.asList("snap1-schema-1000.json", Manifest.INCREMENTAL_MANIFEST_PREFIX + "snap2-schema-2000.json");
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final BackupCatalog catalog = BackupCatalog.read(BackupCatalog.write(BackupCatalog.build(manifests), objectMapper), objectMapper);
+
+        assertReports(catalog.report(), AllManifestsReport.report(manifests));
+        assertEquals(catalog.report().getDeltas(catalog.report().get("snap1-schema-1000").get()).size(), 1);
+        assertTrue(catalog.isConsistentWith(manifestNames));
+
+        // a catalog which does not know a base of a delta is rebuilt
+        catalog.manifests.get(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snap2-schema-2000.json").baseManifest = null;
+        assertFalse(catalog.isConsistentWith(manifestNames));
+    }
+
+    @Test
+    public void testRemovalKeepsManifestsAddedSinceCatalogWasLoaded() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final LocalFileRestorer restorer = restorer(request(new RemoveBackupRequest()));
+
+        final List<Manifest> manifests = Arrays.asList(manifest("snap2-schema-2000.json", "data/ks1/tb1/2/mc-2-big-Data.db"),
+                                                       manifest("snap1-schema-1000.json", "data/ks1/tb1/1/mc-1-big-Data.db"));
+
+        // there is not any catalog yet, the one of a removal is uploaded
+        final BackupCatalog catalog = BackupCatalog.build(manifests);
+        catalog.remove("snap1-schema-1000.json");
+        BackupCatalog.remove(restorer, catalog, Collections.singletonList("snap1-schema-1000.json"), objectMapper);
+
+        assertEquals(downloadCatalog(restorer, objectMapper).manifests.keySet(), new HashSet<>(Arrays.asList("snap2-schema-2000.json")));
+
+        // a removal loads a catalog, then a backup adds a manifest to it while backups are removed
+        BackupCatalog.upload(restorer, BackupCatalog.build(manifests), objectMapper);
+
+        final BackupCatalog loaded = downloadCatalog(restorer, objectMapper);
+
+        final BackupCatalog updated = downloadCatalog(restorer, objectMapper);
+        updated.add(manifest("snap3-schema-3000.json", "data/ks1/tb1/3/mc-3-big-Data.db"));
+        BackupCatalog.upload(restorer, updated, objectMapper);
+
+        loaded.remove("snap1-schema-1000.json");
+        BackupCatalog.remove(restorer, loaded, Collections.singletonList("snap1-schema-1000.json"), objectMapper);
+
+        assertEquals(downloadCatalog(restorer, objectMapper).manifests.keySet(), new HashSet<>(Arrays.asList("snap2-schema-2000.json", "snap3-schema-3000.json")));
+    }
+
+    private static BackupCatalog downloadCatalog(final LocalFileRestorer restorer, final ObjectMapper objectMapper) throws Exception {
+        return BackupCatalog.read(restorer.downloadFileToString(restorer.objectKeyToNodeAwareRemoteReference(BackupCatalog.CATALOG_KEY)), objectMapper);
+    }
+
+    private static void assertReports(final AllManifestsReport actual, final AllManifestsReport expected) {
+        assertEquals(actual.totalFiles, expected.totalFiles);
+        assertEquals(actual.totalSize, expected.totalSize);
+        assertEquals(actual.totalManifests, expected.totalManifests);
+        assertEquals(actual.reports.size(), expected.reports.size());
+
+        for (int i = 0; i < expected.reports.size(); i++) {
+            final ManifestReport actualReport = actual.reports.get(i);
+            final ManifestReport expectedReport = expected.reports.get(i);
+
+            assertEquals(actualReport.name, expectedReport.name);
+            assertEquals(actualReport.files, expectedReport.files);
+            assertEquals(actualReport.size, expectedReport.size);
+            assertEquals(actualReport.reclaimableSpace, expectedReport.reclaimableSpace);
+            assertEquals(new HashSet<>(actualReport.removableEntries), new HashSet<>(expectedReport.removableEntries));
+            assertEquals(actualReport.unixtimestamp, expectedReport.unixtimestamp);
+            assertEquals(actualReport.manifest.objectKey, expectedReport.manifest.objectKey);
+            assertEquals(actualReport.baseManifest, expectedReport.baseManifest);
+        }
+    }
+}
@@ -14,6 +14,12 @@ import java.util.Map;
 import java.util.stream.Stream;
 
 import com.google.common.collect.ImmutableList;
+import com.instaclustr.esop.impl.KeyspaceTable;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.Snapshots.Snapshot;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace.Table;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -127,4 +133,58 @@ public class BackupRestoreTestUtils {
             createConfigFiles(config);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @param name        name of a manifest
+     * @param generations generations of Data.db files of table ks1.tb1, 10 bytes each
+     * @return manifest of given files
+     */
+    public static Manifest manifest(final String name, final int... generations) {
+        return tableManifest(name, "ks1", "tb1", generations);
+    }
+
+    /**
+     * @param name        name of a manifest
+     * @param keyspace    keyspace of a table
+     * @param table       table of files
+     * @param generations generations of Data.db files of a table, 10 bytes each
+     * @return manifest of given files
+     */
+    public static Manifest tableManifest(final String name, final String keyspace, final String table, final int... generations) {
+        final String[] objectKeys = new String[generations.length];
+
+        for (int i = 0; i < generations.length; i++) {
+            objectKeys[i] = "data/" + keyspace + "/" + table + "/" + generations[i] + "/mc-" + generations[i] + "-big-Data.db";
+        }
+
+        return manifestOf(name, keyspace, table, objectKeys);
+    }
+
+    /**
+     * @param name       name of a manifest
+     * @param objectKeys object keys of files of table ks1.tb1, 10 bytes each
+     * @return manifest of given files
+     */
+    public static Manifest manifest(final String name, final String... objectKeys) {
+        return manifestOf(name, "ks1", "tb1", objectKeys);
+    }
+
+    private static Manifest manifestOf(final String name, final String keyspace, final String table, final String[] objectKeys) {
+        final Table tb = new Table();
+
+        for (final String objectKey : objectKeys) {
+            tb.add(new ManifestEntry(Paths.get(objectKey), null, ManifestEntry.Type.FILE, 10, new KeyspaceTable(keyspace, table), null));
+        }
+
+        final Keyspace ks = new Keyspace(null);
+        ks.add(table, tb);
+
+        final Snapshot snapshot = new Snapshot();
+        snapshot.add(keyspace, ks);
+
+        final Manifest manifest = new Manifest(snapshot);
+        manifest.setManifest(new ManifestEntry(Paths.get("manifests", name), null, ManifestEntry.Type.FILE, null));
+
+        return manifest;
+    }
+}
@@ -0,0 +1,73 @@
+package com.instaclustr.esop.backup;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.io.ByteStreams;
+import com.instaclustr.esop.impl.BandwidthLimiter;
+import org.testng.annotations.Test;
+
+public class BandwidthLimiterTest {
+
+    @Test
+    public void testLimitedStreamsShareBandwidth() throws Exception {
+        final byte[] data = new byte[300 * 1024];
+        new Random().nextBytes(data);
+
+        final BandwidthLimiter limiter = new BandwidthLimiter(200 * 1024);
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+        try {
+            final long start = System.currentTimeMillis();
+
+            final Future<byte[]> first = executorService.submit(() -> ByteStreams.toByteArray(limiter.limit(new ByteArrayInputStream(data), new AtomicBoolean())));
+            final Future<byte[]> second = executorService.submit(() -> ByteStreams.toByteArray(limiter.limit(new ByteArrayInputStream(data), new AtomicBoolean())));
+
+            assertEquals(first.get(), data);
+            assertEquals(second.get(), data);
+
+            // 600 KiB at 200 KiB/s altogether, not per stream
+            assertTrue(System.currentTimeMillis() - start >= 2000);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSkippedBytesDrawFromLimiter() throws Exception {
+        final byte[] data = new byte[300 * 1024];
+        final InputStream stream = new BandwidthLimiter(100 * 1024).limit(new ByteArrayInputStream(data), new AtomicBoolean());
+
+        final long start = System.currentTimeMillis();
+
+        ByteStreams.skipFully(stream, data.length - 1);
+        assertEquals(stream.read(), 0);
+        assertEquals(stream.read(), -1);
+
+        // 300 KiB at 100 KiB/s, skipping does not bypass a limiter
+        assertTrue(System.currentTimeMillis() - start >= 2000);
+    }
+
+    @Test
+    public void testCancelledRead() throws Exception {
+        final AtomicBoolean shouldCancel = new AtomicBoolean(true);
+        final InputStream stream = new BandwidthLimiter(1024).limit(new ByteArrayInputStream(new byte[10]), shouldCancel);
+
+        try {
+            stream.read();
+            fail("read should be cancelled");
+        } catch (final IOException ex) {
+            // expected
+        }
+    }
+}
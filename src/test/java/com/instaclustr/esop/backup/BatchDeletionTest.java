@@ -0,0 +1,127 @@
+package com.instaclustr.esop.backup;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
+import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
+import com.instaclustr.esop.impl.retry.RetrySpec;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import org.testng.annotations.Test;
+
+public class BatchDeletionTest extends AbstractLocalStorageTest {
+
+    @Test
+    public void testObjectsFailedToBeDeletedAreRetried() throws Exception {
+        final List<Path> objectKeys = createObjects(7);
+        final RemoveBackupRequest request = removeRequest();
+
+        // the second and the sixth object fail to be deleted on the first attempt
+        final Set<Path> failingOnce = new HashSet<>(Collections.singletonList(objectKeys.get(1)));
+        failingOnce.add(objectKeys.get(5));
+
+        final BatchDeletingRestorer restorer = new BatchDeletingRestorer(request, failingOnce, Collections.emptySet());
+        restorer.delete(objectKeys, request);
+
+        for (final Path objectKey : objectKeys) {
+            assertFalse(Files.exists(nodeDir().resolve(objectKey)));
+        }
+
+        // 7 objects in batches of 3 and then each failed object again, on its own
+        assertEquals(restorer.batches.size(), 5);
+        assertEquals(restorer.batches.stream().mapToInt(List::size).sum(), 9);
+        assertTrue(restorer.batches.contains(Collections.singletonList(objectKeys.get(1))));
+        assertTrue(restorer.batches.contains(Collections.singletonList(objectKeys.get(5))));
+    }
+
+    @Test
+    public void testObjectsFailingToBeDeletedFailDeletion() throws Exception {
+        final List<Path> objectKeys = createObjects(6);
+        final RemoveBackupRequest request = removeRequest();
+
+        final BatchDeletingRestorer restorer = new BatchDeletingRestorer(request,
+                                                                         Collections.emptySet(),
+                                                                         Collections.singleton(objectKeys.get(4)));
+
+        try {
+            restorer.delete(objectKeys, request);
+            fail("deletion should fail");
+        } catch (final RetriableException ex) {
+            // expected
+        }
+
+        // other objects of a batch are deleted
+        for (final Path objectKey : objectKeys) {
+            assertEquals(Files.exists(nodeDir().resolve(objectKey)), objectKey.equals(objectKeys.get(4)));
+        }
+    }
+
+    private List<Path> createObjects(final int count) throws Exception {
+        final List<Path> objectKeys = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final Path objectKey = Paths.get("data/ks1/tb1/" + i + "/mc-" + i + "-big-Data.db");
+            Files.createDirectories(nodeDir().resolve(objectKey).getParent());
+            Files.write(nodeDir().resolve(objectKey), ("data of " + i).getBytes());
+            objectKeys.add(objectKey);
+        }
+
+        return objectKeys;
+    }
+
+    private RemoveBackupRequest removeRequest() {
+        final RemoveBackupRequest request = request(new RemoveBackupRequest());
+        request.concurrentConnections = 2;
+        request.retry = new RetrySpec();
+        request.retry.intervalMillis = 1;
+        return request;
+    }
+
+    /**
+     * Deletes objects in batches of 3, one by one, some objects fail to be deleted once and some of them always.
+     */
+    private static class BatchDeletingRestorer extends LocalFileRestorer {
+
+        private final Set<Path> failingOnce;
+        private final Set<Path> failingAlways;
+        private final List<List<Path>> batches = Collections.synchronizedList(new ArrayList<>());
+
+        BatchDeletingRestorer(final RemoveBackupRequest request, final Set<Path> failingOnce, final Set<Path> failingAlways) {
+            super(request, new ObjectMapper());
+            this.failingOnce = Collections.synchronizedSet(new HashSet<>(failingOnce));
+            this.failingAlways = failingAlways;
+        }
+
+        @Override
+        protected int getDeletionBatchSize() {
+            return 3;
+        }
+
+        @Override
+        protected List<Path> deleteBatch(final List<Path> objectKeys) throws Exception {
+            batches.add(new ArrayList<>(objectKeys));
+            return super.deleteBatch(objectKeys);
+        }
+
+        @Override
+        public void delete(final Path objectKey) throws Exception {
+            if (failingOnce.remove(objectKey) || failingAlways.contains(objectKey)) {
+                throw new IllegalStateException("Unable to delete " + objectKey);
+            }
+
+            super.delete(objectKey);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.instaclustr.esop.backup;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instaclustr.esop.impl.AbstractTracker.Unit.State;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.ManifestEntry.Type;
+import com.instaclustr.esop.impl.RemoteObjectReference;
+import com.instaclustr.esop.impl.hash.HashServiceImpl;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadUnit;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.impl.retry.RetrySpec;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import com.instaclustr.measure.DataRate;
+import com.instaclustr.measure.DataRate.DataRateUnit;
+import org.testng.annotations.Test;
+
+public class DownloadTrackerTest extends AbstractLocalStorageTest {
+
+    @Test
+    public void testStreamFailingWhileReadIsDownloadedAgain() throws Exception {
+        final byte[] content = new byte[256 * 1024];
+        new Random(0).nextBytes(content);
+
+        final Path remoteFile = nodeDir().resolve("data/ks/tb/1-1234/mc-1-big-Data.db");
+        Files.createDirectories(remoteFile.getParent());
+        Files.write(remoteFile, content);
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+        request.retry = new RetrySpec();
+        request.retry.intervalMillis = 1;
+
+        final AtomicInteger streams = new AtomicInteger();
+
+        // the first stream fails in the middle of a file
+        final LocalFileRestorer restorer = new LocalFileRestorer(request, new ObjectMapper()) {
+            @Override
+            public InputStream downloadFileStream(final RemoteObjectReference objectReference) throws Exception {
+                final InputStream stream = super.downloadFileStream(objectReference);
+
+                if (streams.incrementAndGet() > 1) {
+                    return stream;
+                }
+
+                return new FilterInputStream(stream) {
+                    private int read;
+
+                    @Override
+                    public int read(final byte[] b, final int off, final int len) throws IOException {
+                        if (read > content.length / 2) {
+                            throw new IOException("connection reset");
+                        }
+
+                        final int n = super.read(b, off, len);
+                        read += Math.max(0, n);
+                        return n;
+                    }
+                };
+            }
+        };
+
+        final Path localFile = dir.resolve("restore/data/ks/tb/mc-1-big-Data.db");
+        final ManifestEntry entry = new ManifestEntry(Paths.get("data/ks/tb/1-1234/mc-1-big-Data.db"),
+                                                      localFile,
+                                                      Type.FILE,
+                                                      content.length,
+                                                      null,
+                                                      new HashServiceImpl(new HashSpec()).hash(remoteFile));
+
+        final DownloadUnit unit = new DownloadUnit(restorer, entry, new AtomicBoolean(), null, new HashSpec());
+        unit.call();
+
+        assertEquals(unit.getState(), State.FINISHED);
+        assertEquals(streams.get(), 2);
+        assertEquals(Files.readAllBytes(localFile), content);
+        assertFalse(Files.exists(localFile.resolveSibling(localFile.getFileName() + ".downloading")));
+        // a file is taken as verified by attributes it has after it was moved to its final location
+        assertEquals(unit.getVerifiedAttributes().get().lastModifiedTime(), Files.getLastModifiedTime(localFile));
+    }
+
+    @Test
+    public void testLargeFileIsVerifiedWhileDownloaded() throws Exception {
+        // a file consists of three ranges but ranges are not downloaded in parallel
+        final byte[] content = new byte[(int) (2.5 * 1024 * 1024)];
+        new Random(0).nextBytes(content);
+
+        final Path remoteFile = nodeDir().resolve("data/ks/tb/1-1234/mc-1-big-Data.db");
+        Files.createDirectories(remoteFile.getParent());
+        Files.write(remoteFile, content);
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+        request.downloadRangeSize = 1;
+        request.downloadRangeParallelism = 1;
+
+        final AtomicInteger streams = new AtomicInteger();
+        final AtomicInteger downloads = new AtomicInteger();
+        final AtomicInteger ranges = new AtomicInteger();
+
+        final LocalFileRestorer restorer = new LocalFileRestorer(request, new ObjectMapper()) {
+            @Override
+            public InputStream downloadFileStream(final RemoteObjectReference objectReference) throws Exception {
+                streams.incrementAndGet();
+                return super.downloadFileStream(objectReference);
+            }
+
+            @Override
+            public void downloadFile(final Path localPath, final RemoteObjectReference objectReference) throws Exception {
+                downloads.incrementAndGet();
+                super.downloadFile(localPath, objectReference);
+            }
+
+            @Override
+            public InputStream downloadFileRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception {
+                ranges.incrementAndGet();
+                return super.downloadFileRange(objectReference, offset, length);
+            }
+        };
+
+        final Path localFile = dir.resolve("restore/data/ks/tb/mc-1-big-Data.db");
+        final ManifestEntry entry = new ManifestEntry(Paths.get("data/ks/tb/1-1234/mc-1-big-Data.db"),
+                                                      localFile,
+                                                      Type.FILE,
+                                                      content.length,
+                                                      null,
+                                                      new HashServiceImpl(new HashSpec()).hash(remoteFile));
+
+        final DownloadUnit unit = new DownloadUnit(restorer, entry, new AtomicBoolean(), null, new HashSpec());
+        unit.call();
+
+        assertEquals(unit.getState(), State.FINISHED);
+        assertEquals(Files.readAllBytes(localFile), content);
+        // a file is hashed while it is streamed, it is neither downloaded by a restorer nor by ranges and read from a disk again
+        assertEquals(streams.get(), 1);
+        assertEquals(downloads.get(), 0);
+        assertEquals(ranges.get(), 0);
+        assertTrue(unit.getVerifiedAttributes().isPresent());
+    }
+
+    @Test
+    public void testLimitedDownloadIsStreamed() throws Exception {
+        final byte[] content = new byte[512 * 1024];
+        new Random(0).nextBytes(content);
+
+        final Path remoteFile = nodeDir().resolve("commitlog/CommitLog-7-1.log.1000");
+        Files.createDirectories(remoteFile.getParent());
+        Files.write(remoteFile, content);
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+        request.bandwidth = new DataRate(256L, DataRateUnit.KBPS);
+
+        final AtomicInteger streams = new AtomicInteger();
+        final AtomicInteger downloads = new AtomicInteger();
+
+        final LocalFileRestorer restorer = new LocalFileRestorer(request, new ObjectMapper()) {
+            @Override
+            public InputStream downloadFileStream(final RemoteObjectReference objectReference) throws Exception {
+                streams.incrementAndGet();
+                return super.downloadFileStream(objectReference);
+            }
+
+            @Override
+            public void downloadFile(final Path localPath, final RemoteObjectReference objectReference) throws Exception {
+                downloads.incrementAndGet();
+                super.downloadFile(localPath, objectReference);
+            }
+        };
+
+        // a commit log is not verified while it is downloaded
+        final Path localFile = dir.resolve("restore/commitlog/CommitLog-7-1.log");
+        final ManifestEntry entry = new ManifestEntry(Paths.get("commitlog/CommitLog-7-1.log.1000"), localFile, Type.COMMIT_LOG, content.length, null, null);
+
+        final long start = System.currentTimeMillis();
+
+        final DownloadUnit unit = new DownloadUnit(restorer, entry, new AtomicBoolean(), null, new HashSpec());
+        unit.call();
+
+        assertEquals(unit.getState(), State.FINISHED);
+        assertEquals(Files.readAllBytes(localFile), content);
+        // a restorer would write a file on its own, bypassing the limiter
+        assertEquals(streams.get(), 1);
+        assertEquals(downloads.get(), 0);
+        assertTrue(System.currentTimeMillis() - start >= 1000);
+    }
+}
@@ -0,0 +1,95 @@
+package com.instaclustr.esop.backup;
+
+import static com.instaclustr.esop.backup.BackupRestoreTestUtils.manifest;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.instaclustr.esop.impl.BackupCatalog;
+import com.instaclustr.esop.impl.remove.GarbageCollector;
+import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import org.testng.annotations.Test;
+
+public class GarbageCollectorTest extends AbstractLocalStorageTest {
+
+    @Test
+    public void testGarbageCollection() throws Exception {
+        final Path node = Files.createDirectories(nodeDir());
+        final long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+
+        final Path referenced = createFile(node.resolve("data/ks1/tb1/1/mc-1-big-Data.db"), old);
+        final Path orphan = createFile(node.resolve("data/ks1/tb1/2/mc-2-big-Data.db"), old);
+        final Path recent = createFile(node.resolve("data/ks1/tb1/3/mc-3-big-Data.db"), System.currentTimeMillis());
+        createFile(node.resolve("manifests/snap1-schema-1000.json"), old);
+
+        final RemoveBackupRequest request = request(new RemoveBackupRequest());
+        request.collectGarbage = true;
+
+        final LocalFileRestorer restorer = restorer(request);
+
+        // a node without any backup is not collected
+        assertTrue(new GarbageCollector(restorer, request).collect(new BackupCatalog()).isEmpty());
+        assertTrue(Files.exists(orphan));
+
+        final BackupCatalog catalog = BackupCatalog.build(Collections.singletonList(manifest("snap1-schema-1000.json", "data/ks1/tb1/1/mc-1-big-Data.db")));
+
+        // dry run reports an orphan but keeps it
+        request.dry = true;
+        assertEquals(new GarbageCollector(restorer, request).collect(catalog), Collections.singletonList(Paths.get("data/ks1/tb1/2/mc-2-big-Data.db")));
+        assertTrue(Files.exists(orphan));
+
+        request.dry = false;
+        assertEquals(new GarbageCollector(restorer, request).collect(catalog), Collections.singletonList(Paths.get("data/ks1/tb1/2/mc-2-big-Data.db")));
+
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(referenced));
+        // an unreferenced file in a grace period is kept
+        assertTrue(Files.exists(recent));
+
+        // a collection is aborted once manifests do not match a catalog, e.g. when a backup has finished in the meanwhile
+        final Path orphan2 = createFile(node.resolve("data/ks1/tb1/4/mc-4-big-Data.db"), old);
+        createFile(node.resolve("manifests/snap2-schema-2000.json"), System.currentTimeMillis());
+
+        assertTrue(new GarbageCollector(restorer, request).collect(catalog).isEmpty());
+        assertTrue(Files.exists(orphan2));
+    }
+
+    @Test
+    public void testGarbageCollectionIsAbortedWhileBackupIsRunning() throws Exception {
+        final Path node = Files.createDirectories(nodeDir());
+        final long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+
+        final Path orphan = createFile(node.resolve("data/ks1/tb1/2/mc-2-big-Data.db"), old);
+        createFile(node.resolve("manifests/snap1-schema-1000.json"), old);
+        final Path marker = createFile(node.resolve("in-progress/snap2-schema-2000"), System.currentTimeMillis());
+
+        final RemoveBackupRequest request = request(new RemoveBackupRequest());
+        request.collectGarbage = true;
+
+        final LocalFileRestorer restorer = restorer(request);
+        final BackupCatalog catalog = BackupCatalog.build(Collections.singletonList(manifest("snap1-schema-1000.json", "data/ks1/tb1/1/mc-1-big-Data.db")));
+
+        // a running backup might reuse an old unreferenced object
+        assertTrue(new GarbageCollector(restorer, request).collect(catalog).isEmpty());
+        assertTrue(Files.exists(orphan));
+
+        // a marker older than a grace period is left behind by a backup which was killed
+        assertTrue(marker.toFile().setLastModified(old));
+        assertEquals(new GarbageCollector(restorer, request).collect(catalog), Collections.singletonList(Paths.get("data/ks1/tb1/2/mc-2-big-Data.db")));
+        assertFalse(Files.exists(orphan));
+    }
+
+    private static Path createFile(final Path file, final long lastModified) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, "data".getBytes());
+        assertTrue(file.toFile().setLastModified(lastModified));
+        return file;
+    }
+}
@@ -0,0 +1,56 @@
+package com.instaclustr.esop.backup;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.instaclustr.esop.impl.hash.HashLedger;
+import com.instaclustr.esop.impl.hash.HashService;
+import com.instaclustr.esop.impl.hash.HashServiceImpl;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.io.FileUtils;
+import org.testng.annotations.Test;
+
+public class HashLedgerTest {
+
+    @Test
+    public void testHashLedger() throws Exception {
+        final Path dir = Files.createTempDirectory("hashLedgerTest");
+
+        try {
+            final Path file = dir.resolve("mc-1-big-Data.db");
+            Files.write(file, "some data".getBytes());
+
+            final HashLedger ledger = HashLedger.forFile(dir.resolve("hash-ledger"));
+            final HashService hashService = new HashServiceImpl(new HashSpec(), ledger);
+
+            // a ledger in use is shared
+            assertSame(HashLedger.forFile(dir.resolve("hash-ledger")), ledger);
+
+            final String hash = hashService.hash(file);
+            assertEquals(ledger.size(), 1);
+            assertEquals(hashService.hash(file), hash);
+            hashService.verify(file, hash);
+
+            // corrupted or partially written records are skipped
+            Files.write(ledger.getLedgerFile(), "(dev=1,ino=2)\t10\t1000\tSHA-256\tabc".getBytes(), StandardOpenOption.APPEND);
+            Files.copy(ledger.getLedgerFile(), dir.resolve("hash-ledger-copy"));
+
+            final HashLedger loadedLedger = HashLedger.forFile(dir.resolve("hash-ledger-copy"));
+            assertEquals(loadedLedger.size(), 1);
+            assertEquals(new HashServiceImpl(new HashSpec(), loadedLedger).hash(file), hash);
+
+            // records of removed files are evicted
+            Files.delete(file);
+            ledger.evictMissing();
+            assertEquals(ledger.size(), 0);
+            assertTrue(Files.readAllLines(ledger.getLedgerFile()).isEmpty());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+}
@@ -1,8 +1,17 @@
 package com.instaclustr.esop.backup;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.fail;
+
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.nio.file.Files;
 
+import com.google.common.io.ByteStreams;
+import com.instaclustr.esop.impl.hash.DigestingInputStream;
 import com.instaclustr.esop.impl.hash.HashService;
 import com.instaclustr.esop.impl.hash.HashServiceImpl;
 import com.instaclustr.esop.impl.hash.HashSpec;
@@ -18,4 +27,40 @@ public class HashServiceTest {
         hashService.verify(f.toPath(), hashService.hash(f.toPath()));
     }
 
+    @Test
+    public void testDigestingInputStream() throws Exception {
+        final File f = File.createTempFile("digestingTest", ".tmp");
+        Files.write(f.toPath(), "some content of a file to hash while it is read".getBytes());
+        final HashService hashService = new HashServiceImpl(new HashSpec());
+
+        try (final DigestingInputStream stream = new DigestingInputStream(new FileInputStream(f), new HashSpec())) {
+            ByteStreams.exhaust(stream);
+            assertEquals(stream.getHash(), hashService.hash(f.toPath()));
+        }
+    }
+
+    @Test
+    public void testDigestingInputStreamIsNotReplayed() throws Exception {
+        final File f = File.createTempFile("digestingTest", ".tmp");
+        Files.write(f.toPath(), "some content of a file to hash while it is read".getBytes());
+        final HashService hashService = new HashServiceImpl(new HashSpec());
+
+        // a wrapped stream supports mark and reset, a digesting stream must not delegate to it
+        try (final DigestingInputStream stream = new DigestingInputStream(new BufferedInputStream(new FileInputStream(f)), new HashSpec())) {
+            assertFalse(stream.markSupported());
+
+            stream.mark(1024);
+            stream.read(new byte[10]);
+
+            try {
+                stream.reset();
+                fail("reset of a digesting stream should fail");
+            } catch (final IOException ex) {
+                // expected
+            }
+
+            ByteStreams.exhaust(stream);
+            assertEquals(stream.getHash(), hashService.hash(f.toPath()));
+        }
+    }
 }
@@ -0,0 +1,80 @@
+package com.instaclustr.esop.backup;
+
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.instaclustr.esop.impl.KeyspaceTable;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.restore.strategy.InPlaceRestorationStrategy.RestorationPlan;
+import com.instaclustr.io.FileUtils;
+import org.testng.annotations.Test;
+
+public class InPlaceRestorationPlanTest {
+
+    @Test
+    public void testRestorationPlan() throws Exception {
+        final Path dataDir = Files.createTempDirectory("in-place-plan");
+
+        try {
+            final Path tableDir = Files.createDirectories(dataDir.resolve("ks1").resolve("tb1-1234"));
+
+            // sstable of a backup which is present locally
+            write(tableDir.resolve("mc-1-big-Digest.crc32"), "12345");
+            write(tableDir.resolve("mc-1-big-Data.db"), "data1");
+            // sstable which is not in a backup
+            write(tableDir.resolve("mc-2-big-Data.db"), "data22");
+            // sstable of a backup which is present locally with different digest
+            write(tableDir.resolve("mc-3-big-Digest.crc32"), "99999");
+            write(tableDir.resolve("mc-3-big-Data.db"), "data3");
+
+            final List<ManifestEntry> manifestFiles = new ArrayList<>();
+            manifestFiles.add(entry("mc-1-big-Digest.crc32", "1-12345", tableDir, 5));
+            manifestFiles.add(entry("mc-1-big-Data.db", "1-12345", tableDir, 5));
+            manifestFiles.add(entry("mc-3-big-Digest.crc32", "3-33333", tableDir, 5));
+            manifestFiles.add(entry("mc-3-big-Data.db", "3-33333", tableDir, 5));
+            manifestFiles.add(entry("mc-4-big-Data.db", "4-44444", tableDir, 100));
+
+            final RestorationPlan plan = RestorationPlan.resolve(manifestFiles, Manifest.getLocalExistingEntries(dataDir), 2);
+
+            // sstable with different digest is downloaded again
+            assertEquals(plan.entriesToDownload.stream().map(entry -> entry.localFile).collect(toList()),
+                         Arrays.asList(tableDir.resolve("mc-4-big-Data.db"),
+                                       tableDir.resolve("mc-3-big-Data.db"),
+                                       tableDir.resolve("mc-3-big-Digest.crc32")));
+            assertEquals(plan.bytesToDownload, 110);
+
+            assertEquals(plan.filesToReplace, Arrays.asList(tableDir.resolve("mc-3-big-Data.db"),
+                                                            tableDir.resolve("mc-3-big-Digest.crc32")));
+
+            assertEquals(plan.filesToDelete, Collections.singletonList(tableDir.resolve("mc-2-big-Data.db")));
+            assertEquals(plan.bytesToDelete, 6);
+            assertTrue(plan.toString().contains("filesToReplace=2"));
+            assertTrue(plan.toString().contains("filesToDelete=1"));
+        } finally {
+            FileUtils.deleteDirectory(dataDir);
+        }
+    }
+
+    private static ManifestEntry entry(final String fileName, final String hash, final Path tableDir, final long size) {
+        return new ManifestEntry(Paths.get("data/ks1/tb1-1234").resolve(hash).resolve(fileName),
+                                 tableDir.resolve(fileName),
+                                 ManifestEntry.Type.FILE,
+                                 size,
+                                 new KeyspaceTable("ks1", "tb1"),
+                                 null);
+    }
+
+    private static void write(final Path path, final String content) throws Exception {
+        Files.write(path, content.getBytes());
+    }
+}
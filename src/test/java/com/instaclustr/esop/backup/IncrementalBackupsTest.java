@@ -0,0 +1,198 @@
+package com.instaclustr.esop.backup;
+
+import static com.instaclustr.esop.backup.BackupRestoreTestUtils.tableManifest;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instaclustr.esop.impl.DatabaseEntities;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.Snapshots;
+import com.instaclustr.esop.impl.Snapshots.Snapshot;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace.Table;
+import com.instaclustr.esop.impl.restore.RestorationUtilities;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import com.instaclustr.io.FileUtils;
+import org.testng.annotations.Test;
+
+public class IncrementalBackupsTest extends AbstractLocalStorageTest {
+
+    private static final String TABLE_ID = "0123456789abcdef0123456789abcdef";
+
+    @Test
+    public void testParseIncrementalBackups() throws Exception {
+        final Path dataDir = Files.createTempDirectory("incremental-backups");
+
+        try {
+            final Path table1 = dataDir.resolve("ks1").resolve("tb1-" + TABLE_ID);
+            final Path table2 = dataDir.resolve("ks1").resolve("tb2-" + TABLE_ID);
+            final Path table3 = dataDir.resolve("ks2").resolve("tb3-" + TABLE_ID);
+
+            createSSTable(table1.resolve(Snapshots.INCREMENTAL_BACKUPS_DIR), 1);
+            createSSTable(table1.resolve(Snapshots.INCREMENTAL_BACKUPS_DIR), 2);
+            // nothing was flushed since the last incremental backup
+            Files.createDirectories(table2.resolve(Snapshots.INCREMENTAL_BACKUPS_DIR));
+            createSSTable(table3.resolve(Snapshots.INCREMENTAL_BACKUPS_DIR), 5);
+            // live SSTables which are not hard-linked into backups are not part of an incremental backup
+            createSSTable(table3, 6);
+
+            final Snapshot all = Snapshots.parseIncrementalBackups(dataDir, "incremental-test", DatabaseEntities.empty(), null, 2);
+
+            assertEquals(all.getName(), "incremental-test");
+            assertEquals(all.getKeyspaceNames().size(), 2);
+            assertTrue(all.containsTable("ks1", "tb1"));
+            assertFalse(all.containsTable("ks1", "tb2"));
+            assertTrue(all.containsTable("ks2", "tb3"));
+
+            final List<ManifestEntry> entries = all.getManifestEntries();
+            assertEquals(entries.size(), 6);
+
+            // object keys are the same as if these files were in a snapshot
+            final List<String> objectKeys = entries.stream().map(entry -> entry.objectKey.toString()).sorted().collect(Collectors.toList());
+            assertEquals(objectKeys.get(0), Paths.get("data", "ks1", "tb1-" + TABLE_ID, "1-1234", "mc-1-big-Data.db").toString());
+            assertTrue(entries.stream().allMatch(entry -> entry.localFile.getParent().getFileName().toString().equals(Snapshots.INCREMENTAL_BACKUPS_DIR)));
+
+            final Snapshot ks2 = Snapshots.parseIncrementalBackups(dataDir, "incremental-test", DatabaseEntities.parse("ks2"), null, 2);
+            assertEquals(ks2.getKeyspaceNames().size(), 1);
+            assertTrue(ks2.containsTable("ks2", "tb3"));
+        } finally {
+            FileUtils.deleteDirectory(dataDir);
+        }
+    }
+
+    @Test
+    public void testDeltaManifestReferencesBaseManifest() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+
+        final Manifest full = new Manifest(new Snapshot());
+        assertFalse(full.isIncremental());
+        assertFalse(Manifest.write(full, objectMapper).contains("baseManifest"));
+
+        final Manifest delta = new Manifest(new Snapshot());
+        delta.setBaseManifest("snapshot-schema-1600000000000.json");
+
+        final Manifest read = Manifest.read(Manifest.write(delta, objectMapper), objectMapper);
+        assertTrue(read.isIncremental());
+        assertEquals(read.getBaseManifest(), "snapshot-schema-1600000000000.json");
+
+        assertTrue(Manifest.isIncrementalManifest(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-1600000000001.json"));
+        assertFalse(Manifest.isIncrementalManifest("snapshot-schema-1600000000000.json"));
+
+        // restoration of the latest backup resolves the latest delta, it is restored with its base
+        assertEquals(Manifest.parseLatestManifest(Arrays.asList("manifests/snapshot-schema-1600000000000.json",
+                                                                "manifests/" + Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-1600000000001.json")),
+                     "manifests/" + Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-1600000000001.json");
+    }
+
+    @Test
+    public void testMergeOfDeltaManifests() {
+        final Manifest base = tableManifest("snapshot-schema-1000.json", "ks1", "tb1", 1, 2);
+        base.setTokens(Collections.singletonList("1"));
+
+        final Manifest delta = tableManifest(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-2000.json", "ks1", "tb1", 2, 3);
+        delta.setTokens(Collections.singletonList("2"));
+        final Table tb2 = new Table(tableManifest("any", "ks2", "tb2", 4).getSnapshot().getTable("ks2", "tb2").get().getEntries(), "1234", "CREATE TABLE ks2.tb2 (id int PRIMARY KEY);");
+        final Keyspace ks2 = new Keyspace(null);
+        ks2.add("tb2", tb2);
+        delta.getSnapshot().add("ks2", ks2);
+
+        base.merge(delta);
+
+        // a file which was in backups directory already upon the full backup is not restored twice
+        assertEquals(base.getSnapshot().getTable("ks1", "tb1").get().getEntries().size(), 3);
+        assertTrue(base.getSnapshot().containsTable("ks2", "tb2"));
+        assertEquals(base.getTokens(), Collections.singletonList("2"));
+    }
+
+    @Test
+    public void testMergeOfTableWithoutSchemaFails() {
+        final Manifest base = tableManifest("snapshot-schema-1000.json", "ks1", "tb1", 1);
+
+        // backups directories do not have schemas, a table created after a full backup could not be restored
+        final Manifest delta = tableManifest(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-2000.json", "ks1", "tb2", 2);
+
+        try {
+            base.merge(delta);
+            fail("merge of a table without schema should fail");
+        } catch (final IllegalStateException ex) {
+            assertFalse(base.getSnapshot().containsTable("ks1", "tb2"));
+        }
+    }
+
+    @Test
+    public void testDeltasOfBase() {
+        final Manifest delta4 = tableManifest(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-4000.json", "ks1", "tb1", 4);
+        delta4.setBaseManifest("snapshot-schema-3000.json");
+        final Manifest delta2 = tableManifest(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-2000.json", "ks1", "tb1", 2);
+        delta2.setBaseManifest("snapshot-schema-1000.json");
+        // a delta based on a full manifest which was removed already is not based on an earlier one
+        final Manifest delta6 = tableManifest(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-6000.json", "ks1", "tb1", 6);
+        delta6.setBaseManifest("snapshot-schema-5000.json");
+
+        final AllManifestsReport report = AllManifestsReport.report(Arrays.asList(delta6,
+                                                                                   delta4,
+                                                                                   tableManifest("snapshot-schema-3000.json", "ks1", "tb1", 3),
+                                                                                   delta2,
+                                                                                   tableManifest("snapshot-schema-1000.json", "ks1", "tb1", 1)));
+
+        assertEquals(report.getDeltas(report.get("snapshot-schema-1000").get()).stream().map(mr -> mr.name).collect(Collectors.toList()),
+                     Collections.singletonList(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-2000"));
+        assertEquals(report.getDeltas(report.get("snapshot-schema-3000").get()).stream().map(mr -> mr.name).collect(Collectors.toList()),
+                     Collections.singletonList(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-4000"));
+        assertTrue(report.getDeltas(report.get(Manifest.INCREMENTAL_MANIFEST_PREFIX + "snapshot-schema-2000").get()).isEmpty());
+    }
+
+    @Test
+    public void testDeltasOfOtherBaseAreNotRestored() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final Path manifests = nodeDir().resolve("manifests");
+        Files.createDirectories(manifests);
+
+        final String prefix = Manifest.INCREMENTAL_MANIFEST_PREFIX;
+
+        writeManifest(manifests, tableManifest("snap1-schema-1000.json", "ks1", "tb1", 1), null, objectMapper);
+        writeManifest(manifests, tableManifest(prefix + "snap2-schema-2000.json", "ks1", "tb1", 2), "snap1-schema-1000.json", objectMapper);
+        // a full backup which has not finished and a delta based on it are taken in between
+        writeManifest(manifests, tableManifest(prefix + "snap4-schema-4000.json", "ks1", "tb1", 4), "snap3-schema-3000.json", objectMapper);
+        writeManifest(manifests, tableManifest(prefix + "snap5-schema-5000.json", "ks1", "tb1", 5), "snap1-schema-1000.json", objectMapper);
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+        request.snapshotTag = prefix + "snap5";
+        request.skipManifestCache = true;
+
+        try (final LocalFileRestorer restorer = restorer(request)) {
+            final Manifest manifest = RestorationUtilities.downloadManifest(request, restorer, null, objectMapper);
+
+            assertEquals(manifest.getSnapshot().getTable("ks1", "tb1").get().getEntries().stream()
+                             .map(entry -> entry.objectKey.getFileName().toString())
+                             .sorted()
+                             .collect(Collectors.toList()),
+                         Arrays.asList("mc-1-big-Data.db", "mc-2-big-Data.db", "mc-5-big-Data.db"));
+        }
+    }
+
+    private static void writeManifest(final Path manifests, final Manifest manifest, final String baseManifest, final ObjectMapper objectMapper) throws Exception {
+        manifest.setBaseManifest(baseManifest);
+        Files.write(manifests.resolve(manifest.getManifest().objectKey.getFileName()), Manifest.write(manifest, objectMapper).getBytes());
+    }
+
+    private static void createSSTable(final Path dir, final int generation) throws Exception {
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("mc-" + generation + "-big-Data.db"), ("data of " + generation).getBytes());
+        Files.write(dir.resolve("mc-" + generation + "-big-Digest.crc32"), "1234".getBytes());
+    }
+}
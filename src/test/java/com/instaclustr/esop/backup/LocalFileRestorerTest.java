@@ -0,0 +1,37 @@
+package com.instaclustr.esop.backup;
+
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import com.instaclustr.esop.impl.list.ListOperationRequest;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import org.testng.annotations.Test;
+
+public class LocalFileRestorerTest extends AbstractLocalStorageTest {
+
+    @Test
+    public void testDatacentersAndNodesAreListed() throws Exception {
+        Files.createDirectories(dir.resolve("bucket/cluster/dc1/node2/manifests"));
+        Files.createDirectories(dir.resolve("bucket/cluster/dc1/node1/data"));
+        Files.createDirectories(dir.resolve("bucket/cluster/dc2/node3/manifests"));
+        // files right under a directory are not directories
+        Files.write(dir.resolve("bucket/cluster/catalog.json"), "{}".getBytes());
+        Files.write(dir.resolve("bucket/cluster/dc1/topology.json"), "{}".getBytes());
+
+        final ListOperationRequest request = request(new ListOperationRequest(), "cluster/dc1/node1");
+
+        try (final LocalFileRestorer restorer = restorer(request)) {
+            assertEquals(restorer.listDcs(), Arrays.asList("dc1", "dc2"));
+            assertEquals(restorer.listNodes("dc1").stream().map(location -> location.nodeId).collect(toList()),
+                         Arrays.asList("node1", "node2"));
+            assertEquals(restorer.listNodes().stream().map(location -> location.nodeId).collect(toList()),
+                         Arrays.asList("node1", "node2", "node3"));
+            // a datacenter without any node is empty
+            assertTrue(restorer.listNodes("dc3").isEmpty());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.instaclustr.esop.backup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.TimeUnit;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import com.google.common.hash.Hashing;
+import com.instaclustr.esop.impl.restore.ManifestCache;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import org.testng.annotations.Test;
+
+public class ManifestCacheTest extends AbstractLocalStorageTest {
+
+    @Test
+    public void testManifestCache() throws Exception {
+        final Path manifests = Files.createDirectories(nodeDir().resolve("manifests"));
+        final String manifestName = "snap-" + UUID.randomUUID() + "-1000.json";
+
+        Files.write(manifests.resolve(manifestName), "{\"first\": true}".getBytes());
+        Files.write(manifests.resolve("snap-" + UUID.randomUUID() + "-999.json"), "{\"older\": true}".getBytes());
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+
+        final LocalFileRestorer restorer = restorer(request);
+        final Path cacheRoot = dir.resolve("cache");
+        final ManifestCache cache = new ManifestCache(cacheRoot, request.storageLocation);
+        final Predicate<String> filter = key -> key.contains("manifests/snap");
+
+        assertEquals(cache.get(restorer, Paths.get("manifests"), filter), "{\"first\": true}");
+
+        final Path cachedManifest = cacheRoot.resolve("file/bucket/cluster/dc/node").resolve(manifestName);
+        assertTrue(Files.exists(cachedManifest));
+        assertEquals(Files.getPosixFilePermissions(cacheRoot), PosixFilePermissions.fromString("rwx------"));
+
+        // manifest is not downloaded again once it is cached
+        Files.write(manifests.resolve(manifestName), "{\"second\": true}".getBytes());
+        assertEquals(cache.get(restorer, Paths.get("manifests"), filter), "{\"first\": true}");
+
+        // corrupted cache entry is downloaded again
+        Files.write(cachedManifest, "{\"corrupted\": true}".getBytes());
+        assertEquals(cache.get(restorer, Paths.get("manifests"), filter), "{\"second\": true}");
+        assertEquals(cache.get(restorer, Paths.get("manifests"), filter), "{\"second\": true}");
+    }
+
+    @Test
+    public void testEvictionOfManifestCache() throws Exception {
+        final Path manifests = Files.createDirectories(nodeDir().resolve("manifests"));
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+
+        final LocalFileRestorer restorer = restorer(request);
+        final Path cacheRoot = dir.resolve("cache");
+        final Path cacheDir = cacheRoot.resolve("file/bucket/cluster/dc/node");
+        // two manifests of 100 bytes fit into the cache
+        final ManifestCache cache = new ManifestCache(cacheRoot, request.storageLocation, 250, TimeUnit.DAYS.toMillis(1));
+
+        final String[] names = new String[4];
+
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "snap-" + UUID.randomUUID() + "-" + (1000 + i) + ".json";
+            Files.write(manifests.resolve(names[i]), new String(new char[100]).replace('\0', 'a').getBytes());
+        }
+
+        // the oldest manifest was not used for longer than a day
+        cache.get(restorer, Paths.get("manifests"), key -> key.endsWith(names[0]));
+        Files.setLastModifiedTime(cacheDir.resolve(names[0]), FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+
+        cache.get(restorer, Paths.get("manifests"), key -> key.endsWith(names[1]));
+        assertFalse(Files.exists(cacheDir.resolve(names[0])));
+        assertTrue(Files.exists(cacheDir.resolve(names[1])));
+
+        Files.setLastModifiedTime(cacheDir.resolve(names[1]), FileTime.fromMillis(System.currentTimeMillis() - 2000));
+        cache.get(restorer, Paths.get("manifests"), key -> key.endsWith(names[2]));
+        Files.setLastModifiedTime(cacheDir.resolve(names[2]), FileTime.fromMillis(System.currentTimeMillis() - 1000));
+
+        // the least recently used manifest is evicted once the cache is full
+        cache.get(restorer, Paths.get("manifests"), key -> key.endsWith(names[3]));
+        assertFalse(Files.exists(cacheDir.resolve(names[1])));
+        assertFalse(Files.exists(cacheDir.resolve(names[1] + ".sha256")));
+        assertTrue(Files.exists(cacheDir.resolve(names[2])));
+        assertTrue(Files.exists(cacheDir.resolve(names[3])));
+    }
+
+    @Test
+    public void testManifestCacheAccessibleByOtherUsersIsNotUsed() throws Exception {
+        final Path manifests = Files.createDirectories(nodeDir().resolve("manifests"));
+        final String manifestName = "snap-" + UUID.randomUUID() + "-1000.json";
+
+        Files.write(manifests.resolve(manifestName), "{\"first\": true}".getBytes());
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+
+        final Path cacheRoot = Files.createDirectories(dir.resolve("cache"));
+        Files.setPosixFilePermissions(cacheRoot, PosixFilePermissions.fromString("rwxrwxrwx"));
+
+        final ManifestCache cache = new ManifestCache(cacheRoot, request.storageLocation);
+
+        // a manifest planted by another user is not used, the manifest is downloaded and it is not cached
+        final Path cachedManifest = cacheRoot.resolve("file/bucket/cluster/dc/node").resolve(manifestName);
+        Files.createDirectories(cachedManifest.getParent());
+        Files.write(cachedManifest, "{\"planted\": true}".getBytes());
+        Files.write(cachedManifest.resolveSibling(manifestName + ".sha256"), Hashing.sha256().hashString("{\"planted\": true}", UTF_8).toString().getBytes());
+
+        assertEquals(cache.get(restorer(request), Paths.get("manifests"), key -> key.contains("manifests/snap")), "{\"first\": true}");
+        assertEquals(new String(Files.readAllBytes(cachedManifest), UTF_8), "{\"planted\": true}");
+    }
+}
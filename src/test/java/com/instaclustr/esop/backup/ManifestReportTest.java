@@ -0,0 +1,121 @@
+package com.instaclustr.esop.backup;
+
+import static com.instaclustr.esop.backup.BackupRestoreTestUtils.manifest;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
+import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+public class ManifestReportTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManifestReportTest.class);
+
+    @Test
+    public void testReport() {
+        final List<Manifest> manifests = Arrays.asList(manifest("snap3-schema-3000.json", 3, 2, 2),
+                                                       manifest("snap2-schema-2000.json", 2, 1),
+                                                       manifest("snap1-schema-1000.json", 1, 0));
+
+        final AllManifestsReport report = AllManifestsReport.report(manifests);
+
+        assertEquals(report.totalManifests, 3);
+        assertEquals(report.totalFiles, 4);
+        assertEquals(report.totalSize, 40);
+
+        // an object referenced twice by one manifest is still removable with it
+        assertReport(report.reports.get(0), "snap3-schema-3000", 10, "data/ks1/tb1/3/mc-3-big-Data.db");
+        assertReport(report.reports.get(1), "snap2-schema-2000", 0);
+        assertReport(report.reports.get(2), "snap1-schema-1000", 10, "data/ks1/tb1/0/mc-0-big-Data.db");
+    }
+
+    /**
+     * Reports a lot of manifests which share most of their files, as consecutive backups of a node do, only a file
+     * a manifest does not share with any other one is removable with it.
+     */
+    @Test
+    public void testReportOfManyManifests() {
+        final int numberOfManifests = 10;
+        final int numberOfFiles = 1000;
+
+        final List<Manifest> manifests = manifests(numberOfManifests, numberOfFiles);
+
+        final AllManifestsReport report = AllManifestsReport.report(manifests);
+
+        assertEquals(report.totalManifests, numberOfManifests);
+        assertEquals(report.totalFiles, numberOfFiles - 1 + numberOfManifests);
+
+        for (final ManifestReport manifestReport : report.reports) {
+            assertEquals(manifestReport.reclaimableSpace, 10);
+        }
+    }
+
+    /**
+     * Measures how long a report of a node with a long history of backups takes. It is not run by default, run it by
+     * "benchmarks" profile. The number of manifests, files in each of them and iterations might be changed by
+     * "manifestReportBenchmark.manifests", "manifestReportBenchmark.files", "manifestReportBenchmark.warmups" and
+     * "manifestReportBenchmark.iterations" properties. The first iterations are warmups and they are not averaged.
+     */
+    @Test(groups = {"benchmark"})
+    public void benchmarkReportOfManyManifests() {
+        final int numberOfManifests = Integer.getInteger("manifestReportBenchmark.manifests", 300);
+        final int numberOfFiles = Integer.getInteger("manifestReportBenchmark.files", 50_000);
+        final int warmups = Integer.getInteger("manifestReportBenchmark.warmups", 2);
+        final int iterations = Integer.getInteger("manifestReportBenchmark.iterations", 5);
+
+        final List<Manifest> manifests = manifests(numberOfManifests, numberOfFiles);
+
+        long reporting = 0;
+
+        for (int i = 0; i < warmups + iterations; i++) {
+            final long start = System.nanoTime();
+            final AllManifestsReport report = AllManifestsReport.report(manifests);
+            final long took = System.nanoTime() - start;
+
+            assertEquals(report.totalManifests, numberOfManifests);
+
+            logger.info("Report {} {} of {} manifests of {} files each took {} ms",
+                        i < warmups ? "warmup" : "iteration", i < warmups ? i + 1 : i - warmups + 1,
+                        numberOfManifests, numberOfFiles, MILLISECONDS.convert(took, NANOSECONDS));
+
+            if (i >= warmups) {
+                reporting += took;
+            }
+        }
+
+        logger.info("Report of {} manifests of {} files each took on average {} ms, {} iterations",
+                    numberOfManifests, numberOfFiles, MILLISECONDS.convert(reporting / iterations, NANOSECONDS), iterations);
+    }
+
+    // every backup replaces one file of the previous one, the latest manifest is the first one
+    private static List<Manifest> manifests(final int numberOfManifests, final int numberOfFiles) {
+        final List<Manifest> manifests = new ArrayList<>();
+
+        for (int i = numberOfManifests - 1; i >= 0; i--) {
+            final int[] generations = new int[numberOfFiles];
+
+            for (int j = 0; j < numberOfFiles; j++) {
+                generations[j] = j == 0 ? numberOfFiles + i : j;
+            }
+
+            manifests.add(manifest("snap" + i + "-schema-" + (1000 + i) + ".json", generations));
+        }
+
+        return manifests;
+    }
+
+    private static void assertReport(final ManifestReport report, final String name, final long reclaimableSpace, final String... removableEntries) {
+        assertEquals(report.name, name);
+        assertEquals(report.reclaimableSpace, reclaimableSpace);
+        assertEquals(report.removableEntries, Arrays.asList(removableEntries));
+    }
+}
@@ -0,0 +1,137 @@
+package com.instaclustr.esop.backup;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instaclustr.esop.impl.RemoteObjectReference;
+import com.instaclustr.esop.impl.restore.RangedDownloader;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.local.LocalFileObjectReference;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import org.testng.annotations.Test;
+
+public class RangedDownloaderTest extends AbstractLocalStorageTest {
+
+    @Test
+    public void testRangedDownload() throws Exception {
+        final byte[] content = new byte[1024 * 1024 + 123];
+        new Random(0).nextBytes(content);
+
+        Files.createDirectories(dir.resolve("bucket"));
+        Files.write(dir.resolve("bucket").resolve("object"), content);
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+
+        final LocalFileRestorer restorer = restorer(request);
+        final RangedDownloader downloader = new RangedDownloader(restorer, null, 100 * 1024, 4);
+
+        assertTrue(downloader.shouldDownload(content.length));
+        assertFalse(downloader.shouldDownload(100 * 1024));
+        assertFalse(new RangedDownloader(restorer, null, 100 * 1024, 1).shouldDownload(content.length));
+
+        final Path downloaded = dir.resolve("downloaded").resolve("object");
+        downloader.download(new LocalFileObjectReference(Paths.get("object"), "object"), downloaded, content.length);
+
+        assertEquals(Files.readAllBytes(downloaded), content);
+    }
+
+    @Test
+    public void testCancelledRangedDownload() throws Exception {
+        final byte[] content = new byte[1024 * 1024];
+        new Random(0).nextBytes(content);
+
+        Files.createDirectories(dir.resolve("bucket"));
+        Files.write(dir.resolve("bucket").resolve("object"), content);
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+
+        final RangedDownloader downloader = new RangedDownloader(restorer(request), null, 100 * 1024, 4, new AtomicBoolean(true));
+
+        final Path downloaded = dir.resolve("downloaded").resolve("object");
+
+        try {
+            downloader.download(new LocalFileObjectReference(Paths.get("object"), "object"), downloaded, content.length);
+            fail("download should be cancelled");
+        } catch (final IllegalStateException ex) {
+            // expected
+        }
+
+        assertFalse(Files.exists(downloaded));
+    }
+
+    @Test
+    public void testRangesOfAllFilesAreBoundedByConcurrentConnections() throws Exception {
+        final byte[] content = new byte[1024 * 1024];
+        new Random(0).nextBytes(content);
+
+        Files.createDirectories(dir.resolve("bucket"));
+        Files.write(dir.resolve("bucket").resolve("object"), content);
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+        request.concurrentConnections = 3;
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        final LocalFileRestorer restorer = new LocalFileRestorer(request, new ObjectMapper()) {
+            @Override
+            public InputStream downloadFileRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+                try {
+                    Thread.sleep(20);
+                    return new ByteArrayInputStream(Arrays.copyOfRange(content, (int) offset, (int) (offset + length)));
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+
+        try {
+            // every file might download up to 4 ranges at once, all of them together only 3
+            final RangedDownloader downloader = new RangedDownloader(restorer, null, 64 * 1024, 4);
+            final ExecutorService files = Executors.newFixedThreadPool(4);
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                final Path downloaded = dir.resolve("downloaded").resolve("object-" + i);
+                futures.add(files.submit(() -> {
+                    downloader.download(new LocalFileObjectReference(Paths.get("object"), "object"), downloaded, content.length);
+                    return null;
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+
+            files.shutdownNow();
+
+            assertTrue(maxRunning.get() <= 3);
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Files.readAllBytes(dir.resolve("downloaded").resolve("object-" + i)), content);
+            }
+        } finally {
+            restorer.close();
+        }
+    }
+}
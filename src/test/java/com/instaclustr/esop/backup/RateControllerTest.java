@@ -0,0 +1,150 @@
+package com.instaclustr.esop.backup;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.instaclustr.esop.impl.RateController;
+import com.instaclustr.esop.impl.RateController.CircuitOpenException;
+import com.instaclustr.esop.impl.RateController.Outcome;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl.retry.Retrier.ThrottledException;
+import org.testng.annotations.Test;
+
+public class RateControllerTest {
+
+    @Test
+    public void testRateIsCutAndIncreased() throws Exception {
+        final RateController controller = new RateController("test", 1000);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals((int) controller.call(() -> 1), 1);
+        }
+
+        assertEquals(controller.getRate(), Double.POSITIVE_INFINITY);
+
+        try {
+            controller.call(() -> {
+                throw new ThrottledException("slow down", null);
+            });
+            fail("should be throttled");
+        } catch (final ThrottledException ex) {
+            // expected
+        }
+
+        // rate is a half of the rate requests were done at
+        assertEquals(controller.getRate(), 5.5);
+
+        // other failures in the same interval do not cut it again
+        controller.record(Outcome.THROTTLED);
+        assertEquals(controller.getRate(), 5.5);
+
+        controller.record(Outcome.SUCCEEDED);
+        assertTrue(controller.getRate() > 5.5);
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        final RateController controller = new RateController("test", 200);
+
+        for (int i = 0; i < RateController.FAILURE_THRESHOLD; i++) {
+            assertFalse(controller.isOpen());
+            controller.record(Outcome.FAILED);
+        }
+
+        assertTrue(controller.isOpen());
+
+        try {
+            controller.acquire();
+            fail("circuit should be open");
+        } catch (final CircuitOpenException ex) {
+            // expected
+        }
+
+        Thread.sleep(300);
+
+        // only one request is let through once a circuit was open for a while
+        assertTrue(controller.acquire());
+        assertTrue(controller.isOpen());
+
+        try {
+            controller.acquire();
+            fail("only one request should be let through");
+        } catch (final CircuitOpenException ex) {
+            // expected
+        }
+
+        // its failure keeps a circuit open for a while again
+        controller.record(Outcome.FAILED, true);
+        assertTrue(controller.isOpen());
+
+        try {
+            controller.acquire();
+            fail("circuit should be open");
+        } catch (final CircuitOpenException ex) {
+            // expected
+        }
+
+        Thread.sleep(300);
+
+        // its success closes it
+        assertTrue(controller.acquire());
+        controller.record(Outcome.SUCCEEDED, true);
+        assertFalse(controller.isOpen());
+        assertFalse(controller.acquire());
+        controller.record(Outcome.FAILED);
+        assertFalse(controller.isOpen());
+    }
+
+    @Test
+    public void testCancelledOperationDoesNotWaitForPermit() {
+        final RateController controller = new RateController("test", 200);
+
+        // rate is cut to one request per second
+        controller.record(Outcome.THROTTLED);
+        controller.acquire();
+
+        try {
+            controller.acquire(new AtomicBoolean(true));
+            fail("waiting for a permit should be cancelled");
+        } catch (final IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWaitingForPermitDoesNotSpin() {
+        final RateController controller = new RateController("test", 200);
+
+        // rate is cut to one request per second
+        controller.record(Outcome.THROTTLED);
+        controller.acquire();
+
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        final long cpuTime = threadMXBean.getCurrentThreadCpuTime();
+        final long start = System.nanoTime();
+
+        controller.acquire();
+
+        final long waited = System.nanoTime() - start;
+
+        assertTrue(waited > MILLISECONDS.toNanos(500), "a permit should be waited for");
+        assertTrue(threadMXBean.getCurrentThreadCpuTime() - cpuTime < waited / 4, "a thread should sleep while it waits for a permit");
+    }
+
+    @Test
+    public void testControllerIsSharedByInteractorsOfSameLocation() {
+        final StorageLocation storageLocation = new StorageLocation("s3://bucket/cluster/dc/node");
+
+        assertSame(RateController.of(storageLocation), RateController.of(new StorageLocation("s3://bucket/cluster/dc/node")));
+        assertNotSame(RateController.of(storageLocation), RateController.of(new StorageLocation("s3://bucket/cluster/dc/node2")));
+    }
+}
@@ -1,5 +1,11 @@
 package com.instaclustr.esop.backup;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.instaclustr.esop.impl.retry.Retrier;
 import com.instaclustr.esop.impl.retry.RetrierFactory;
 import com.instaclustr.esop.impl.retry.RetrySpec;
@@ -35,6 +41,26 @@ public class RetryTest {
         }
     }
 
+    @Test
+    public void exponentialDelayTest() {
+
+        Retrier.Sleeper exponential = new Retrier.ExponentialSleeper(100, false);
+
+        // exponential strategy doubles its delay with every attempt, it is not jittered
+        Assert.assertEquals(exponential.getDelay(1), 100);
+        Assert.assertEquals(exponential.getDelay(2), 200);
+        Assert.assertEquals(exponential.getDelay(3), 400);
+
+        Retrier.Sleeper jittered = new Retrier.ExponentialSleeper(100, true);
+
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            for (int i = 0; i < 100; i++) {
+                long delay = jittered.getDelay(attempt);
+                Assert.assertTrue(delay >= 0 && delay <= exponential.getDelay(attempt));
+            }
+        }
+    }
+
     @Test
     public void linearRetryTest() throws Exception {
 
@@ -61,4 +87,61 @@ public class RetryTest {
             Assert.assertTrue(duration >= ((retrySpec.maxAttempts - 1) * retrySpec.interval) * 1000);
         }
     }
+
+    @Test
+    public void retryBudgetTest() throws Exception {
+
+        RetrySpec retrySpec = new RetrySpec();
+        retrySpec.enabled = true;
+        retrySpec.strategy = RetryStrategy.EXPONENTIAL;
+        retrySpec.maxAttempts = 10;
+        retrySpec.intervalMillis = 1;
+        retrySpec.budget = 3;
+
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                RetrierFactory.getRetrier(retrySpec).submit(() -> {
+                    calls.incrementAndGet();
+                    throw new Retrier.ThrottledException("I am throttled!", null);
+                });
+
+                Assert.fail("should fail!");
+            } catch (final Retrier.RetriableException ex) {
+                // expected
+            }
+        }
+
+        // budget is shared by all retriers of the same spec, the second one does not retry at all
+        Assert.assertEquals(calls.get(), 5);
+    }
+
+    @Test
+    public void cancelledRetryTest() throws Exception {
+
+        RetrySpec retrySpec = new RetrySpec();
+        retrySpec.enabled = true;
+        retrySpec.strategy = RetryStrategy.LINEAR;
+        retrySpec.maxAttempts = 3;
+        retrySpec.interval = 60;
+
+        AtomicBoolean shouldCancel = new AtomicBoolean();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        executor.schedule(() -> shouldCancel.set(true), 200, TimeUnit.MILLISECONDS);
+
+        long start = System.currentTimeMillis();
+
+        try {
+            RetrierFactory.getRetrier(retrySpec, shouldCancel).submit(() -> {
+                throw new Retrier.RetriableException("I have to retry!");
+            });
+
+            Assert.fail("should fail!");
+        } catch (final Retrier.RetriableException ex) {
+            Assert.assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
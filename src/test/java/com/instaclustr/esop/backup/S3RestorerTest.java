@@ -0,0 +1,230 @@
+package com.instaclustr.esop.backup;
+
+import static com.instaclustr.esop.backup.BackupRestoreTestUtils.manifest;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Provider;
+import com.instaclustr.esop.impl.AbstractOperationRequest;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
+import com.instaclustr.esop.impl.retry.RetrySpec;
+import com.instaclustr.esop.s3.BaseS3Restorer;
+import com.instaclustr.esop.s3.TransferManagerFactory;
+import io.kubernetes.client.apis.CoreV1Api;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of listing and removal of backups by an S3 restorer against a bucket held in memory.
+ */
+public class S3RestorerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testManifestsAreFetchedFromTheLatest() throws Exception {
+        final InMemoryBucket bucket = new InMemoryBucket();
+        bucket.put("cluster/dc/node/manifests/snap2-schema-2000.json", objectMapper.writeValueAsString(manifest("snap2-schema-2000.json", 1, 2)));
+        bucket.put("cluster/dc/node/manifests/snap1-schema-1000.json", objectMapper.writeValueAsString(manifest("snap1-schema-1000.json", 1)));
+        bucket.put("cluster/dc/node/manifests/snap3-schema-3000.json", objectMapper.writeValueAsString(manifest("snap3-schema-3000.json", 3)));
+        // a manifest of some other node is not fetched
+        bucket.put("cluster/dc/node2/manifests/snap4-schema-4000.json", objectMapper.writeValueAsString(manifest("snap4-schema-4000.json", 4)));
+
+        // a stream failing while a manifest is parsed is fetched again
+        bucket.failOnce("cluster/dc/node/manifests/snap2-schema-2000.json");
+
+        try (final BaseS3Restorer restorer = restorer(bucket)) {
+            final List<Manifest> manifests = restorer.listManifests();
+
+            assertEquals(manifests.stream().map(manifest -> manifest.getManifest().objectKey.toString()).collect(toList()),
+                         Arrays.asList("manifests/snap3-schema-3000.json",
+                                       "manifests/snap2-schema-2000.json",
+                                       "manifests/snap1-schema-1000.json"));
+
+            assertEquals(manifests.get(1).getManifestEntries(false, false).size(), 2);
+            assertEquals(bucket.gets.get("cluster/dc/node/manifests/snap2-schema-2000.json").intValue(), 2);
+        }
+    }
+
+    @Test
+    public void testObjectOfNodeIsDeleted() throws Exception {
+        final InMemoryBucket bucket = new InMemoryBucket();
+        bucket.put("cluster/dc/node/data/ks1/tb1/1/mc-1-big-Data.db", "data");
+        bucket.put("cluster/dc/node2/data/ks1/tb1/1/mc-1-big-Data.db", "data");
+
+        try (final BaseS3Restorer restorer = restorer(bucket)) {
+            restorer.delete(Paths.get("data/ks1/tb1/1/mc-1-big-Data.db"));
+        }
+
+        assertFalse(bucket.objects.containsKey("cluster/dc/node/data/ks1/tb1/1/mc-1-big-Data.db"));
+        assertTrue(bucket.objects.containsKey("cluster/dc/node2/data/ks1/tb1/1/mc-1-big-Data.db"));
+    }
+
+    @Test
+    public void testDatacentersAndNodesAreListed() throws Exception {
+        final InMemoryBucket bucket = new InMemoryBucket();
+        bucket.put("cluster/dc1/node1/manifests/snap1-schema-1000.json", "{}");
+        bucket.put("cluster/dc1/node2/data/ks1/tb1/1/mc-1-big-Data.db", "data");
+        bucket.put("cluster/dc2/node3/manifests/snap1-schema-1000.json", "{}");
+        // objects right under a prefix are not directories
+        bucket.put("cluster/catalog.json", "{}");
+        bucket.put("cluster/dc1/topology.json", "{}");
+        bucket.put("cluster2/dc3/node4/manifests/snap1-schema-1000.json", "{}");
+
+        try (final BaseS3Restorer restorer = restorer(bucket)) {
+            assertEquals(restorer.listDcs(), Arrays.asList("dc1", "dc2"));
+            assertEquals(restorer.listNodes("dc1").stream().map(location -> location.rawLocation).collect(toList()),
+                         Arrays.asList("s3://bucket/cluster/dc1/node1", "s3://bucket/cluster/dc1/node2"));
+            assertEquals(restorer.listNodes().stream().map(location -> location.nodeId).collect(toList()),
+                         Arrays.asList("node1", "node2", "node3"));
+        }
+    }
+
+    private static BaseS3Restorer restorer(final InMemoryBucket bucket) {
+        final RemoveBackupRequest request = new RemoveBackupRequest();
+        request.storageLocation = new StorageLocation("s3://bucket/cluster/dc/node");
+        request.concurrentConnections = 2;
+        request.retry = new RetrySpec();
+        request.retry.intervalMillis = 1;
+
+        return new BaseS3Restorer(new InMemoryTransferManagerFactory(bucket), request, new ObjectMapper());
+    }
+
+    private static class InMemoryTransferManagerFactory extends TransferManagerFactory {
+
+        private final InMemoryBucket bucket;
+
+        InMemoryTransferManagerFactory(final InMemoryBucket bucket) {
+            super(null);
+            this.bucket = bucket;
+        }
+
+        @Override
+        protected AmazonS3 provideAmazonS3(final Provider<CoreV1Api> coreV1ApiProvider, final AbstractOperationRequest operationRequest) {
+            return bucket.client();
+        }
+    }
+
+    /**
+     * Bucket held in memory, it serves only requests of S3 client which a restorer sends upon listing and removal of backups.
+     */
+    private static class InMemoryBucket {
+
+        private final Map<String, String> objects = new ConcurrentHashMap<>();
+        private final Map<String, Integer> gets = new ConcurrentHashMap<>();
+        private final Set<String> failingOnce = ConcurrentHashMap.newKeySet();
+
+        void put(final String key, final String content) {
+            objects.put(key, content);
+        }
+
+        void failOnce(final String key) {
+            failingOnce.add(key);
+        }
+
+        AmazonS3 client() {
+            return (AmazonS3) Proxy.newProxyInstance(AmazonS3.class.getClassLoader(), new Class<?>[]{AmazonS3.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "listObjects":
+                        if (args.length == 2) {
+                            return list((String) args[1], null);
+                        }
+                        return list(((ListObjectsRequest) args[0]).getPrefix(), ((ListObjectsRequest) args[0]).getDelimiter());
+                    case "getObject":
+                        return get(((GetObjectRequest) args[0]).getKey());
+                    case "deleteObject":
+                        objects.remove((String) args[1]);
+                        return null;
+                    case "shutdown":
+                        return null;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "in-memory bucket";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private ObjectListing list(final String prefix, final String delimiter) {
+            final ObjectListing listing = new ObjectListing();
+            final Set<String> commonPrefixes = new TreeSet<>();
+
+            for (final Map.Entry<String, String> object : new TreeMap<>(objects).entrySet()) {
+                if (!object.getKey().startsWith(prefix)) {
+                    continue;
+                }
+
+                final int delimiterIndex = delimiter == null ? -1 : object.getKey().indexOf(delimiter, prefix.length());
+
+                if (delimiterIndex != -1) {
+                    commonPrefixes.add(object.getKey().substring(0, delimiterIndex + 1));
+                    continue;
+                }
+
+                final S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setKey(object.getKey());
+                summary.setSize(object.getValue().length());
+                summary.setLastModified(new Date());
+                listing.getObjectSummaries().add(summary);
+            }
+
+            listing.setCommonPrefixes(new ArrayList<>(commonPrefixes));
+            listing.setTruncated(false);
+
+            return listing;
+        }
+
+        private S3Object get(final String key) {
+            gets.merge(key, 1, Integer::sum);
+
+            InputStream content = new ByteArrayInputStream(objects.get(key).getBytes(UTF_8));
+
+            if (failingOnce.remove(key)) {
+                content = new FilterInputStream(content) {
+                    @Override
+                    public int read(final byte[] b, final int off, final int len) throws IOException {
+                        throw new IOException("connection reset");
+                    }
+                };
+            }
+
+            final S3Object object = new S3Object();
+            object.setKey(key);
+            object.setObjectContent(new S3ObjectInputStream(content, null));
+
+            return object;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.instaclustr.esop.backup;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import com.instaclustr.esop.impl.SchedulingPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Simulates the makespan of transfers scheduled by every policy on a synthetic distribution of SSTable sizes:
+ * threads of a pool take tasks from a queue as they become free, a file takes time proportional to its size plus
+ * a constant overhead of a request.
+ */
+public class SchedulingPolicyTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulingPolicyTest.class);
+
+    private static final int CONCURRENCY = 10;
+    // 100 MiB/s per connection, 50 ms per request
+    private static final double BYTES_PER_MILLI = 100 * 1024 * 1024 / 1000.0;
+    private static final double OVERHEAD_MILLIS = 50;
+
+    @Test
+    public void testMakespan() {
+        final List<Long> sizes = syntheticSizes(new Random(12345));
+
+        final long lowerBound = (long) Math.max(sizes.stream().mapToDouble(SchedulingPolicyTest::duration).sum() / CONCURRENCY,
+                                                sizes.stream().mapToDouble(SchedulingPolicyTest::duration).max().orElse(0));
+
+        final long manifestOrder = makespan(SchedulingPolicy.MANIFEST_ORDER, sizes);
+        final long largestFirst = makespan(SchedulingPolicy.LARGEST_FIRST, sizes);
+        final long lpt = makespan(SchedulingPolicy.LPT, sizes);
+        final long smallFileBatching = makespan(SchedulingPolicy.SMALL_FILE_BATCHING, sizes);
+
+        logger.info("Makespan of {} files on {} connections, lower bound {} ms: MANIFEST_ORDER {} ms, LARGEST_FIRST {} ms, LPT {} ms, SMALL_FILE_BATCHING {} ms",
+                    sizes.size(), CONCURRENCY, lowerBound, manifestOrder, largestFirst, lpt, smallFileBatching);
+
+        assertTrue(largestFirst < manifestOrder);
+        assertTrue(lpt < manifestOrder);
+        assertTrue(smallFileBatching < manifestOrder);
+
+        // longest processing time first is at most 4/3 of the optimum
+        assertTrue(largestFirst <= lowerBound * 4 / 3);
+        assertTrue(lpt <= lowerBound * 4 / 3);
+    }
+
+    /**
+     * Size aware policies are opt-in, by default files are transferred one by one in the order of a manifest.
+     */
+    @Test
+    public void testDefaultKeepsManifestOrder() {
+        final List<Long> sizes = syntheticSizes(new Random(67890));
+        final List<Long> scheduled = new ArrayList<>();
+
+        for (final List<Long> task : SchedulingPolicy.DEFAULT.schedule(sizes, size -> size, CONCURRENCY)) {
+            assertEquals(task.size(), 1);
+            scheduled.addAll(task);
+        }
+
+        assertEquals(scheduled, sizes);
+    }
+
+    @Test
+    public void testEveryFileIsScheduledOnce() {
+        final List<Long> sizes = syntheticSizes(new Random(54321));
+
+        for (final SchedulingPolicy policy : SchedulingPolicy.values()) {
+            final List<Long> scheduled = new ArrayList<>();
+            policy.schedule(sizes, Long::longValue, CONCURRENCY).forEach(scheduled::addAll);
+
+            final List<Long> expected = new ArrayList<>(sizes);
+            Collections.sort(expected);
+            Collections.sort(scheduled);
+
+            assertEquals(scheduled, expected, policy.name());
+        }
+
+        assertTrue(SchedulingPolicy.LPT.schedule(sizes, Long::longValue, CONCURRENCY).size() <= CONCURRENCY);
+    }
+
+    /**
+     * Many small files of every SSTable (indexes, statistics, ...) and data files of a heavy tailed size,
+     * a few huge files are at the end as it happens when they are of the last tables in a manifest.
+     */
+    private static List<Long> syntheticSizes(final Random random) {
+        final List<Long> sizes = new ArrayList<>();
+
+        for (int sstable = 0; sstable < 300; sstable++) {
+            for (int component = 0; component < 7; component++) {
+                sizes.add(1024L + random.nextInt(64 * 1024));
+            }
+
+            sizes.add((long) (Math.exp(random.nextGaussian() * 1.5) * 32 * 1024 * 1024));
+        }
+
+        for (int huge = 0; huge < 3; huge++) {
+            sizes.add(20L * 1024 * 1024 * 1024);
+        }
+
+        return sizes;
+    }
+
+    private static double duration(final long size) {
+        return OVERHEAD_MILLIS + size / BYTES_PER_MILLI;
+    }
+
+    private static long makespan(final SchedulingPolicy policy, final List<Long> sizes) {
+        final PriorityQueue<Double> threads = new PriorityQueue<>();
+
+        for (int i = 0; i < CONCURRENCY; i++) {
+            threads.add(0.0);
+        }
+
+        for (final List<Long> task : policy.schedule(sizes, Long::longValue, CONCURRENCY)) {
+            double finishedAt = threads.poll();
+
+            for (final long size : task) {
+                finishedAt += duration(size);
+            }
+
+            threads.add(finishedAt);
+        }
+
+        return (long) threads.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+    }
+}
@@ -0,0 +1,117 @@
+package com.instaclustr.esop.backup;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.instaclustr.esop.impl.restore.TableActionExecutor;
+import org.testng.annotations.Test;
+
+public class TableActionExecutorTest {
+
+    @Test
+    public void testFailuresAreAggregated() throws Exception {
+        final List<Entry<String, String>> tables = tables(3, 10);
+        final Set<String> executed = ConcurrentHashMap.newKeySet();
+
+        final Map<String, String> failures = new TableActionExecutor(4, null).execute(tables, table -> {
+            executed.add(table.getKey() + "." + table.getValue());
+
+            if (table.getValue().equals("tb3")) {
+                throw new IllegalStateException("unable to import " + table.getValue());
+            }
+        });
+
+        assertEquals(executed.size(), 30);
+        assertEquals(failures.size(), 3);
+        assertEquals(failures.get("ks1.tb3"), "unable to import tb3");
+    }
+
+    @Test
+    public void testParallelismIsBounded() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Map<String, AtomicInteger> runningPerKeyspace = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> maxRunningPerKeyspace = new ConcurrentHashMap<>();
+
+        final Map<String, String> failures = new TableActionExecutor(6, 2).execute(tables(4, 8), table -> {
+            final AtomicInteger keyspaceRunning = runningPerKeyspace.computeIfAbsent(table.getKey(), ks -> new AtomicInteger());
+            final AtomicInteger keyspaceMax = maxRunningPerKeyspace.computeIfAbsent(table.getKey(), ks -> new AtomicInteger());
+
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            keyspaceMax.accumulateAndGet(keyspaceRunning.incrementAndGet(), Math::max);
+
+            Thread.sleep(20);
+
+            keyspaceRunning.decrementAndGet();
+            running.decrementAndGet();
+        });
+
+        assertTrue(failures.isEmpty());
+        assertTrue(maxRunning.get() <= 6);
+        assertTrue(maxRunning.get() > 1);
+        maxRunningPerKeyspace.values().forEach(max -> assertTrue(max.get() <= 2));
+    }
+
+    /**
+     * Tables of one keyspace are submitted before a table of another one, as a pipeline might submit them. Tables of
+     * a keyspace which is at its limit do not occupy a worker, so the other keyspace is not waiting for them.
+     */
+    @Test
+    public void testTablesOverKeyspaceLimitDoNotBlockWorkers() throws Exception {
+        final TableActionExecutor executor = new TableActionExecutor(2, 1);
+        final CountDownLatch otherKeyspaceActed = new CountDownLatch(1);
+        final AtomicInteger waitedInVain = new AtomicInteger();
+
+        for (final Entry<String, String> table : tables(1, 3)) {
+            executor.submit(table, t -> {
+                if (!otherKeyspaceActed.await(10, SECONDS)) {
+                    waitedInVain.incrementAndGet();
+                }
+            });
+        }
+
+        executor.submit(new SimpleImmutableEntry<>("ks2", "tb1"), t -> otherKeyspaceActed.countDown());
+
+        assertTrue(executor.awaitFailures().isEmpty());
+        assertEquals(waitedInVain.get(), 0);
+    }
+
+    @Test
+    public void testSubmittedActionsAreAwaited() throws Exception {
+        final TableActionExecutor executor = new TableActionExecutor(2, null);
+        final Set<String> executed = ConcurrentHashMap.newKeySet();
+
+        for (final Entry<String, String> table : tables(2, 5)) {
+            executor.submit(table, t -> {
+                Thread.sleep(10);
+                executed.add(t.getKey() + "." + t.getValue());
+            });
+        }
+
+        assertTrue(executor.awaitFailures().isEmpty());
+        assertEquals(executed.size(), 10);
+    }
+
+    private static List<Entry<String, String>> tables(final int keyspaces, final int tablesPerKeyspace) {
+        final List<Entry<String, String>> tables = new ArrayList<>();
+
+        for (int ks = 1; ks <= keyspaces; ks++) {
+            for (int tb = 1; tb <= tablesPerKeyspace; tb++) {
+                tables.add(new SimpleImmutableEntry<>("ks" + ks, "tb" + tb));
+            }
+        }
+
+        return tables;
+    }
+}
@@ -0,0 +1,255 @@
+package com.instaclustr.esop.backup;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.instaclustr.esop.impl.AbstractTracker;
+import com.instaclustr.esop.impl.KeyspaceTable;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.ManifestEntry.Type;
+import com.instaclustr.esop.impl.SchedulingPolicy;
+import com.instaclustr.esop.impl.StorageInteractor;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.esop.impl.restore.TableActionExecutor;
+import com.instaclustr.esop.impl.restore.TablePipeline;
+import com.instaclustr.operations.Operation;
+import com.instaclustr.operations.OperationRequest;
+import com.instaclustr.operations.OperationsService;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of submitting of tables to restore as their files are finished by units of a session.
+ */
+public class TablePipelineTest {
+
+    private static final Entry<String, String> TB1 = new SimpleImmutableEntry<>("ks", "tb1");
+    private static final Entry<String, String> TB2 = new SimpleImmutableEntry<>("ks", "tb2");
+
+    private ListeningExecutorService finisher;
+    private TestTracker tracker;
+
+    @BeforeMethod
+    public void setup() {
+        finisher = new FixedTasksExecutorSupplier().get(10);
+        tracker = new TestTracker(finisher, new OperationsService(MoreExecutors.newDirectExecutorService()));
+    }
+
+    @AfterMethod
+    public void teardown() {
+        finisher.shutdownNow();
+    }
+
+    @Test
+    public void testTableIsSubmittedOnceAllItsFilesAreFinished() throws Exception {
+        final List<ManifestEntry> entries = new ArrayList<>();
+        entries.addAll(entries("tb1", 3));
+        entries.addAll(entries("tb2", 2));
+        // files of a table which is not restored are not waited for
+        entries.addAll(entries("tb3", 1));
+
+        final TablePipeline<TestUnit> pipeline = new TablePipeline<>(entries, tablesToRestore());
+        final TableActionExecutor executor = new TableActionExecutor(2, null);
+        final Set<Entry<String, String>> restored = ConcurrentHashMap.newKeySet();
+
+        final AbstractTracker.Session<TestUnit> session = tracker.submit(null, new TestOperation(new TestRequest()), entries, null, 3, SchedulingPolicy.MANIFEST_ORDER);
+        pipeline.attach(session, executor, restored::add);
+
+        tracker.release("tb1");
+        tracker.release("tb3");
+
+        Awaitility.await().atMost(10, SECONDS).until(() -> restored.contains(TB1));
+        assertFalse(restored.contains(TB2));
+
+        tracker.release("tb2");
+        session.waitUntilConsideredFinished();
+
+        assertTrue(executor.awaitFailures().isEmpty());
+        assertEquals(restored.size(), 2);
+        assertTrue(restored.contains(TB2));
+        assertTrue(pipeline.getFinishedUnits(TB1).stream().allMatch(unit -> unit != null && unit.getState() == AbstractTracker.Unit.State.FINISHED));
+    }
+
+    @Test
+    public void testTableWithFailedFileIsNotSubmitted() throws Exception {
+        final List<ManifestEntry> entries = new ArrayList<>();
+        entries.addAll(entries("tb1", 2));
+        entries.addAll(entries("tb2", 2));
+        entries.add(new ManifestEntry(Paths.get("data", "ks", "tb2", "failing-Data.db"), null, Type.FILE, 1, new KeyspaceTable("ks", "tb2"), null));
+
+        final TablePipeline<TestUnit> pipeline = new TablePipeline<>(entries, tablesToRestore());
+        final TableActionExecutor executor = new TableActionExecutor(2, null);
+        final Set<Entry<String, String>> restored = ConcurrentHashMap.newKeySet();
+
+        final AbstractTracker.Session<TestUnit> session = tracker.submit(null, new TestOperation(new TestRequest()), entries, null, 5, SchedulingPolicy.MANIFEST_ORDER);
+        pipeline.attach(session, executor, restored::add);
+
+        // the first table is fully downloaded before the failure, so it is still restored
+        tracker.release("tb1");
+        Awaitility.await().atMost(10, SECONDS).until(() -> restored.contains(TB1));
+
+        tracker.release("tb2");
+        session.waitUntilConsideredFinished();
+
+        assertTrue(executor.awaitFailures().isEmpty());
+        assertFalse(session.isSuccessful());
+        assertEquals(restored.size(), 1);
+        assertTrue(restored.contains(TB1));
+    }
+
+    @Test
+    public void testFailureOfTableActionIsReported() throws Exception {
+        final List<ManifestEntry> entries = new ArrayList<>();
+        entries.addAll(entries("tb1", 2));
+        entries.addAll(entries("tb2", 2));
+
+        final TablePipeline<TestUnit> pipeline = new TablePipeline<>(entries, tablesToRestore());
+        final TableActionExecutor executor = new TableActionExecutor(2, null);
+
+        final AbstractTracker.Session<TestUnit> session = tracker.submit(null, new TestOperation(new TestRequest()), entries, null, 2, SchedulingPolicy.MANIFEST_ORDER);
+        pipeline.attach(session, executor, table -> {
+            if (table.equals(TB2)) {
+                throw new IllegalStateException("unable to import tb2");
+            }
+        });
+
+        tracker.release("tb1");
+        tracker.release("tb2");
+        session.waitUntilConsideredFinished();
+
+        assertTrue(session.isSuccessful());
+
+        final Map<String, String> failures = executor.awaitFailures();
+
+        assertEquals(failures.size(), 1);
+        assertEquals(failures.get("ks.tb2"), "unable to import tb2");
+    }
+
+    @Test
+    public void testAllTablesAreSubmittedWithoutSession() throws Exception {
+        final List<ManifestEntry> entries = new ArrayList<>();
+        entries.addAll(entries("tb1", 2));
+        entries.addAll(entries("tb2", 2));
+
+        final TablePipeline<TestUnit> pipeline = new TablePipeline<>(entries, tablesToRestore());
+        final TableActionExecutor executor = new TableActionExecutor(2, null);
+        final Set<Entry<String, String>> restored = ConcurrentHashMap.newKeySet();
+
+        pipeline.submitAll(executor, restored::add);
+
+        assertTrue(executor.awaitFailures().isEmpty());
+        assertEquals(restored.size(), 2);
+        assertTrue(pipeline.getFinishedUnits(TB1).stream().allMatch(unit -> unit == null));
+    }
+
+    private static Multimap<String, String> tablesToRestore() {
+        final Multimap<String, String> tables = HashMultimap.create();
+        tables.put("ks", "tb1");
+        tables.put("ks", "tb2");
+        return tables;
+    }
+
+    private static List<ManifestEntry> entries(final String table, final int numberOfEntries) {
+        final List<ManifestEntry> entries = new ArrayList<>(numberOfEntries);
+
+        for (int i = 0; i < numberOfEntries; i++) {
+            entries.add(new ManifestEntry(Paths.get("data", "ks", table, "mc-" + i + "-big-Data.db"), null, Type.FILE, 1, new KeyspaceTable("ks", table), null));
+        }
+
+        return entries;
+    }
+
+    private static class TestRequest extends OperationRequest {
+
+    }
+
+    private static class TestOperation extends Operation<TestRequest> {
+
+        TestOperation(final TestRequest request) {
+            super(request);
+        }
+
+        @Override
+        protected void run0() {
+        }
+    }
+
+    private static class TestUnit extends AbstractTracker.Unit {
+
+        private final CountDownLatch release;
+
+        TestUnit(final ManifestEntry manifestEntry, final AtomicBoolean shouldCancel, final CountDownLatch release) {
+            super(manifestEntry, shouldCancel, null);
+            this.release = release;
+        }
+
+        @Override
+        public Void call() {
+            setState(State.RUNNING);
+
+            Uninterruptibles.awaitUninterruptibly(release);
+
+            if (manifestEntry.objectKey.getFileName().toString().startsWith("failing")) {
+                throwable = new IllegalStateException("failing unit");
+                setState(State.FAILED);
+                return null;
+            }
+
+            setState(State.FINISHED);
+            return null;
+        }
+    }
+
+    private static class TestSession extends AbstractTracker.Session<TestUnit> {
+
+    }
+
+    private static class TestTracker extends AbstractTracker<TestUnit, TestSession, StorageInteractor, TestRequest> {
+
+        // units of a table wait until they are released
+        private final Map<String, CountDownLatch> releases = new ConcurrentHashMap<>();
+
+        TestTracker(final ListeningExecutorService finisherExecutorService, final OperationsService operationsService) {
+            super(finisherExecutorService, operationsService, new HashSpec());
+        }
+
+        void release(final String table) {
+            releases.computeIfAbsent(table, t -> new CountDownLatch(1)).countDown();
+        }
+
+        @Override
+        public TestUnit constructUnitToSubmit(final StorageInteractor interactor,
+                                              final ManifestEntry manifestEntry,
+                                              final AtomicBoolean shouldCancel,
+                                              final String snapshotTag,
+                                              final HashSpec hashSpec) {
+            return new TestUnit(manifestEntry, shouldCancel, releases.computeIfAbsent(manifestEntry.keyspaceTable.table, t -> new CountDownLatch(1)));
+        }
+
+        @Override
+        public Session<TestUnit> constructSession() {
+            return new TestSession();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.instaclustr.esop.backup;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ch.qos.logback.classic.Level;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.instaclustr.esop.impl.AbstractTracker;
+import com.instaclustr.esop.impl.AbstractTracker.Unit.State;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.ManifestEntry.Type;
+import com.instaclustr.esop.impl.SchedulingPolicy;
+import com.instaclustr.esop.impl.StorageInteractor;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.operations.Operation;
+import com.instaclustr.operations.OperationRequest;
+import com.instaclustr.operations.OperationsService;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.awaitility.Awaitility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of sessions and units of a tracker on synthetic units which do not do anything.
+ */
+public class TrackerBookkeepingTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrackerBookkeepingTest.class);
+
+    /**
+     * Submits and completes a lot of units, each of them has to be finished exactly once and the session with it.
+     */
+    @Test
+    public void testBookkeepingOfManyUnits() throws Exception {
+        final int numberOfUnits = 10_000;
+
+        final List<ManifestEntry> entries = entries(numberOfUnits);
+
+        // progress of every unit is logged on debug level which would just slow this test down
+        final ch.qos.logback.classic.Logger trackerLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(AbstractTracker.class);
+        final Level trackerLogLevel = trackerLogger.getLevel();
+        trackerLogger.setLevel(Level.INFO);
+
+        final ListeningExecutorService finisher = new FixedTasksExecutorSupplier().get(100);
+        final OperationsService operationsService = new OperationsService(MoreExecutors.newDirectExecutorService());
+        final TestTracker tracker = new TestTracker(finisher, operationsService);
+
+        final TestOperation operation = new TestOperation(new TestRequest());
+        operationsService.submitOperation(operation);
+
+        try {
+            final AbstractTracker.Session<TestUnit> session = tracker.submit(null, operation, entries, null, 10, SchedulingPolicy.MANIFEST_ORDER);
+
+            Awaitility.await().atMost(1, MINUTES).until(() -> session.finishedUnits.get() == numberOfUnits && tracker.numberOfUnits() == 0);
+
+            assertEquals(tracker.submittedUnits.get(), numberOfUnits);
+            assertEquals(session.getUnits().size(), numberOfUnits);
+            assertEquals(session.getProgress(), 1.0f);
+        } finally {
+            trackerLogger.setLevel(trackerLogLevel);
+            finisher.shutdownNow();
+        }
+    }
+
+    /**
+     * Measures how long it takes to submit units of a session and to finish all of them. It is not run by default,
+     * run it by "benchmarks" profile. The number of units, iterations and connections might be changed by
+     * "trackerBenchmark.units", "trackerBenchmark.warmups", "trackerBenchmark.iterations" and
+     * "trackerBenchmark.connections" properties. The first iterations are warmups and they are not averaged.
+     */
+    @Test(groups = {"benchmark"})
+    public void benchmarkBookkeepingOfManyUnits() throws Exception {
+        final int numberOfUnits = Integer.getInteger("trackerBenchmark.units", 1_000_000);
+        final int warmups = Integer.getInteger("trackerBenchmark.warmups", 2);
+        final int iterations = Integer.getInteger("trackerBenchmark.iterations", 5);
+        final int connections = Integer.getInteger("trackerBenchmark.connections", 10);
+
+        final ch.qos.logback.classic.Logger trackerLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(AbstractTracker.class);
+        final Level trackerLogLevel = trackerLogger.getLevel();
+        trackerLogger.setLevel(Level.INFO);
+
+        final ListeningExecutorService finisher = new FixedTasksExecutorSupplier().get(100);
+        final OperationsService operationsService = new OperationsService(MoreExecutors.newDirectExecutorService());
+
+        long submitting = 0;
+        long finishing = 0;
+
+        try {
+            for (int i = 0; i < warmups + iterations; i++) {
+                final TestTracker tracker = new TestTracker(finisher, operationsService);
+                final List<ManifestEntry> entries = entries(numberOfUnits);
+
+                final long start = System.nanoTime();
+                final AbstractTracker.Session<TestUnit> session = tracker.submit(null, new TestOperation(new TestRequest()), entries, null, connections, SchedulingPolicy.MANIFEST_ORDER);
+                final long submitted = System.nanoTime();
+                session.waitUntilConsideredFinished();
+                final long finished = System.nanoTime();
+
+                assertTrue(session.isSuccessful());
+
+                final String kind = i < warmups ? "warmup" : "iteration";
+
+                logger.info("Bookkeeping {} {} of {} units: submitted in {} ms, finished in {} ms",
+                            kind, i < warmups ? i + 1 : i - warmups + 1, numberOfUnits,
+                            MILLISECONDS.convert(submitted - start, NANOSECONDS),
+                            MILLISECONDS.convert(finished - submitted, NANOSECONDS));
+
+                if (i >= warmups) {
+                    submitting += submitted - start;
+                    finishing += finished - submitted;
+                }
+            }
+
+            logger.info("Bookkeeping of {} units with {} connections took on average {} ms to submit and {} ms to finish, {} iterations",
+                        numberOfUnits, connections,
+                        MILLISECONDS.convert(submitting / iterations, NANOSECONDS),
+                        MILLISECONDS.convert(finishing / iterations, NANOSECONDS),
+                        iterations);
+        } finally {
+            trackerLogger.setLevel(trackerLogLevel);
+            finisher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSessionIsFinishedWithoutPolling() throws Exception {
+        final ListeningExecutorService finisher = new FixedTasksExecutorSupplier().get(10);
+        final OperationsService operationsService = new OperationsService(MoreExecutors.newDirectExecutorService());
+        final TestTracker tracker = new TestTracker(finisher, operationsService);
+
+        try {
+            final List<ManifestEntry> entries = entries(10);
+
+            final long start = System.currentTimeMillis();
+
+            final AbstractTracker.Session<TestUnit> session = tracker.submit(null, new TestOperation(new TestRequest()), entries, null, 2, SchedulingPolicy.MANIFEST_ORDER);
+            session.waitUntilConsideredFinished();
+
+            assertTrue(System.currentTimeMillis() - start < 2000);
+            assertTrue(session.isSuccessful());
+            assertTrue(session.getUnits().stream().allMatch(unit -> unit.getState() == State.FINISHED));
+        } finally {
+            finisher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSessionFailsFast() throws Exception {
+        final ListeningExecutorService finisher = new FixedTasksExecutorSupplier().get(10);
+        final OperationsService operationsService = new OperationsService(MoreExecutors.newDirectExecutorService());
+        final TestTracker tracker = new TestTracker(finisher, operationsService);
+
+        try {
+            final List<ManifestEntry> entries = entries(100);
+            entries.add(0, new ManifestEntry(Paths.get("data", "ks", "tb", "failing-Data.db"), null, Type.FILE, 1, null, null));
+
+            final long start = System.currentTimeMillis();
+
+            // one connection so the failing unit is the first one processed and all others wait for it
+            final AbstractTracker.Session<TestUnit> session = tracker.submit(null, new TestOperation(new TestRequest()), entries, null, 1, SchedulingPolicy.MANIFEST_ORDER);
+            session.waitUntilConsideredFinished();
+
+            assertTrue(System.currentTimeMillis() - start < 2000);
+            assertFalse(session.isSuccessful());
+            assertEquals(session.getFailedUnits().size(), 1);
+            assertTrue(session.getUnits().stream().filter(unit -> unit.getState() != State.FAILED).allMatch(unit -> unit.getState() == State.IGNORED));
+        } finally {
+            finisher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSessionWithThrowingUnitIsFinished() throws Exception {
+        final ListeningExecutorService finisher = new FixedTasksExecutorSupplier().get(10);
+        final OperationsService operationsService = new OperationsService(MoreExecutors.newDirectExecutorService());
+        final TestTracker tracker = new TestTracker(finisher, operationsService);
+
+        try {
+            final List<ManifestEntry> entries = entries(10);
+            entries.add(5, new ManifestEntry(Paths.get("data", "ks", "tb", "throwing-Data.db"), null, Type.FILE, 1, null, null));
+
+            // one connection so all units are in one task and the throwing one is followed by others
+            final AbstractTracker.Session<TestUnit> session = tracker.submit(null, new TestOperation(new TestRequest()), entries, null, 1, SchedulingPolicy.MANIFEST_ORDER);
+
+            // all units of the task are processed, including the ones after the throwing unit
+            Awaitility.await().atMost(10, SECONDS).until(() -> session.isConsideredFinished() && tracker.numberOfUnits() == 0);
+
+            assertFalse(session.isSuccessful());
+            assertEquals(session.getFailedUnits().size(), 1);
+            assertEquals(session.getFailedUnits().get(0).getThrowable().getMessage(), "throwing unit");
+            assertTrue(session.getUnits().stream().allMatch(unit -> unit.getState() == State.FINISHED
+                                                                    || unit.getState() == State.FAILED
+                                                                    || unit.getState() == State.IGNORED));
+        } finally {
+            finisher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHashIsSharedWithEntriesOfOtherSessions() throws Exception {
+        final ListeningExecutorService finisher = new FixedTasksExecutorSupplier().get(10);
+        final OperationsService operationsService = new OperationsService(MoreExecutors.newDirectExecutorService());
+        final TestTracker tracker = new TestTracker(finisher, operationsService);
+        tracker.release = new CountDownLatch(1);
+
+        try {
+            final AbstractTracker.Session<TestUnit> session1 = tracker.submit(null, new TestOperation(new TestRequest()), entries(10), null, 2, SchedulingPolicy.MANIFEST_ORDER);
+
+            // the same files, e.g. of a backup of another snapshot, are uploaded by units of the first session
+            final List<ManifestEntry> entries = entries(10);
+            final AbstractTracker.Session<TestUnit> session2 = tracker.submit(null, new TestOperation(new TestRequest()), entries, null, 2, SchedulingPolicy.MANIFEST_ORDER);
+
+            tracker.release.countDown();
+
+            session1.waitUntilConsideredFinished();
+            session2.waitUntilConsideredFinished();
+
+            assertTrue(session2.isSuccessful());
+            assertEquals(tracker.submittedUnits.get(), 10);
+
+            for (final ManifestEntry entry : entries) {
+                assertEquals(entry.hash, "hash of " + entry.objectKey.getFileName());
+            }
+        } finally {
+            finisher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSessionSharingUnitsOfFailedSessionIsFinished() throws Exception {
+        final ListeningExecutorService finisher = new FixedTasksExecutorSupplier().get(10);
+        final OperationsService operationsService = new OperationsService(MoreExecutors.newDirectExecutorService());
+        final TestTracker tracker = new TestTracker(finisher, operationsService);
+        tracker.release = new CountDownLatch(1);
+
+        try {
+            final List<ManifestEntry> entries1 = entries(10);
+            entries1.add(0, new ManifestEntry(Paths.get("data", "ks", "tb", "failing-Data.db"), null, Type.FILE, 1, null, null));
+
+            // one connection so the failing unit is processed first and the first session ignores all the others
+            final AbstractTracker.Session<TestUnit> session1 = tracker.submit(null, new TestOperation(new TestRequest()), entries1, null, 1, SchedulingPolicy.MANIFEST_ORDER);
+            final AbstractTracker.Session<TestUnit> session2 = tracker.submit(null, new TestOperation(new TestRequest()), entries(10), null, 1, SchedulingPolicy.MANIFEST_ORDER);
+
+            tracker.release.countDown();
+
+            Awaitility.await().atMost(10, SECONDS).until(() -> session1.isConsideredFinished() && session2.isConsideredFinished());
+
+            assertFalse(session1.isSuccessful());
+            assertEquals(session1.getFailedUnits().size(), 1);
+
+            // units of the second session were ignored by the first one, so they were never processed
+            assertFalse(session2.isSuccessful());
+            assertFalse(session2.getFailedUnits().isEmpty());
+        } finally {
+            finisher.shutdownNow();
+        }
+    }
+
+    private static List<ManifestEntry> entries(final int numberOfEntries) {
+        final List<ManifestEntry> entries = new ArrayList<>(numberOfEntries);
+
+        for (int i = 0; i < numberOfEntries; i++) {
+            entries.add(new ManifestEntry(Paths.get("data", "ks", "tb", "mc-" + i + "-big-Data.db"), null, Type.FILE, 1 + i % 1024, null, null));
+        }
+
+        return entries;
+    }
+
+    private static class TestRequest extends OperationRequest {
+
+    }
+
+    private static class TestOperation extends Operation<TestRequest> {
+
+        TestOperation(final TestRequest request) {
+            super(request);
+        }
+
+        @Override
+        protected void run0() {
+        }
+    }
+
+    private static class TestUnit extends AbstractTracker.Unit {
+
+        private final CountDownLatch release;
+
+        TestUnit(final ManifestEntry manifestEntry, final AtomicBoolean shouldCancel, final CountDownLatch release) {
+            super(manifestEntry, shouldCancel, null);
+            this.release = release;
+        }
+
+        @Override
+        public Void call() {
+            setState(State.RUNNING);
+
+            if (release != null) {
+                Uninterruptibles.awaitUninterruptibly(release);
+            }
+
+            if (manifestEntry.objectKey.getFileName().toString().startsWith("failing")) {
+                throwable = new IllegalStateException("failing unit");
+                setState(State.FAILED);
+                return null;
+            }
+
+            if (manifestEntry.objectKey.getFileName().toString().startsWith("throwing")) {
+                throw new IllegalStateException("throwing unit");
+            }
+
+            setHash("hash of " + manifestEntry.objectKey.getFileName());
+            setState(State.FINISHED);
+            return null;
+        }
+    }
+
+    private static class TestSession extends AbstractTracker.Session<TestUnit> {
+
+    }
+
+    private static class TestTracker extends AbstractTracker<TestUnit, TestSession, StorageInteractor, TestRequest> {
+
+        // units wait for it to be counted down before they are processed
+        CountDownLatch release;
+
+        TestTracker(final ListeningExecutorService finisherExecutorService, final OperationsService operationsService) {
+            super(finisherExecutorService, operationsService, new HashSpec());
+        }
+
+        @Override
+        public TestUnit constructUnitToSubmit(final StorageInteractor interactor,
+                                              final ManifestEntry manifestEntry,
+                                              final AtomicBoolean shouldCancel,
+                                              final String snapshotTag,
+                                              final HashSpec hashSpec) {
+            return new TestUnit(manifestEntry, shouldCancel, release);
+        }
+
+        @Override
+        public Session<TestUnit> constructSession() {
+            return new TestSession();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.instaclustr.esop.backup;
+
+import static java.util.Collections.singletonList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.instaclustr.esop.impl.AbstractTracker.Unit.State;
+import com.instaclustr.esop.impl.DatabaseEntities;
+import com.instaclustr.esop.impl.KeyspaceTable;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.ManifestEntry.Type;
+import com.instaclustr.esop.impl.Snapshots.Snapshot;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace.Table;
+import com.instaclustr.esop.impl._import.ImportOperationRequest;
+import com.instaclustr.esop.impl.hash.HashServiceImpl;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.esop.impl.restore.DownloadTracker;
+import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadUnit;
+import com.instaclustr.esop.impl.restore.RestorationPhase.DataVerification;
+import com.instaclustr.esop.impl.restore.RestoreOperation;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.impl.restore.strategy.RestorationContext;
+import com.instaclustr.esop.impl.retry.RetrySpec;
+import org.testng.annotations.Test;
+
+public class VerificationLedgerTest extends AbstractLocalStorageTest {
+
+    @Test
+    public void testFilesVerifiedUponDownloadAreTrusted() throws Exception {
+        final byte[] content = new byte[64 * 1024];
+        new Random(0).nextBytes(content);
+
+        final Path remoteFile = nodeDir().resolve("data/ks/tb/1-1234/mc-1-big-Data.db");
+        Files.createDirectories(remoteFile.getParent());
+        Files.write(remoteFile, content);
+
+        final RestoreOperationRequest request = request(new RestoreOperationRequest());
+        request.retry = new RetrySpec();
+        request.importing = new ImportOperationRequest();
+        request.importing.sourceDir = dir.resolve("restore");
+
+        final Path localFile = dir.resolve("restore/data/ks/tb/mc-1-big-Data.db");
+        final ManifestEntry entry = new ManifestEntry(Paths.get("data/ks/tb/1-1234/mc-1-big-Data.db"),
+                                                      localFile,
+                                                      Type.FILE,
+                                                      content.length,
+                                                      new KeyspaceTable("ks", "tb"),
+                                                      new HashServiceImpl(new HashSpec()).hash(remoteFile));
+
+        final Manifest manifest = manifest(entry);
+
+        final RestorationContext ctxt = new RestorationContext();
+        ctxt.operation = new RestoreOperation(request);
+        ctxt.downloadTracker = new DownloadTracker(null, null, new HashSpec());
+        ctxt.hashService = new HashServiceImpl(new HashSpec());
+
+        final DownloadUnit unit = new DownloadUnit(restorer(request), entry, new AtomicBoolean(), null, new HashSpec());
+        unit.call();
+
+        assertEquals(unit.getState(), State.FINISHED);
+
+        DataVerification.recordVerified(ctxt, singletonList(unit));
+
+        // a file which looks like the verified one is not hashed again, so its corruption is not detected
+        corrupt(localFile, Files.getLastModifiedTime(localFile));
+        assertFalse(new DataVerification(ctxt).verify(manifest, DatabaseEntities.empty()).hasErrors());
+
+        // a full verification hashes every file
+        request.fullVerification = true;
+        assertTrue(new DataVerification(ctxt).verify(manifest, DatabaseEntities.empty()).hasErrors());
+
+        // a modified file is hashed again
+        request.fullVerification = false;
+        corrupt(localFile, FileTime.fromMillis(Files.getLastModifiedTime(localFile).toMillis() - 60_000));
+        assertTrue(new DataVerification(ctxt).verify(manifest, DatabaseEntities.empty()).hasErrors());
+    }
+
+    private static void corrupt(final Path file, final FileTime lastModifiedTime) throws Exception {
+        final byte[] content = Files.readAllBytes(file);
+        content[0]++;
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, lastModifiedTime);
+    }
+
+    private static Manifest manifest(final ManifestEntry entry) {
+        final Keyspace keyspace = new Keyspace(new HashMap<>());
+        keyspace.add("tb", new Table(singletonList(entry), "1234", null));
+
+        final Snapshot snapshot = new Snapshot();
+        snapshot.add("ks", keyspace);
+
+        return new Manifest(snapshot);
+    }
+}
@@ -7,6 +7,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.instaclustr.esop.azure.AzureBackuper;
 import com.instaclustr.esop.azure.AzureBucketService;
@@ -90,7 +91,7 @@ public class AzureBackupRestoreTest extends BaseAzureBackupRestoreTest {
             final BackupOperationRequest backupOperationRequest = new BackupOperationRequest();
             backupOperationRequest.storageLocation = new StorageLocation("azure://" + BUCKET_NAME + "/cluster/dc/node");
 
-            final AzureRestorer azureRestorer = new AzureRestorer(cloudStorageAccountFactory, restoreOperationRequest);
+            final AzureRestorer azureRestorer = new AzureRestorer(cloudStorageAccountFactory, restoreOperationRequest, new ObjectMapper());
             final AzureBackuper azureBackuper = new AzureBackuper(cloudStorageAccountFactory, backupOperationRequest);
 
             // 1
@@ -7,6 +7,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.storage.Bucket;
 import com.google.cloud.storage.Storage;
 import com.google.inject.Inject;
@@ -87,7 +88,7 @@ public class GoogleStorageBackupRestoreTest extends BaseGoogleStorageBackupResto
             final BackupOperationRequest backupOperationRequest = new BackupOperationRequest();
             backupOperationRequest.storageLocation = new StorageLocation("gcp://" + BUCKET_NAME + "/cluster/dc/node");
 
-            final GCPRestorer gcpRestorer = new GCPRestorer(googleStorageFactory, restoreOperationRequest);
+            final GCPRestorer gcpRestorer = new GCPRestorer(googleStorageFactory, restoreOperationRequest, new ObjectMapper());
             final GCPBackuper gcpBackuper = new GCPBackuper(googleStorageFactory, backupOperationRequest);
 
             // 1
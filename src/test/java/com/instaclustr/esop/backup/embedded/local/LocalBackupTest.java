@@ -23,6 +23,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.nosan.embedded.cassandra.Cassandra;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.Uninterruptibles;
@@ -181,7 +182,7 @@ public class LocalBackupTest extends AbstractBackupTest {
                         StandardOpenOption.CREATE_NEW
             );
 
-            LocalFileRestorer localFileRestorer = new LocalFileRestorer(restoreOperationRequest);
+            LocalFileRestorer localFileRestorer = new LocalFileRestorer(restoreOperationRequest, new ObjectMapper());
 
             final Path downloadedFile = localFileRestorer.downloadNodeFileToDir(Paths.get("/tmp"), Paths.get("manifests"), s -> s.contains("snapshot-name-"));
 
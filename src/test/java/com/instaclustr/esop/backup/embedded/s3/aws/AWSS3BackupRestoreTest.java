@@ -9,6 +9,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.backup.BackupOperationRequest;
@@ -95,7 +96,7 @@ public class AWSS3BackupRestoreTest extends BaseAWSS3BackupRestoreTest {
             final BackupOperationRequest backupOperationRequest = new BackupOperationRequest();
             backupOperationRequest.storageLocation = new StorageLocation("s3://" + BUCKET_NAME + "/cluster/dc/node");
 
-            final S3Restorer s3Restorer = new S3Restorer(factory, restoreOperationRequest);
+            final S3Restorer s3Restorer = new S3Restorer(factory, restoreOperationRequest, new ObjectMapper());
             final S3Backuper s3Backuper = new S3Backuper(factory, backupOperationRequest);
 
             // 1